@@ -4,6 +4,9 @@ import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
 import android.util.Log;
+
+import com.wonderpush.sdk.ratelimiter.RateLimiter;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -163,6 +166,7 @@ class ActivityLifecycleMonitor {
                     } catch (Exception e) {
                         Log.d(WonderPush.TAG, "Unexpected error while updating presence", e);
                     }
+                    RateLimiter.flushInstance();
                 }, 0);
             }
             if (!activity.isFinishing()) {
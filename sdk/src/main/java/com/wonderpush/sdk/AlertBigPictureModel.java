@@ -6,6 +6,8 @@ import android.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+
 class AlertBigPictureModel extends AlertModel {
 
     // Modify forCurrentSettings() and clone() when adding a field below
@@ -15,6 +17,9 @@ class AlertBigPictureModel extends AlertModel {
     private CharSequence bigTitle;
     private CharSequence summaryText;
     // Modify forCurrentSettings() and clone() when adding a field above
+    // The resources being fetched at parse time, resolved lazily by their getters
+    private String pendingBigLargeIcon;
+    private String pendingBigPicture;
 
     public AlertBigPictureModel(JSONObject inputJSON) {
         super(inputJSON);
@@ -80,11 +85,18 @@ class AlertBigPictureModel extends AlertModel {
     }
 
     public Bitmap getBigLargeIcon() {
+        if (pendingBigLargeIcon != null) {
+            File resolved = getResolvedResource(pendingBigLargeIcon);
+            if (resolved != null) {
+                setBigLargeIcon(resolveLargeIcon(pendingBigLargeIcon, CacheUtil.FetchResult.immediate(resolved), "Big large icon"));
+            }
+        }
         return bigLargeIcon;
     }
 
     public void setBigLargeIcon(Bitmap bigLargeIcon) {
         this.bigLargeIcon = bigLargeIcon;
+        this.pendingBigLargeIcon = null;
         if (bigLargeIcon != null) {
             WonderPush.logDebug("Big large icon: " + bigLargeIcon.getWidth() + "x" + bigLargeIcon.getHeight());
         }
@@ -92,14 +104,24 @@ class AlertBigPictureModel extends AlertModel {
 
     public void setBigLargeIcon(String bigLargeIcon) {
         setBigLargeIcon(resolveLargeIconFromString(bigLargeIcon, "Big large icon"));
+        if (this.bigLargeIcon == null && isFetching(bigLargeIcon)) {
+            pendingBigLargeIcon = bigLargeIcon;
+        }
     }
 
     public Bitmap getBigPicture() {
+        if (pendingBigPicture != null) {
+            File resolved = getResolvedResource(pendingBigPicture);
+            if (resolved != null) {
+                setBigPicture(resolveBigPicture(pendingBigPicture, CacheUtil.FetchResult.immediate(resolved), "Big picture"));
+            }
+        }
         return bigPicture;
     }
 
     public void setBigPicture(Bitmap bigPicture) {
         this.bigPicture = bigPicture;
+        this.pendingBigPicture = null;
         if (bigPicture != null) {
             WonderPush.logDebug("Big picture: " + bigPicture.getWidth() + "x" + bigPicture.getHeight());
         }
@@ -107,6 +129,9 @@ class AlertBigPictureModel extends AlertModel {
 
     public void setBigPicture(String bigPicture) {
         setBigPicture(resolveBigPictureFromString(bigPicture, "Big picture"));
+        if (this.bigPicture == null && isFetching(bigPicture)) {
+            pendingBigPicture = bigPicture;
+        }
     }
 
     public CharSequence getBigTitle() {
@@ -11,6 +11,7 @@ import android.net.Uri;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.FileProvider;
 import android.util.Base64InputStream;
+import android.util.DisplayMetrics;
 import android.util.Log;
 
 import org.json.JSONArray;
@@ -31,6 +32,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 class AlertModel implements Cloneable {
 
@@ -109,6 +111,8 @@ class AlertModel implements Cloneable {
     private static final boolean defaultSound = true;
     private static final boolean defaultLight = true;
 
+    private static final int BIG_PICTURE_MAX_HEIGHT_DP = 256;
+
     // https://android.googlesource.com/device/lge/mako/+/master/overlay/frameworks/base/core/res/res/values/config.xml
     private static final int defaultNotificationColor;
     private static final int defaultNotificationLedOn;
@@ -200,6 +204,10 @@ class AlertModel implements Cloneable {
     private AlertModel foreground;
 
     private Collection<CacheUtil.FetchWork> resourcesToFetch = new ArrayList<>();
+    // The fetched resources by URI, that the getters of resources pending below consult lazily
+    private Map<String, File> resolvedResources;
+    private String pendingSoundUri;
+    private String pendingLargeIcon;
 
     public static AlertModel fromOldFormatStringExtra(String alert) {
         if (alert == null) return null;
@@ -706,56 +714,92 @@ class AlertModel implements Cloneable {
         if (value == null) {
             return null;
         }
-        return resolveBitmapFromStringWithFetchResult(value, CacheUtil.fetchLargeIcon(Uri.parse(value), logPrefix), logPrefix);
+        return resolveLargeIcon(value, CacheUtil.fetchLargeIcon(Uri.parse(value), logPrefix), logPrefix);
+    }
+
+    protected Bitmap resolveLargeIcon(String value, CacheUtil.FetchResult fetchResult, String logPrefix) {
+        Resources res = WonderPush.getApplicationContext().getResources();
+        int width = res.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        int height = res.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+        return resolveBitmapFromStringWithFetchResult(value, fetchResult, width, height, logPrefix);
     }
 
     protected Bitmap resolveBigPictureFromString(String value, String logPrefix) {
         if (value == null) {
             return null;
         }
-        return resolveBitmapFromStringWithFetchResult(value, CacheUtil.fetchBigPicture(Uri.parse(value), logPrefix), logPrefix);
+        return resolveBigPicture(value, CacheUtil.fetchBigPicture(Uri.parse(value), logPrefix), logPrefix);
     }
 
-    private Bitmap resolveBitmapFromStringWithFetchResult(String value, CacheUtil.FetchResult fetchResult, String logPrefix) {
+    protected Bitmap resolveBigPicture(String value, CacheUtil.FetchResult fetchResult, String logPrefix) {
+        // The expanded notification spans the screen width, and at most 256dp of height
+        DisplayMetrics metrics = WonderPush.getApplicationContext().getResources().getDisplayMetrics();
+        int width = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int height = Math.round(BIG_PICTURE_MAX_HEIGHT_DP * metrics.density);
+        return resolveBitmapFromStringWithFetchResult(value, fetchResult, width, height, logPrefix);
+    }
+
+    private Bitmap resolveBitmapFromStringWithFetchResult(String value, CacheUtil.FetchResult fetchResult, int reqWidth, int reqHeight, String logPrefix) {
         if (!fetchResult.needsWork()) {
-            return resolveBitmapFromString(value, fetchResult.getResult(), logPrefix);
+            return resolveBitmapFromString(value, fetchResult.getResult(), reqWidth, reqHeight, logPrefix);
         } else {
             resourcesToFetch.add(fetchResult.getWork());
             return null;
         }
     }
 
-    private Bitmap resolveBitmapFromString(String value, File httpResolvedFile, String logPrefix) {
+    private Bitmap resolveBitmapFromString(String value, File httpResolvedFile, int reqWidth, int reqHeight, String logPrefix) {
         if (value == null) {
             return null;
         }
         Uri uri = Uri.parse(value);
         InputStream stream;
         int resId;
-        if (httpResolvedFile != null) {
-            return BitmapFactory.decodeFile(httpResolvedFile.getAbsolutePath());
-        } else if ((stream = decodeDataUri(uri, logPrefix)) != null) {
-            return BitmapFactory.decodeStream(stream);
-        } else if ((resId = resolveResourceIdentifier(value, "drawable")) != 0) {
-            WonderPush.logDebug(logPrefix + ": Resolved as drawable");
-            return BitmapFactory.decodeResource(WonderPush.getApplicationContext().getResources(), resId);
-        } else if ((resId = resolveResourceIdentifier(value, "mipmap")) != 0) {
-            WonderPush.logDebug(logPrefix + ": Resolved as mipmap");
-            return BitmapFactory.decodeResource(WonderPush.getApplicationContext().getResources(), resId);
-        } else {
-            for (String suffix : new String[]{"", ".webp", ".png", ".jpg", ".jpeg", ".gif", ".bmp"}) {
-                try {
-                    Bitmap bm = BitmapFactory.decodeStream(WonderPush.getApplicationContext().getResources().getAssets().open(value + suffix));
-                    if (bm != null) {
-                        WonderPush.logDebug(logPrefix + ": Resolved as asset with suffix: \"" + suffix + "\"");
-                        return bm;
+        try {
+            if (httpResolvedFile != null) {
+                String path = httpResolvedFile.getAbsolutePath();
+                return BitmapDecoder.decode("file:" + path + ":" + httpResolvedFile.lastModified() + ":" + httpResolvedFile.length(),
+                        reqWidth, reqHeight, options -> BitmapFactory.decodeFile(path, options));
+            } else if ((stream = decodeDataUri(uri, logPrefix)) != null) {
+                stream.close();
+                return BitmapDecoder.decode(null, reqWidth, reqHeight, options -> {
+                    try (InputStream in = decodeDataUri(uri, logPrefix)) {
+                        return BitmapFactory.decodeStream(in, null, options);
                     }
-                } catch (IOException ignored) {}
+                });
+            } else if ((resId = resolveResourceIdentifier(value, "drawable")) != 0) {
+                WonderPush.logDebug(logPrefix + ": Resolved as drawable");
+                return decodeResource(resId, reqWidth, reqHeight);
+            } else if ((resId = resolveResourceIdentifier(value, "mipmap")) != 0) {
+                WonderPush.logDebug(logPrefix + ": Resolved as mipmap");
+                return decodeResource(resId, reqWidth, reqHeight);
             }
+        } catch (IOException ex) {
+            Log.e(WonderPush.TAG, logPrefix + ": Failed to decode " + value, ex);
+            return null;
+        }
+        for (String suffix : new String[]{"", ".webp", ".png", ".jpg", ".jpeg", ".gif", ".bmp"}) {
+            try {
+                String assetName = value + suffix;
+                Bitmap bm = BitmapDecoder.decode("asset:" + assetName, reqWidth, reqHeight, options -> {
+                    try (InputStream in = WonderPush.getApplicationContext().getResources().getAssets().open(assetName)) {
+                        return BitmapFactory.decodeStream(in, null, options);
+                    }
+                });
+                if (bm != null) {
+                    WonderPush.logDebug(logPrefix + ": Resolved as asset with suffix: \"" + suffix + "\"");
+                    return bm;
+                }
+            } catch (IOException ignored) {}
         }
         return null;
     }
 
+    private static Bitmap decodeResource(int resId, int reqWidth, int reqHeight) throws IOException {
+        Resources res = WonderPush.getApplicationContext().getResources();
+        return BitmapDecoder.decode("res:" + resId, reqWidth, reqHeight, options -> BitmapFactory.decodeResource(res, resId, options));
+    }
+
     protected CharSequence handleHtml(CharSequence input) {
         if (isHtml() && input instanceof String) {
             return WonderPushCompatibilityHelper.fromHtml((String) input); // images are unsupported in text, but unicode smileys are
@@ -768,6 +812,41 @@ class AlertModel implements Cloneable {
         return Collections.unmodifiableCollection(resourcesToFetch);
     }
 
+    /**
+     * Whether the given resource is among the resources to fetch.
+     */
+    protected boolean isFetching(String value) {
+        if (value == null) {
+            return false;
+        }
+        for (CacheUtil.FetchWork work : resourcesToFetch) {
+            if (value.equals(work.uri.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives the fetched resources, by URI, to the getters of the resources that were pending at parse time.
+     */
+    public void setResolvedResources(Map<String, File> resolvedResources) {
+        this.resolvedResources = resolvedResources;
+        if (foreground != null) {
+            foreground.setResolvedResources(resolvedResources);
+        }
+    }
+
+    /**
+     * @return The fetched resource for the given URI, or null if it has not been fetched
+     */
+    protected File getResolvedResource(String value) {
+        if (value == null || resolvedResources == null) {
+            return null;
+        }
+        return resolvedResources.get(value);
+    }
+
     public JSONObject getInputJson() {
         return inputJson;
     }
@@ -1214,10 +1293,28 @@ class AlertModel implements Cloneable {
     }
 
     public Uri getSoundUri() {
+        if (pendingSoundUri != null) {
+            File soundCached = getResolvedResource(pendingSoundUri);
+            if (soundCached != null) {
+                pendingSoundUri = null;
+                soundUri = getSoundUriForCachedFile(soundCached);
+            }
+        }
+        return soundUri;
+    }
+
+    private static Uri getSoundUriForCachedFile(File soundCached) {
+        Uri soundUri = FileProvider.getUriForFile(
+                WonderPush.getApplicationContext(),
+                WonderPush.getApplicationContext().getPackageName() + ".wonderpush.fileprovider",
+                soundCached);
+        WonderPush.getApplicationContext().grantUriPermission("com.android.systemui", soundUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        WonderPush.logDebug("Sound: new URI: " + soundUri);
         return soundUri;
     }
 
     public void setSoundUri(Uri soundUri) {
+        String pendingSoundUri = null;
         if (soundUri != null) {
             String scheme = soundUri.getScheme() == null ? null : soundUri.getScheme().toLowerCase(Locale.ROOT);
             if ("http".equals(scheme) || "https".equals(scheme)) {
@@ -1226,15 +1323,11 @@ class AlertModel implements Cloneable {
                 CacheUtil.FetchResult fetchResult = CacheUtil.fetchSound(soundUri, "Sound");
                 if (fetchResult.needsWork()) {
                     resourcesToFetch.add(fetchResult.getWork());
+                    pendingSoundUri = soundUri.toString();
                 } // let the following code set the default sound meanwhile
                 File soundCached = fetchResult.getResult();
                 if (soundCached != null) {
-                    soundUri = FileProvider.getUriForFile(
-                            WonderPush.getApplicationContext(),
-                            WonderPush.getApplicationContext().getPackageName() + ".wonderpush.fileprovider",
-                            soundCached);
-                    WonderPush.getApplicationContext().grantUriPermission("com.android.systemui", soundUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                    WonderPush.logDebug("Sound: new URI: " + soundUri);
+                    soundUri = getSoundUriForCachedFile(soundCached);
                 } else {
                     setSound(true);
                     setSoundUri((Uri) null);
@@ -1242,6 +1335,7 @@ class AlertModel implements Cloneable {
             }
         }
         this.soundUri = soundUri;
+        this.pendingSoundUri = pendingSoundUri;
     }
 
     public void setSoundUri(String soundUri) {
@@ -1330,11 +1424,18 @@ class AlertModel implements Cloneable {
     }
 
     public Bitmap getLargeIcon() {
+        if (pendingLargeIcon != null) {
+            File resolved = getResolvedResource(pendingLargeIcon);
+            if (resolved != null) {
+                setLargeIcon(resolveLargeIcon(pendingLargeIcon, CacheUtil.FetchResult.immediate(resolved), "Large icon"));
+            }
+        }
         return largeIcon;
     }
 
     public void setLargeIcon(Bitmap largeIcon) {
         this.largeIcon = largeIcon;
+        this.pendingLargeIcon = null;
         if (largeIcon != null) {
             WonderPush.logDebug("Large icon: " + largeIcon.getWidth() + "x" + largeIcon.getHeight());
         }
@@ -1342,6 +1443,9 @@ class AlertModel implements Cloneable {
 
     public void setLargeIcon(String largeIcon) {
         setLargeIcon(resolveLargeIconFromString(largeIcon, "Large icon"));
+        if (this.largeIcon == null && isFetching(largeIcon)) {
+            pendingLargeIcon = largeIcon;
+        }
     }
 
     public List<NotificationButtonModel> getButtons() {
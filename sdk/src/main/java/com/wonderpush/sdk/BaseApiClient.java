@@ -1,7 +1,5 @@
 package com.wonderpush.sdk;
 
-import android.net.TrafficStats;
-import android.os.Process;
 import android.os.SystemClock;
 import android.util.Log;
 
@@ -11,12 +9,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 
 import okhttp3.Call;
 import okhttp3.Callback;
-import okhttp3.EventListener;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 
@@ -196,19 +191,14 @@ public abstract class BaseApiClient implements WonderPushRequestVault.RequestExe
         if (_client == null) {
             synchronized (this) {
                 if (_client == null) {
-                    _client = new OkHttpClient.Builder()
+                    _client = SharedOkHttpClient.get().newBuilder()
                             .dispatcher(SafeOkHttpCallback.buildSafeDispatcher(this.getClass().getSimpleName()))
                             .addInterceptor(chain ->
                                     chain.proceed(chain.request().newBuilder()
                                             .header("User-Agent", WonderPush.getUserAgent())
                                             .build())
                             )
-                            .eventListener(new EventListener() {
-                                @Override
-                                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
-                                    TrafficStats.setThreadStatsTag(Process.myTid());
-                                }
-                            }).build();
+                            .build();
                 }
             }
         }
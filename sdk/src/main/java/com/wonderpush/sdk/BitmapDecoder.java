@@ -0,0 +1,113 @@
+package com.wonderpush.sdk;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import androidx.annotation.Nullable;
+import android.util.LruCache;
+
+import java.io.IOException;
+
+/**
+ * Decodes notification bitmaps downsampled to the size they are displayed at.
+ *
+ * <p>
+ * The bounds are read first to pick the largest power of two sample size that keeps the bitmap
+ * at least as large as the target, and opaque formats are decoded with 2 bytes per pixel.
+ * Decoded bitmaps are kept in a memory LRU cache, so that repeated notifications do not decode them again.
+ * </p>
+ */
+class BitmapDecoder {
+
+    private static final int MAX_MEMORY_CACHE_SIZE = 8 * 1024 * 1024; // 8 MB
+
+    private static LruCache<String, Bitmap> sMemoryCache;
+
+    /**
+     * Decodes a bitmap with the given options, for the bounds only when {@link BitmapFactory.Options#inJustDecodeBounds} is set.
+     */
+    interface Decoding {
+        @Nullable
+        Bitmap decode(BitmapFactory.Options options) throws IOException;
+    }
+
+    private static synchronized LruCache<String, Bitmap> getMemoryCache() {
+        if (sMemoryCache == null) {
+            int maxSize = (int) Math.min(MAX_MEMORY_CACHE_SIZE, Runtime.getRuntime().maxMemory() / 16);
+            sMemoryCache = new LruCache<String, Bitmap>(maxSize) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+        }
+        return sMemoryCache;
+    }
+
+    /**
+     * Decodes a bitmap downsampled for the given target size.
+     * @param cacheKey Identifies the decoded image in the memory cache, or {@code null} to skip the cache.
+     *                 It must change whenever the image does.
+     * @return The decoded bitmap, or {@code null} if the image could not be decoded.
+     * @throws IOException If the image could not be read.
+     */
+    @Nullable
+    static Bitmap decode(@Nullable String cacheKey, int reqWidth, int reqHeight, Decoding decoding) throws IOException {
+        String key = cacheKey == null ? null : cacheKey + "@" + reqWidth + "x" + reqHeight;
+        if (key != null) {
+            Bitmap cached = getMemoryCache().get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decoding.decode(options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        boolean opaque = isOpaque(options.outMimeType);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = computeInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inPreferredConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = decoding.decode(options);
+        WonderPush.logDebug("Decoded " + options.outMimeType + " bitmap of " + options.outWidth + "x" + options.outHeight
+                + " with a sample size of " + options.inSampleSize + " for a target of " + reqWidth + "x" + reqHeight);
+
+        if (bitmap != null && key != null) {
+            getMemoryCache().put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps both dimensions at least as large as the requested ones.
+     */
+    static int computeInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Whether images of the given MIME type never have an alpha channel.
+     */
+    static boolean isOpaque(@Nullable String mimeType) {
+        return "image/jpeg".equals(mimeType);
+    }
+
+    /**
+     * Returns the number of bytes of the decoded bitmap.
+     */
+    static long getDecodedByteCount(int width, int height, int inSampleSize, boolean opaque) {
+        long sampledWidth = (width + inSampleSize - 1) / inSampleSize;
+        long sampledHeight = (height + inSampleSize - 1) / inSampleSize;
+        return sampledWidth * sampledHeight * (opaque ? 2 : 4);
+    }
+
+}
@@ -4,13 +4,19 @@ import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 class BlackWhiteList {
 
     private final List<String> blackList = new ArrayList<>();
     private final List<String> whiteList = new ArrayList<>();
+    private final CompiledRules compiledBlackList;
+    private final CompiledRules compiledWhiteList;
+
     BlackWhiteList(String[] rules) {
         this(Arrays.asList(rules));
     }
@@ -19,20 +25,24 @@ class BlackWhiteList {
             if (rule != null && rule.startsWith("-")) blackList.add(rule.substring(1));
             else if (rule != null) whiteList.add(rule);
         }
+        compiledBlackList = new CompiledRules(blackList);
+        compiledWhiteList = new CompiledRules(whiteList);
     }
 
     public boolean allow(String item) {
-        for (String rule : whiteList) {
-            if (itemMatchesRule(item, rule)) return true;
-        }
-        for (String rule : blackList) {
-            if (itemMatchesRule(item, rule)) return false;
-        }
+        if (item == null) return true;
+        if (compiledWhiteList.matches(item)) return true;
+        if (compiledBlackList.matches(item)) return false;
         return true;
     }
 
     public static boolean itemMatchesRule(@NonNull String item, @NonNull String rule) {
         if (item == null || rule == null) return false;
+        boolean result = item.matches(ruleToRegex(rule));
+        return result;
+    }
+
+    private static String ruleToRegex(@NonNull String rule) {
         String[] tokens = rule.split(Pattern.quote("*"));
         StringBuffer buffer = new StringBuffer("^");
         // String.split never puts an empty string as first item
@@ -44,8 +54,7 @@ class BlackWhiteList {
         // String.split never puts an empty string as last item
         if (rule.endsWith("*")) buffer.append(".*");
         buffer.append("$");
-        boolean result = item.matches(buffer.toString());
-        return result;
+        return buffer.toString();
     }
 
     @NonNull
@@ -57,4 +66,103 @@ class BlackWhiteList {
     public List<String> getWhiteList() {
         return new ArrayList<>(whiteList);
     }
+
+    /**
+     * A list of rules, sorted by kind so that matching an item does not need to go through every rule.
+     *
+     * <ul>
+     *     <li>Rules without wildcard are looked up in a hash set.</li>
+     *     <li>Rules like {@code foo*} and {@code *foo} are kept in sorted arrays, reduced so that no entry
+     *     is a prefix (respectively a suffix) of another: the only candidate is then found by binary search.</li>
+     *     <li>Rules like {@code *foo*} are checked with {@link String#contains(CharSequence)}.</li>
+     *     <li>Only rules having a wildcard in the middle are compiled into {@link Pattern}s.</li>
+     * </ul>
+     */
+    private static class CompiledRules {
+
+        private final boolean matchesAll;
+        private final Set<String> exacts = new HashSet<>();
+        private final String[] prefixes;
+        private final String[] reversedSuffixes;
+        private final String[] infixes;
+        private final Pattern[] patterns;
+
+        CompiledRules(List<String> rules) {
+            boolean matchesAll = false;
+            TreeSet<String> prefixes = new TreeSet<>();
+            TreeSet<String> reversedSuffixes = new TreeSet<>();
+            Set<String> infixes = new HashSet<>();
+            List<Pattern> patterns = new ArrayList<>();
+            for (String rule : rules) {
+                int start = 0;
+                int end = rule.length();
+                while (start < end && rule.charAt(start) == '*') start++;
+                while (end > start && rule.charAt(end - 1) == '*') end--;
+                String inner = rule.substring(start, end);
+                boolean leadingWildcard = start > 0;
+                boolean trailingWildcard = end < rule.length();
+                if (!leadingWildcard && !trailingWildcard && inner.indexOf('*') < 0) {
+                    exacts.add(inner);
+                } else if (inner.isEmpty()) {
+                    matchesAll = true;
+                } else if (inner.indexOf('*') >= 0) {
+                    patterns.add(Pattern.compile(ruleToRegex(rule)));
+                } else if (leadingWildcard && trailingWildcard) {
+                    infixes.add(inner);
+                } else if (trailingWildcard) {
+                    prefixes.add(inner);
+                } else {
+                    reversedSuffixes.add(new StringBuilder(inner).reverse().toString());
+                }
+            }
+            this.matchesAll = matchesAll;
+            this.prefixes = withoutExtensions(prefixes);
+            this.reversedSuffixes = withoutExtensions(reversedSuffixes);
+            this.infixes = infixes.toArray(new String[0]);
+            this.patterns = patterns.toArray(new Pattern[0]);
+        }
+
+        /**
+         * Removes the strings starting with another string of the set, as the shorter one matches whatever they match.
+         * Once sorted, a string is followed by all the strings it is a prefix of.
+         */
+        private static String[] withoutExtensions(TreeSet<String> sorted) {
+            List<String> rtn = new ArrayList<>();
+            String last = null;
+            for (String value : sorted) {
+                if (last != null && value.startsWith(last)) continue;
+                rtn.add(value);
+                last = value;
+            }
+            return rtn.toArray(new String[0]);
+        }
+
+        /**
+         * Whether one of the given sorted strings, none of which being a prefix of another, is a prefix of the given item.
+         * If one is, it is the greatest one lower than or equal to the item, as any string sorted in between would start with it.
+         */
+        private static boolean hasPrefixOf(String[] sorted, String item) {
+            if (sorted.length == 0) return false;
+            int index = Arrays.binarySearch(sorted, item);
+            if (index >= 0) return true;
+            index = -index - 2;
+            return index >= 0 && item.startsWith(sorted[index]);
+        }
+
+        boolean matches(@NonNull String item) {
+            if (matchesAll) return true;
+            if (exacts.contains(item)) return true;
+            if (hasPrefixOf(prefixes, item)) return true;
+            if (reversedSuffixes.length > 0 && hasPrefixOf(reversedSuffixes, new StringBuilder(item).reverse().toString())) return true;
+            for (String infix : infixes) {
+                if (item.contains(infix)) return true;
+            }
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(item).matches()) return true;
+            }
+            return false;
+        }
+
+    }
+
 }
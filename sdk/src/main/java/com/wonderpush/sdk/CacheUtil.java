@@ -1,23 +1,18 @@
 package com.wonderpush.sdk;
 
-import android.net.TrafficStats;
 import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import android.os.Looper;
-import android.os.Process;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 class CacheUtil {
 
@@ -29,23 +24,79 @@ class CacheUtil {
     protected static final int MAX_LARGEICON_CACHE_SIZE = 5 * MAX_LARGEICON_FILE_SIZE;
     protected static final int MAX_BIGPICTURE_CACHE_SIZE = 3 * MAX_BIGPICTURE_FILE_SIZE;
 
+    // Lower values are fetched first
+    protected static final int PRIORITY_LARGEICON = 0;
+    protected static final int PRIORITY_BIGPICTURE = 1;
+    protected static final int PRIORITY_SOUND = 2;
+
+    private static final int MAX_FETCH_THREADS = 3;
+
     static class FetchWork {
         final Uri uri;
         final int maxFileSize;
         final String cacheSubfolder;
         final int maxCacheSize;
         final String logPrefix;
-
-        public FetchWork(Uri uri, int maxFileSize, String cacheSubfolder, int maxCacheSize, String logPrefix) {
+        final int priority;
+        final boolean essential;
+
+        /**
+         * @param essential Whether the notification must wait for this resource before being displayed,
+         *                  because it cannot be added by a later update of the notification
+         */
+        public FetchWork(Uri uri, int maxFileSize, String cacheSubfolder, int maxCacheSize, String logPrefix, int priority, boolean essential) {
             this.uri = uri;
             this.maxFileSize = maxFileSize;
             this.cacheSubfolder = cacheSubfolder;
             this.maxCacheSize = maxCacheSize;
             this.logPrefix = logPrefix;
+            this.priority = priority;
+            this.essential = essential;
+        }
+
+        /**
+         * Executes this work on the resource fetching threads, by priority.
+         */
+        public Future<File> submit() {
+            return getFetchExecutor().submit(this::execute, priority);
         }
 
+        private ResourceFetcher.Fetch fetch;
+        private boolean cancelled;
+
         public File execute() {
-            return doFetch(this);
+            ResourceFetcher.Fetch fetch;
+            try {
+                ResourceCache cache = getCache(this); // returns null on invalid work request
+                if (cache == null) {
+                    return null;
+                }
+                synchronized (this) {
+                    if (cancelled) {
+                        return null;
+                    }
+                    fetch = getFetcher().newFetch(cache, uri.toString(), maxFileSize, logPrefix);
+                    this.fetch = fetch;
+                }
+            } catch (Exception ex) {
+                Log.e(WonderPush.TAG, logPrefix + ": Failed to fetch from URI " + uri, ex);
+                return null;
+            }
+            return fetch.execute();
+        }
+
+        /**
+         * Stops fetching the resource, the download is canceled unless another work fetches the same resource.
+         */
+        public void cancel() {
+            ResourceFetcher.Fetch fetch;
+            synchronized (this) {
+                cancelled = true;
+                fetch = this.fetch;
+            }
+            if (fetch != null) {
+                fetch.cancel();
+            }
         }
     }
 
@@ -79,44 +130,58 @@ class CacheUtil {
         }
     }
 
+    // The sound only plays when the notification is first displayed
     protected static FetchResult fetchSound(Uri uri, String logPrefix) {
-        return fetch(new FetchWork(uri, MAX_SOUND_FILE_SIZE, "sounds", MAX_SOUND_CACHE_SIZE, logPrefix));
+        return fetch(new FetchWork(uri, MAX_SOUND_FILE_SIZE, "sounds", MAX_SOUND_CACHE_SIZE, logPrefix, PRIORITY_SOUND, true));
     }
 
     protected static FetchResult fetchLargeIcon(Uri uri, String logPrefix) {
-        return fetch(new FetchWork(uri, MAX_LARGEICON_FILE_SIZE, "largeIcons", MAX_LARGEICON_CACHE_SIZE, logPrefix));
+        return fetch(new FetchWork(uri, MAX_LARGEICON_FILE_SIZE, "largeIcons", MAX_LARGEICON_CACHE_SIZE, logPrefix, PRIORITY_LARGEICON, false));
     }
 
     protected static FetchResult fetchBigPicture(Uri uri, String logPrefix) {
-        return fetch(new FetchWork(uri, MAX_BIGPICTURE_FILE_SIZE, "bigPictures", MAX_BIGPICTURE_CACHE_SIZE, logPrefix));
+        return fetch(new FetchWork(uri, MAX_BIGPICTURE_FILE_SIZE, "bigPictures", MAX_BIGPICTURE_CACHE_SIZE, logPrefix, PRIORITY_BIGPICTURE, false));
     }
 
+    private static final int FETCH_CONNECT_TIMEOUT_MS = 10 * 1000;
+    private static final int FETCH_READ_TIMEOUT_MS = 10 * 1000;
+
+    private static final Map<String, ResourceCache> sCaches = new HashMap<>();
+    private static ResourceFetcher sFetcher;
+    private static PriorityExecutor sFetchExecutor;
+
     private static FetchResult fetch(FetchWork work) {
         if (Looper.getMainLooper() != null && Looper.getMainLooper().getThread() == Thread.currentThread()) {
             return FetchResult.workTask(work);
         }
-        File cached = getCachedFile(work);
-        if (cached == null || isUsable(work, cached)) {
+        ResourceCache cache = getCache(work);
+        if (cache == null) {
+            return FetchResult.immediate(null);
+        }
+        File cached = cache.getFresh(work.uri.toString(), System.currentTimeMillis());
+        if (cached != null) {
             return FetchResult.immediate(cached);
         } else {
             return FetchResult.workTask(work);
         }
     }
 
-    private static boolean isUsable(FetchWork work, @NonNull File cached) {
-        // TODO handle caching
-        return cached.exists();
-    }
-
-    private static File getCachedFile(FetchWork work) {
+    /**
+     * Returns the cache of the work's subfolder, or {@code null} if the resource cannot be cached.
+     */
+    private static ResourceCache getCache(FetchWork work) {
         String scheme = work.uri.getScheme() == null ? null : work.uri.getScheme().toLowerCase(Locale.ROOT);
         if ("http".equals(scheme) || "https".equals(scheme)) {
             try {
-                String filename = Integer.toHexString(work.uri.toString().hashCode());
-                File cacheLargeIconsDir = new File(WonderPush.getApplicationContext().getCacheDir(), work.cacheSubfolder);
-                cacheLargeIconsDir.mkdirs();
-                final File cached = new File(cacheLargeIconsDir, filename);
-                return cached;
+                synchronized (sCaches) {
+                    ResourceCache cache = sCaches.get(work.cacheSubfolder);
+                    if (cache == null) {
+                        File dir = new File(WonderPush.getApplicationContext().getCacheDir(), work.cacheSubfolder);
+                        cache = new ResourceCache(dir, work.maxCacheSize);
+                        sCaches.put(work.cacheSubfolder, cache);
+                    }
+                    return cache;
+                }
             } catch (Exception ex) {
                 Log.e(WonderPush.TAG, work.logPrefix + ": Failed to fetch from URI " + work.uri, ex);
             }
@@ -124,79 +189,30 @@ class CacheUtil {
         return null;
     }
 
-    private static File doFetch(FetchWork work) {
-        try {
-            File cached = getCachedFile(work); // returns null on invalid work request
-            if (cached != null && !isUsable(work, cached)) {
-                boolean success = false;
-                try {
-                    WonderPush.logDebug(work.logPrefix + ": Will open URL: " + work.uri);
-                    TrafficStats.setThreadStatsTag(Process.myTid());
-                    URLConnection conn = new URL(work.uri.toString()).openConnection();
-                    InputStream is = (InputStream) conn.getContent();
-                    WonderPush.logDebug(work.logPrefix + ": Content-Type: " + conn.getContentType());
-                    WonderPush.logDebug(work.logPrefix + ": Content-Length: " + conn.getContentLength() + " bytes");
-                    if (conn.getContentLength() > work.maxFileSize) {
-                        throw new RuntimeException(work.logPrefix + " file too large (" + conn.getContentLength() + " is over " + work.maxFileSize + " bytes)");
-                    }
-
-                    FileOutputStream outputStream = new FileOutputStream(cached);
-                    int read, ttl = 0;
-                    byte[] buffer = new byte[2048];
-                    while ((read = is.read(buffer)) != -1) {
-                        ttl += read;
-                        if (ttl > work.maxFileSize) {
-                            throw new RuntimeException(work.logPrefix + " file too large (max " + work.maxFileSize + " bytes allowed)");
-                        }
-                        outputStream.write(buffer, 0, read);
-                    }
-                    outputStream.close();
-                    is.close();
-                    success = true;
-                    WonderPush.logDebug(work.logPrefix + ": Finished reading " + ttl + " bytes");
-                } catch (IOException ex) {
-                    Log.e(WonderPush.TAG, "Error while fetching resource " + work.uri, ex);
-                }
-
-                if (!success) {
-                    cached.delete();
-                    cached = null;
-                }
-                expireCache(work.cacheSubfolder, work.maxCacheSize);
-            }
-            return cached;
-        } catch (Exception ex) {
-            Log.e(WonderPush.TAG, work.logPrefix + ": Failed to fetch from URI " + work.uri, ex);
-            return null;
+    /**
+     * Resources are fetched on their own threads, so that slow downloads do not hold the SDK's executor.
+     */
+    private static synchronized PriorityExecutor getFetchExecutor() {
+        if (sFetchExecutor == null) {
+            sFetchExecutor = new PriorityExecutor(MAX_FETCH_THREADS, "WonderPush-ResourceFetcher");
         }
+        return sFetchExecutor;
     }
 
-    private static void expireCache(String cacheSubfolder, int maxCacheSize) {
-        File dir = new File(WonderPush.getApplicationContext().getCacheDir(), cacheSubfolder);
-        if (!dir.isDirectory()) return;
-
-        // Sort from most recently modified to least recently modified
-        File[] files = dir.listFiles();
-        Arrays.sort(files, new Comparator<File>() {
-            @Override
-            public int compare(File lhs, File rhs) {
-                // TODO Once minSdkVersion is 19, we can return Long.compare(rhs.lastModified(), lhs.lastModified())
-                long lvalue = lhs.lastModified();
-                long rvalue = rhs.lastModified();
-                if (rvalue == lvalue) return 0;
-                if (rvalue < lvalue) return -1;
-                return 1;
-            }
-        });
-
-        int totalSize = 0;
-        for (File file : files) {
-            totalSize += file.length();
-            // Delete any older files above the desired limit
-            if (totalSize > maxCacheSize) {
-                file.delete();
-            }
+    private static synchronized ResourceFetcher getFetcher() {
+        if (sFetcher == null) {
+            // Shares the connection pool of the API clients
+            sFetcher = new ResourceFetcher(SharedOkHttpClient.get().newBuilder()
+                    .connectTimeout(FETCH_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .readTimeout(FETCH_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .addInterceptor(chain ->
+                            chain.proceed(chain.request().newBuilder()
+                                    .header("User-Agent", WonderPush.getUserAgent())
+                                    .build())
+                    )
+                    .build());
         }
+        return sFetcher;
     }
 
 }
@@ -216,7 +216,9 @@ public class InstallationManager {
     public static synchronized Set<String> getTags() {
         JSONArray tags = null;
         try {
-            tags = JSONSyncInstallation.forCurrentUser().optSdkStateJSONArrayForPath("custom", "tags");
+            // Only read, no need to copy
+            JSONObject custom = JSONSyncInstallation.forCurrentUser().getSdkStateView().optJSONObject("custom");
+            tags = custom == null ? null : custom.optJSONArray("tags");
         } catch (JSONException ex) {
             Log.e(WonderPush.TAG, "Failed to read installation custom.tags", ex);
         }
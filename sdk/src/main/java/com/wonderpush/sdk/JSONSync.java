@@ -37,6 +37,11 @@ abstract class JSONSync {
     private boolean schedulingPatchCall;
     private boolean scheduledPatchCall;
     private boolean inflightPatchCall;
+    /** Incremented whenever sdkState changes */
+    private long generation;
+    /** Copy of sdkState shared by the readers of {@link #getSdkStateView()}, valid for {@link #sdkStateViewGeneration} */
+    private JSONObject sdkStateView;
+    private long sdkStateViewGeneration;
 
     JSONSync() {
         this(null, null, null, null, null, null, false, false);
@@ -123,6 +128,26 @@ abstract class JSONSync {
         return JSONUtil.deepCopy(sdkState);
     }
 
+    /**
+     * Returns the sdk state, without copying it when it has not changed since the last call.
+     * The returned object is shared and must not be modified, use {@link #getSdkState()} to get a modifiable copy.
+     */
+    public synchronized JSONObject getSdkStateView() throws JSONException {
+        if (sdkStateView == null || sdkStateViewGeneration != generation) {
+            sdkStateView = JSONUtil.deepCopy(sdkState);
+            sdkStateViewGeneration = generation;
+        }
+        return sdkStateView;
+    }
+
+    /**
+     * Returns a counter that changes whenever the sdk state changes.
+     * Read it before calling {@link #getSdkState()} to know whether a copy is still up to date.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
     synchronized JSONObject walkSdkStateJSONObjectExceptLast(String... path) throws JSONException {
         JSONObject rtn = sdkState;
         for (int i = 0; rtn != null && i < path.length - 1; i++) {
@@ -177,6 +202,7 @@ abstract class JSONSync {
     }
 
     private synchronized void applyUpgrade() {
+        ++generation;
         doUpgrade(upgradeMeta, sdkState, serverState,putAccumulator, inflightDiff, inflightPutAccumulator);
     }
 
@@ -187,6 +213,7 @@ abstract class JSONSync {
 
     public synchronized void put(JSONObject diff) throws JSONException {
         if (diff == null) diff = new JSONObject();
+        ++generation;
         JSONUtil.merge(sdkState, diff);
         JSONUtil.merge(putAccumulator, diff, false);
         if (putAndFlushSynchronously()) {
@@ -209,6 +236,7 @@ abstract class JSONSync {
         serverState = JSONUtil.deepCopy(receivedState);
         JSONUtil.stripNulls(serverState);
         sdkState = JSONUtil.deepCopy(serverState);
+        ++generation;
         if (resetSdkState) {
             putAccumulator = new JSONObject();
         } else {
@@ -3,6 +3,7 @@ package com.wonderpush.sdk;
 import android.os.SystemClock;
 import android.util.Log;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -18,6 +19,8 @@ public class JSONSyncInstallation extends JSONSync {
     private static final long UPGRADE_META_VERSION_LATEST = UPGRADE_META_VERSION_1_IMPORTED_CUSTOM;
 
     private static final Map<String, JSONSyncInstallation> sInstancePerUserId = new HashMap<>();
+    /** Users having a saved state, loaded lazily into {@link #sInstancePerUserId}, the empty string meaning no user id */
+    private static final Set<String> sSavedUserIds = new LinkedHashSet<>();
     private static final DeferredFuture<Void> initializedDeferred = new DeferredFuture<>();
     private static boolean initializing = false;
     private static boolean initialized = false;
@@ -98,29 +101,14 @@ public class JSONSyncInstallation extends JSONSync {
             return;
         }
 
-        JSONObject installationCustomSyncStatePerUserId = WonderPushConfiguration.getInstallationCustomSyncStatePerUserId();
-        if (installationCustomSyncStatePerUserId == null) installationCustomSyncStatePerUserId = new JSONObject();
-        Iterator<String> it = installationCustomSyncStatePerUserId.keys();
-        while (it.hasNext()) {
-            String userId = it.next();
-            JSONObject state = installationCustomSyncStatePerUserId.optJSONObject(userId);
-            if (userId != null && userId.length() == 0) userId = null;
-            try {
-                sInstancePerUserId.put(userId, new JSONSyncInstallation(userId, state));
-            } catch (JSONException ex1) {
-                Log.e(WonderPush.TAG, "Failed to restore installation custom from saved state for user " + userId + " and state " + state, ex1);
-                try {
-                    sInstancePerUserId.put(userId, new JSONSyncInstallation(userId, null));
-                } catch (JSONException ex2) {
-                    Log.e(WonderPush.TAG, "Failed to restore installation custom from saved state for user " + userId + " and state null", ex2);
-                }
-            }
+        // Each user's state is saved under its own key, the states are only read when first used
+        WonderPushConfiguration.migrateInstallationCustomSyncStatePerUserId();
+        sSavedUserIds.addAll(JSONUtil.JSONArrayToList(WonderPushConfiguration.getInstallationCustomSyncStateUserIds(), String.class, true));
 
-        }
         String oldUserId = WonderPushConfiguration.getUserId();
         try {
             for (String userId : WonderPushConfiguration.listKnownUserIds()) {
-                if (!sInstancePerUserId.containsKey(userId)) {
+                if (!sSavedUserIds.contains(userId == null ? "" : userId)) {
                     WonderPushConfiguration.changeUserId(userId);
                     sInstancePerUserId.put(userId, new JSONSyncInstallation(
                             userId,
@@ -151,6 +139,21 @@ public class JSONSyncInstallation extends JSONSync {
         initializing = false;
     }
 
+    /**
+     * Forgets every loaded state, so that the next initialization reads them again from the storage.
+     * Only meant for tests.
+     */
+    static void reset() {
+        synchronized (initializedDeferred) {
+            synchronized (sInstancePerUserId) {
+                sInstancePerUserId.clear();
+                sSavedUserIds.clear();
+            }
+            initialized = false;
+            initializing = false;
+        }
+    }
+
     public static JSONSyncInstallation forCurrentUser() {
         return forUser(WonderPushConfiguration.getUserId());
     }
@@ -161,17 +164,30 @@ public class JSONSyncInstallation extends JSONSync {
         synchronized (sInstancePerUserId) {
             JSONSyncInstallation rtn = sInstancePerUserId.get(userId);
             if (rtn == null) {
-                try {
-                    rtn = new JSONSyncInstallation(userId, null);
-                    sInstancePerUserId.put(userId, rtn);
-                } catch (JSONException ex) {
-                    Log.e(WonderPush.TAG, "Failed to restore installation custom from saved state for user " + userId + " and state null", ex);
-                }
+                rtn = load(userId);
+                if (rtn != null) sInstancePerUserId.put(userId, rtn);
             }
             return rtn;
         }
     }
 
+    private static JSONSyncInstallation load(String userId) {
+        JSONObject state = sSavedUserIds.contains(userId == null ? "" : userId)
+                ? WonderPushConfiguration.getInstallationCustomSyncStateForUserId(userId)
+                : null;
+        try {
+            return new JSONSyncInstallation(userId, state);
+        } catch (JSONException ex1) {
+            Log.e(WonderPush.TAG, "Failed to restore installation custom from saved state for user " + userId + " and state " + state, ex1);
+            try {
+                return new JSONSyncInstallation(userId, null);
+            } catch (JSONException ex2) {
+                Log.e(WonderPush.TAG, "Failed to restore installation custom from saved state for user " + userId + " and state null", ex2);
+                return null;
+            }
+        }
+    }
+
     public static void flushAll() {
         flushAll(false);
     }
@@ -181,6 +197,10 @@ public class JSONSyncInstallation extends JSONSync {
         WonderPush.logDebug("Flushing delayed updates of custom properties for all known users");
         ArrayList<JSONSyncInstallation> jsonSyncs = null;
         synchronized (sInstancePerUserId) {
+            // Users not loaded yet can have pending changes too
+            for (String savedUserId : new ArrayList<>(sSavedUserIds)) {
+                forUser(savedUserId);
+            }
             jsonSyncs = new ArrayList<>(sInstancePerUserId.values());
         }
         for (JSONSyncInstallation jsonSync : jsonSyncs) {
@@ -229,15 +249,13 @@ public class JSONSyncInstallation extends JSONSync {
     @Override
     protected synchronized void doSave(JSONObject state) {
         String key = userId == null ? "" : userId;
-        JSONObject installationCustomSyncStatePerUserId = WonderPushConfiguration.getInstallationCustomSyncStatePerUserId();
-        if (installationCustomSyncStatePerUserId == null) installationCustomSyncStatePerUserId = new JSONObject();
         if (state == null) state = new JSONObject();
-        try {
-            installationCustomSyncStatePerUserId.put(key, state);
-        } catch (JSONException ex) {
-            Log.e(WonderPush.TAG, "Failed to save installation custom sync state for user " + userId + " and value " + state, ex);
+        WonderPushConfiguration.setInstallationCustomSyncStateForUserId(userId, state);
+        synchronized (sInstancePerUserId) {
+            if (sSavedUserIds.add(key)) {
+                WonderPushConfiguration.setInstallationCustomSyncStateUserIds(new JSONArray(sSavedUserIds));
+            }
         }
-        WonderPushConfiguration.setInstallationCustomSyncStatePerUserId(installationCustomSyncStatePerUserId);
     }
 
     @Override
@@ -32,11 +32,7 @@ public class JSONUtil {
             String key = it.next();
             Object vDiff = diff.get(key);
             if (!base.has(key)) {
-                if (vDiff instanceof JSONObject) {
-                    vDiff = new JSONObject(vDiff.toString());
-                } else if (vDiff instanceof JSONArray) {
-                    vDiff = new JSONArray(vDiff.toString());
-                }
+                vDiff = deepCopyValue(vDiff);
                 if ((vDiff != null && vDiff != JSONObject.NULL) || !nullFieldRemoves) {
                     base.put(key, vDiff);
                 }
@@ -48,7 +44,7 @@ public class JSONUtil {
                     base.put(key, vDiff);
                 }
             } else if (vDiff instanceof JSONArray) {
-                base.put(key, new JSONArray(vDiff.toString()));
+                base.put(key, deepCopy((JSONArray) vDiff));
             } else if ((vDiff == null || vDiff == JSONObject.NULL) && nullFieldRemoves) {
                 base.remove(key);
             } else {
@@ -62,7 +58,7 @@ public class JSONUtil {
             if (to == null) {
                 return null;
             } else {
-                return new JSONObject(to.toString());
+                return deepCopy(to);
             }
         } else if (to == null) {
             return null;
@@ -83,12 +79,8 @@ public class JSONUtil {
             if (!equals(vFrom, vTo)) {
                 if (vFrom instanceof JSONObject && vTo instanceof JSONObject) {
                     rtn.put(key, diff((JSONObject)vFrom, (JSONObject)vTo));
-                } else if (vTo instanceof JSONObject) {
-                    rtn.put(key, new JSONObject(vTo.toString()));
-                } else if (vTo instanceof JSONArray) {
-                    rtn.put(key, new JSONArray(vTo.toString()));
                 } else {
-                    rtn.put(key, vTo);
+                    rtn.put(key, deepCopyValue(vTo));
                 }
             }
         }
@@ -98,13 +90,7 @@ public class JSONUtil {
             String key = it.next();
             if (from.has(key)) continue;
             Object vTo = to.opt(key);
-            if (vTo instanceof JSONObject) {
-                rtn.put(key, new JSONObject(vTo.toString()));
-            } else if (vTo instanceof JSONArray) {
-                rtn.put(key, new JSONArray(vTo.toString()));
-            } else {
-                rtn.put(key, vTo);
-            }
+            rtn.put(key, deepCopyValue(vTo));
         }
 
         return rtn;
@@ -193,18 +179,64 @@ public class JSONUtil {
         }
     }
 
+    /**
+     * Copies the given object and all the objects and arrays it contains, walking the tree instead of serializing it.
+     * The result is the same as parsing back its serialization, except that numbers keep their type.
+     */
     public static JSONObject deepCopy(JSONObject from) throws JSONException {
         if (from == null) {
             return null;
         }
-        return new JSONObject(from.toString());
+        JSONObject rtn = new JSONObject();
+        Iterator<String> it = from.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            rtn.put(key, deepCopyValue(from.opt(key)));
+        }
+        return rtn;
     }
 
     public static JSONArray deepCopy(JSONArray from) throws JSONException {
         if (from == null) {
             return null;
         }
-        return new JSONArray(from.toString());
+        JSONArray rtn = new JSONArray();
+        for (int i = 0, l = from.length(); i < l; ++i) {
+            rtn.put(deepCopyValue(from.opt(i)));
+        }
+        return rtn;
+    }
+
+    private static Object deepCopyValue(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            return deepCopy((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            return deepCopy((JSONArray) value);
+        } else if (value == null) {
+            // Serialized as null
+            return JSONObject.NULL;
+        } else if (value instanceof String || value instanceof Number || value instanceof Boolean || value == JSONObject.NULL) {
+            return value;
+        } else {
+            // Serialized as a string
+            return value.toString();
+        }
+    }
+
+    /**
+     * Copies the top-level fields of the given object, nested objects and arrays are shared.
+     */
+    public static JSONObject shallowCopy(JSONObject from) throws JSONException {
+        if (from == null) {
+            return null;
+        }
+        JSONObject rtn = new JSONObject();
+        Iterator<String> it = from.keys();
+        while (it.hasNext()) {
+            String key = it.next();
+            rtn.put(key, from.opt(key));
+        }
+        return rtn;
     }
 
     public static Object parseAllJSONStrings(Object base) {
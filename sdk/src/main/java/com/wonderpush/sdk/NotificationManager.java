@@ -161,75 +161,172 @@ public class NotificationManager {
         NotificationModel notif = work.getNotif();
         if (notif == null) return;
 
-        if (notif.getAlert() != null && !notif.getAlert().getResourcesToFetch().isEmpty()) {
-            WonderPush.logDebug("Start fetching resources");
-            long start = SystemClock.elapsedRealtime();
-            Collection<Future<File>> tasks = new ArrayList<>(notif.getAlert().getResourcesToFetch().size());
-            int i = 0;
-            for (CacheUtil.FetchWork fetchWork : notif.getAlert().getResourcesToFetch()) {
-                ++i;
-                tasks.add(WonderPush.safeDefer(fetchWork::execute, 0));
-            }
-            i = 0;
-            for (Future<File> task : tasks) {
-                ++i;
-                try {
-                    task.get(Math.max(0, start + timeoutMs - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
-                } catch (InterruptedException | ExecutionException | TimeoutException e) {
-                    WonderPush.logDebug("Failed to fetch resource " + i, e);
+        AlertModel alert = notif.getAlert();
+        if (alert == null || alert.getResourcesToFetch().isEmpty()) {
+            display(context, work, notif, false);
+            return;
+        }
+
+        WonderPush.logDebug("Start fetching resources");
+        long start = SystemClock.elapsedRealtime();
+        long displayDeadline = start + Math.min(WonderPushResourcesService.DISPLAY_DEADLINE_MS, timeoutMs);
+        long timeout = start + timeoutMs;
+        List<CacheUtil.FetchWork> fetchWorks = new ArrayList<>(alert.getResourcesToFetch());
+        List<Future<File>> tasks = new ArrayList<>(fetchWorks.size());
+        for (CacheUtil.FetchWork fetchWork : fetchWorks) {
+            tasks.add(fetchWork.submit());
+        }
+
+        // Wait for the resources up to the display deadline, and for the essential ones up to the timeout
+        Map<String, File> resolvedResources = new HashMap<>();
+        List<Integer> lateResources = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); ++i) {
+            CacheUtil.FetchWork fetchWork = fetchWorks.get(i);
+            if (!awaitResource(fetchWork, tasks.get(i), fetchWork.essential ? timeout : displayDeadline, resolvedResources)) {
+                if (fetchWork.essential) {
+                    fetchWork.cancel();
+                } else {
+                    lateResources.add(i);
                 }
             }
-            // Now we must reparse the notification to have it pick up the fetched resources
-            WonderPush.logDebug("Inserting resources inside the notification");
-            try {
-                JSONObject json = new JSONObject(notif.getInputJSONString());
-                notif = NotificationModel.fromNotificationJSONObject(json);
-                if (notif == null) return;
-            } catch (NotificationModel.NotTargetedForThisInstallationException | JSONException ex) {
-                Log.e(TAG, "Unexpected error while reparsing notification", ex);
+        }
+        // The alert picks up the fetched resources when building the notification
+        WonderPush.logDebug("Inserting resources inside the notification");
+        alert.setResolvedResources(resolvedResources);
+        if (!display(context, work, notif, false)) return;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M && !lateResources.isEmpty()) {
+            // We cannot tell whether the user dismissed or opened the notification, and updating it would show it again
+            WonderPush.logDebug("Ignoring late resources, the notification cannot be updated safely");
+            for (int i : lateResources) {
+                fetchWorks.get(i).cancel();
             }
+            return;
         }
 
-        if (notif.getAlert() != null) {
-            AlertModel alternative = notif.getAlert().getAlternativeIfNeeded();
-            if (alternative != null) {
-                WonderPush.logDebug("Using an alternative alert");
-                notif.setAlert(alternative);
-                // Do not try to fetch resources for the new alternative,
-                // we are likely to choose it because one resource fetch was interrupted,
-                // so ignore potential resources that can stay on the alternative
-                // as it might block for a very long time.
+        // Update the notification as late resources arrive, the most important first
+        Collections.sort(lateResources, (a, b) -> Integer.compare(fetchWorks.get(a).priority, fetchWorks.get(b).priority));
+        for (int i : lateResources) {
+            CacheUtil.FetchWork fetchWork = fetchWorks.get(i);
+            if (!awaitResource(fetchWork, tasks.get(i), timeout, resolvedResources)) {
+                fetchWork.cancel();
+            } else if (resolvedResources.containsKey(fetchWork.uri.toString())) {
+                if (!isActive(context, work.getTag(), work.getLocalNotificationId())) {
+                    WonderPush.logDebug("Notification is no longer displayed, ignoring late resources");
+                    for (int j : lateResources) {
+                        fetchWorks.get(j).cancel();
+                    }
+                    return;
+                }
+                WonderPush.logDebug(fetchWork.logPrefix + ": Updating the notification with late resource");
+                display(context, work, notif, true);
             }
         }
+    }
 
-        WonderPush.logDebug("Building notification");
-        Notification notification = buildNotification(notif, context, work.getPendingIntentBuilder(context));
+    /**
+     * Waits for a resource until the given deadline, and adds it to the resolved resources if it could be fetched.
+     * @return false if the deadline passed before the fetch finished
+     */
+    private static boolean awaitResource(CacheUtil.FetchWork fetchWork, Future<File> task, long deadline, Map<String, File> resolvedResources) {
+        try {
+            File resolved = task.get(Math.max(0, deadline - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+            if (resolved != null) {
+                resolvedResources.put(fetchWork.uri.toString(), resolved);
+            }
+            return true;
+        } catch (TimeoutException e) {
+            WonderPush.logDebug(fetchWork.logPrefix + ": Resource not fetched in time");
+            return false;
+        } catch (InterruptedException | ExecutionException e) {
+            WonderPush.logDebug(fetchWork.logPrefix + ": Failed to fetch resource", e);
+            return true;
+        }
+    }
 
-        if (notification == null) {
-            WonderPush.logDebug("No notification is to be displayed");
-            // Fire an Intent to notify the application anyway (especially for `data` notifications)
-            try {
-                if (notif.getType() == NotificationModel.Type.DATA) {
-                    // Broadcast locally that a notification is to be opened, and don't do anything else
-                    Intent localIntent = work.getPendingIntentBuilder(context).buildIntentForDataNotificationWillOpenLocalBroadcast();
-                    LocalBroadcastManager.getInstance(context).sendBroadcast(localIntent);
-                } else {
-                    work.getPendingIntentBuilder(context).buildForWillOpenBroadcast().send();
+    /**
+     * Builds and shows the notification.
+     * @param update Whether to update the notification already shown, without alerting again
+     * @return Whether a notification was shown
+     */
+    private static boolean display(Context context, WonderPushResourcesService.Work work, NotificationModel notif, boolean update) {
+        AlertModel alert = notif.getAlert();
+        try {
+            if (alert != null) {
+                AlertModel alternative = alert.getAlternativeIfNeeded();
+                if (alternative != null) {
+                    WonderPush.logDebug("Using an alternative alert");
+                    notif.setAlert(alternative);
+                    // Do not try to fetch resources for the new alternative,
+                    // we are likely to choose it because one resource fetch was interrupted,
+                    // so ignore potential resources that can stay on the alternative
+                    // as it might block for a very long time.
                 }
-            } catch (PendingIntent.CanceledException e) {
-                Log.e(WonderPush.TAG, "Could not broadcast the notification will open intent", e);
             }
-        } else {
-            notify(context, work.getTag(), work.getLocalNotificationId(), notification);
-            // Display group summary notification, if any
-            Notification groupSummaryNotification = buildNotificationGroupSummary(notif, context, work.getPendingIntentBuilder(context));
-            if (groupSummaryNotification != null) {
-                String tag = null; // should not stay null, but null is a legal value anyway
-                if (notif.getAlert() != null && notif.getAlert().getGroup() != null) {
-                    tag = notif.getAlert().getGroup() + "-GROUP_SUMMARY_NOTIFICATION";
+
+            WonderPush.logDebug("Building notification");
+            Notification notification = buildNotification(notif, context, work.getPendingIntentBuilder(context));
+
+            if (notification == null) {
+                WonderPush.logDebug("No notification is to be displayed");
+                if (update) {
+                    return false;
+                }
+                // Fire an Intent to notify the application anyway (especially for `data` notifications)
+                try {
+                    if (notif.getType() == NotificationModel.Type.DATA) {
+                        // Broadcast locally that a notification is to be opened, and don't do anything else
+                        Intent localIntent = work.getPendingIntentBuilder(context).buildIntentForDataNotificationWillOpenLocalBroadcast();
+                        LocalBroadcastManager.getInstance(context).sendBroadcast(localIntent);
+                    } else {
+                        work.getPendingIntentBuilder(context).buildForWillOpenBroadcast().send();
+                    }
+                } catch (PendingIntent.CanceledException e) {
+                    Log.e(WonderPush.TAG, "Could not broadcast the notification will open intent", e);
                 }
-                notify(context, tag, 0, groupSummaryNotification);
+                return false;
+            } else if (update) {
+                // Do not play the sound nor vibrate again
+                notification.flags |= Notification.FLAG_ONLY_ALERT_ONCE;
+                notify(context, work.getTag(), work.getLocalNotificationId(), notification);
+                return true;
+            } else {
+                notify(context, work.getTag(), work.getLocalNotificationId(), notification);
+                // Display group summary notification, if any
+                Notification groupSummaryNotification = buildNotificationGroupSummary(notif, context, work.getPendingIntentBuilder(context));
+                if (groupSummaryNotification != null) {
+                    String tag = null; // should not stay null, but null is a legal value anyway
+                    if (notif.getAlert() != null && notif.getAlert().getGroup() != null) {
+                        tag = notif.getAlert().getGroup() + "-GROUP_SUMMARY_NOTIFICATION";
+                    }
+                    notify(context, tag, 0, groupSummaryNotification);
+                }
+                return true;
             }
+        } finally {
+            // Keep the original alert, for updates to consider the resources an alternative was chosen for
+            notif.setAlert(alert);
+        }
+    }
+
+    /**
+     * Whether the notification is known to be still displayed.
+     */
+    private static boolean isActive(Context context, String tag, int localNotificationId) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return false;
+        }
+        try {
+            android.app.NotificationManager notificationManager = (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            for (StatusBarNotification sbn : notificationManager.getActiveNotifications()) {
+                if (sbn.getId() == localNotificationId && (tag == null ? sbn.getTag() == null : tag.equals(sbn.getTag()))) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (Exception ex) {
+            Log.e(WonderPush.TAG, "Failed to list the active notifications", ex);
+            return false;
         }
     }
 
@@ -1582,6 +1679,7 @@ public class NotificationManager {
         JSONObject custom = new JSONObject();
         try {
             custom.put("ignore_sdkStateDump", stateDump);
+            custom.put("ignore_trackedEventsCacheStats", WonderPushConfiguration.getTrackedEventsCacheStats());
         } catch (JSONException ex) {
             Log.e(WonderPush.TAG, "Failed to add state dump to event custom", ex);
         }
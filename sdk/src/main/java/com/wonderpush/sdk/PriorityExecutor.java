@@ -0,0 +1,83 @@
+package com.wonderpush.sdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of threads that runs queued tasks by ascending priority value,
+ * and in submission order for equal priorities.
+ *
+ * <p>
+ * Idle threads stop after a while, so that the pool costs nothing between bursts.
+ * </p>
+ */
+class PriorityExecutor {
+
+    private static final long KEEP_ALIVE_MS = 30 * 1000;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    PriorityExecutor(int maxThreads, String threadName) {
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new NamedThreadFactory(threadName));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    <T> Future<T> submit(Callable<T> callable, int priority) {
+        PriorityTask<T> task = new PriorityTask<>(callable, priority, sequence.getAndIncrement());
+        executor.execute(task);
+        return task;
+    }
+
+    List<Runnable> shutdownNow() {
+        return executor.shutdownNow();
+    }
+
+    private static class PriorityTask<T> extends FutureTask<T> implements Comparable<PriorityTask<?>> {
+        private final int priority;
+        private final long sequence;
+
+        PriorityTask(Callable<T> callable, int priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PriorityTask<?> other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String name;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread t = new Thread(r, name + "-" + threadNumber.getAndIncrement());
+            t.setDaemon(false);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package com.wonderpush.sdk;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded on-disk cache of downloaded resources, in a folder of its own.
+ *
+ * <p>
+ * Files are named after the SHA-256 of their URL.
+ * An index file keeps the size, HTTP validators and expiration date of each of them,
+ * in least recently used order, so that the cache is trimmed without listing the folder.
+ * Files that are not in the index, like those of former versions, are deleted when the index is loaded.
+ * </p>
+ */
+class ResourceCache {
+
+    static final String INDEX_FILENAME = "index.json";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    /** How long a resource is fresh when the server gives no caching information */
+    static final long DEFAULT_FRESHNESS_MS = 7 * 24 * 60 * 60 * 1000L;
+    /** Like common HTTP caches, the freshness of a resource with only a Last-Modified date is a tenth of its age */
+    private static final int HEURISTIC_FRESHNESS_DIVIDER = 10;
+
+    static class Entry {
+        final String key;
+        final String url;
+        final long size;
+        @Nullable final String etag;
+        @Nullable final String lastModified;
+        final long expiresAt;
+
+        Entry(String key, String url, long size, @Nullable String etag, @Nullable String lastModified, long expiresAt) {
+            this.key = key;
+            this.url = url;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        JSONObject toJSON() throws JSONException {
+            JSONObject rtn = new JSONObject();
+            rtn.put("key", key);
+            rtn.put("url", url);
+            rtn.put("size", size);
+            if (etag != null) rtn.put("etag", etag);
+            if (lastModified != null) rtn.put("lastModified", lastModified);
+            rtn.put("expiresAt", expiresAt);
+            return rtn;
+        }
+
+        @Nullable
+        static Entry fromJSON(JSONObject json) {
+            String key = JSONUtil.optString(json, "key");
+            String url = JSONUtil.optString(json, "url");
+            if (key == null || url == null) return null;
+            return new Entry(key, url, json.optLong("size"), JSONUtil.optString(json, "etag"),
+                    JSONUtil.optString(json, "lastModified"), json.optLong("expiresAt"));
+        }
+    }
+
+    /**
+     * The HTTP caching headers of a response.
+     */
+    static class CachingHeaders {
+        @Nullable final String etag;
+        @Nullable final String lastModified;
+        @Nullable final String cacheControl;
+        @Nullable final String expires;
+        @Nullable final String date;
+
+        CachingHeaders(@Nullable String etag, @Nullable String lastModified, @Nullable String cacheControl, @Nullable String expires, @Nullable String date) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.cacheControl = cacheControl;
+            this.expires = expires;
+            this.date = date;
+        }
+
+        /**
+         * Computes when a response received at the given date stops being fresh.
+         */
+        long computeExpiresAt(long now) {
+            if (cacheControl != null) {
+                long maxAge = -1;
+                for (String directive : cacheControl.split(",")) {
+                    directive = directive.trim().toLowerCase(Locale.ROOT);
+                    if (directive.equals("no-store") || directive.equals("no-cache")) {
+                        // We still need the file to display the notification, but it must be validated before any reuse
+                        return 0;
+                    }
+                    if (directive.startsWith("max-age=")) {
+                        try {
+                            maxAge = Long.parseLong(unquote(directive.substring("max-age=".length())));
+                        } catch (NumberFormatException ignored) {}
+                    }
+                }
+                if (maxAge >= 0) {
+                    return now + maxAge * 1000;
+                }
+            }
+            long dateMs = parseHttpDate(date);
+            if (expires != null) {
+                long expiresMs = parseHttpDate(expires);
+                // Invalid dates, like "0", mean already expired
+                if (expiresMs < 0) return 0;
+                return dateMs < 0 ? expiresMs : now + (expiresMs - dateMs);
+            }
+            long lastModifiedMs = parseHttpDate(lastModified);
+            if (lastModifiedMs >= 0) {
+                long age = (dateMs < 0 ? now : dateMs) - lastModifiedMs;
+                return now + Math.max(0, Math.min(DEFAULT_FRESHNESS_MS, age / HEURISTIC_FRESHNESS_DIVIDER));
+            }
+            return now + DEFAULT_FRESHNESS_MS;
+        }
+
+        private static String unquote(String value) {
+            return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"") ? value.substring(1, value.length() - 1) : value;
+        }
+    }
+
+    /**
+     * Parses an RFC 1123 date, as used by HTTP.
+     *
+     * @return The date in milliseconds, or -1 if it cannot be parsed
+     */
+    static long parseHttpDate(@Nullable String value) {
+        if (value == null) return -1;
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value.trim()).getTime();
+        } catch (ParseException ex) {
+            return -1;
+        }
+    }
+
+    static String keyForUrl(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes("UTF-8"));
+            StringBuilder rtn = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                rtn.append(Character.forDigit((b >> 4) & 0xF, 16));
+                rtn.append(Character.forDigit(b & 0xF, 16));
+            }
+            return rtn.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+            // Both are guaranteed to be available
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private final File dir;
+    private final long maxCacheSize;
+    /** In access order, least recently used first */
+    private LinkedHashMap<String, Entry> entries;
+    private long totalSize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    ResourceCache(File dir, long maxCacheSize) {
+        this.dir = dir;
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    File getFile(String key) {
+        return new File(dir, key);
+    }
+
+    /**
+     * A new file to download a resource into, before {@link #put(String, File, CachingHeaders, long) putting} it in the cache.
+     */
+    synchronized File createTempFile() throws IOException {
+        // Load the index first, as it deletes unknown files
+        getEntries();
+        dir.mkdirs();
+        return File.createTempFile("download", TEMP_FILE_SUFFIX, dir);
+    }
+
+    /**
+     * Returns the entry of the given URL, if its file is still there, and marks it as recently used.
+     */
+    @Nullable
+    synchronized Entry get(String url) {
+        String key = keyForUrl(url);
+        Entry entry = getEntries().get(key);
+        if (entry == null) return null;
+        if (getFile(key).length() != entry.size) {
+            // The file was removed, or corrupted
+            remove(key);
+            save();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the cached file of the given URL if it is fresh, counting a hit.
+     */
+    @Nullable
+    File getFresh(String url, long now) {
+        Entry entry = get(url);
+        if (entry == null || !entry.isFresh(now)) return null;
+        hitCount.incrementAndGet();
+        return getFile(entry.key);
+    }
+
+    /**
+     * Moves a downloaded file into the cache, evicting the least recently used resources if the cache grows too large.
+     *
+     * @return The cached file, or {@code null} if it could not be moved
+     */
+    @Nullable
+    synchronized File put(String url, File downloaded, CachingHeaders headers, long now) {
+        String key = keyForUrl(url);
+        File file = getFile(key);
+        long size = downloaded.length();
+        if (!downloaded.renameTo(file)) {
+            Log.e(WonderPush.TAG, "Failed to move " + downloaded + " into the cache");
+            downloaded.delete();
+            return null;
+        }
+        missCount.incrementAndGet();
+        downloadedBytes.addAndGet(size);
+        remove(key);
+        Entry entry = new Entry(key, url, size, headers.etag, headers.lastModified, headers.computeExpiresAt(now));
+        getEntries().put(key, entry);
+        totalSize += size;
+        trim();
+        save();
+        return file;
+    }
+
+    /**
+     * Updates the expiration of a cached resource, after the server told it has not been modified.
+     *
+     * @return The cached file, or {@code null} if it is not in the cache anymore
+     */
+    @Nullable
+    synchronized File revalidated(String url, CachingHeaders headers, long now) {
+        String key = keyForUrl(url);
+        Entry entry = getEntries().get(key);
+        if (entry == null) return null;
+        revalidatedCount.incrementAndGet();
+        // A 304 response may omit the validators, keep the former ones then
+        Entry updated = new Entry(key, url, entry.size,
+                headers.etag != null ? headers.etag : entry.etag,
+                headers.lastModified != null ? headers.lastModified : entry.lastModified,
+                headers.computeExpiresAt(now));
+        getEntries().put(key, updated);
+        save();
+        return getFile(key);
+    }
+
+    private void remove(String key) {
+        Entry removed = getEntries().remove(key);
+        if (removed != null) {
+            totalSize -= removed.size;
+        }
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = getEntries().values().iterator();
+        // Always keep the most recent resource, it is about to be used
+        while (totalSize > maxCacheSize && getEntries().size() > 1 && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            totalSize -= eldest.size;
+            getFile(eldest.key).delete();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private LinkedHashMap<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>(16, 0.75f, true);
+            totalSize = 0;
+            load();
+        }
+        return entries;
+    }
+
+    private void load() {
+        File indexFile = new File(dir, INDEX_FILENAME);
+        if (indexFile.exists()) {
+            try {
+                JSONArray entriesJson = new JSONObject(readFile(indexFile)).optJSONArray("entries");
+                for (int i = 0; entriesJson != null && i < entriesJson.length(); i++) {
+                    JSONObject entryJson = entriesJson.optJSONObject(i);
+                    Entry entry = entryJson == null ? null : Entry.fromJSON(entryJson);
+                    if (entry == null || getFile(entry.key).length() != entry.size) continue;
+                    entries.put(entry.key, entry);
+                    totalSize += entry.size;
+                }
+            } catch (IOException | JSONException ex) {
+                Log.e(WonderPush.TAG, "Failed to read the resource cache index of " + dir, ex);
+            }
+        }
+        // Delete the files that are not indexed, including unfinished downloads
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Set<String> indexed = new HashSet<>(entries.keySet());
+            indexed.add(INDEX_FILENAME);
+            for (File file : files) {
+                if (!indexed.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void save() {
+        try {
+            JSONArray entriesJson = new JSONArray();
+            for (Entry entry : entries.values()) {
+                entriesJson.put(entry.toJSON());
+            }
+            JSONObject index = new JSONObject();
+            index.put("entries", entriesJson);
+            dir.mkdirs();
+            File indexFile = new File(dir, INDEX_FILENAME);
+            File tempFile = new File(dir, INDEX_FILENAME + TEMP_FILE_SUFFIX);
+            try (FileOutputStream output = new FileOutputStream(tempFile)) {
+                output.write(index.toString().getBytes("UTF-8"));
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Could not rename " + tempFile + " to " + indexFile);
+            }
+        } catch (IOException | JSONException ex) {
+            Log.e(WonderPush.TAG, "Failed to save the resource cache index of " + dir, ex);
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    }
+
+    synchronized long getTotalSize() {
+        getEntries();
+        return totalSize;
+    }
+
+    synchronized int getEntryCount() {
+        return getEntries().size();
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    long getDownloadedBytes() {
+        return downloadedBytes.get();
+    }
+
+    long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ResourceCache{"
+                + "dir=" + dir.getName()
+                + ", hits=" + hitCount.get()
+                + ", misses=" + missCount.get()
+                + ", revalidated=" + revalidatedCount.get()
+                + ", downloadedBytes=" + downloadedBytes.get()
+                + ", evictions=" + evictionCount.get()
+                + "}";
+    }
+
+}
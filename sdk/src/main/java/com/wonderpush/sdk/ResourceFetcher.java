@@ -0,0 +1,261 @@
+package com.wonderpush.sdk;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Downloads resources into a {@link ResourceCache}.
+ *
+ * <p>
+ * Concurrent fetches of the same resource share a single download,
+ * which is canceled once every fetch waiting for it was canceled.
+ * A canceled fetch returns right away, even if the download goes on for other fetches.
+ * Downloads are streamed to a temporary file that is atomically moved into the cache once complete.
+ * </p>
+ */
+class ResourceFetcher {
+
+    private static final long SEGMENT_SIZE = 8192;
+
+    private final OkHttpClient client;
+    private final Map<String, Download> downloads = new HashMap<>(); // by cache file path
+
+    ResourceFetcher(OkHttpClient client) {
+        this.client = client;
+    }
+
+    Fetch newFetch(ResourceCache cache, String url, long maxFileSize, String logPrefix) {
+        return new Fetch(cache, url, maxFileSize, logPrefix);
+    }
+
+    /**
+     * A caller's fetch of a resource, possibly sharing its download with other fetches.
+     */
+    class Fetch {
+        private final ResourceCache cache;
+        private final String url;
+        private final long maxFileSize;
+        private final String logPrefix;
+        private final String downloadKey;
+        // The following are guarded by downloads
+        private Download download;
+        private boolean cancelled;
+        private boolean finished;
+
+        private Fetch(ResourceCache cache, String url, long maxFileSize, String logPrefix) {
+            this.cache = cache;
+            this.url = url;
+            this.maxFileSize = maxFileSize;
+            this.logPrefix = logPrefix;
+            this.downloadKey = cache.getFile(ResourceCache.keyForUrl(url)).getPath();
+        }
+
+        /**
+         * Blocks until the resource is in the cache.
+         * @return The cached file, or {@code null} if the resource could not be fetched.
+         */
+        File execute() {
+            Download download;
+            boolean owner = false;
+            synchronized (downloads) {
+                if (cancelled || this.download != null) return null;
+                download = downloads.get(downloadKey);
+                if (download == null) {
+                    download = new Download(cache, url, maxFileSize, logPrefix);
+                    downloads.put(downloadKey, download);
+                    owner = true;
+                } else {
+                    WonderPush.logDebug(logPrefix + ": Joining the ongoing download of " + url);
+                }
+                download.activeFetches++;
+                this.download = download;
+            }
+            try {
+                if (owner) {
+                    download.task.run();
+                    synchronized (downloads) {
+                        if (downloads.get(downloadKey) == download) {
+                            downloads.remove(downloadKey);
+                        }
+                        // Wake up the fetches that joined the download
+                        downloads.notifyAll();
+                    }
+                } else {
+                    synchronized (downloads) {
+                        // Also wake up on cancel, so that a canceled fetch does not hold its thread until the download ends
+                        while (!cancelled && !download.task.isDone()) {
+                            downloads.wait();
+                        }
+                        if (cancelled) {
+                            throw new CancellationException();
+                        }
+                    }
+                }
+                return download.task.get();
+            } catch (CancellationException | InterruptedException ex) {
+                WonderPush.logDebug(logPrefix + ": Canceled fetching " + url);
+                return null;
+            } catch (ExecutionException ex) {
+                Log.e(WonderPush.TAG, logPrefix + ": Failed to fetch from URI " + url, ex.getCause());
+                return null;
+            } finally {
+                synchronized (downloads) {
+                    if (!cancelled) {
+                        finished = true;
+                        download.activeFetches--;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stops waiting for the resource, canceling its download if no other fetch waits for it.
+         */
+        void cancel() {
+            Download download;
+            synchronized (downloads) {
+                if (cancelled || finished) return;
+                cancelled = true;
+                downloads.notifyAll();
+                download = this.download;
+                if (download == null) return;
+                if (--download.activeFetches > 0) return;
+                // Later fetches of the same resource must not join a canceled download
+                if (downloads.get(downloadKey) == download) {
+                    downloads.remove(downloadKey);
+                }
+            }
+            download.cancel();
+        }
+    }
+
+    private class Download implements Callable<File> {
+        private final ResourceCache cache;
+        private final String url;
+        private final long maxFileSize;
+        private final String logPrefix;
+        final FutureTask<File> task = new FutureTask<>(this);
+        int activeFetches; // guarded by downloads
+        // The following are guarded by this
+        private Call call;
+        private boolean cancelled;
+
+        Download(ResourceCache cache, String url, long maxFileSize, String logPrefix) {
+            this.cache = cache;
+            this.url = url;
+            this.maxFileSize = maxFileSize;
+            this.logPrefix = logPrefix;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        private synchronized Call newCall(Request request) throws IOException {
+            if (cancelled) {
+                throw new IOException("Canceled");
+            }
+            call = client.newCall(request);
+            return call;
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public File call() throws IOException {
+            long now = System.currentTimeMillis();
+            File cached = cache.getFresh(url, now);
+            if (cached != null) {
+                return cached;
+            }
+            ResourceCache.Entry stale = cache.get(url);
+            File downloaded = null;
+            try {
+                WonderPush.logDebug(logPrefix + ": Will open URL: " + url);
+                Request.Builder request = new Request.Builder().url(url);
+                if (stale != null) {
+                    // Revalidate the cached resource instead of downloading it again
+                    if (stale.etag != null) request.header("If-None-Match", stale.etag);
+                    if (stale.lastModified != null) request.header("If-Modified-Since", stale.lastModified);
+                }
+                try (Response response = newCall(request.build()).execute()) {
+                    ResourceCache.CachingHeaders headers = new ResourceCache.CachingHeaders(
+                            response.header("ETag"),
+                            response.header("Last-Modified"),
+                            response.header("Cache-Control"),
+                            response.header("Expires"),
+                            response.header("Date"));
+                    if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED && stale != null) {
+                        WonderPush.logDebug(logPrefix + ": Not modified");
+                        return cache.revalidated(url, headers, now);
+                    }
+                    if (!response.isSuccessful()) {
+                        throw new IOException("Unexpected HTTP status " + response.code());
+                    }
+                    ResponseBody body = response.body();
+                    WonderPush.logDebug(logPrefix + ": Content-Type: " + body.contentType());
+                    WonderPush.logDebug(logPrefix + ": Content-Length: " + body.contentLength() + " bytes");
+                    if (body.contentLength() > maxFileSize) {
+                        throw new RuntimeException(logPrefix + " file too large (" + body.contentLength() + " is over " + maxFileSize + " bytes)");
+                    }
+
+                    downloaded = cache.createTempFile();
+                    long read, ttl = 0;
+                    try (BufferedSource source = body.source();
+                         BufferedSink sink = Okio.buffer(Okio.sink(downloaded))) {
+                        while ((read = source.read(sink.getBuffer(), SEGMENT_SIZE)) != -1) {
+                            ttl += read;
+                            if (ttl > maxFileSize) {
+                                throw new RuntimeException(logPrefix + " file too large (max " + maxFileSize + " bytes allowed)");
+                            }
+                            sink.emitCompleteSegments();
+                        }
+                    }
+                    WonderPush.logDebug(logPrefix + ": Finished reading " + ttl + " bytes");
+                    cached = cache.put(url, downloaded, headers, now);
+                    downloaded = null;
+                    WonderPush.logDebug(logPrefix + ": " + cache);
+                }
+            } catch (IOException ex) {
+                if (isCancelled()) {
+                    // Nobody waits for the resource anymore
+                    return null;
+                }
+                Log.e(WonderPush.TAG, "Error while fetching resource " + url, ex);
+                if (stale != null) {
+                    // Better display a stale resource than none
+                    cached = cache.getFile(stale.key);
+                }
+            } finally {
+                if (downloaded != null) {
+                    downloaded.delete();
+                }
+            }
+            return cached;
+        }
+    }
+
+}
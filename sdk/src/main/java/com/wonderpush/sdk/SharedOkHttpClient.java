@@ -0,0 +1,38 @@
+package com.wonderpush.sdk;
+
+import android.net.TrafficStats;
+import android.os.Process;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+/**
+ * The OkHttp client the SDK's HTTP clients derive from using {@link OkHttpClient#newBuilder()},
+ * so that they all share the same connection pool.
+ */
+public class SharedOkHttpClient {
+
+    private static volatile OkHttpClient sClient;
+
+    public static OkHttpClient get() {
+        if (sClient == null) {
+            synchronized (SharedOkHttpClient.class) {
+                if (sClient == null) {
+                    sClient = new OkHttpClient.Builder()
+                            .eventListener(new EventListener() {
+                                @Override
+                                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+                                    TrafficStats.setThreadStatsTag(Process.myTid());
+                                }
+                            }).build();
+                }
+            }
+        }
+        return sClient;
+    }
+
+}
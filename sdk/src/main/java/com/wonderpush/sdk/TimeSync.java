@@ -4,11 +4,23 @@ import android.os.SystemClock;
 
 public class TimeSync {
 
-    private static long startupDateToServerDateOffset = 0;
-    private static long startupDateToServerDateUncertainty = Long.MAX_VALUE;
-    private static long deviceDateToServerDateOffset = 0;
-    private static long deviceDateToServerDateUncertainty = Long.MAX_VALUE;
-    private static long startupDateToDeviceDateOffset = Long.MAX_VALUE;
+    private static final TimeSyncClock sClock = new TimeSyncClock(new TimeSyncClock.Storage() {
+        @Override
+        public long getDeviceDateSyncOffset() {
+            return WonderPushConfiguration.getDeviceDateSyncOffset();
+        }
+
+        @Override
+        public long getDeviceDateSyncUncertainty() {
+            return WonderPushConfiguration.getDeviceDateSyncUncertainty();
+        }
+
+        @Override
+        public void setDeviceDateSync(long offset, long uncertainty) {
+            WonderPushConfiguration.setDeviceDateSyncOffset(offset);
+            WonderPushConfiguration.setDeviceDateSyncUncertainty(uncertainty);
+        }
+    });
 
     public static long getUnadjustedSystemCurrentTimeMillis() {
         return System.currentTimeMillis();
@@ -22,37 +34,12 @@ public class TimeSync {
      * Get the current timestamp in milliseconds, UTC.
      * @return A timestamp in milliseconds
      */
-    public synchronized static long getTime() {
+    public static long getTime() {
         return adjustTime(getUnadjustedSystemCurrentTimeMillis(), getUnadjustedSystemClockElapsedRealtime());
     }
 
-    public synchronized static long adjustTime(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime) {
-        // Initialization
-        if (deviceDateToServerDateUncertainty == Long.MAX_VALUE) {
-            deviceDateToServerDateUncertainty = WonderPushConfiguration.getDeviceDateSyncUncertainty();
-            deviceDateToServerDateOffset = WonderPushConfiguration.getDeviceDateSyncOffset();
-        }
-        long startupToDeviceOffset = unadjustedSystemCurrentTimeMillis - unadjustedSystemClockElapsedRealtime;
-        if (startupDateToDeviceDateOffset == Long.MAX_VALUE) {
-            startupDateToDeviceDateOffset = startupToDeviceOffset;
-        }
-
-        // Check device date consistency with startup date
-        if (Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) > 1000) {
-            // System time has jumped (by at least 1 second), or has drifted with regards to unadjustedSystemClockElapsedRealtime.
-            // Apply the offset difference to resynchronize the "device" sync offset onto the new system date.
-            deviceDateToServerDateOffset -= startupToDeviceOffset - startupDateToDeviceDateOffset;
-            WonderPushConfiguration.setDeviceDateSyncOffset(deviceDateToServerDateOffset);
-            startupDateToDeviceDateOffset = startupToDeviceOffset;
-        }
-
-        if (startupDateToServerDateUncertainty <= deviceDateToServerDateUncertainty
-                // Don't use the startup date if it has not been synced, use and trust last device date sync
-                && startupDateToServerDateUncertainty != Long.MAX_VALUE) {
-            return unadjustedSystemClockElapsedRealtime + startupDateToServerDateOffset;
-        } else {
-            return unadjustedSystemCurrentTimeMillis + deviceDateToServerDateOffset;
-        }
+    public static long adjustTime(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime) {
+        return sClock.adjustTime(unadjustedSystemCurrentTimeMillis, unadjustedSystemClockElapsedRealtime);
     }
 
     /**
@@ -66,11 +53,7 @@ public class TimeSync {
      * @param serverTook
      *            The time the server took to process the request, as read in the response.
      */
-    protected synchronized static void syncTimeWithServer(long elapsedRealtimeSend, long elapsedRealtimeReceive, long serverDate, long serverTook) {
-        if (serverDate == 0) {
-            return;
-        }
-
+    protected static void syncTimeWithServer(long elapsedRealtimeSend, long elapsedRealtimeReceive, long serverDate, long serverTook) {
         // We have two synchronization sources:
         // - The "startup" sync, bound to the process lifecycle, using SystemClock.elapsedRealtime()
         //   This time source cannot be messed up with.
@@ -80,52 +63,8 @@ public class TimeSync {
         //   but it is not affected by timezone or daylight saving changes.
         // The "startup" sync must be saved into a "device" sync in order to persist between runs of the process.
         // The "startup" sync should only be stored in memory, and no attempt to count reboot should be taken.
-
-        // Initialization
-        if (deviceDateToServerDateUncertainty == Long.MAX_VALUE) {
-            deviceDateToServerDateUncertainty = WonderPushConfiguration.getDeviceDateSyncUncertainty();
-            deviceDateToServerDateOffset = WonderPushConfiguration.getDeviceDateSyncOffset();
-        }
-        long startupToDeviceOffset = System.currentTimeMillis() - SystemClock.elapsedRealtime();
-        if (startupDateToDeviceDateOffset == Long.MAX_VALUE) {
-            startupDateToDeviceDateOffset = startupToDeviceOffset;
-        }
-
-        long uncertainty = (elapsedRealtimeReceive - elapsedRealtimeSend - serverTook) / 2;
-        long offset = serverDate + serverTook / 2 - (elapsedRealtimeSend + elapsedRealtimeReceive) / 2;
-
-        // We must improve the quality of the "startup" sync. We can trust elaspedRealtime() based measures.
-        if (
-            // Case 1. Lower uncertainty
-                uncertainty < startupDateToServerDateUncertainty
-                        // Case 2. Additional check for exceptional server-side time gaps
-                        //         Calculate whether the two offsets agree within the total uncertainty limit
-                        || Math.abs(offset - startupDateToServerDateOffset)
-                        > uncertainty+startupDateToServerDateUncertainty
-            // note the RHS overflows with the Long.MAX_VALUE initialization, but case 1 handles that
-                ) {
-            // Case 1. Take the new, more accurate synchronization
-            // Case 2. Forget the old synchronization, time have changed too much
-            startupDateToServerDateOffset = offset;
-            startupDateToServerDateUncertainty = uncertainty;
-        }
-
-        // We must detect whether the "device" sync is still valid, otherwise we must update it.
-        if (
-            // Case 1. Lower uncertainty
-                startupDateToServerDateUncertainty < deviceDateToServerDateUncertainty
-                        // Case 2. Local clock was updated, or the two time sources have drifted from each other
-                        || Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) > startupDateToServerDateUncertainty
-                        // Case 3. Time gap between the "startup" and "device" sync
-                        || Math.abs(deviceDateToServerDateOffset - (startupDateToServerDateOffset - startupDateToDeviceDateOffset))
-                        > deviceDateToServerDateUncertainty + startupDateToServerDateUncertainty
-            // note the RHS overflows with the Long.MAX_VALUE initialization, but case 1 handles that
-                ) {
-            deviceDateToServerDateOffset = startupDateToServerDateOffset - startupDateToDeviceDateOffset;
-            deviceDateToServerDateUncertainty = startupDateToServerDateUncertainty;
-            WonderPushConfiguration.setDeviceDateSyncOffset(deviceDateToServerDateOffset);
-            WonderPushConfiguration.setDeviceDateSyncUncertainty(deviceDateToServerDateUncertainty);
-        }
+        sClock.syncTimeWithServer(getUnadjustedSystemCurrentTimeMillis(), getUnadjustedSystemClockElapsedRealtime(),
+                elapsedRealtimeSend, elapsedRealtimeReceive, serverDate, serverTook);
     }
 
 }
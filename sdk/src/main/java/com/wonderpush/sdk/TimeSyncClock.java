@@ -0,0 +1,182 @@
+package com.wonderpush.sdk;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The time synchronization algorithm behind {@link TimeSync}, taking the system clocks as arguments.
+ *
+ * <p>
+ * The synchronization state is an immutable snapshot, replaced atomically.
+ * Reading the time never blocks: it only replaces the snapshot the first time, and when the system time has jumped.
+ * </p>
+ */
+class TimeSyncClock {
+
+    /**
+     * Persists the "device" sync between runs of the process.
+     */
+    interface Storage {
+        long getDeviceDateSyncOffset();
+        long getDeviceDateSyncUncertainty();
+        void setDeviceDateSync(long offset, long uncertainty);
+    }
+
+    private static final class Snapshot {
+        static final Snapshot INITIAL = new Snapshot(false, 0, Long.MAX_VALUE, 0, Long.MAX_VALUE, Long.MAX_VALUE);
+
+        final boolean deviceSyncLoaded;
+        final long startupDateToServerDateOffset;
+        final long startupDateToServerDateUncertainty;
+        final long deviceDateToServerDateOffset;
+        final long deviceDateToServerDateUncertainty;
+        final long startupDateToDeviceDateOffset;
+
+        Snapshot(boolean deviceSyncLoaded,
+                 long startupDateToServerDateOffset, long startupDateToServerDateUncertainty,
+                 long deviceDateToServerDateOffset, long deviceDateToServerDateUncertainty,
+                 long startupDateToDeviceDateOffset) {
+            this.deviceSyncLoaded = deviceSyncLoaded;
+            this.startupDateToServerDateOffset = startupDateToServerDateOffset;
+            this.startupDateToServerDateUncertainty = startupDateToServerDateUncertainty;
+            this.deviceDateToServerDateOffset = deviceDateToServerDateOffset;
+            this.deviceDateToServerDateUncertainty = deviceDateToServerDateUncertainty;
+            this.startupDateToDeviceDateOffset = startupDateToDeviceDateOffset;
+        }
+
+        /**
+         * Loads the "device" sync and sets the startup date offset, if not done already.
+         */
+        Snapshot initialized(Storage storage, long startupToDeviceOffset) {
+            if (deviceSyncLoaded && startupDateToDeviceDateOffset != Long.MAX_VALUE) return this;
+            return new Snapshot(true,
+                    startupDateToServerDateOffset, startupDateToServerDateUncertainty,
+                    deviceSyncLoaded ? deviceDateToServerDateOffset : storage.getDeviceDateSyncOffset(),
+                    deviceSyncLoaded ? deviceDateToServerDateUncertainty : storage.getDeviceDateSyncUncertainty(),
+                    startupDateToDeviceDateOffset != Long.MAX_VALUE ? startupDateToDeviceDateOffset : startupToDeviceOffset);
+        }
+
+        /**
+         * Resynchronizes the "device" sync onto the system date if it has jumped.
+         */
+        Snapshot resynchronized(long startupToDeviceOffset) {
+            if (Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) <= 1000) return this;
+            // System time has jumped (by at least 1 second), or has drifted with regards to elapsedRealtime.
+            // Apply the offset difference to resynchronize the "device" sync offset onto the new system date.
+            return new Snapshot(deviceSyncLoaded,
+                    startupDateToServerDateOffset, startupDateToServerDateUncertainty,
+                    deviceDateToServerDateOffset - (startupToDeviceOffset - startupDateToDeviceDateOffset), deviceDateToServerDateUncertainty,
+                    startupToDeviceOffset);
+        }
+
+        long adjust(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime) {
+            if (startupDateToServerDateUncertainty <= deviceDateToServerDateUncertainty
+                    // Don't use the startup date if it has not been synced, use and trust last device date sync
+                    && startupDateToServerDateUncertainty != Long.MAX_VALUE) {
+                return unadjustedSystemClockElapsedRealtime + startupDateToServerDateOffset;
+            } else {
+                return unadjustedSystemCurrentTimeMillis + deviceDateToServerDateOffset;
+            }
+        }
+
+        Snapshot synchronizedWithServer(long startupToDeviceOffset, long elapsedRealtimeSend, long elapsedRealtimeReceive, long serverDate, long serverTook) {
+            long startupOffset = startupDateToServerDateOffset;
+            long startupUncertainty = startupDateToServerDateUncertainty;
+            long deviceOffset = deviceDateToServerDateOffset;
+            long deviceUncertainty = deviceDateToServerDateUncertainty;
+
+            long uncertainty = (elapsedRealtimeReceive - elapsedRealtimeSend - serverTook) / 2;
+            long offset = serverDate + serverTook / 2 - (elapsedRealtimeSend + elapsedRealtimeReceive) / 2;
+
+            // We must improve the quality of the "startup" sync. We can trust elaspedRealtime() based measures.
+            if (
+                // Case 1. Lower uncertainty
+                    uncertainty < startupUncertainty
+                            // Case 2. Additional check for exceptional server-side time gaps
+                            //         Calculate whether the two offsets agree within the total uncertainty limit
+                            || Math.abs(offset - startupOffset) > uncertainty + startupUncertainty
+                // note the RHS overflows with the Long.MAX_VALUE initialization, but case 1 handles that
+                    ) {
+                // Case 1. Take the new, more accurate synchronization
+                // Case 2. Forget the old synchronization, time have changed too much
+                startupOffset = offset;
+                startupUncertainty = uncertainty;
+            }
+
+            // We must detect whether the "device" sync is still valid, otherwise we must update it.
+            if (
+                // Case 1. Lower uncertainty
+                    startupUncertainty < deviceUncertainty
+                            // Case 2. Local clock was updated, or the two time sources have drifted from each other
+                            || Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) > startupUncertainty
+                            // Case 3. Time gap between the "startup" and "device" sync
+                            || Math.abs(deviceOffset - (startupOffset - startupDateToDeviceDateOffset)) > deviceUncertainty + startupUncertainty
+                // note the RHS overflows with the Long.MAX_VALUE initialization, but case 1 handles that
+                    ) {
+                deviceOffset = startupOffset - startupDateToDeviceDateOffset;
+                deviceUncertainty = startupUncertainty;
+            }
+
+            return new Snapshot(deviceSyncLoaded, startupOffset, startupUncertainty, deviceOffset, deviceUncertainty, startupDateToDeviceDateOffset);
+        }
+
+        boolean hasSameDeviceSync(Snapshot other) {
+            return deviceDateToServerDateOffset == other.deviceDateToServerDateOffset
+                    && deviceDateToServerDateUncertainty == other.deviceDateToServerDateUncertainty;
+        }
+    }
+
+    private final Storage storage;
+    private final AtomicReference<Snapshot> state = new AtomicReference<>(Snapshot.INITIAL);
+    private final Object storageLock = new Object();
+
+    TimeSyncClock(Storage storage) {
+        this.storage = storage;
+    }
+
+    long adjustTime(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime) {
+        long startupToDeviceOffset = unadjustedSystemCurrentTimeMillis - unadjustedSystemClockElapsedRealtime;
+        while (true) {
+            Snapshot current = state.get();
+            Snapshot next = current.initialized(storage, startupToDeviceOffset).resynchronized(startupToDeviceOffset);
+            if (next == current) {
+                return current.adjust(unadjustedSystemCurrentTimeMillis, unadjustedSystemClockElapsedRealtime);
+            }
+            if (state.compareAndSet(current, next)) {
+                if (current.deviceSyncLoaded && !next.hasSameDeviceSync(current)) {
+                    persist();
+                }
+                return next.adjust(unadjustedSystemCurrentTimeMillis, unadjustedSystemClockElapsedRealtime);
+            }
+        }
+    }
+
+    void syncTimeWithServer(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime,
+                            long elapsedRealtimeSend, long elapsedRealtimeReceive, long serverDate, long serverTook) {
+        if (serverDate == 0) {
+            return;
+        }
+        long startupToDeviceOffset = unadjustedSystemCurrentTimeMillis - unadjustedSystemClockElapsedRealtime;
+        while (true) {
+            Snapshot current = state.get();
+            Snapshot initialized = current.initialized(storage, startupToDeviceOffset);
+            Snapshot next = initialized.synchronizedWithServer(startupToDeviceOffset, elapsedRealtimeSend, elapsedRealtimeReceive, serverDate, serverTook);
+            if (state.compareAndSet(current, next)) {
+                if (!next.hasSameDeviceSync(initialized)) {
+                    persist();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Saves the latest "device" sync, even if another thread replaced the snapshot since it was computed.
+     */
+    private void persist() {
+        synchronized (storageLock) {
+            Snapshot latest = state.get();
+            storage.setDeviceDateSync(latest.deviceDateToServerDateOffset, latest.deviceDateToServerDateUncertainty);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.wonderpush.sdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process channel telling the SDK components about the events being tracked.
+ *
+ * <p>
+ * Events are delivered synchronously, on the thread tracking them, without any serialization.
+ * The {@link WonderPush#INTENT_EVENT_TRACKED} local broadcast is still sent for the application.
+ * </p>
+ */
+public class TrackedEventBus {
+
+    /**
+     * An event that was tracked.
+     * Its custom data and occurrences are copied when it is created, so that it does not change afterwards.
+     */
+    public static class TrackedEvent {
+        private final String type;
+        private final JSONObject customData;
+        private final boolean hasOccurrences;
+        private final Long allTime;
+        private final Long last1days;
+        private final Long last3days;
+        private final Long last7days;
+        private final Long last15days;
+        private final Long last30days;
+        private final Long last60days;
+        private final Long last90days;
+
+        TrackedEvent(@NonNull String type, @Nullable JSONObject customData, @Nullable WonderPushConfiguration.Occurrences occurrences) {
+            this.type = type;
+            JSONObject customDataCopy;
+            try {
+                customDataCopy = JSONUtil.deepCopy(customData);
+            } catch (JSONException ex) {
+                Log.e(WonderPush.TAG, "Could not copy the custom data of tracked event " + type, ex);
+                customDataCopy = null;
+            }
+            this.customData = customDataCopy;
+            this.hasOccurrences = occurrences != null;
+            this.allTime = occurrences == null ? null : occurrences.allTime;
+            this.last1days = occurrences == null ? null : occurrences.last1days;
+            this.last3days = occurrences == null ? null : occurrences.last3days;
+            this.last7days = occurrences == null ? null : occurrences.last7days;
+            this.last15days = occurrences == null ? null : occurrences.last15days;
+            this.last30days = occurrences == null ? null : occurrences.last30days;
+            this.last60days = occurrences == null ? null : occurrences.last60days;
+            this.last90days = occurrences == null ? null : occurrences.last90days;
+        }
+
+        @NonNull
+        public String getType() {
+            return type;
+        }
+
+        @Nullable
+        public JSONObject getCustomData() {
+            return customData;
+        }
+
+        /**
+         * Returns a new copy of the occurrences of the event, as counted when it was tracked.
+         */
+        @Nullable
+        public WonderPushConfiguration.Occurrences getOccurrences() {
+            if (!hasOccurrences) return null;
+            WonderPushConfiguration.Occurrences rtn = new WonderPushConfiguration.Occurrences();
+            rtn.allTime = allTime;
+            rtn.last1days = last1days;
+            rtn.last3days = last3days;
+            rtn.last7days = last7days;
+            rtn.last15days = last15days;
+            rtn.last30days = last30days;
+            rtn.last60days = last60days;
+            rtn.last90days = last90days;
+            return rtn;
+        }
+
+        @Override
+        public String toString() {
+            return "TrackedEvent{type=" + type + ", customData=" + customData + "}";
+        }
+    }
+
+    public interface Subscriber {
+        /**
+         * Called on the thread tracking the event, must return quickly.
+         */
+        void onEventTracked(@NonNull TrackedEvent event);
+    }
+
+    private static final CopyOnWriteArrayList<Subscriber> sSubscribers = new CopyOnWriteArrayList<>();
+
+    public static void subscribe(@NonNull Subscriber subscriber) {
+        sSubscribers.addIfAbsent(subscriber);
+    }
+
+    public static void unsubscribe(@NonNull Subscriber subscriber) {
+        sSubscribers.remove(subscriber);
+    }
+
+    static void publish(@NonNull TrackedEvent event) {
+        for (Subscriber subscriber : sSubscribers) {
+            try {
+                subscriber.onEventTracked(event);
+            } catch (Exception e) {
+                Log.e(WonderPush.TAG, "Unexpected error while delivering tracked event " + event.getType(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,505 @@
+package com.wonderpush.sdk;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory store of the tracked events, updated incrementally as new events are remembered.
+ *
+ * <p>
+ * Events are kept bucketed by collapsing kind, in the order they are stored:
+ * collapsing=last builtin events, collapsing=last custom events, other collapsed events, then uncollapsed events.
+ * Each bucket is sorted by {@code actionDate}.
+ * Collapsed events are indexed by their collapsing key, and uncollapsed events are indexed by type
+ * with a sorted array of their action dates, so that remembering an event only touches the affected entries
+ * and computing its {@link WonderPushConfiguration.Occurrences} only takes a few binary searches.
+ * </p>
+ *
+ * <p>
+ * Each event is serialized once and its serialized form is kept,
+ * so that persisting the store only serializes newly remembered events.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ */
+class TrackedEventsStore {
+
+    private static final long DAY_MS = 86400000L;
+    private static final int[] OCCURRENCES_DAYS = {1, 3, 7, 15, 30, 60, 90};
+
+    private static final int BUCKET_COLLAPSED_LAST_BUILTIN = 0; // collapsing.equals("last") && type.startsWith("@")
+    private static final int BUCKET_COLLAPSED_LAST_CUSTOM = 1; // collapsing.equals("last") && !type.startsWith("@")
+    private static final int BUCKET_COLLAPSED_OTHER = 2; // collapsing != null && !collapsing.equals("last") // ie. collapsing.equals("campaign"), as of this writing
+    private static final int BUCKET_UNCOLLAPSED = 3; // collapsing == null
+    private static final int BUCKET_COUNT = 4;
+
+    /**
+     * Retention limits applied when remembering an event.
+     */
+    static class Limits {
+        final int maximumCollapsedLastBuiltinCount;
+        final int maximumCollapsedLastCustomCount;
+        final int maximumCollapsedOtherCount;
+        final int maximumUncollapsedCount;
+        final long maximumUncollapsedAgeMs;
+
+        Limits(int maximumCollapsedLastBuiltinCount, int maximumCollapsedLastCustomCount, int maximumCollapsedOtherCount, int maximumUncollapsedCount, long maximumUncollapsedAgeMs) {
+            this.maximumCollapsedLastBuiltinCount = maximumCollapsedLastBuiltinCount;
+            this.maximumCollapsedLastCustomCount = maximumCollapsedLastCustomCount;
+            this.maximumCollapsedOtherCount = maximumCollapsedOtherCount;
+            this.maximumUncollapsedCount = maximumUncollapsedCount;
+            this.maximumUncollapsedAgeMs = maximumUncollapsedAgeMs;
+        }
+
+        int getMaximumCount(int bucket) {
+            switch (bucket) {
+                case BUCKET_COLLAPSED_LAST_BUILTIN: return maximumCollapsedLastBuiltinCount;
+                case BUCKET_COLLAPSED_LAST_CUSTOM: return maximumCollapsedLastCustomCount;
+                case BUCKET_COLLAPSED_OTHER: return maximumCollapsedOtherCount;
+                default: return maximumUncollapsedCount;
+            }
+        }
+    }
+
+    private static class Entry {
+        final JSONObject event;
+        final String type;
+        final String collapsing;
+        final String collapsingKey;
+        final int bucket;
+        final boolean hasActionDate;
+        final long actionDate;
+        String json;
+
+        Entry(JSONObject event) {
+            this.event = event;
+            this.type = event.optString("type");
+            this.collapsing = JSONUtil.optString(event, "collapsing");
+            if ("last".equals(collapsing)) {
+                this.collapsingKey = lastCollapsingKey(type);
+                this.bucket = type.startsWith("@") ? BUCKET_COLLAPSED_LAST_BUILTIN : BUCKET_COLLAPSED_LAST_CUSTOM;
+            } else if ("campaign".equals(collapsing)) {
+                this.collapsingKey = campaignCollapsingKey(type, event.optString("campaignId"));
+                this.bucket = BUCKET_COLLAPSED_OTHER;
+            } else {
+                this.collapsingKey = null;
+                this.bucket = collapsing == null ? BUCKET_UNCOLLAPSED : BUCKET_COLLAPSED_OTHER;
+            }
+            // Distinguish a missing or unparsable actionDate from any actual value
+            long actionDate0 = event.optLong("actionDate", 0);
+            long actionDate1 = event.optLong("actionDate", 1);
+            this.hasActionDate = actionDate0 == actionDate1;
+            this.actionDate = actionDate0;
+        }
+
+        /**
+         * The key events are sorted by, missing action dates sort first.
+         */
+        long getSortKey() {
+            return hasActionDate ? actionDate : -1;
+        }
+
+        long getActionDate(long fallback) {
+            return hasActionDate ? actionDate : fallback;
+        }
+
+        String getJSON() {
+            if (json == null) {
+                json = event.toString();
+            }
+            return json;
+        }
+    }
+
+    /**
+     * Sorted action dates of the uncollapsed events of a given type.
+     */
+    private static class TypeIndex {
+        long[] actionDates = new long[4];
+        int size;
+        int withoutActionDate;
+
+        boolean isEmpty() {
+            return size == 0 && withoutActionDate == 0;
+        }
+
+        void add(Entry entry) {
+            if (!entry.hasActionDate) {
+                ++withoutActionDate;
+                return;
+            }
+            if (size == actionDates.length) {
+                actionDates = Arrays.copyOf(actionDates, size * 2);
+            }
+            int index = upperBound(entry.actionDate);
+            System.arraycopy(actionDates, index, actionDates, index + 1, size - index);
+            actionDates[index] = entry.actionDate;
+            ++size;
+        }
+
+        void remove(Entry entry) {
+            if (!entry.hasActionDate) {
+                --withoutActionDate;
+                return;
+            }
+            int index = upperBound(entry.actionDate) - 1;
+            if (index < 0 || actionDates[index] != entry.actionDate) return;
+            System.arraycopy(actionDates, index + 1, actionDates, index, size - index - 1);
+            --size;
+        }
+
+        /**
+         * Index of the first action date strictly greater than the given value.
+         */
+        int upperBound(long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (actionDates[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        long count() {
+            return size + withoutActionDate;
+        }
+
+        /**
+         * Counts the events that happened strictly after the given date.
+         * Events without an action date are considered to have happened now.
+         */
+        long countAfter(long date, long now) {
+            long rtn = size - upperBound(date);
+            if (now > date) rtn += withoutActionDate;
+            return rtn;
+        }
+    }
+
+    private final List<List<Entry>> mBuckets = new ArrayList<>(BUCKET_COUNT);
+    private final Map<String, List<Entry>> mCollapsedEntries = new HashMap<>();
+    private final Map<String, TypeIndex> mUncollapsedTypeIndexes = new HashMap<>();
+    private List<Entry> mLoadedEntries;
+    private List<JSONObject> mEvents;
+
+    /**
+     * @param events
+     *            The stored tracked events, returned as is by {@link #getEvents()} until the store is modified
+     */
+    TrackedEventsStore(List<JSONObject> events) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.add(new ArrayList<>());
+        }
+        mLoadedEntries = new ArrayList<>(events.size());
+        for (JSONObject event : events) {
+            Entry entry = new Entry(event);
+            mLoadedEntries.add(entry);
+            mBuckets.get(entry.bucket).add(entry);
+            addToIndexes(entry);
+        }
+        for (List<Entry> bucket : mBuckets) {
+            // Stable sort, equal entries keep their stored order
+            Collections.sort(bucket, (o1, o2) -> Long.compare(o1.getSortKey(), o2.getSortKey()));
+        }
+        mEvents = Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    private static String lastCollapsingKey(String type) {
+        return "last:" + type;
+    }
+
+    private static String campaignCollapsingKey(String type, String campaignId) {
+        return "campaign:" + type.length() + ":" + type + campaignId;
+    }
+
+    /**
+     * The entries, in stored order.
+     * Until the store is first modified, this is the order in which the events were given.
+     */
+    private List<List<Entry>> getStoredEntries() {
+        return mLoadedEntries != null ? Collections.singletonList(mLoadedEntries) : mBuckets;
+    }
+
+    /**
+     * The tracked events, in stored order.
+     */
+    List<JSONObject> getEvents() {
+        if (mEvents == null) {
+            List<JSONObject> events = new ArrayList<>(size());
+            for (List<Entry> entries : getStoredEntries()) {
+                for (Entry entry : entries) {
+                    events.add(entry.event);
+                }
+            }
+            mEvents = Collections.unmodifiableList(events);
+        }
+        return mEvents;
+    }
+
+    int size() {
+        int rtn = 0;
+        for (List<Entry> bucket : mBuckets) {
+            rtn += bucket.size();
+        }
+        return rtn;
+    }
+
+    /**
+     * Serializes the tracked events into a JSON array, in stored order.
+     * Only events that were not already serialized are serialized.
+     */
+    String toJSONString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        boolean first = true;
+        for (List<Entry> entries : getStoredEntries()) {
+            for (Entry entry : entries) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append(entry.getJSON());
+            }
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Remembers a new tracked event.
+     *
+     * <p>
+     * The event replaces the previous event with the same collapsing key, if any.
+     * An uncollapsed event is stored twice: once as is, and once with {@code collapsing=last}.
+     * Expired uncollapsed events are removed and each bucket is trimmed to its limit, oldest events first.
+     * </p>
+     *
+     * <p>
+     * Note: It is assumed that the given event is more recent than any other already stored events.
+     * </p>
+     *
+     * @return The occurrences of the event type, also stored in the new event, or null if the event has no type.
+     */
+    WonderPushConfiguration.Occurrences remember(JSONObject eventData, long now, Limits limits) {
+        final String type = JSONUtil.getString(eventData, "type");
+        if (type == null) return null;
+        WonderPushConfiguration.Occurrences occurrences = new WonderPushConfiguration.Occurrences();
+
+        long allTime = 0L;
+        String campaignId = JSONUtil.optString(eventData, "campaignId");
+        String collapsing = JSONUtil.optString(eventData, "collapsing");
+
+        // Remove the previous event with the same collapsing key as the new event we want to add
+        String replacedCollapsingKey = null;
+        if (collapsing == null || "last".equals(collapsing)) {
+            replacedCollapsingKey = lastCollapsingKey(type);
+        } else if (campaignId != null && "campaign".equals(collapsing)) {
+            replacedCollapsingKey = campaignCollapsingKey(type, campaignId);
+        }
+        List<Entry> replacedEntries = replacedCollapsingKey == null ? null : mCollapsedEntries.get(replacedCollapsingKey);
+        if (replacedEntries != null) {
+            Entry replaced = getLastStored(replacedEntries);
+            JSONObject occs = replaced.event.optJSONObject("occurrences");
+            long occsAllTime = occs != null ? occs.optLong("allTime", 1L) : 1;
+            allTime = Math.max(1, occsAllTime);
+            for (Entry entry : new ArrayList<>(replacedEntries)) {
+                mBuckets.get(entry.bucket).remove(entry);
+                removeFromIndexes(entry);
+            }
+        }
+
+        // Remove old uncollapsed events
+        removeExpiredUncollapsedEvents(now, limits.maximumUncollapsedAgeMs);
+        // TODO We may want to filter out old collapsing=campaign (or any non-null value other than "last") events too
+
+        // Add the new event, both uncollapsed and with collapsing
+        // We default to collapsing=last, but we otherwise keep any existing collapsing
+        JSONObject collapsedEventData = null;
+        JSONObject uncollapsedEventData = null;
+        try {
+            JSONObject eventDataCopy = new JSONObject(eventData.toString());
+            if (collapsing == null) {
+                uncollapsedEventData = eventDataCopy;
+                collapsedEventData = JSONUtil.shallowCopy(eventDataCopy);
+                collapsedEventData.put("collapsing", "last");
+            } else {
+                collapsedEventData = eventDataCopy;
+            }
+        } catch (JSONException e) {
+            Log.e(WonderPush.TAG, "Could not store tracked event", e);
+        }
+        if (uncollapsedEventData != null) {
+            insert(new Entry(uncollapsedEventData));
+        }
+        if (collapsedEventData != null) {
+            allTime += 1;
+            insert(new Entry(collapsedEventData));
+        }
+
+        // Impose a limit on the maximum number of tracked events
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            removeExcessEventsFromStart(bucket, limits.getMaximumCount(bucket));
+        }
+
+        TypeIndex typeIndex = mUncollapsedTypeIndexes.get(type);
+        long uncollapsedCount = typeIndex == null ? 0 : typeIndex.count();
+        long[] lastDays = new long[OCCURRENCES_DAYS.length];
+        for (int i = 0; i < OCCURRENCES_DAYS.length; i++) {
+            // The number of days since now, rounded down, is at most N if the event happened less than N+1 days ago
+            lastDays[i] = typeIndex == null ? 0 : typeIndex.countAfter(now - (OCCURRENCES_DAYS[i] + 1) * DAY_MS, now);
+        }
+
+        occurrences.allTime = Math.max(allTime, uncollapsedCount);
+        occurrences.last1days = lastDays[0];
+        occurrences.last3days = lastDays[1];
+        occurrences.last7days = lastDays[2];
+        occurrences.last15days = lastDays[3];
+        occurrences.last30days = lastDays[4];
+        occurrences.last60days = lastDays[5];
+        occurrences.last90days = lastDays[6];
+
+        try {
+            if (collapsedEventData != null) {
+                collapsedEventData.put("occurrences", occurrences.toJSON());
+            }
+            if (uncollapsedEventData != null) {
+                uncollapsedEventData.put("occurrences", occurrences.toJSON());
+            }
+        } catch (JSONException e) {
+            Log.w(WonderPush.TAG, "Could not store occurrences", e);
+        }
+
+        mLoadedEntries = null;
+        mEvents = null;
+        return occurrences;
+    }
+
+    /**
+     * Among events sharing the same collapsing key, returns the one stored last.
+     */
+    private Entry getLastStored(List<Entry> entries) {
+        if (entries.size() == 1 || mLoadedEntries != null) {
+            // Entries are indexed in stored order until the store is first modified
+            return entries.get(entries.size() - 1);
+        }
+        // Only happens if the stored events were given with duplicates
+        Entry rtn = null;
+        int rtnIndex = -1;
+        for (Entry entry : entries) {
+            int index = mBuckets.get(entry.bucket).indexOf(entry);
+            if (index > rtnIndex) {
+                rtn = entry;
+                rtnIndex = index;
+            }
+        }
+        return rtn;
+    }
+
+    private void insert(Entry entry) {
+        List<Entry> bucket = mBuckets.get(entry.bucket);
+        long sortKey = entry.getSortKey();
+        int index = bucket.size();
+        // Fast path, new events are normally the most recent ones
+        if (index > 0 && bucket.get(index - 1).getSortKey() > sortKey) {
+            int low = 0;
+            int high = index;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bucket.get(mid).getSortKey() <= sortKey) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            index = low;
+        }
+        bucket.add(index, entry);
+        addToIndexes(entry);
+    }
+
+    private void removeExpiredUncollapsedEvents(long now, long maximumAgeMs) {
+        List<Entry> bucket = mBuckets.get(BUCKET_UNCOLLAPSED);
+        // Expired events all sort before this date, events without an action date included
+        // as they only expire with a non-positive maximum age, making this date at least now
+        long maximumExpiredSortKey = now - maximumAgeMs;
+        int kept = 0;
+        int i = 0;
+        for (; i < bucket.size(); i++) {
+            Entry entry = bucket.get(i);
+            if (entry.getSortKey() > maximumExpiredSortKey) break;
+            if (now - entry.getActionDate(now) >= maximumAgeMs) {
+                removeFromIndexes(entry);
+            } else {
+                bucket.set(kept++, entry);
+            }
+        }
+        if (kept < i) {
+            bucket.subList(kept, i).clear();
+        }
+    }
+
+    private void removeExcessEventsFromStart(int bucketIndex, int max) {
+        List<Entry> bucket = mBuckets.get(bucketIndex);
+        int excessEvents = bucket.size() - Math.max(0, max);
+        if (excessEvents <= 0) return;
+        List<Entry> excess = bucket.subList(0, excessEvents);
+        for (Entry entry : excess) {
+            removeFromIndexes(entry);
+        }
+        excess.clear();
+    }
+
+    private void addToIndexes(Entry entry) {
+        if (entry.collapsingKey != null) {
+            List<Entry> entries = mCollapsedEntries.get(entry.collapsingKey);
+            if (entries == null) {
+                entries = new ArrayList<>(1);
+                mCollapsedEntries.put(entry.collapsingKey, entries);
+            }
+            entries.add(entry);
+        }
+        if (entry.bucket == BUCKET_UNCOLLAPSED) {
+            TypeIndex typeIndex = mUncollapsedTypeIndexes.get(entry.type);
+            if (typeIndex == null) {
+                typeIndex = new TypeIndex();
+                mUncollapsedTypeIndexes.put(entry.type, typeIndex);
+            }
+            typeIndex.add(entry);
+        }
+    }
+
+    private void removeFromIndexes(Entry entry) {
+        if (entry.collapsingKey != null) {
+            List<Entry> entries = mCollapsedEntries.get(entry.collapsingKey);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    mCollapsedEntries.remove(entry.collapsingKey);
+                }
+            }
+        }
+        if (entry.bucket == BUCKET_UNCOLLAPSED) {
+            TypeIndex typeIndex = mUncollapsedTypeIndexes.get(entry.type);
+            if (typeIndex != null) {
+                typeIndex.remove(entry);
+                if (typeIndex.isEmpty()) {
+                    mUncollapsedTypeIndexes.remove(entry.type);
+                }
+            }
+        }
+    }
+
+}
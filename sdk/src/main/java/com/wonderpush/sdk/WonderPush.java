@@ -1363,16 +1363,7 @@ public class WonderPush {
             }
         }
 
-        // Broadcast locally that an event was tracked
-        Intent eventTrackedIntent = new Intent(WonderPush.INTENT_EVENT_TRACKED);
-        eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_EVENT_TYPE, type);
-        if (customData != null) {
-            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_CUSTOM_DATA, customData.toString());
-        }
-        if (occurrencesJSON != null) {
-            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_OCCURRENCES, occurrencesJSON.toString());
-        }
-        LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(eventTrackedIntent);
+        notifyEventTracked(type, customData, occurrences, occurrencesJSON);
 
         getEventsBlackWhiteList((BlackWhiteList eventsBlackWhiteList, Throwable error) -> {
 
@@ -1435,16 +1426,7 @@ public class WonderPush {
             }
         }
 
-        // Broadcast locally that an event was tracked
-        Intent eventTrackedIntent = new Intent(WonderPush.INTENT_EVENT_TRACKED);
-        eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_EVENT_TYPE, type);
-        if (customData != null) {
-            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_CUSTOM_DATA, customData.toString());
-        }
-        if (occurrencesJSON != null) {
-            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_OCCURRENCES, occurrencesJSON.toString());
-        }
-        LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(eventTrackedIntent);
+        notifyEventTracked(type, customData, occurrences, occurrencesJSON);
 
         getEventsBlackWhiteList((BlackWhiteList eventsBlackWhiteList, Throwable error) -> {
 
@@ -1461,6 +1443,22 @@ public class WonderPush {
         });
     }
 
+    private static void notifyEventTracked(String type, JSONObject customData, WonderPushConfiguration.Occurrences occurrences, JSONObject occurrencesJSON) {
+        // Tell the SDK components that an event was tracked, without serializing it
+        TrackedEventBus.publish(new TrackedEventBus.TrackedEvent(type, customData, occurrences));
+
+        // Broadcast locally that an event was tracked, for the application
+        Intent eventTrackedIntent = new Intent(WonderPush.INTENT_EVENT_TRACKED);
+        eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_EVENT_TYPE, type);
+        if (customData != null) {
+            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_CUSTOM_DATA, customData.toString());
+        }
+        if (occurrencesJSON != null) {
+            eventTrackedIntent.putExtra(WonderPush.INTENT_EVENT_TRACKED_OCCURRENCES, occurrencesJSON.toString());
+        }
+        LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(eventTrackedIntent);
+    }
+
     private static JSONObject getEventObject(String type, JSONObject eventData, JSONObject customData) {
         JSONObject event = new JSONObject();
         if (eventData != null && eventData.length() > 0) {
@@ -1769,7 +1767,7 @@ public class WonderPush {
                     PushServiceManager.initialize(getApplicationContext());
                 }, 0);
                 setupDelegate();
-                RateLimiter.initialize(WonderPushConfiguration::getSharedPreferences);
+                RateLimiter.initialize(WonderPushConfiguration::getSharedPreferences, sScheduledExecutor);
                 safeDefer(WonderPushUserPreferences::initialize, 0);
                 // NOTE: Do not use safeDefer on methods relying on WonderPushUserPreferences
                 //       BEFORE this point.
@@ -1792,6 +1790,9 @@ public class WonderPush {
                         if (!JSONSyncInstallation.isDisabled()) JSONSyncInstallation.flushAll();
                         ApiClient.getInstance().setDisabled(configData.optBoolean(Constants.REMOTE_CONFIG_DISABLE_API_CLIENT_KEY, false));
                         MeasurementsApiClient.setDisabled(configData.optBoolean(Constants.REMOTE_CONFIG_DISABLE_MEASUREMENTS_API_CLIENT_KEY, false));
+                        WonderPushRequestVault.setEventsBatchLimits(
+                                configData.optInt(Constants.REMOTE_CONFIG_EVENTS_BATCH_MAXIMUM_COUNT_KEY, WonderPushRequestVault.DEFAULT_EVENTS_BATCH_MAX_COUNT),
+                                configData.optInt(Constants.REMOTE_CONFIG_EVENTS_BATCH_MAXIMUM_BYTES_KEY, WonderPushRequestVault.DEFAULT_EVENTS_BATCH_MAX_BYTES));
 
                         WonderPushConfiguration.setMaximumUncollapsedTrackedEventsAgeMs(configData.optLong(Constants.REMOTE_CONFIG_TRACKED_EVENTS_UNCOLLAPSED_MAXIMUM_AGE_MS_KEY, WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_AGE_MS));
                         WonderPushConfiguration.setMaximumUncollapsedTrackedEventsCount(configData.optInt(Constants.REMOTE_CONFIG_TRACKED_EVENTS_UNCOLLAPSED_MAXIMUM_COUNT_KEY, WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_COUNT));
@@ -1993,15 +1994,20 @@ public class WonderPush {
 
                 @Override
                 public void fetchInAppConfig(InAppMessaging.JSONObjectHandler handler) {
+                    fetchVersionedInAppConfig((JSONObject inAppConfig, String version, Throwable error) -> handler.handle(inAppConfig, error));
+                }
+
+                @Override
+                public void fetchVersionedInAppConfig(InAppMessaging.InAppConfigHandler handler) {
                     if (sRemoteConfigManager == null) {
-                        handler.handle(null, null);
+                        handler.handle(null, null, null);
                         return;
                     }
                     safeDeferWithConsent(new Runnable() {
                         @Override
                         public void run() {
                             sRemoteConfigManager.read((RemoteConfig config, Throwable error) -> {
-                                handler.handle(config != null ? config.getData().optJSONObject("inAppConfig") : null, error);
+                                handler.handle(config != null ? config.getData().optJSONObject("inAppConfig") : null, config != null ? config.getVersion() : null, error);
                             });
                         }
                     }, null);
@@ -2017,6 +2023,11 @@ public class WonderPush {
                 public PresenceManager getPresenceManager() {
                     return WonderPush.getPresenceManager();
                 }
+
+                @Override
+                public Location getLocation() {
+                    return WonderPush.getLocation();
+                }
             });
         }
         InAppMessagingDisplay.initialize(application, sInAppMessaging, WonderPush::safeDefer, WonderPush::trackInAppEvent, WonderPush::getUserAgent);
@@ -2902,6 +2913,12 @@ public class WonderPush {
         void call(BlackWhiteList list, Throwable error);
     }
 
+    private static BlackWhiteList getEventsBlackWhiteList(RemoteConfig config) {
+        if (config == null) return null;
+        // Parsed and compiled once per config, this is consulted for every tracked event
+        return config.getDerivedValue(REMOTE_CONFIG_EVENTS_BLACK_WHITE_LIST_KEY, WonderPush::parseEventsBlackWhiteList);
+    }
+
     private static BlackWhiteList parseEventsBlackWhiteList(RemoteConfig config) {
         if (config == null) return null;
         BlackWhiteList list = null;
@@ -2921,7 +2938,7 @@ public class WonderPush {
 
     private static void getEventsBlackWhiteList(EventsBlackWhiteListCallback callback) {
         getRemoteConfigManager().read((RemoteConfig config, Throwable error) -> {
-            if (callback != null) callback.call(parseEventsBlackWhiteList(config), error);
+            if (callback != null) callback.call(getEventsBlackWhiteList(config), error);
         });
     }
 
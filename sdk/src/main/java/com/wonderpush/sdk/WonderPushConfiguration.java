@@ -13,7 +13,7 @@ import org.json.JSONObject;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +54,8 @@ public class WonderPushConfiguration {
     private static final String CACHED_INSTALLATION_CUSTOM_PROPERTIES_UPDATED_DATE_PREF_NAME = "__cached_installation_custom_properties_updated_date";
     private static final String CACHED_INSTALLATION_CUSTOM_PROPERTIES_FIRST_DELAYED_WRITE_DATE_PREF_NAME = "__cached_installation_custom_properties_first_delayed_write_date";
     private static final String INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME = "__installation_sync_state_per_user_id";
+    private static final String INSTALLATION_CUSTOM_SYNC_STATE_USER_IDS_PREF_NAME = "__installation_sync_state_user_ids";
+    private static final String INSTALLATION_CUSTOM_SYNC_STATE_FOR_USER_ID_PREF_NAME_PREFIX = "__installation_sync_state_for_user_id_";
 
     private static final String GCM_REGISTRATION_ID_PREF_NAME = "__wonderpush_gcm_registration_id";
     private static final String CACHED_GCM_REGISTRATION_ID_PREF_DATE_NAME = "__wonderpush_gcm_registration_id_date";
@@ -95,7 +97,18 @@ public class WonderPushConfiguration {
     private static int maximumCollapsedOtherTrackedEventsCount = DEFAULT_MAXIMUM_COLLAPSED_OTHER_TRACKED_EVENTS_COUNT;
     private static int maximumUncollapsedTrackedEventsCount = DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_COUNT;
     private static long maximumUncollapsedTrackedEventsAgeMs = DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_AGE_MS;
-    private static WeakReference<List<JSONObject>> cachedTrackedEvents = new WeakReference<>(null);
+    /**
+     * Maximum length of the serialized tracked events for them to be held strongly in memory.
+     * Only bigger limits given by the remote config can exceed it, these are then held behind a weak reference.
+     */
+    private static final int MAXIMUM_STRONGLY_CACHED_TRACKED_EVENTS_LENGTH = 1024 * 1024;
+    private static TrackedEventsStore cachedTrackedEventsStore;
+    private static WeakReference<TrackedEventsStore> weaklyCachedTrackedEventsStore = new WeakReference<>(null);
+    private static long trackedEventsCacheHits;
+    private static long trackedEventsCacheMisses;
+    private static long trackedEventsParseTimeNanos;
+    /** Incremented whenever the tracked events change */
+    private static long trackedEventsGeneration;
 
     public static void initialize(Context context) {
         sContext = context.getApplicationContext();
@@ -190,6 +203,7 @@ public class WonderPushConfiguration {
         setCurrency(JSONUtil.optString(newUserArchive, CURRENCY_PREF_NAME));
         setLocale(JSONUtil.optString(newUserArchive, LOCALE_PREF_NAME));
         setTimeZone(JSONUtil.optString(newUserArchive, TIME_ZONE_PREF_NAME));
+        // Replaces the cached tracked events of the previous user
         JSONArray trackedEvents = newUserArchive.optJSONArray(STORED_TRACKED_EVENTS_PREF_NAME);
         if (trackedEvents == null) {
             try {
@@ -211,7 +225,7 @@ public class WonderPushConfiguration {
             usersArchive.remove(userId);
             putJSONObject(PER_USER_ARCHIVE_PREF_NAME, usersArchive);
         }
-        // Note: We do not touch INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME ourself
+        // Note: We do not touch INSTALLATION_CUSTOM_SYNC_STATE_*_PREF_NAME ourself
         // If we're working on the current user, clear the properties
         if (userId.equals(getUserId()) || getUserId() == null && userId.equals("")) {
             SharedPreferences prefs = getSharedPreferences();
@@ -242,6 +256,7 @@ public class WonderPushConfiguration {
                 editor.remove(STORED_TRACKED_EVENTS_PREF_NAME);
                 editor.apply();
             }
+            invalidateTrackedEventsCache();
         }
     }
 
@@ -255,6 +270,7 @@ public class WonderPushConfiguration {
             editor.remove(key);
         }
         editor.apply();
+        invalidateTrackedEventsCache();
     }
 
     static JSONObject dumpState() {
@@ -770,20 +786,73 @@ public class WonderPushConfiguration {
     }
 
     /**
-     * Get the saved state of installation custom sync for all users.
+     * Moves the saved states of installation custom sync of all users, formerly stored together,
+     * under the key of each user, and lists them in the index of users having a saved state.
+     * Does nothing if there is nothing to migrate.
      */
-    static JSONObject getInstallationCustomSyncStatePerUserId() {
-        return getJSONObject(INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME);
+    static void migrateInstallationCustomSyncStatePerUserId() {
+        SharedPreferences prefs = getSharedPreferences();
+        if (prefs == null || !prefs.contains(INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME)) return;
+        JSONObject installationCustomSyncStatePerUserId = getJSONObject(INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME);
+        if (installationCustomSyncStatePerUserId == null) installationCustomSyncStatePerUserId = new JSONObject();
+        JSONArray userIds = getInstallationCustomSyncStateUserIds();
+        Set<String> knownUserIds = new HashSet<>(JSONUtil.JSONArrayToList(userIds, String.class, true));
+        // A single edit, so that the migration either fully happens or is done again next time
+        SharedPreferences.Editor editor = prefs.edit();
+        Iterator<String> it = installationCustomSyncStatePerUserId.keys();
+        while (it.hasNext()) {
+            String userId = it.next();
+            JSONObject state = installationCustomSyncStatePerUserId.optJSONObject(userId);
+            if (state == null) continue;
+            // Never overwrite a state saved after a previous partial migration
+            if (knownUserIds.contains(userId)) continue;
+            editor.putString(INSTALLATION_CUSTOM_SYNC_STATE_FOR_USER_ID_PREF_NAME_PREFIX + userId, state.toString());
+            userIds.put(userId);
+            knownUserIds.add(userId);
+        }
+        editor.putString(INSTALLATION_CUSTOM_SYNC_STATE_USER_IDS_PREF_NAME, userIds.toString());
+        editor.remove(INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME);
+        editor.apply();
+    }
+
+    /**
+     * Get the list of users having a saved state of installation custom sync, the empty string meaning no user id.
+     */
+    static JSONArray getInstallationCustomSyncStateUserIds() {
+        JSONArray rtn = getJSONArray(INSTALLATION_CUSTOM_SYNC_STATE_USER_IDS_PREF_NAME);
+        return rtn != null ? rtn : new JSONArray();
     }
 
     /**
-     * Set the saved state of installation custom sync for all users.
+     * Set the list of users having a saved state of installation custom sync.
      *
-     * @param installationCustomSyncStatePerUserId
-     *            The saved state of installation custom sync for all users to be stored.
+     * @param userIds
+     *            The user ids to be stored, the empty string meaning no user id.
      */
-    static void setInstallationCustomSyncStatePerUserId(JSONObject installationCustomSyncStatePerUserId) {
-        putJSONObject(INSTALLATION_CUSTOM_SYNC_STATE_PER_USER_ID_PREF_NAME, installationCustomSyncStatePerUserId);
+    static void setInstallationCustomSyncStateUserIds(JSONArray userIds) {
+        putJSONArray(INSTALLATION_CUSTOM_SYNC_STATE_USER_IDS_PREF_NAME, userIds);
+    }
+
+    /**
+     * Get the saved state of installation custom sync for the given user.
+     */
+    static JSONObject getInstallationCustomSyncStateForUserId(String userId) {
+        if (userId == null) userId = "";
+        return getJSONObject(INSTALLATION_CUSTOM_SYNC_STATE_FOR_USER_ID_PREF_NAME_PREFIX + userId);
+    }
+
+    /**
+     * Set the saved state of installation custom sync for the given user.
+     * The user must also be listed using {@link #setInstallationCustomSyncStateUserIds(JSONArray)}.
+     *
+     * @param userId
+     *            The user id, null meaning no user id.
+     * @param installationCustomSyncState
+     *            The saved state of installation custom sync for this user to be stored.
+     */
+    static void setInstallationCustomSyncStateForUserId(String userId, JSONObject installationCustomSyncState) {
+        if (userId == null) userId = "";
+        putJSONObject(INSTALLATION_CUSTOM_SYNC_STATE_FOR_USER_ID_PREF_NAME_PREFIX + userId, installationCustomSyncState);
     }
 
 
@@ -1101,190 +1170,22 @@ public class WonderPushConfiguration {
 
     static @Nullable Occurrences rememberTrackedEvent(final JSONObject eventData) {
         // Note: It is assumed that the given event is more recent than any other already stored events
-
-        final String type = JSONUtil.getString(eventData, "type");
-        if (type == null) return null;
-        Occurrences occurrences = new Occurrences();
-
-        updateTrackedEvents(oldTrackedEvents -> {
-            long allTime = 0L;
-
-            String campaignId = JSONUtil.optString(eventData, "campaignId");
-            String collapsing = JSONUtil.optString(eventData, "collapsing");
-
-            int uncollapsedEventsCountEstimate = 0; // collapsing == null
-            int collapsedLastBuiltinEventsCountEstimate = 0; // collapsing.equals("last") && type.startsWith("@")
-            int collapsedLastCustomEventsCountEstimate = 0; // collapsing.equals("last") && !type.startsWith("@")
-            int collapsedOtherEventsCountEstimate = 0; // collapsing != null && !collapsing.equals("last") // ie. collapsing.equals("campaign"), as of this writing
-            for (JSONObject oldTrackedEvent : oldTrackedEvents) {
-                String oldTrackedEventCollapsing = JSONUtil.optString(oldTrackedEvent, "collapsing");
-                String oldTrackedEventType = oldTrackedEvent.optString("type");
-                if (oldTrackedEventCollapsing == null) {
-                    uncollapsedEventsCountEstimate++;
-                } else if ("last".equals(oldTrackedEventCollapsing)) {
-                    if (oldTrackedEventType.startsWith("@")) {
-                        collapsedLastBuiltinEventsCountEstimate++;
-                    } else {
-                        collapsedLastCustomEventsCountEstimate++;
-                    }
-                } else {
-                    collapsedOtherEventsCountEstimate++;
-                }
-            }
-            List<JSONObject> uncollapsedEvents = new ArrayList<>(uncollapsedEventsCountEstimate + 1); // collapsing == null
-            List<JSONObject> collapsedLastBuiltinEvents = new ArrayList<>(collapsedLastBuiltinEventsCountEstimate + 1); // collapsing.equals("last") && type.startsWith("@")
-            List<JSONObject> collapsedLastCustomEvents = new ArrayList<>(collapsedLastCustomEventsCountEstimate + 1); // collapsing.equals("last") && !type.startsWith("@")
-            List<JSONObject> collapsedOtherEvents = new ArrayList<>(collapsedOtherEventsCountEstimate + 1); // collapsing != null && !collapsing.equals("last") // ie. collapsing.equals("campaign"), as of this writing
-
-            long now = TimeSync.getTime();
-            long getMaximumUncollapsedTrackedEventsAgeMs = getMaximumUncollapsedTrackedEventsAgeMs();
-            for (JSONObject oldTrackedEvent : oldTrackedEvents) {
-                String oldTrackedEventCollapsing = JSONUtil.optString(oldTrackedEvent, "collapsing");
-                String oldTrackedEventType = oldTrackedEvent.optString("type");
-                // Filter out the collapsing=last event of the same type as the new event we want to add
-                if ((collapsing == null || "last".equals(collapsing)) && "last".equals(oldTrackedEventCollapsing) && type.equals(oldTrackedEventType)) {
-                    JSONObject occs = oldTrackedEvent.optJSONObject("occurrences");
-                    long occsAllTime = occs != null ? occs.optLong("allTime", 1L) : 1;
-                    allTime = Math.max(1, occsAllTime);
-                    continue;
-                }
-                // Filter out the collapsing=campaign event of the same type and campaign as the new event we want to add
-                if (campaignId != null && "campaign".equals(collapsing) && "campaign".equals(oldTrackedEventCollapsing) && type.equals(oldTrackedEventType) && campaignId.equals(oldTrackedEvent.optString("campaignId"))) {
-                    JSONObject occs = oldTrackedEvent.optJSONObject("occurrences");
-                    long occsAllTime = occs != null ? occs.optLong("allTime", 1L) : 1;
-                    allTime = Math.max(1, occsAllTime);
-                    continue;
-                }
-                // Filter out old uncollapsed events
-                if (oldTrackedEventCollapsing == null && now - oldTrackedEvent.optLong("actionDate", now) >= getMaximumUncollapsedTrackedEventsAgeMs) {
-                    continue;
-                }
-                // TODO We may want to filter out old collapsing=campaign (or any non-null value other than "last") events too
-                // Store the event in the proper, per-collapsing list
-                if (oldTrackedEventCollapsing == null) {
-                    uncollapsedEvents.add(oldTrackedEvent);
-                } else if ("last".equals(oldTrackedEventCollapsing)) {
-                    if (oldTrackedEventType.startsWith("@")) {
-                        collapsedLastBuiltinEvents.add(oldTrackedEvent);
-                    } else {
-                        collapsedLastCustomEvents.add(oldTrackedEvent);
-                    }
-                } else {
-                    collapsedOtherEvents.add(oldTrackedEvent);
-                }
-            }
-            oldTrackedEvents = null; // let GC collect this
-
-            // Add the new event, uncollapsed
-            JSONObject collapsedEventData = null;
-            JSONObject uncollapsedEventData = null;
-            if (collapsing == null) {
-                try {
-                    uncollapsedEventData = new JSONObject(eventData.toString());
-                    uncollapsedEvents.add(uncollapsedEventData);
-                } catch (JSONException e) {
-                    Log.e(WonderPush.TAG, "Could not store uncollapsed tracked event", e);
-                }
-            }
-
-            // Add the new event with collapsing
-            // We default to collapsing=last, but we otherwise keep any existing collapsing
-            try {
-                allTime += 1;
-                collapsedEventData = new JSONObject(eventData.toString());
-                if (collapsing == null) {
-                    collapsedEventData.put("collapsing", "last");
-                    collapsing = "last";
-                }
-                if ("last".equals(collapsing)) {
-                    if (type.startsWith("@")) {
-                        collapsedLastBuiltinEvents.add(collapsedEventData);
-                    } else {
-                        collapsedLastCustomEvents.add(collapsedEventData);
-                    }
-                } else {
-                    collapsedOtherEvents.add(collapsedEventData);
-                }
-            } catch (JSONException e) {
-                Log.e(WonderPush.TAG, "Could not store collapsed tracked event", e);
-            }
-
-            // Sort events by date
-            Comparator<? super JSONObject> eventActionDateComparator = (o1, o2) -> {
-                long delta = o1.optLong("actionDate", -1) - o2.optLong("actionDate", -1);
-                if (delta < 0) return -1;
-                if (delta > 0) return 1;
-                return 0;
-            };
-            WonderPushCompatibilityHelper.sort(uncollapsedEvents, eventActionDateComparator);
-            WonderPushCompatibilityHelper.sort(collapsedLastBuiltinEvents, eventActionDateComparator);
-            WonderPushCompatibilityHelper.sort(collapsedLastCustomEvents, eventActionDateComparator);
-            WonderPushCompatibilityHelper.sort(collapsedOtherEvents, eventActionDateComparator);
-
-            // Impose a limit on the maximum number of tracked events
-            uncollapsedEvents = removeExcessEventsFromStart(uncollapsedEvents, getMaximumUncollapsedTrackedEventsCount());
-            collapsedLastBuiltinEvents = removeExcessEventsFromStart(collapsedLastBuiltinEvents, getMaximumCollapsedLastBuiltinTrackedEventsCount());
-            collapsedLastCustomEvents = removeExcessEventsFromStart(collapsedLastCustomEvents, getMaximumCollapsedLastCustomTrackedEventsCount());
-            collapsedOtherEvents = removeExcessEventsFromStart(collapsedOtherEvents, getMaximumCollapsedOtherTrackedEventsCount());
-
-            long last1days = 0L, last3days = 0L, last7days = 0L, last15days = 0L, last30days = 0L, last60days = 0L, last90days = 0L;
-
-            // Reconstruct the whole list
-            List<JSONObject> storeTrackedEvents = new ArrayList<>(collapsedLastBuiltinEvents.size() + collapsedLastCustomEvents.size() + collapsedOtherEvents.size() + uncollapsedEvents.size());
-            storeTrackedEvents.addAll(collapsedLastBuiltinEvents);
-            storeTrackedEvents.addAll(collapsedLastCustomEvents);
-            storeTrackedEvents.addAll(collapsedOtherEvents);
-            storeTrackedEvents.addAll(uncollapsedEvents);
-            long uncollapsedCount = 0L;
-            for (JSONObject trackedEvent : uncollapsedEvents) {
-                String trackedEventType = trackedEvent.optString("type");
-                if (type.equals(trackedEventType)) {
-                    ++uncollapsedCount;
-                    long actionDate = trackedEvent.optLong("actionDate", now);
-                    long numberOfDaysSinceNow = (long) Math.floor((double) (now - actionDate) / 86400000d);
-                    if (numberOfDaysSinceNow <= 1) ++last1days;
-                    if (numberOfDaysSinceNow <= 3) ++last3days;
-                    if (numberOfDaysSinceNow <= 7) ++last7days;
-                    if (numberOfDaysSinceNow <= 15) ++last15days;
-                    if (numberOfDaysSinceNow <= 30) ++last30days;
-                    if (numberOfDaysSinceNow <= 60) ++last60days;
-                    if (numberOfDaysSinceNow <= 90) ++last90days;
-                }
-            }
-            collapsedLastBuiltinEvents = null; // let GC collect this
-            collapsedLastCustomEvents = null; // let GC collect this
-            collapsedOtherEvents = null; // let GC collect this
-            uncollapsedEvents = null; // let GC collect this
-
-            occurrences.allTime = Math.max(allTime, uncollapsedCount);
-            occurrences.last1days = last1days;
-            occurrences.last3days = last3days;
-            occurrences.last7days = last7days;
-            occurrences.last15days = last15days;
-            occurrences.last30days = last30days;
-            occurrences.last60days = last60days;
-            occurrences.last90days = last90days;
-
-            try {
-                if (collapsedEventData != null) {
-                    collapsedEventData.put("occurrences", occurrences.toJSON());
-                }
-                if (uncollapsedEventData != null) {
-                    uncollapsedEventData.put("occurrences", occurrences.toJSON());
-                }
-            } catch (JSONException e) {
-                Log.w(WonderPush.TAG, "Could not store occurrences", e);
-            }
-
-            // Store the new list
-            return storeTrackedEvents;
-        });
-        return occurrences;
-    }
-
-    private static <T> List<T> removeExcessEventsFromStart(List<T> list, int max) {
-        int excessEvents = list.size() - max;
-        return list.subList(Math.max(0, excessEvents), list.size());
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            TrackedEventsStore store = getTrackedEventsStore();
+            Occurrences occurrences = store.remember(eventData, TimeSync.getTime(), new TrackedEventsStore.Limits(
+                    getMaximumCollapsedLastBuiltinTrackedEventsCount(),
+                    getMaximumCollapsedLastCustomTrackedEventsCount(),
+                    getMaximumCollapsedOtherTrackedEventsCount(),
+                    getMaximumUncollapsedTrackedEventsCount(),
+                    getMaximumUncollapsedTrackedEventsAgeMs()));
+            if (occurrences == null) return null;
+            ++trackedEventsGeneration;
+            // Store the new list, only the new events are serialized
+            String storedTrackedEvents = store.toJSONString();
+            putString(STORED_TRACKED_EVENTS_PREF_NAME, storedTrackedEvents);
+            cacheTrackedEventsStore(store, storedTrackedEvents.length());
+            return occurrences;
+        }
     }
 
     static int getMaximumCollapsedLastBuiltinTrackedEventsCount() {
@@ -1329,10 +1230,11 @@ public class WonderPushConfiguration {
 
     static void setTrackedEvents(List<JSONObject> trackedEvents) {
         synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
-            if (trackedEvents != null) trackedEvents = Collections.unmodifiableList(trackedEvents);
-            cachedTrackedEvents = new WeakReference<>(trackedEvents);
-            JSONArray storedTrackedEvents = trackedEvents == null ? null : new JSONArray(trackedEvents);
-            putJSONArray(STORED_TRACKED_EVENTS_PREF_NAME, storedTrackedEvents);
+            ++trackedEventsGeneration;
+            TrackedEventsStore store = new TrackedEventsStore(trackedEvents != null ? trackedEvents : Collections.<JSONObject>emptyList());
+            String storedTrackedEvents = trackedEvents == null ? null : store.toJSONString();
+            putString(STORED_TRACKED_EVENTS_PREF_NAME, storedTrackedEvents);
+            cacheTrackedEventsStore(store, storedTrackedEvents == null ? 0 : storedTrackedEvents.length());
         }
     }
 
@@ -1342,17 +1244,93 @@ public class WonderPushConfiguration {
         }
     }
 
+    /**
+     * Returns an immutable snapshot of the tracked events.
+     *
+     * The returned list and events are shared by all callers until the tracked events change, they must not be modified.
+     */
     public static List<JSONObject> getTrackedEvents() {
         synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
-            List<JSONObject> result = cachedTrackedEvents.get();
+            return getTrackedEventsStore().getEvents();
+        }
+    }
+
+    /**
+     * Returns a counter that changes whenever the tracked events change.
+     * Read it before calling {@link #getTrackedEvents()} to know whether a snapshot is still up to date.
+     */
+    public static long getTrackedEventsGeneration() {
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            return trackedEventsGeneration;
+        }
+    }
+
+    private static TrackedEventsStore getTrackedEventsStore() {
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            TrackedEventsStore result = cachedTrackedEventsStore;
             if (result == null) {
-                result = getTrackedEventsFromStoredJSONArray(getJSONArray(STORED_TRACKED_EVENTS_PREF_NAME));
-                cachedTrackedEvents = new WeakReference<>(result);
+                result = weaklyCachedTrackedEventsStore.get();
             }
+            if (result != null) {
+                ++trackedEventsCacheHits;
+                return result;
+            }
+            ++trackedEventsCacheMisses;
+            long start = System.nanoTime();
+            String storedTrackedEvents = getString(STORED_TRACKED_EVENTS_PREF_NAME);
+            JSONArray storedTrackedEventsArray = null;
+            if (storedTrackedEvents != null) {
+                try {
+                    storedTrackedEventsArray = new JSONArray(storedTrackedEvents);
+                } catch (JSONException e) {
+                    Log.w(WonderPush.TAG, "Failed to decode json from preferences", e);
+                }
+            }
+            result = new TrackedEventsStore(getTrackedEventsFromStoredJSONArray(storedTrackedEventsArray));
+            long parseTimeNanos = System.nanoTime() - start;
+            trackedEventsParseTimeNanos += parseTimeNanos;
+            WonderPush.logDebug("Loaded " + result.size() + " tracked events in " + (parseTimeNanos / 1000000) + " ms");
+            cacheTrackedEventsStore(result, storedTrackedEvents == null ? 0 : storedTrackedEvents.length());
             return result;
         }
     }
 
+    private static void cacheTrackedEventsStore(TrackedEventsStore store, int storedLength) {
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            cachedTrackedEventsStore = storedLength <= MAXIMUM_STRONGLY_CACHED_TRACKED_EVENTS_LENGTH ? store : null;
+            weaklyCachedTrackedEventsStore = new WeakReference<>(store);
+        }
+    }
+
+    /**
+     * Drops the cached tracked events, they will be read again from the storage when next needed.
+     */
+    static void invalidateTrackedEventsCache() {
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            ++trackedEventsGeneration;
+            cachedTrackedEventsStore = null;
+            weaklyCachedTrackedEventsStore = new WeakReference<>(null);
+        }
+    }
+
+    /**
+     * Returns the tracked events cache counters, for debugging purposes.
+     */
+    static JSONObject getTrackedEventsCacheStats() {
+        synchronized (STORED_TRACKED_EVENTS_PREF_NAME) {
+            JSONObject rtn = new JSONObject();
+            try {
+                rtn.put("hits", trackedEventsCacheHits);
+                rtn.put("misses", trackedEventsCacheMisses);
+                rtn.put("parseTimeMs", trackedEventsParseTimeNanos / 1000000);
+                rtn.put("stronglyCached", cachedTrackedEventsStore != null);
+            } catch (JSONException e) {
+                Log.e(WonderPush.TAG, "Failed to serialize tracked events cache stats", e);
+            }
+            return rtn;
+        }
+    }
+
     static List<JSONObject> getTrackedEventsFromStoredJSONArray(JSONArray storedTrackedEvents) {
         if (storedTrackedEvents == null) {
             return Collections.emptyList();
@@ -1364,6 +1342,8 @@ public class WonderPushConfiguration {
             if (event == null) continue;
             if (!event.has("creationDate") && event.has("actionDate")) {
                 try {
+                    // Events stored by older SDK versions lack a creationDate, complete a copy to leave the given array untouched
+                    event = JSONUtil.shallowCopy(event);
                     event.putOpt("creationDate", event.opt("actionDate"));
                 } catch (JSONException ex) {
                     Log.w(WonderPush.TAG, "Unexpected exception while copying actionDate into creationDate", ex);
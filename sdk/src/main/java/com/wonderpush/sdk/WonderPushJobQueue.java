@@ -1,5 +1,6 @@
 package com.wonderpush.sdk;
 
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
@@ -7,13 +8,16 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 
 /**
- * A simple persistent job queue which saves itself on disk using SharedPreferences
+ * A simple persistent job queue which saves itself on disk using a {@link WonderPushJobQueueJournal}
  * and wraps an {@link ArrayBlockingQueue}.
  */
 class WonderPushJobQueue {
@@ -22,6 +26,8 @@ class WonderPushJobQueue {
 
     private static final int DEFAULT_CAPACITY = 32;
 
+    private static final String JOURNAL_DIRECTORY = "wonderpush_job_queues";
+
     /**
      * Queued objects.
      */
@@ -35,6 +41,15 @@ class WonderPushJobQueue {
 
     }
 
+    /**
+     * Decides whether a job can be taken.
+     */
+    protected interface JobFilter {
+
+        boolean accept(Job job);
+
+    }
+
     private static final WonderPushJobQueue sDefaultQueue = new WonderPushJobQueue("DefaultWonderPushJobQueue", DEFAULT_CAPACITY);
     private static final WonderPushJobQueue sMeasurementsApiQueue = new WonderPushJobQueue("WonderPushMeasurementsApiJobQueue", DEFAULT_CAPACITY);
 
@@ -50,6 +65,7 @@ class WonderPushJobQueue {
     }
     private final String mQueueName;
     private final PriorityBlockingQueue<Job> mQueue;
+    private WonderPushJobQueueJournal mJournal;
 
     /**
      * Creates a queue with the specified name
@@ -93,10 +109,12 @@ class WonderPushJobQueue {
      * @return The input job or null if something went wrong (the queue is full for instance)
      */
     protected Job post(Job job) {
+        // Journal first, so that a concurrent take cannot be journaled before its job
+        journalPut(job);
         if (mQueue.offer(job)) {
-            save();
             return job;
         } else {
+            journalTake(job);
             return null;
         }
     }
@@ -114,59 +132,113 @@ class WonderPushJobQueue {
      */
     protected Job nextJob() throws InterruptedException {
         Job job = mQueue.take();
-        save();
+        journalTake(job);
         return job;
     }
 
-    private String getPrefName() {
-        return String.format("_wonderpush_job_queue_%s", mQueueName);
+    /**
+     * Takes the next job if it is due and accepted by the filter, without blocking.
+     *
+     * @return The taken job or null
+     */
+    protected Job pollReadyJob(long nowRealtimeElapsed, JobFilter filter) {
+        Job head = mQueue.peek();
+        if (head == null || head.getNotBeforeRealtimeElapsed() > nowRealtimeElapsed || !filter.accept(head)) {
+            return null;
+        }
+        // A job may have been posted before the head in the meantime, make sure to take the examined one
+        if (!mQueue.remove(head)) {
+            return null;
+        }
+        journalTake(head);
+        return head;
     }
 
     /**
-     * Saves the job queue on disk.
+     * Name of the SharedPreferences key used to store the whole queue, prior to the journal.
      */
-    protected synchronized void save() {
+    private String getLegacyPrefName() {
+        return String.format("_wonderpush_job_queue_%s", mQueueName);
+    }
+
+    private synchronized WonderPushJobQueueJournal getJournal() {
+        if (mJournal == null) {
+            Context context = WonderPush.getApplicationContext();
+            if (context == null) return null;
+            File directory = new File(context.getFilesDir(), JOURNAL_DIRECTORY);
+            mJournal = new WonderPushJobQueueJournal(new File(directory, mQueueName + ".journal"));
+        }
+        return mJournal;
+    }
+
+    private void journalPut(Job job) {
+        if (!(job instanceof InternalJob)) return;
         try {
-            JSONArray jsonArray = new JSONArray();
-            for (Job job : mQueue) {
-                if (!(job instanceof InternalJob)) continue;
-                InternalJob internalJob = (InternalJob) job;
-                jsonArray.put(internalJob.toJSON());
+            WonderPushJobQueueJournal journal = getJournal();
+            if (journal == null) {
+                Log.e(TAG, "Could not save job " + job.getId() + ": not initialized");
+                return;
             }
-
-            SharedPreferences prefs = WonderPushConfiguration.getSharedPreferences();
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putString(getPrefName(), jsonArray.toString());
-            editor.apply();
+            journal.appendPut(job.getId(), ((InternalJob) job).toJSON());
         } catch (JSONException e) {
-            Log.e(TAG, "Could not save job queue", e);
+            Log.e(TAG, "Could not save job " + job.getId(), e);
+        } catch (Exception e) {
+            Log.e(TAG, "Could not save job " + job.getId(), e);
+        }
+    }
+
+    private void journalTake(Job job) {
+        if (!(job instanceof InternalJob)) return;
+        try {
+            WonderPushJobQueueJournal journal = getJournal();
+            if (journal == null) return;
+            journal.appendTake(job.getId());
         } catch (Exception e) {
-            Log.e(TAG, "Could not save job queue", e);
+            Log.e(TAG, "Could not save removal of job " + job.getId(), e);
         }
     }
 
     /**
      * Restores the job queue from its on-disk version.
+     *
+     * Jobs saved in SharedPreferences by previous versions are migrated into the journal.
      */
     protected synchronized void restore() {
         try {
+            WonderPushJobQueueJournal journal = getJournal();
+            if (journal == null) {
+                Log.e(TAG, "Could not restore job queue: not initialized");
+                return;
+            }
+            List<JSONObject> jobs = journal.load();
+
             SharedPreferences prefs = WonderPushConfiguration.getSharedPreferences();
-            String jsonString = prefs.getString(getPrefName(), "[]");
-            JSONArray jsonArray = new JSONArray(jsonString);
+            if (prefs != null && prefs.contains(getLegacyPrefName())) {
+                List<JSONObject> legacyJobs = new ArrayList<>();
+                try {
+                    JSONArray jsonArray = new JSONArray(prefs.getString(getLegacyPrefName(), "[]"));
+                    for (int i = 0; i < jsonArray.length(); i++) {
+                        JSONObject legacyJob = jsonArray.optJSONObject(i);
+                        if (legacyJob != null) legacyJobs.add(legacyJob);
+                    }
+                } catch (JSONException ex) {
+                    Log.e(TAG, "Could not migrate malformed job queue", ex);
+                }
+                jobs = journal.migrate(legacyJobs);
+                prefs.edit().remove(getLegacyPrefName()).apply();
+            }
 
             mQueue.clear();
 
-            for (int i = 0 ; i < jsonArray.length() ; i++) {
+            for (JSONObject jobJson : jobs) {
                 try {
-                    mQueue.add(new InternalJob(jsonArray.getJSONObject(i)));
+                    mQueue.add(new InternalJob(jobJson));
                 } catch (JSONException ex) {
                     Log.e(TAG, "Failed to restore malformed job", ex);
                 } catch (Exception ex) {
                     Log.e(TAG, "Unexpected error while restoring a job", ex);
                 }
             }
-        } catch (JSONException e) {
-            Log.e(TAG, "Could not restore job queue", e);
         } catch (Exception e) {
             Log.e(TAG, "Could not restore job queue", e);
         }
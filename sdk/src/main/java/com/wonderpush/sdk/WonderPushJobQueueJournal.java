@@ -0,0 +1,264 @@
+package com.wonderpush.sdk;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal file backing a {@link WonderPushJobQueue}.
+ *
+ * <p>
+ * Each line of the file is a JSON record, either {@code {"op":"put","job":{...}}} when a job is posted,
+ * or {@code {"op":"take","id":"..."}} when a job is taken out of the queue.
+ * Posting or taking a job therefore only costs the append of a single line,
+ * whatever the size of the queue.
+ * </p>
+ *
+ * <p>
+ * The file is compacted, by atomically rewriting it with only the live jobs,
+ * when loaded and whenever tombstones outnumber live jobs.
+ * </p>
+ */
+class WonderPushJobQueueJournal {
+
+    private static final String TAG = WonderPush.TAG;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String RECORD_OP = "op";
+    private static final String RECORD_OP_PUT = "put";
+    private static final String RECORD_OP_TAKE = "take";
+    private static final String RECORD_JOB = "job";
+    private static final String RECORD_ID = "id";
+
+    /**
+     * Minimum number of dead records before compacting the file.
+     */
+    private static final int COMPACTION_MIN_DEAD_RECORDS = 64;
+
+    private final File mFile;
+    private final LinkedHashMap<String, JSONObject> mLiveJobs = new LinkedHashMap<>();
+    private int mDeadRecords;
+    private Writer mWriter;
+
+    WonderPushJobQueueJournal(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Reads the journal file, and compacts it if it contains dead records.
+     *
+     * @return The serialized live jobs, in posting order.
+     */
+    synchronized List<JSONObject> load() {
+        closeWriter();
+        mLiveJobs.clear();
+        mDeadRecords = 0;
+        if (mFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mFile), UTF8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    try {
+                        applyRecord(new JSONObject(line));
+                    } catch (JSONException ex) {
+                        // Most likely a partially written last line, due to the process being killed
+                        Log.w(TAG, "Ignoring malformed job queue journal record", ex);
+                        // Compacting drops it, so that it cannot swallow the next appended record
+                        ++mDeadRecords;
+                    }
+                }
+            } catch (IOException ex) {
+                Log.e(TAG, "Could not read job queue journal " + mFile, ex);
+            }
+        }
+        if (mDeadRecords > 0) {
+            compact();
+        }
+        return new ArrayList<>(mLiveJobs.values());
+    }
+
+    /**
+     * Adds jobs not already known, ahead of the current ones, and compacts the file.
+     * Used to import jobs persisted by a previous storage format.
+     *
+     * @return The serialized live jobs, in posting order.
+     */
+    synchronized List<JSONObject> migrate(Collection<JSONObject> jobs) {
+        LinkedHashMap<String, JSONObject> merged = new LinkedHashMap<>();
+        for (JSONObject job : jobs) {
+            String id = job.optString("id", null);
+            if (id == null) continue;
+            merged.put(id, job);
+        }
+        for (Map.Entry<String, JSONObject> entry : mLiveJobs.entrySet()) {
+            if (!merged.containsKey(entry.getKey())) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        mLiveJobs.clear();
+        mLiveJobs.putAll(merged);
+        compact();
+        return new ArrayList<>(mLiveJobs.values());
+    }
+
+    /**
+     * Records a posted job.
+     */
+    synchronized void appendPut(String id, JSONObject job) {
+        try {
+            JSONObject record = new JSONObject();
+            record.put(RECORD_OP, RECORD_OP_PUT);
+            record.put(RECORD_JOB, job);
+            if (mLiveJobs.put(id, job) != null) {
+                // Re-posting an existing job makes its previous record dead
+                ++mDeadRecords;
+            }
+            append(record);
+        } catch (JSONException ex) {
+            Log.e(TAG, "Could not journal posted job " + id, ex);
+        }
+    }
+
+    /**
+     * Records a taken job.
+     */
+    synchronized void appendTake(String id) {
+        if (mLiveJobs.remove(id) == null) return;
+        try {
+            JSONObject record = new JSONObject();
+            record.put(RECORD_OP, RECORD_OP_TAKE);
+            record.put(RECORD_ID, id);
+            // Both the put record and this tombstone are now dead
+            mDeadRecords += 2;
+            append(record);
+        } catch (JSONException ex) {
+            Log.e(TAG, "Could not journal taken job " + id, ex);
+        }
+        if (mDeadRecords >= COMPACTION_MIN_DEAD_RECORDS && mDeadRecords > mLiveJobs.size()) {
+            compact();
+        }
+    }
+
+    private void applyRecord(JSONObject record) {
+        String op = record.optString(RECORD_OP);
+        if (RECORD_OP_PUT.equals(op)) {
+            JSONObject job = record.optJSONObject(RECORD_JOB);
+            String id = job == null ? null : job.optString("id", null);
+            if (id == null) {
+                ++mDeadRecords;
+                return;
+            }
+            if (mLiveJobs.put(id, job) != null) {
+                ++mDeadRecords;
+            }
+        } else if (RECORD_OP_TAKE.equals(op)) {
+            if (mLiveJobs.remove(record.optString(RECORD_ID)) != null) {
+                ++mDeadRecords;
+            }
+            ++mDeadRecords;
+        } else {
+            ++mDeadRecords;
+        }
+    }
+
+    private void append(JSONObject record) {
+        try {
+            if (mWriter == null) {
+                File parent = mFile.getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Could not create directory " + parent);
+                }
+                boolean unterminated = !endsWithNewline();
+                mWriter = new OutputStreamWriter(new FileOutputStream(mFile, true), UTF8);
+                if (unterminated) {
+                    // Terminate a partially written last line, should compacting it away have failed
+                    mWriter.write('\n');
+                }
+            }
+            mWriter.write(record.toString());
+            mWriter.write('\n');
+            mWriter.flush();
+        } catch (IOException ex) {
+            Log.e(TAG, "Could not append to job queue journal " + mFile, ex);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Whether the file is empty, missing, or ends with a complete line.
+     */
+    private boolean endsWithNewline() throws IOException {
+        if (!mFile.exists() || mFile.length() == 0) return true;
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "r")) {
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+
+    /**
+     * Atomically rewrites the file with only the live jobs.
+     */
+    private void compact() {
+        closeWriter();
+        if (mLiveJobs.isEmpty()) {
+            if (mFile.exists() && !mFile.delete()) {
+                Log.w(TAG, "Could not delete job queue journal " + mFile);
+            }
+            mDeadRecords = 0;
+            return;
+        }
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        try {
+            File parent = mFile.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile, false), UTF8)) {
+                for (JSONObject job : mLiveJobs.values()) {
+                    JSONObject record = new JSONObject();
+                    record.put(RECORD_OP, RECORD_OP_PUT);
+                    record.put(RECORD_JOB, job);
+                    writer.write(record.toString());
+                    writer.write('\n');
+                }
+            }
+            if (!tmpFile.renameTo(mFile)) {
+                throw new IOException("Could not rename " + tmpFile + " to " + mFile);
+            }
+            mDeadRecords = 0;
+        } catch (IOException | JSONException ex) {
+            Log.e(TAG, "Could not compact job queue journal " + mFile, ex);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+        }
+    }
+
+    private void closeWriter() {
+        if (mWriter == null) return;
+        try {
+            mWriter.close();
+        } catch (IOException ex) {
+            Log.w(TAG, "Could not close job queue journal " + mFile, ex);
+        }
+        mWriter = null;
+    }
+
+}
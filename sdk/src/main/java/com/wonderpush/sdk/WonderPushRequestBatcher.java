@@ -0,0 +1,173 @@
+package com.wonderpush.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces queued event requests into batched requests for the {@link WonderPushRequestVault}.
+ *
+ * <p>
+ * A batched request is a POST to the same resource as the coalesced requests,
+ * whose {@code body} parameter is the JSON array of their bodies.
+ * The server answers with a {@code results} array, aligned with the bodies,
+ * whose items are either a success or an object with an {@code error} like a regular API response.
+ * </p>
+ */
+class WonderPushRequestBatcher {
+
+    private static final String BODY_PARAM = "body";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final int mMaxCount;
+    private final int mMaxBytes;
+    private final List<Request> mRequests = new ArrayList<>();
+    private final JSONArray mBodies = new JSONArray();
+    private int mBytes;
+    private Request mAcceptedRequest;
+    private JSONObject mAcceptedBody;
+    private int mAcceptedBytes;
+
+    /**
+     * @param maxCount
+     *            Maximum number of requests in a batch, batching is disabled if less than 2
+     * @param maxBytes
+     *            Maximum cumulated size of the request bodies in a batch, in UTF-8 bytes
+     */
+    WonderPushRequestBatcher(int maxCount, int maxBytes) {
+        mMaxCount = maxCount;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Whether the given request is an event that can be part of a batch.
+     */
+    static boolean isBatchable(Request request) {
+        if (request == null || request.getMethod() != HttpMethod.POST) return false;
+        if (!"/events/".equals(request.getResource()) && !"/events".equals(request.getResource())) return false;
+        Request.Params params = request.getParams();
+        if (params == null) return false;
+        List<Request.BasicNameValuePair> pairs = params.getParamsList();
+        return pairs.size() == 1 && BODY_PARAM.equals(pairs.get(0).getName());
+    }
+
+    private static String getBody(Request request) {
+        return request.getParams().getParamsList().get(0).getValue();
+    }
+
+    /**
+     * Whether a request can be added to the batch.
+     *
+     * The first request is always accepted if batchable, the following ones only if they target
+     * the same user and resource, and fit within the count and bytes limits.
+     */
+    boolean accepts(Request request) {
+        if (!isBatchable(request)) return false;
+        String body = getBody(request);
+        int bytes = body.getBytes(UTF8).length;
+        if (!mRequests.isEmpty()) {
+            Request first = mRequests.get(0);
+            if (mRequests.size() >= mMaxCount) return false;
+            if (mBytes + bytes > mMaxBytes) return false;
+            if (!first.getResource().equals(request.getResource())) return false;
+            if (first.getUserId() == null ? request.getUserId() != null : !first.getUserId().equals(request.getUserId())) return false;
+        }
+        try {
+            mAcceptedBody = new JSONObject(body);
+        } catch (JSONException ex) {
+            return false;
+        }
+        mAcceptedRequest = request;
+        mAcceptedBytes = bytes;
+        return true;
+    }
+
+    /**
+     * Adds a request to the batch, that must have just been accepted.
+     */
+    void add(Request request) {
+        if (request != mAcceptedRequest) {
+            throw new IllegalStateException("Request must be accepted before being added");
+        }
+        mRequests.add(request);
+        mBodies.put(mAcceptedBody);
+        mBytes += mAcceptedBytes;
+        mAcceptedRequest = null;
+        mAcceptedBody = null;
+        mAcceptedBytes = 0;
+    }
+
+    /**
+     * Adds a request to the batch if it can be accepted.
+     *
+     * @return Whether the request was added
+     */
+    boolean offer(Request request) {
+        if (!accepts(request)) return false;
+        add(request);
+        return true;
+    }
+
+    /**
+     * Whether another request could still fit in the batch.
+     */
+    boolean isFull() {
+        return mRequests.size() >= mMaxCount || mBytes >= mMaxBytes;
+    }
+
+    List<Request> getRequests() {
+        return mRequests;
+    }
+
+    /**
+     * Builds the batched request for the accumulated requests.
+     *
+     * @return The batched request, or null if there are less than 2 requests
+     */
+    Request buildRequest() {
+        if (mRequests.size() < 2) return null;
+        Request.Params params = new Request.Params();
+        params.put(BODY_PARAM, mBodies.toString());
+        Request first = mRequests.get(0);
+        return new Request(first.getUserId(), HttpMethod.POST, first.getResource(), params, null);
+    }
+
+    /**
+     * Lists the requests of the batch that must be retried, given the response of the batched request.
+     *
+     * Items rejected with a transient error (server error or throttling) are retried,
+     * other rejected items are discarded, like a failed non-batched request would be.
+     * Items left without a result are retried, and so is the whole batch if the response has no results.
+     */
+    List<Request> getRequestsToRetry(Response response) {
+        List<Request> rtn = new ArrayList<>();
+        JSONObject json = response == null ? null : response.getJSONObject();
+        JSONArray results = json == null ? null : json.optJSONArray("results");
+        if (results == null) {
+            WonderPush.logDebug("RequestVault: no results for batch, retrying all its items: " + json);
+            rtn.addAll(mRequests);
+            return rtn;
+        }
+        for (int i = 0; i < mRequests.size(); i++) {
+            JSONObject result = results.optJSONObject(i);
+            if (result == null) {
+                rtn.add(mRequests.get(i));
+                continue;
+            }
+            Response itemResponse = new Response(result);
+            if (!itemResponse.isError()) continue;
+            int status = itemResponse.getErrorStatus();
+            if (status >= 500 || status == 429) {
+                rtn.add(mRequests.get(i));
+            } else {
+                WonderPush.logDebug("RequestVault: discarding rejected batch item: " + result);
+            }
+        }
+        return rtn;
+    }
+
+}
@@ -3,7 +3,11 @@ package com.wonderpush.sdk;
 import android.os.SystemClock;
 import android.util.Log;
 
+import org.json.JSONException;
+
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -24,6 +28,11 @@ class WonderPushRequestVault {
     private static int sWait = NORMAL_WAIT;
     private static final int MAX_PARALLEL_CALLS = 1;
     private static Semaphore sParallelCalls = new Semaphore(MAX_PARALLEL_CALLS);
+    static final int DEFAULT_EVENTS_BATCH_MAX_COUNT = 1; // batching is disabled unless enabled by the remote config
+    static final int DEFAULT_EVENTS_BATCH_MAX_BYTES = 64 * 1024;
+    private static volatile int sEventsBatchMaxCount = DEFAULT_EVENTS_BATCH_MAX_COUNT;
+    private static volatile int sEventsBatchMaxBytes = DEFAULT_EVENTS_BATCH_MAX_BYTES;
+    private static volatile boolean sEventsBatchRejected;
 
     private static final AtomicInteger threadCounter = new AtomicInteger(1);
     private final WonderPushJobQueue mJobQueue;
@@ -62,6 +71,43 @@ class WonderPushRequestVault {
         }
     }
 
+    /**
+     * Configures how many queued events, and how many bytes of event bodies, can be sent in a single request.
+     * A maximum count lower than 2 disables batching.
+     * Batching is tried again even if a batched request was rejected as a whole before.
+     */
+    static void setEventsBatchLimits(int maxCount, int maxBytes) {
+        sEventsBatchMaxCount = maxCount;
+        sEventsBatchMaxBytes = maxBytes;
+        sEventsBatchRejected = false;
+    }
+
+    /**
+     * Takes the following due jobs that can be sent along with the given request.
+     *
+     * @return The batch, or null if the request is to be sent alone
+     */
+    static WonderPushRequestBatcher collectBatch(WonderPushJobQueue jobQueue, Request request, int maxCount, int maxBytes, long nowRealtimeElapsed) {
+        if (maxCount < 2 || !WonderPushRequestBatcher.isBatchable(request)) return null;
+        final WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(maxCount, maxBytes);
+        if (!batcher.offer(request)) return null;
+        final Request[] candidateRequest = new Request[1];
+        while (!batcher.isFull()) {
+            WonderPushJobQueue.Job job = jobQueue.pollReadyJob(nowRealtimeElapsed, candidate -> {
+                try {
+                    candidateRequest[0] = new Request(candidate.getJobDescription());
+                } catch (JSONException e) {
+                    return false;
+                }
+                return batcher.accepts(candidateRequest[0]);
+            });
+            if (job == null) break;
+            batcher.add(candidateRequest[0]);
+        }
+        if (batcher.getRequests().size() < 2) return null;
+        return batcher;
+    }
+
     private Runnable getRunnable() {
         return new Runnable() {
             @Override
@@ -104,7 +150,14 @@ class WonderPushRequestVault {
                         // and we're it's sole consumer (although not enforced by the current code design)
                         final WonderPushJobQueue.Job job = mJobQueue.nextJob();
                         final Request request = new Request(job.getJobDescription());
-                        request.setHandler(new ResponseHandler() {
+                        final WonderPushRequestBatcher batcher = collectBatch(mJobQueue, request, sEventsBatchRejected ? 1 : sEventsBatchMaxCount, sEventsBatchMaxBytes, SystemClock.elapsedRealtime());
+                        final Request batchRequest = batcher == null ? null : batcher.buildRequest();
+                        final List<Request> requests = batchRequest == null ? Collections.singletonList(request) : batcher.getRequests();
+                        final Request executedRequest = batchRequest == null ? request : batchRequest;
+                        if (batchRequest != null) {
+                            WonderPush.logDebug("RequestVault: batching " + requests.size() + " requests");
+                        }
+                        executedRequest.setHandler(new ResponseHandler() {
                             @Override
                             public void onFailure(Throwable e, Response errorResponse) {
                                 WonderPush.logDebug("RequestVault: failure", e);
@@ -121,7 +174,18 @@ class WonderPushRequestVault {
                                 }
                                 if (handle) {
                                     WonderPush.logDebug("RequestVault: reposting job", e);
-                                    put(request, sWait);
+                                    // Batched requests are reposted individually, to be batched again later
+                                    for (Request repostedRequest : requests) {
+                                        put(repostedRequest, sWait);
+                                    }
+                                } else if (batcher != null) {
+                                    // The batch as a whole was rejected, possibly by a server that does not support batches,
+                                    // which tells nothing about its requests: send them one by one instead
+                                    WonderPush.logDebug("RequestVault: batched request rejected, sending its " + requests.size() + " requests one by one: " + errorResponse);
+                                    sEventsBatchRejected = true;
+                                    for (Request repostedRequest : requests) {
+                                        put(repostedRequest, 0);
+                                    }
                                 } else {
                                     WonderPush.logDebug("RequestVault: discarding job", e);
                                 }
@@ -132,14 +196,25 @@ class WonderPushRequestVault {
                             public void onSuccess(Response response) {
                                 WonderPush.logDebug("RequestVault: job done");
                                 resetBackoff();
+                                if (batcher != null) {
+                                    // Only repost the batched requests that were rejected
+                                    List<Request> repostedRequests = batcher.getRequestsToRetry(response);
+                                    if (!repostedRequests.isEmpty()) {
+                                        WonderPush.logDebug("RequestVault: reposting " + repostedRequests.size() + " rejected batched requests");
+                                        backoff();
+                                        for (Request repostedRequest : repostedRequests) {
+                                            put(repostedRequest, sWait);
+                                        }
+                                    }
+                                }
                                 sParallelCalls.release();
                             }
                         });
                         if (!WonderPush.hasUserConsent()) {
                             // This last resort check is not expected to catch any case but is here for strictness
-                            request.getHandler().onFailure(new RuntimeException("Missing user consent"), new Response("Missing user consent"));
+                            executedRequest.getHandler().onFailure(new RuntimeException("Missing user consent"), new Response("Missing user consent"));
                         } else {
-                            mRequestExecutor.execute(request);
+                            mRequestExecutor.execute(executedRequest);
                         }
                     } catch (InterruptedException ignored) {
                         sParallelCalls.release();
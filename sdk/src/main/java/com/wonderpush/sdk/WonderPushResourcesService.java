@@ -17,6 +17,8 @@ public class WonderPushResourcesService extends WonderPushJobIntentService {
 
     static final int JOB_ID = 0x64C2EAE9; // CRC32("WonderPushNotificationResourceFetcherAndDisplayerJobIntentService")
     static final long TIMEOUT_MS = 30 * 1000;
+    // Past this delay, the notification is displayed once its essential resources are fetched, and updated with the others later
+    static final long DISPLAY_DEADLINE_MS = 5 * 1000;
 
     public static void enqueueWork(Context context, Work work) {
         Intent intent = new Intent();
@@ -66,11 +68,13 @@ public class WonderPushResourcesService extends WonderPushJobIntentService {
             this.pushIntent = pushIntent;
         }
 
+        // Fields are written without their class name, and the notification only as its JSON string,
+        // which is parsed once when reading
         protected Work(Parcel in) {
-            notif = WonderPushCompatibilityHelper.parcelReadParcelable(in, getClass().getClassLoader(), NotificationModel.class);
+            notif = in.readInt() != 0 ? NotificationModel.CREATOR.createFromParcel(in) : null;
             tag = in.readString();
             localNotificationId = in.readInt();
-            pushIntent = WonderPushCompatibilityHelper.parcelReadParcelable(in, getClass().getClassLoader(), Intent.class);
+            pushIntent = in.readInt() != 0 ? Intent.CREATOR.createFromParcel(in) : null;
         }
 
         @Override
@@ -80,10 +84,19 @@ public class WonderPushResourcesService extends WonderPushJobIntentService {
 
         @Override
         public void writeToParcel(Parcel parcel, int i) {
-            parcel.writeParcelable(notif, 0);
+            writeNullable(parcel, notif);
             parcel.writeString(tag);
             parcel.writeInt(localNotificationId);
-            parcel.writeParcelable(pushIntent, 0);
+            writeNullable(parcel, pushIntent);
+        }
+
+        private static void writeNullable(Parcel parcel, Parcelable value) {
+            if (value == null) {
+                parcel.writeInt(0);
+            } else {
+                parcel.writeInt(1);
+                value.writeToParcel(parcel, 0);
+            }
         }
 
         public NotificationModel getNotif() {
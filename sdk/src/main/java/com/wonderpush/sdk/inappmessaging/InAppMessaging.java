@@ -15,6 +15,7 @@
 package com.wonderpush.sdk.inappmessaging;
 
 import android.app.Application;
+import android.location.Location;
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 
@@ -128,11 +129,30 @@ public class InAppMessaging {
     void handle(@Nullable JSONObject jsonObject, @Nullable Throwable error);
   }
 
+  public interface InAppConfigHandler {
+    void handle(@Nullable JSONObject inAppConfig, @Nullable String version, @Nullable Throwable error);
+  }
+
   public interface InAppMessagingDelegate {
     boolean inAppViewedReceipts();
     void fetchInAppConfig(JSONObjectHandler handler);
+
+    /**
+     * Fetches the in-app config along with the version of the configuration it is part of,
+     * so that anything derived from the in-app config can be reused until the version changes.
+     */
+    default void fetchVersionedInAppConfig(InAppConfigHandler handler) {
+      fetchInAppConfig((JSONObject inAppConfig, Throwable error) -> handler.handle(inAppConfig, null, error));
+    }
     void onReady(PrivateController privateController);
     PresenceManager getPresenceManager();
+
+    /**
+     * The last known location of the device, used by geo segments, or null.
+     */
+    default Location getLocation() {
+      return null;
+    }
   }
 
   /**
@@ -15,22 +15,17 @@
 package com.wonderpush.sdk.inappmessaging.display.internal.injection.modules;
 
 import android.app.Application;
-import android.net.TrafficStats;
-import android.os.Process;
 
 import com.squareup.picasso3.Picasso;
+import com.wonderpush.sdk.SharedOkHttpClient;
 import com.wonderpush.sdk.UserAgentProvider;
 import com.wonderpush.sdk.inappmessaging.display.internal.PicassoErrorListener;
 import com.wonderpush.sdk.inappmessaging.display.internal.injection.scopes.InAppMessagingScope;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 
 import dagger.Module;
 import dagger.Provides;
-import okhttp3.Call;
-import okhttp3.EventListener;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
@@ -46,7 +41,7 @@ public class PicassoModule {
       UserAgentProvider userAgentProvider
   ) {
     OkHttpClient client =
-        new OkHttpClient.Builder()
+        SharedOkHttpClient.get().newBuilder()
             .addInterceptor(
                 new Interceptor() {
                   @Override
@@ -59,12 +54,6 @@ public class PicassoModule {
                   }
                 }
             )
-            .eventListener(new EventListener() {
-                @Override
-                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
-                    TrafficStats.setThreadStatsTag(Process.myTid());
-                }
-            })
             .build();
 
     Picasso.Builder builder = new Picasso.Builder(application);
@@ -22,14 +22,14 @@ import android.content.IntentFilter;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import android.text.TextUtils;
 
-import com.wonderpush.sdk.WonderPush;
+import com.wonderpush.sdk.TrackedEventBus;
+import com.wonderpush.sdk.WonderPushConfiguration;
 import com.wonderpush.sdk.inappmessaging.internal.injection.scopes.InAppMessagingScope;
+import com.wonderpush.sdk.inappmessaging.internal.time.SystemClock;
 import com.wonderpush.sdk.inappmessaging.model.Campaign;
 import com.wonderpush.sdk.inappmessaging.model.CommonTypesProto;
 import com.wonderpush.sdk.inappmessaging.model.EventOccurrence;
-
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.wonderpush.sdk.remoteconfig.Constants;
 
 import java.util.HashSet;
 import java.util.List;
@@ -52,6 +52,7 @@ import io.reactivex.flowables.ConnectableFlowable;
 public class AnalyticsEventsManager {
   private final ConnectableFlowable<EventOccurrence> flowable;
   private Set<String> analyticsEventNames;
+  private final EventAdmission eventAdmission = new EventAdmission(new SystemClock());
   private Application application;
 
   @Inject
@@ -63,6 +64,15 @@ public class AnalyticsEventsManager {
     // We ignore the subscription since this connected flowable is expected to last the lifetime of
     // the app, but this calls the 'subscribe' method of the subscriber, which registers the handle
     flowable.connect();
+
+    // A new configuration can bring new triggers, admit every event until they are known
+    LocalBroadcastManager.getInstance(application)
+            .registerReceiver(new BroadcastReceiver() {
+              @Override
+              public void onReceive(Context context, Intent intent) {
+                eventAdmission.invalidateTriggers();
+              }
+            }, new IntentFilter(Constants.INTENT_REMOTE_CONFIG_UPDATED));
   }
 
   public ConnectableFlowable<EventOccurrence> getAnalyticsEventsFlowable() {
@@ -82,10 +92,48 @@ public class AnalyticsEventsManager {
     return analyticsEvents;
   }
 
+  //@VisibleForTesting
+  static Set<String> extractIamTriggerNames(List<Campaign> campaigns) {
+    Set<String> iamTriggers = new HashSet<>();
+    for (Campaign campaign : campaigns) {
+      for (CommonTypesProto.TriggeringCondition condition : campaign.getTriggeringConditions()) {
+        iamTriggers.add(condition.getIamTrigger().toString());
+      }
+    }
+    return iamTriggers;
+  }
+
   public void updateContextualTriggers(List<Campaign> campaigns) {
-    Logging.logd(
-            "Updating contextual triggers for the following analytics events: " + analyticsEventNames);
     analyticsEventNames = extractAnalyticsEventNames(campaigns);
+    Logging.logd(
+            "Updating contextual triggers for the following analytics events: " + analyticsEventNames
+            + " (admitted " + eventAdmission.getAdmittedCount() + " events, dropped " + eventAdmission.getDroppedCount() + ")");
+    // Tracked events named after a system trigger match it too
+    Set<String> admittedEventTypes = new HashSet<>(analyticsEventNames);
+    admittedEventTypes.addAll(extractIamTriggerNames(campaigns));
+    eventAdmission.setTriggers(admittedEventTypes);
+  }
+
+  /**
+   * Notes that the contextual triggers last updated are still those of the current campaigns.
+   */
+  public void confirmContextualTriggers() {
+    eventAdmission.confirmTriggers();
+  }
+
+  /**
+   * Whether a tracked event of the given type can trigger a campaign, and must go through the in-app message pipeline.
+   */
+  public boolean admitAnalyticsEvent(String eventType) {
+    return eventAdmission.admit(eventType);
+  }
+
+  public long getAdmittedAnalyticsEventsCount() {
+    return eventAdmission.getAdmittedCount();
+  }
+
+  public long getDroppedAnalyticsEventsCount() {
+    return eventAdmission.getDroppedCount();
   }
 
   private class AnalyticsFlowableSubscriber implements FlowableOnSubscribe<EventOccurrence> {
@@ -95,26 +143,18 @@ public class AnalyticsEventsManager {
     @Override
     public void subscribe(FlowableEmitter<EventOccurrence> emitter) {
       Logging.logd("Subscribing to analytics events.");
-      LocalBroadcastManager.getInstance(application)
-              .registerReceiver(new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                  String eventType = intent.getStringExtra(WonderPush.INTENT_EVENT_TRACKED_EVENT_TYPE);
-                  EventOccurrence occurrence = new EventOccurrence();
-                  occurrence.eventType = eventType;
-                  occurrence.allTimeOccurrences = 0L;
-                  String occurrencesJSONString = intent.getStringExtra(WonderPush.INTENT_EVENT_TRACKED_OCCURRENCES);
-                  if (occurrencesJSONString != null) {
-                    try {
-                      JSONObject occurrencesJSON = new JSONObject(occurrencesJSONString);
-                      occurrence.allTimeOccurrences = occurrencesJSON.optLong("allTime", 1L);
-                    } catch (JSONException e) {
-                      Logging.loge("Could not read occurrences data", e);
-                    }
-                  }
-                  emitter.onNext(occurrence);
-                }
-              }, new IntentFilter(WonderPush.INTENT_EVENT_TRACKED));
+      // Events are tracked from any thread
+      FlowableEmitter<EventOccurrence> serializedEmitter = emitter.serialize();
+      TrackedEventBus.subscribe(event -> {
+        EventOccurrence occurrence = new EventOccurrence();
+        occurrence.eventType = event.getType();
+        occurrence.allTimeOccurrences = 0L;
+        WonderPushConfiguration.Occurrences occurrences = event.getOccurrences();
+        if (occurrences != null) {
+          occurrence.allTimeOccurrences = occurrences.allTime != null ? occurrences.allTime : 1L;
+        }
+        serializedEmitter.onNext(occurrence);
+      });
     }
   }
 }
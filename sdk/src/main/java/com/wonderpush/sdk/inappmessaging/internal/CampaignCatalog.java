@@ -0,0 +1,97 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+
+import com.wonderpush.sdk.inappmessaging.model.Campaign;
+import com.wonderpush.sdk.inappmessaging.model.CommonTypesProto.TriggeringCondition;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The campaigns of an in-app config, decoded once, and indexed by the events that can trigger them.
+ *
+ * <p>
+ * A campaign is indexed under the name of the {@code IamTrigger} and the analytics event name of each of its
+ * triggering conditions, so that an event only needs to consider the campaigns that can actually fire for it.
+ * </p>
+ */
+class CampaignCatalog {
+
+  private final String version;
+  private final List<Campaign> campaigns;
+  private final Map<String, List<Campaign>> campaignsByTrigger;
+
+  private CampaignCatalog(@Nullable String version, List<Campaign> campaigns) {
+    this.version = version;
+    this.campaigns = Collections.unmodifiableList(campaigns);
+    Map<String, List<Campaign>> index = new HashMap<>();
+    for (Campaign campaign : campaigns) {
+      Set<String> triggers = new HashSet<>();
+      for (TriggeringCondition condition : campaign.getTriggeringConditions()) {
+        triggers.add(condition.getIamTrigger().toString());
+        if (condition.getEvent() != null && condition.getEvent().getName() != null) {
+          triggers.add(condition.getEvent().getName());
+        }
+      }
+      for (String trigger : triggers) {
+        List<Campaign> candidates = index.get(trigger);
+        if (candidates == null) {
+          candidates = new ArrayList<>();
+          index.put(trigger, candidates);
+        }
+        candidates.add(campaign);
+      }
+    }
+    this.campaignsByTrigger = index;
+  }
+
+  /**
+   * Decodes the campaigns of the given in-app config.
+   *
+   * @param inAppConfig The in-app config, null meaning no campaigns
+   * @param version The version of the configuration the in-app config is part of, null if unknown
+   */
+  static CampaignCatalog fromInAppConfig(@Nullable JSONObject inAppConfig, @Nullable String version) {
+    JSONArray campaignsJson = inAppConfig != null ? inAppConfig.optJSONArray("campaigns") : null;
+    List<Campaign> campaigns = new ArrayList<>();
+    for (int i = 0; campaignsJson != null && i < campaignsJson.length(); i++) {
+      JSONObject campaignJson = campaignsJson.optJSONObject(i);
+      if (campaignJson == null) continue;
+      Campaign campaign = Campaign.fromJSON(campaignJson);
+      if (campaign != null) campaigns.add(campaign);
+    }
+    return new CampaignCatalog(version, campaigns);
+  }
+
+  /**
+   * Whether this catalog can be reused for the in-app config of the given version.
+   */
+  boolean isUpToDate(@Nullable String version) {
+    return version != null && version.equals(this.version);
+  }
+
+  /**
+   * All the campaigns, in config order.
+   */
+  List<Campaign> getCampaigns() {
+    return campaigns;
+  }
+
+  /**
+   * The campaigns having a triggering condition on the given event, in config order.
+   * Their other triggering criteria, like the minimum number of occurrences, remain to be checked.
+   */
+  List<Campaign> getCandidates(String eventType) {
+    List<Campaign> rtn = eventType == null ? null : campaignsByTrigger.get(eventType);
+    return rtn != null ? Collections.unmodifiableList(rtn) : Collections.<Campaign>emptyList();
+  }
+}
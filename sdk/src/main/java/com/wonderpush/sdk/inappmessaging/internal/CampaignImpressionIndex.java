@@ -0,0 +1,91 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+
+import com.wonderpush.sdk.inappmessaging.model.CampaignImpression;
+import com.wonderpush.sdk.inappmessaging.model.CampaignImpressionList;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable index of the stored impressions by campaign id, to check the capping of campaigns in constant time.
+ *
+ * <p>
+ * Campaigns keep the order of the storage, so that saving the index gives the same list as before.
+ * </p>
+ */
+class CampaignImpressionIndex {
+
+    static final CampaignImpressionIndex EMPTY = new CampaignImpressionIndex(Collections.emptyMap());
+
+    private final Map<String, CampaignImpression> impressionsByCampaignId;
+
+    private CampaignImpressionIndex(Map<String, CampaignImpression> impressionsByCampaignId) {
+        this.impressionsByCampaignId = impressionsByCampaignId;
+    }
+
+    static CampaignImpressionIndex fromCampaignImpressionList(@Nullable CampaignImpressionList campaignImpressions) {
+        if (campaignImpressions == null) return EMPTY;
+        Map<String, CampaignImpression> impressions = new LinkedHashMap<>();
+        for (CampaignImpression impression : campaignImpressions.getCampaignImpressionList()) {
+            String campaignId = impression.getCampaignId();
+            if (campaignId != null && !impressions.containsKey(campaignId)) {
+                impressions.put(campaignId, impression);
+            }
+        }
+        return new CampaignImpressionIndex(Collections.unmodifiableMap(impressions));
+    }
+
+    CampaignImpressionList toCampaignImpressionList() {
+        CampaignImpressionList rtn = new CampaignImpressionList();
+        for (CampaignImpression impression : impressionsByCampaignId.values()) {
+            rtn.addAlreadySeenCampaigns(impression);
+        }
+        return rtn;
+    }
+
+    boolean isEmpty() {
+        return impressionsByCampaignId.isEmpty();
+    }
+
+    @Nullable
+    CampaignImpression get(String campaignId) {
+        return impressionsByCampaignId.get(campaignId);
+    }
+
+    /**
+     * Returns a new index with one more impression of the given campaign, collapsing impressions by campaign id.
+     */
+    CampaignImpressionIndex withImpression(String campaignId, long impressionTimestampMillis) {
+        CampaignImpression impression = new CampaignImpression();
+        impression.setImpressionCount(1);
+        impression.setCampaignId(campaignId);
+        impression.setImpressionTimestampMillis(impressionTimestampMillis);
+        Map<String, CampaignImpression> impressions = new LinkedHashMap<>(impressionsByCampaignId);
+        CampaignImpression previousImpression = impressions.get(campaignId);
+        if (previousImpression != null) {
+            impression.setImpressionCount(impression.getImpressionCount() + previousImpression.getImpressionCount());
+        }
+        // Keeps the position of an already impressed campaign
+        impressions.put(campaignId, impression);
+        return new CampaignImpressionIndex(Collections.unmodifiableMap(impressions));
+    }
+
+    /**
+     * Whether the campaign reached its maximum impressions, or was impressed too recently.
+     */
+    boolean isCapped(@Nullable String campaignId, long maxImpressions, long snoozeTime, long now) {
+        if (campaignId == null) return false;
+        CampaignImpression impression = impressionsByCampaignId.get(campaignId);
+        if (impression == null) return false;
+        // enforce maxImpressions
+        if (impression.getImpressionCount() >= maxImpressions) {
+            return true;
+        }
+        // enforce snooze
+        return now - impression.getImpressionTimestampMillis() < snoozeTime;
+    }
+
+}
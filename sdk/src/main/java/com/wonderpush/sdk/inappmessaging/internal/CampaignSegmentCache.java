@@ -0,0 +1,97 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+
+import com.wonderpush.sdk.segmentation.CompiledSegment;
+import com.wonderpush.sdk.segmentation.Segmenter;
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the parsed and compiled installation segment of each campaign, keyed by campaign id,
+ * for as long as the in-app config version does not change.
+ *
+ * <p>
+ * Unparsable segments are cached too, so they are only reported once per config version.
+ * </p>
+ */
+class CampaignSegmentCache {
+
+  private static class Entry {
+    /** Null if the segment could not be parsed */
+    final ASTCriterionNode parsedSegment;
+    /** Null if the segment could not be parsed */
+    final CompiledSegment compiledSegment;
+
+    Entry(ASTCriterionNode parsedSegment) {
+      this.parsedSegment = parsedSegment;
+      this.compiledSegment = parsedSegment == null ? null : Segmenter.compileInstallationSegment(parsedSegment);
+    }
+  }
+
+  private String configVersion;
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  /**
+   * Declares the version of the in-app config the campaigns come from.
+   * Changing the version drops every cached segment.
+   *
+   * @param version The in-app config version, or null if unknown, in which case nothing stays cached
+   */
+  synchronized void setConfigVersion(@Nullable String version) {
+    if (version == null || !version.equals(configVersion)) {
+      entries.clear();
+    }
+    configVersion = version;
+  }
+
+  /**
+   * Returns the parsed installation segment of a campaign, parsing it only if not already cached.
+   *
+   * @param campaignId The campaign id, the segment is not cached if null
+   * @param segment The segment of the campaign
+   * @return The parsed segment, or null if it could not be parsed
+   */
+  synchronized @Nullable ASTCriterionNode getParsedSegment(@Nullable String campaignId, JSONObject segment) {
+    return getEntry(campaignId, segment).parsedSegment;
+  }
+
+  /**
+   * Returns the compiled installation segment of a campaign, parsing and compiling it only if not already cached.
+   *
+   * @param campaignId The campaign id, the segment is not cached if null
+   * @param segment The segment of the campaign
+   * @return The compiled segment, or null if it could not be parsed
+   */
+  synchronized @Nullable CompiledSegment getCompiledSegment(@Nullable String campaignId, JSONObject segment) {
+    return getEntry(campaignId, segment).compiledSegment;
+  }
+
+  private Entry getEntry(@Nullable String campaignId, JSONObject segment) {
+    Entry entry = campaignId == null ? null : entries.get(campaignId);
+    if (entry == null) {
+      entry = new Entry(parse(segment));
+      if (campaignId != null && configVersion != null) {
+        entries.put(campaignId, entry);
+      }
+    }
+    return entry;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private static ASTCriterionNode parse(JSONObject segment) {
+    try {
+      return Segmenter.parseInstallationSegment(segment);
+    } catch (Exception e) {
+      Logging.loge(String.format("Could not parse segment %s", segment.toString()), e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+
+import com.wonderpush.sdk.inappmessaging.internal.time.Clock;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which tracked events enter the in-app message pipeline.
+ *
+ * <p>
+ * Only the events whose type can match a triggering condition of the current campaigns are admitted.
+ * Every event is admitted while these types are unknown, that is before the campaigns are first decoded,
+ * after the configuration was updated, or when they were not confirmed for {@link #MAX_TRIGGERS_AGE} ms,
+ * so that a configuration change is never missed for long.
+ * </p>
+ */
+class EventAdmission {
+
+  static final long MAX_TRIGGERS_AGE = 60 * 1000;
+
+  private static class Triggers {
+    final Set<String> eventTypes;
+    final long confirmationTime;
+    final boolean stale;
+
+    Triggers(Set<String> eventTypes, long confirmationTime, boolean stale) {
+      this.eventTypes = eventTypes;
+      this.confirmationTime = confirmationTime;
+      this.stale = stale;
+    }
+  }
+
+  private final Clock clock;
+  private volatile Triggers triggers;
+  private final AtomicLong admittedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  EventAdmission(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Sets the event types that can trigger a campaign.
+   */
+  void setTriggers(Set<String> eventTypes) {
+    triggers = new Triggers(Collections.unmodifiableSet(new HashSet<>(eventTypes)), clock.now(), false);
+  }
+
+  /**
+   * Notes that the event types last set are still those of the current configuration.
+   */
+  void confirmTriggers() {
+    Triggers current = triggers;
+    if (current != null) triggers = new Triggers(current.eventTypes, clock.now(), false);
+  }
+
+  /**
+   * Admits every event until the event types are set or confirmed again.
+   */
+  void invalidateTriggers() {
+    Triggers current = triggers;
+    if (current != null) triggers = new Triggers(current.eventTypes, current.confirmationTime, true);
+  }
+
+  boolean admit(@Nullable String eventType) {
+    Triggers current = triggers;
+    long age = current == null ? 0 : clock.now() - current.confirmationTime;
+    boolean admitted = eventType == null
+        || current == null
+        || current.stale
+        || age < 0 || age > MAX_TRIGGERS_AGE // also admit when the clock went back
+        || current.eventTypes.contains(eventType);
+    (admitted ? admittedCount : droppedCount).incrementAndGet();
+    return admitted;
+  }
+
+  long getAdmittedCount() {
+    return admittedCount.get();
+  }
+
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+}
@@ -19,6 +19,9 @@ import com.wonderpush.sdk.inappmessaging.model.Campaign;
 import com.wonderpush.sdk.inappmessaging.model.CampaignImpression;
 import com.wonderpush.sdk.inappmessaging.model.CampaignImpressionList;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -29,55 +32,47 @@ import io.reactivex.Single;
 /**
  * Class to store and retrieve in app message impressions
  *
+ * <p>The impressions are read from the file storage once, and indexed by campaign id.
+ * The index is replaced on every impression, so that capping checks can read it without locking.
+ *
  * @hide
  */
 @Singleton
 public class ImpressionStorageClient {
   private final ProtoStorageClient storageClient;
-  private Maybe<CampaignImpressionList> cachedImpressionsMaybe = Maybe.empty();
+  /** {@code null} until read from the storage */
+  private volatile CampaignImpressionIndex impressionIndex;
 
   @Inject
   ImpressionStorageClient(@ImpressionStore ProtoStorageClient storageClient) {
     this.storageClient = storageClient;
   }
 
-  private static CampaignImpressionList appendImpression(
-      CampaignImpressionList campaignImpressions, CampaignImpression impression) {
-    CampaignImpressionList rtn = new CampaignImpressionList(campaignImpressions);
-    // Collapse impressions by campaign ID
-    boolean campaignIdFound = false;
-    String campaignId = impression.getCampaignId();
-    for (int i = 0; i < rtn.getAlreadySeenCampaignsCount(); i++) {
-      CampaignImpression currentImpression = rtn.getAlreadySeenCampaigns(i);
-      if (campaignId != null && campaignId.equals(currentImpression.getCampaignId())) {
-        campaignIdFound = true;
-        impression.setImpressionCount(impression.getImpressionCount() + currentImpression.getImpressionCount());
-        rtn.setAlreadySeenCampaigns(i, impression);
-        break;
+  private CampaignImpressionIndex getImpressionIndex() {
+    CampaignImpressionIndex rtn = impressionIndex;
+    if (rtn != null) return rtn;
+    synchronized (this) {
+      if (impressionIndex == null) {
+        impressionIndex = CampaignImpressionIndex.fromCampaignImpressionList(
+            storageClient.read(CampaignImpressionList.class).blockingGet());
       }
+      return impressionIndex;
     }
-    if (!campaignIdFound) {
-      rtn.addAlreadySeenCampaigns(impression);
-    }
-    return rtn;
   }
 
   /** Stores the provided {@link CampaignImpression} to file storage */
   public Completable storeImpression(String campaignId) {
-    CampaignImpression impression = new CampaignImpression();
-    impression.setImpressionCount(1);
-    impression.setCampaignId(campaignId);
-    impression.setImpressionTimestampMillis(System.currentTimeMillis());
-    return getAllImpressions()
-        .defaultIfEmpty(new CampaignImpressionList())
-        .flatMapCompletable(
-            storedImpressions -> {
-              CampaignImpressionList appendedImpressions =
-                  appendImpression(storedImpressions, impression);
-              return storageClient
-                  .write(appendedImpressions)
-                  .doOnComplete(() -> initInMemCache(appendedImpressions));
-            });
+    long impressionTimestampMillis = System.currentTimeMillis();
+    return Completable.fromAction(
+        () -> {
+          if (campaignId == null) return;
+          synchronized (this) {
+            CampaignImpressionIndex appendedImpressions =
+                getImpressionIndex().withImpression(campaignId, impressionTimestampMillis);
+            storageClient.write(appendedImpressions.toCampaignImpressionList()).blockingAwait();
+            impressionIndex = appendedImpressions;
+          }
+        });
   }
 
   /**
@@ -87,40 +82,40 @@ public class ImpressionStorageClient {
    * corrupt.
    */
   public Maybe<CampaignImpressionList> getAllImpressions() {
-    return cachedImpressionsMaybe
-        .switchIfEmpty(
-            storageClient.read(CampaignImpressionList.class).doOnSuccess(this::initInMemCache))
-        .doOnError(ignored -> clearInMemCache());
+    return Maybe.fromCallable(
+        () -> {
+          CampaignImpressionIndex index = getImpressionIndex();
+          return index.isEmpty() ? null : index.toCampaignImpressionList();
+        });
   }
 
-  private void initInMemCache(CampaignImpressionList campaignImpressions) {
-    cachedImpressionsMaybe = Maybe.just(campaignImpressions);
+  /** Returns {@code Single.just(true)} if the campaign has been impressed */
+  public Single<Boolean> isCapped(Campaign campaign) {
+    return Single.fromCallable(
+        () -> isCapped(getImpressionIndex(), campaign, System.currentTimeMillis()));
   }
 
-  private void clearInMemCache() {
-    cachedImpressionsMaybe = Maybe.empty();
+  /**
+   * Returns the ids of the given campaigns that are capped, reading the impressions only once for the whole batch.
+   */
+  public Single<Set<String>> getCappedCampaignIds(Iterable<Campaign> campaigns) {
+    return Single.fromCallable(
+        () -> {
+          CampaignImpressionIndex index = getImpressionIndex();
+          long now = System.currentTimeMillis();
+          Set<String> rtn = new HashSet<>();
+          if (index.isEmpty()) return rtn;
+          for (Campaign campaign : campaigns) {
+            if (isCapped(index, campaign, now)) {
+              rtn.add(campaign.getNotificationMetadata().getCampaignId());
+            }
+          }
+          return rtn;
+        });
   }
 
-  /** Returns {@code Single.just(true)} if the campaign has been impressed */
-  public Single<Boolean> isCapped(Campaign campaign) {
-    String campaignId = campaign.getNotificationMetadata().getCampaignId();
-    CampaignImpressionList campaignImpressionList = getAllImpressions().blockingGet();
-    long now = System.currentTimeMillis();
-    if (campaignId != null && campaignImpressionList != null) {
-      for (CampaignImpression impression : campaignImpressionList.getCampaignImpressionList()) {
-        if (campaignId.equals(impression.getCampaignId())) {
-          // enforce maxImpressions
-          if (impression.getImpressionCount() >= campaign.getCapping().getMaxImpressions()) {
-            return Single.just(true);
-          }
-          // enforce snooze
-          if (now - impression.getImpressionTimestampMillis() <  campaign.getCapping().getSnoozeTime()) {
-            return Single.just(true);
-          }
-          break;
-        }
-      }
-    }
-    return Single.just(false);
+  private static boolean isCapped(CampaignImpressionIndex index, Campaign campaign, long now) {
+    Campaign.Capping capping = campaign.getCapping();
+    return index.isCapped(campaign.getNotificationMetadata().getCampaignId(), capping.getMaxImpressions(), capping.getSnoozeTime(), now);
   }
 }
@@ -14,10 +14,6 @@
 
 package com.wonderpush.sdk.inappmessaging.internal;
 
-import com.wonderpush.sdk.JSONSyncInstallation;
-import com.wonderpush.sdk.PresenceManager;
-import com.wonderpush.sdk.WonderPush;
-import com.wonderpush.sdk.WonderPushConfiguration;
 import com.wonderpush.sdk.inappmessaging.InAppMessaging;
 import com.wonderpush.sdk.inappmessaging.internal.injection.qualifiers.AppForeground;
 import com.wonderpush.sdk.inappmessaging.internal.injection.qualifiers.ProgrammaticTrigger;
@@ -27,22 +23,23 @@ import com.wonderpush.sdk.inappmessaging.model.*;
 import com.wonderpush.sdk.inappmessaging.model.Campaign;
 import com.wonderpush.sdk.inappmessaging.model.CommonTypesProto.TriggeringCondition;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import javax.inject.Inject;
 
+import com.wonderpush.sdk.TimeSync;
 import com.wonderpush.sdk.ratelimiter.RateLimit;
 import com.wonderpush.sdk.ratelimiter.RateLimiter;
+import com.wonderpush.sdk.segmentation.CompiledSegment;
 import com.wonderpush.sdk.segmentation.Segmenter;
 import com.wonderpush.sdk.segmentation.parser.*;
 import io.reactivex.Flowable;
 import io.reactivex.Maybe;
-import io.reactivex.Single;
 import io.reactivex.flowables.ConnectableFlowable;
 import io.reactivex.functions.Function;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -64,6 +61,9 @@ public class InAppMessageStreamManager {
   private final RateLimit appForegroundRateLimit;
   private final AnalyticsEventsManager analyticsEventsManager;
   private final InAppMessaging.InAppMessagingDelegate inAppMessagingDelegate;
+  private final CampaignSegmentCache segmentCache = new CampaignSegmentCache();
+  private CampaignCatalog campaignCatalog;
+  private final SegmenterDataSnapshot segmenterDataSnapshot = new SegmenterDataSnapshot();
 
   @Inject
   public InAppMessageStreamManager(
@@ -103,16 +103,17 @@ public class InAppMessageStreamManager {
     return false;
   }
 
-  private static boolean matchesSegment(Segmenter segmenter, Campaign campaign) {
+  private boolean matchesSegment(Segmenter segmenter, long segmentationTime, Campaign campaign) {
       // No segment means match all
       if (campaign.getSegment() == null) return true;
       // No segmenter means we can't perform segmentation
       if (segmenter == null) return false;
+      CompiledSegment compiledInstallationSegment = segmentCache.getCompiledSegment(campaign.getNotificationMetadata().getCampaignId(), campaign.getSegment());
+      if (compiledInstallationSegment == null) return false;
       try {
-          ASTCriterionNode parsedInstallationSegment = Segmenter.parseInstallationSegment(campaign.getSegment());
-          return segmenter.matchesInstallation(parsedInstallationSegment);
+          return segmenter.matchesInstallation(compiledInstallationSegment, segmentationTime);
       } catch (Exception e) {
-          Logging.loge(String.format("Could not parse segment %s", campaign.getSegment().toString()), e);
+          Logging.loge(String.format("Could not evaluate segment %s", campaign.getSegment().toString()), e);
           return false;
       }
   }
@@ -160,26 +161,14 @@ public class InAppMessageStreamManager {
   public Flowable<TriggeredInAppMessage> createInAppMessageStream() {
     return Flowable.merge(
             appForegroundEventFlowable,
-            analyticsEventsManager.getAnalyticsEventsFlowable(),
+            analyticsEventsManager.getAnalyticsEventsFlowable()
+                .filter(event -> analyticsEventsManager.admitAnalyticsEvent(event.eventType)),
             programmaticTriggerEventFlowable)
         .doOnNext(e -> Logging.logd("Event Triggered: " + e))
         .observeOn(schedulers.io())
         .concatMap(
             event -> {
 
-              Function<Campaign, Maybe<Campaign>> filterTooImpressed =
-                  campaign ->
-                          impressionStorageClient
-                            .isCapped(campaign)
-                            .doOnError(
-                                e ->
-                                    Logging.logw("Impression store read fail: " + e.getMessage()))
-                            .onErrorResumeNext(
-                                Single.just(false)) // Absorb impression read errors
-                            .doOnSuccess(isCapped -> logCappedStatus(campaign, isCapped))
-                            .filter(isCapped -> !isCapped)
-                            .map(isCapped -> campaign);
-
               Function<Campaign, Maybe<Campaign>> appForegroundRateLimitFilter =
                   content -> getContentIfNotRateLimited(event.eventType, content);
 
@@ -195,42 +184,31 @@ public class InAppMessageStreamManager {
                       response ->
                           getTriggeredInAppMessageMaybe(
                               event,
-                              filterTooImpressed,
                               appForegroundRateLimitFilter,
                               filterDisplayable,
                               response);
 
               Maybe<List<Campaign>> serviceFetch =
-                      Maybe.<List<Campaign>>create(
+                      Maybe.<CampaignCatalog>create(
                               emitter -> {
-                                  inAppMessagingDelegate.fetchInAppConfig((JSONObject config, Throwable error) -> {
+                                  inAppMessagingDelegate.fetchVersionedInAppConfig((JSONObject config, String version, Throwable error) -> {
                                       try {
                                           if (error != null) emitter.onError(error);
-                                          else {
-                                              JSONArray campaignsJson = config != null ? config.optJSONArray("campaigns") : null;
-                                              List<Campaign> messages = new ArrayList<>();
-                                              for (int i = 0; campaignsJson != null && i < campaignsJson.length(); i++) {
-                                                  JSONObject campaignJson = campaignsJson.optJSONObject(i);
-                                                  if (campaignJson == null) continue;
-                                                  Campaign campaign = Campaign.fromJSON(campaignJson);
-                                                  if (campaign != null) messages.add(campaign);
-                                              }
-                                              emitter.onSuccess(messages);
-                                          }
+                                          else emitter.onSuccess(getCampaignCatalog(config, version));
                                           emitter.onComplete();
                                       } catch (Throwable t) {
                                           emitter.onError(t);
                                       }
                                   });
                               })
+                              .map(catalog -> catalog.getCandidates(event.eventType))
                               .doOnSuccess(
                                       resp ->
                                               Logging.logi(
                                                       String.format(
                                                               Locale.US,
-                                                              "Successfully fetched %d messages from backend",
-                                                              resp.size())))
-                              .doOnSuccess(analyticsEventsManager::updateContextualTriggers)
+                                                              "Found %d candidate messages for event %s",
+                                                              resp.size(), event.eventType)))
                               //.doOnSuccess(abtIntegrationHelper::updateRunningExperiments)
                               .doOnError(e -> Logging.loge("Service fetch error: ", e))
                               .onErrorResumeNext(Maybe.empty()); // Absorb service failures
@@ -242,6 +220,21 @@ public class InAppMessageStreamManager {
         .observeOn(schedulers.mainThread()); // Updates are delivered on the main thread
   }
 
+  /**
+   * Returns the campaigns of the given in-app config, only decoding them again if its version changed.
+   */
+  private synchronized CampaignCatalog getCampaignCatalog(JSONObject config, String version) {
+    if (campaignCatalog == null || !campaignCatalog.isUpToDate(version)) {
+      campaignCatalog = CampaignCatalog.fromInAppConfig(config, version);
+      segmentCache.setConfigVersion(version);
+      analyticsEventsManager.updateContextualTriggers(campaignCatalog.getCampaigns());
+      Logging.logi(String.format(Locale.US, "Successfully fetched %d messages from backend", campaignCatalog.getCampaigns().size()));
+    } else {
+      analyticsEventsManager.confirmContextualTriggers();
+    }
+    return campaignCatalog;
+  }
+
   private Maybe<Campaign> getContentIfNotRateLimited(String event, Campaign campaign) {
     if (isAppForegroundEvent(event) || isAppLaunchEvent(event)) {
         try {
@@ -265,40 +258,41 @@ public class InAppMessageStreamManager {
 
   private Maybe<TriggeredInAppMessage> getTriggeredInAppMessageMaybe(
           EventOccurrence event,
-          Function<Campaign, Maybe<Campaign>> filterAlreadyImpressed,
           Function<Campaign, Maybe<Campaign>> appForegroundRateLimitFilter,
           Function<Campaign, Maybe<Campaign>> filterDisplayable,
           List<Campaign> campaigns) {
     Segmenter.Data segmenterData = null;
     try {
-      JSONObject installation = JSONSyncInstallation.forCurrentUser().getSdkState();
-      installation.putOpt("userId", WonderPush.getUserId());
-
-      // Tracked events
-      List<JSONObject> trackedEvents = WonderPushConfiguration.getTrackedEvents();
-
-      // Presence info
-      PresenceManager.PresencePayload lastPresencePayload = inAppMessagingDelegate.getPresenceManager().getLastPresencePayload();
-      Segmenter.PresenceInfo presenceInfo = lastPresencePayload == null ? null : new Segmenter.PresenceInfo(lastPresencePayload.getFromDate().getTime(), lastPresencePayload.getUntilDate().getTime(), lastPresencePayload.getElapsedTime());
-
-      // Build segmenter data
-      segmenterData = new Segmenter.Data(installation, trackedEvents, presenceInfo, WonderPushConfiguration.getLastAppOpenDate());
+      segmenterData = segmenterDataSnapshot.get(inAppMessagingDelegate.getPresenceManager(), inAppMessagingDelegate);
     } catch (JSONException e) {
       Logging.loge("Could not create segmenter data", e);
     }
     final Segmenter segmenter = segmenterData == null ? null : new Segmenter(segmenterData);
-    return Flowable.fromIterable(campaigns)
-        .filter(campaign -> isActive(clock, campaign))
-        .filter(campaign -> containsTriggeringCondition(event, campaign))
-        .filter(campaign -> matchesSegment(segmenter, campaign))
-        .flatMapMaybe(filterAlreadyImpressed)
-        .flatMapMaybe(appForegroundRateLimitFilter)
-        .flatMapMaybe(filterDisplayable)
-        .sorted(InAppMessageStreamManager::compareByPriority)
-        .firstElement()
+    // Evaluate every campaign against the same time
+    final long segmentationTime = TimeSync.getTime();
+    // Check the capping of all candidates at once
+    return impressionStorageClient
+        .getCappedCampaignIds(campaigns)
+        .doOnError(e -> Logging.logw("Impression store read fail: " + e.getMessage()))
+        .onErrorReturnItem(Collections.emptySet()) // Absorb impression read errors
+        .flatMapMaybe(cappedCampaignIds -> Flowable.fromIterable(campaigns)
+            .filter(campaign -> isActive(clock, campaign))
+            .filter(campaign -> containsTriggeringCondition(event, campaign))
+            .filter(campaign -> matchesSegment(segmenter, segmentationTime, campaign))
+            .filter(campaign -> !isCapped(cappedCampaignIds, campaign))
+            .flatMapMaybe(appForegroundRateLimitFilter)
+            .flatMapMaybe(filterDisplayable)
+            .sorted(InAppMessageStreamManager::compareByPriority)
+            .firstElement())
         .flatMap(campaign -> triggeredInAppMessage(campaign, event.eventType, delayForEvent(event.eventType, campaign)));
   }
 
+  private static boolean isCapped(Set<String> cappedCampaignIds, Campaign campaign) {
+    boolean isCapped = cappedCampaignIds.contains(campaign.getNotificationMetadata().getCampaignId());
+    logCappedStatus(campaign, isCapped);
+    return isCapped;
+  }
+
   private Maybe<TriggeredInAppMessage> triggeredInAppMessage(Campaign campaign, String event, long delay) {
     InAppMessage inAppMessage = campaign.getContent();
     if (inAppMessage.getMessageType() == null || inAppMessage.getMessageType().equals(MessageType.UNSUPPORTED)) {
@@ -22,6 +22,7 @@ import com.wonderpush.sdk.JSONSerializable;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -30,23 +31,20 @@ import java.io.IOException;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 
-import static android.content.Context.MODE_PRIVATE;
-
 /**
- * File backed storage client for protos. Reads and writes are non atomic, but thread safe.
+ * File backed storage client for protos. Writes are atomic, and thread safe.
  *
  * <p>The client confers locking semantics per client read/written.
  *
  * <p>Creating multiple clients that read/write to the same file will violate the principles of this
  * thread safety
  *
- * <p>In the future we can consider using Android/Support's AtomicFile to provide atomic reads and
- * writes
- *
  * @hide
  */
 //@ThreadSafe
 public class ProtoStorageClient {
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
   private final Application application;
   private final String fileName;
 
@@ -58,9 +56,8 @@ public class ProtoStorageClient {
   /**
    * Write the proto to a file in the app' s file directory.
    *
-   * <p>Writes are non atomic.
-   *
-   * <p>Readers are expected to deal with corrupt data resulting from faulty writes
+   * <p>Writes are atomic: the proto is written to a temporary file first, then renamed over the
+   * previous one, so that readers see either the previous or the new contents.
    *
    * @param value
    * @throws IOException
@@ -70,25 +67,25 @@ public class ProtoStorageClient {
         () -> {
           // reads / writes are synchronized per client instance
           synchronized (this) {
-            try (FileOutputStream output = application.openFileOutput(fileName, MODE_PRIVATE)) {
+            File file = new File(application.getFilesDir(), fileName);
+            File tempFile = new File(application.getFilesDir(), fileName + TEMP_FILE_SUFFIX);
+            try (FileOutputStream output = new FileOutputStream(tempFile)) {
               output.write(value.toJSON().toString().getBytes("UTF-8"));
-              return value;
+              output.getFD().sync();
             }
+            if (!tempFile.renameTo(file)) {
+              tempFile.delete();
+              throw new IOException("Could not rename " + tempFile + " to " + file);
+            }
+            return value;
           }
         });
   }
 
   /**
-   * Read the contents of the file into a proto object using the parser. Since writes are not
-   * atomic, the caller will receive {@link Maybe#empty()} when data is corrupt.
-   *
-   * <p>Some valid scenarios that can lead to corrupt data :
-   *
-   * <ul>
-   *   <li>Out of disk space while writing
-   *   <li>Power outage while writing
-   *   <li>Process killed while writing
-   * </ul>
+   * Read the contents of the file into a proto object using the parser. The caller will receive
+   * {@link Maybe#empty()} when there is no data, or when data is corrupt, like files written by
+   * former non atomic writes.
    *
    * @param clazz
    * @param <T>
@@ -0,0 +1,105 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import android.location.Location;
+
+import com.wonderpush.sdk.JSONUtil;
+import com.wonderpush.sdk.JSONSyncInstallation;
+import com.wonderpush.sdk.PresenceManager;
+import com.wonderpush.sdk.TimeSync;
+import com.wonderpush.sdk.WonderPush;
+import com.wonderpush.sdk.WonderPushConfiguration;
+import com.wonderpush.sdk.inappmessaging.InAppMessaging;
+import com.wonderpush.sdk.segmentation.Segmenter;
+import com.wonderpush.sdk.segmentation.parser.GeoLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Keeps the segmentation data of the current installation, and only builds it again
+ * when the installation state, the tracked events, the presence or the last app open date change,
+ * so that bursts of events share the same immutable snapshot.
+ * The location is read lazily, at most once per call to {@link #get}, and only if a geo criterion is evaluated.
+ */
+class SegmenterDataSnapshot {
+
+  private Segmenter.Data data;
+  private JSONSyncInstallation installationSync;
+  private long installationGeneration;
+  private String userId;
+  private long trackedEventsGeneration;
+  private PresenceManager.PresencePayload presencePayload;
+  private long lastAppOpenDate;
+
+  private InAppMessaging.InAppMessagingDelegate locationDelegate;
+  private boolean geoRead;
+  private Segmenter.GeoInfo geo;
+
+  private final Segmenter.GeoInfoProvider geoProvider = this::getGeo;
+
+  /**
+   * Returns the segmentation data, which must not be modified.
+   */
+  synchronized Segmenter.Data get(PresenceManager presenceManager, InAppMessaging.InAppMessagingDelegate locationDelegate) throws JSONException {
+    // Read the location again when first needed
+    this.locationDelegate = locationDelegate;
+    geoRead = false;
+    geo = null;
+
+    // Read the generations before the data they guard, a concurrent change then only causes an extra rebuild next time
+    JSONSyncInstallation currentInstallationSync = JSONSyncInstallation.forCurrentUser();
+    long currentInstallationGeneration = currentInstallationSync.getGeneration();
+    String currentUserId = WonderPush.getUserId();
+    long currentTrackedEventsGeneration = WonderPushConfiguration.getTrackedEventsGeneration();
+    PresenceManager.PresencePayload currentPresencePayload = presenceManager.getLastPresencePayload();
+    long currentLastAppOpenDate = WonderPushConfiguration.getLastAppOpenDate();
+
+    if (data != null
+        && installationSync == currentInstallationSync
+        && installationGeneration == currentInstallationGeneration
+        && (userId == null ? currentUserId == null : userId.equals(currentUserId))
+        && trackedEventsGeneration == currentTrackedEventsGeneration
+        && presencePayload == currentPresencePayload
+        && lastAppOpenDate == currentLastAppOpenDate) {
+      return data;
+    }
+
+    // Only the top-level object is modified, the rest is shared with the installation view
+    JSONObject installation = JSONUtil.shallowCopy(currentInstallationSync.getSdkStateView());
+    installation.putOpt("userId", currentUserId);
+
+    // Tracked events
+    List<JSONObject> trackedEvents = WonderPushConfiguration.getTrackedEvents();
+
+    // Presence info
+    Segmenter.PresenceInfo presenceInfo = currentPresencePayload == null ? null : new Segmenter.PresenceInfo(currentPresencePayload.getFromDate().getTime(), currentPresencePayload.getUntilDate().getTime(), currentPresencePayload.getElapsedTime());
+
+    data = new Segmenter.Data(installation, trackedEvents, presenceInfo, currentLastAppOpenDate, geoProvider);
+    installationSync = currentInstallationSync;
+    installationGeneration = currentInstallationGeneration;
+    userId = currentUserId;
+    trackedEventsGeneration = currentTrackedEventsGeneration;
+    presencePayload = currentPresencePayload;
+    lastAppOpenDate = currentLastAppOpenDate;
+    return data;
+  }
+
+  private synchronized Segmenter.GeoInfo getGeo() {
+    if (!geoRead) {
+      geoRead = true;
+      Location location = locationDelegate == null ? null : locationDelegate.getLocation();
+      if (location != null) {
+        // Date the location with the synchronized clock used for segmentation, rather than the device clock
+        long age = location.getElapsedRealtimeNanos() != 0
+            ? TimeSync.getUnadjustedSystemClockElapsedRealtime() - location.getElapsedRealtimeNanos() / 1000000
+            : TimeSync.getUnadjustedSystemCurrentTimeMillis() - location.getTime();
+        age = Math.max(0, age);
+        geo = new Segmenter.GeoInfo(new GeoLocation(location.getLatitude(), location.getLongitude()), TimeSync.getTime() - age);
+      }
+    }
+    return geo;
+  }
+
+}
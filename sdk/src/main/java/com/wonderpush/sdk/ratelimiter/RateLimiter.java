@@ -4,37 +4,64 @@ import android.content.SharedPreferences;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class RateLimiter {
     protected static final String TAG = "WonderPushRateLimiter";
 
     private static class RateLimiterData {
+        private static final int INITIAL_CAPACITY = 8;
+
         @NonNull
         public final String key;
-        @NonNull
-        public final List<Long> incrementDates;
+        /** The increment dates, oldest first, in a ring buffer whose capacity is a power of two */
+        private long[] incrementDates;
+        private int head;
+        private int size;
 
         public RateLimiterData(@NonNull String key) {
             this.key = key;
-            this.incrementDates = new ArrayList<>();
+            this.incrementDates = new long[INITIAL_CAPACITY];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long get(int index) {
+            return incrementDates[(head + index) & (incrementDates.length - 1)];
+        }
+
+        public void add(long incrementDate) {
+            if (size == incrementDates.length) {
+                long[] grown = new long[incrementDates.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = get(i);
+                }
+                incrementDates = grown;
+                head = 0;
+            }
+            incrementDates[(head + size) & (incrementDates.length - 1)] = incrementDate;
+            size++;
         }
 
-        public void removeIncrementsOlderThan(long timeToLive) {
-            long start = new Date().getTime() - timeToLive;
-            while (incrementDates.size() > 0 && incrementDates.get(0) < start) {
-                incrementDates.remove(0);
+        public void removeIncrementsOlderThan(long now, long timeToLive) {
+            long start = now - timeToLive;
+            while (size > 0 && incrementDates[head] < start) {
+                head = (head + 1) & (incrementDates.length - 1);
+                size--;
             }
         }
     }
@@ -42,17 +69,31 @@ public class RateLimiter {
     public static class MissingSharedPreferencesException extends Exception {
     }
 
+    /**
+     * How long changes wait before being saved, so that bursts of increments are saved together.
+     */
+    static final long SAVE_DELAY_MS = 1000;
+
     private static RateLimiter sInstance;
     private static Callable<SharedPreferences> sSharedPreferencesProvider;
+    private static ScheduledExecutorService sSaveExecutor;
 
     public static void initialize(Callable<SharedPreferences> sharedPreferencesProvider) {
+        initialize(sharedPreferencesProvider, null);
+    }
+
+    /**
+     * @param saveExecutor Used to save changes after {@link #SAVE_DELAY_MS}, or {@code null} to save them right away
+     */
+    public static void initialize(Callable<SharedPreferences> sharedPreferencesProvider, @Nullable ScheduledExecutorService saveExecutor) {
         sSharedPreferencesProvider = sharedPreferencesProvider;
+        sSaveExecutor = saveExecutor;
     }
 
     public static RateLimiter getInstance() throws MissingSharedPreferencesException {
         if (sInstance == null) {
             try {
-                sInstance = new RateLimiter(sSharedPreferencesProvider.call());
+                sInstance = new RateLimiter(sSharedPreferencesProvider.call(), sSaveExecutor);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -60,13 +101,34 @@ public class RateLimiter {
         return sInstance;
     }
 
+    /**
+     * Saves the pending changes of the instance, if any, like when the application goes to the background.
+     */
+    public static void flushInstance() {
+        RateLimiter instance = sInstance;
+        if (instance != null) {
+            instance.flush();
+        }
+    }
+
     @NonNull
     private final SharedPreferences sharedPreferences;
+    @Nullable
+    private final ScheduledExecutorService saveExecutor;
     @NonNull
     private final Map<String, RateLimiterData> limiterData;
+    /** Whether some changes are not saved yet */
+    private boolean dirty;
+    /** Whether a save is scheduled on the executor */
+    private boolean saveScheduled;
 
     protected RateLimiter(@NonNull SharedPreferences sharedPreferences) {
+        this(sharedPreferences, null);
+    }
+
+    protected RateLimiter(@NonNull SharedPreferences sharedPreferences, @Nullable ScheduledExecutorService saveExecutor) {
         this.sharedPreferences = sharedPreferences;
+        this.saveExecutor = saveExecutor;
         this.limiterData = new HashMap<>();
 
         String serialized = sharedPreferences.getString(SharedPreferencesKey, null);
@@ -79,7 +141,7 @@ public class RateLimiter {
                     JSONArray incrementDates = data.getJSONArray(key);
                     RateLimiterData rateLimiterData = new RateLimiterData(key);
                     for (int i = 0; i < incrementDates.length(); i++) {
-                        rateLimiterData.incrementDates.add(incrementDates.getLong(i));
+                        rateLimiterData.add(incrementDates.getLong(i));
                     }
                     this.limiterData.put(rateLimiterData.key, rateLimiterData);
                 }
@@ -92,14 +154,19 @@ public class RateLimiter {
 
     private static final String SharedPreferencesKey = "__RateLimiter";
 
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
     private synchronized void save() {
         try {
 
             JSONObject data = new JSONObject();
             for (Map.Entry<String, RateLimiterData> entry : limiterData.entrySet()) {
+                RateLimiterData rateLimiterData = entry.getValue();
                 JSONArray incrementDates = new JSONArray();
-                for (Long incrementDate : entry.getValue().incrementDates) {
-                    incrementDates.put(incrementDate);
+                for (int i = 0, size = rateLimiterData.size(); i < size; i++) {
+                    incrementDates.put(rateLimiterData.get(i));
                 }
                 data.put(entry.getKey(), incrementDates);
             }
@@ -111,35 +178,68 @@ public class RateLimiter {
         }
     }
 
+    private synchronized void scheduleSave() {
+        dirty = true;
+        if (saveExecutor == null) {
+            flush();
+            return;
+        }
+        if (saveScheduled) return;
+        try {
+            saveExecutor.schedule(() -> {
+                synchronized (this) {
+                    saveScheduled = false;
+                    flush();
+                }
+            }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            saveScheduled = true;
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    /**
+     * Saves the pending changes, if any.
+     */
+    public synchronized void flush() {
+        if (!dirty) return;
+        dirty = false;
+        save();
+    }
+
     public synchronized void increment(RateLimit rateLimit) {
         RateLimiterData existingData = limiterData.get(rateLimit.key);
         RateLimiterData data = existingData != null ? existingData : new RateLimiterData(rateLimit.key);
+        long now = now();
 
         // Remove all dates prior to the rateLimit's timeToLive
-        data.removeIncrementsOlderThan(rateLimit.timeToLive);
+        data.removeIncrementsOlderThan(now, rateLimit.timeToLive);
 
         // Increment
-        data.incrementDates.add(new Date().getTime());
+        data.add(now);
 
         // Store
         limiterData.put(data.key, data);
-        save();
+        scheduleSave();
     }
 
+    /**
+     * Tells whether the rate limit is reached.
+     * Expired increments are forgotten in memory only, they are not saved until the next change.
+     */
     public synchronized boolean isRateLimited(RateLimit rateLimit) {
         RateLimiterData data = limiterData.get(rateLimit.key);
         if (data == null) return false;
 
         // Remove all dates prior to the rateLimit's timeToLive
-        data.removeIncrementsOlderThan(rateLimit.timeToLive);
-        save();
+        data.removeIncrementsOlderThan(now(), rateLimit.timeToLive);
 
-        return data.incrementDates.size() >= rateLimit.limit;
+        return data.size() >= rateLimit.limit;
     }
 
     public synchronized void clear(RateLimit rateLimit) {
         limiterData.remove(rateLimit.key);
-        save();
+        scheduleSave();
     }
 
 }
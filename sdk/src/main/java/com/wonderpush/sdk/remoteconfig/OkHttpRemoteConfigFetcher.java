@@ -1,10 +1,8 @@
 package com.wonderpush.sdk.remoteconfig;
 
-import android.net.TrafficStats;
-import android.os.Process;
-
 import com.wonderpush.sdk.SafeDeferProvider;
 import com.wonderpush.sdk.SafeOkHttpCallback;
+import com.wonderpush.sdk.SharedOkHttpClient;
 import com.wonderpush.sdk.UserAgentProvider;
 
 import okhttp3.*;
@@ -14,8 +12,6 @@ import org.json.JSONObject;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.util.Locale;
 
 public class OkHttpRemoteConfigFetcher implements RemoteConfigFetcher {
@@ -39,19 +35,14 @@ public class OkHttpRemoteConfigFetcher implements RemoteConfigFetcher {
         if (_client == null) {
             synchronized (this) {
                 if (_client == null) {
-                    _client = new OkHttpClient.Builder()
+                    _client = SharedOkHttpClient.get().newBuilder()
                             .dispatcher(SafeOkHttpCallback.buildSafeDispatcher(OkHttpRemoteConfigFetcher.class.getSimpleName()))
                             .addInterceptor(chain ->
                                     chain.proceed(chain.request().newBuilder()
                                             .header("User-Agent", this.userAgentProvider.getUserAgent())
                                             .build())
                             )
-                            .eventListener(new EventListener() {
-                                @Override
-                                public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
-                                    TrafficStats.setThreadStatsTag(Process.myTid());
-                                }
-                            }).build();
+                            .build();
                 }
             }
         }
@@ -7,6 +7,8 @@ import org.json.JSONObject;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class RemoteConfig {
 
@@ -34,6 +36,7 @@ public class RemoteConfig {
     private Date fetchDate;
     private long maxAge;
     private long minAge;
+    private final Map<String, Object> derivedValues = new HashMap<>();
 
     private RemoteConfig(@Nonnull JSONObject data, @Nonnull String version, @Nonnull Date fetchDate, long maxAge, long minAge) {
         this.data = data;
@@ -104,6 +107,25 @@ public class RemoteConfig {
         return data;
     }
 
+    public interface Derivation<T> {
+        T derive(@Nonnull RemoteConfig config);
+    }
+
+    /**
+     * Returns a value computed from this config, computing it only the first time it is asked for with the given key.
+     * Use it for the structures that are costly to build from {@link #getData()} and used often.
+     * @param key A key identifying the derived value
+     * @param derivation Computes the value, may return null
+     * @return The value derived from this config with the given key, computed now or cached by a previous call, possibly null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized @Nullable <T> T getDerivedValue(@Nonnull String key, @Nonnull Derivation<T> derivation) {
+        if (derivedValues.containsKey(key)) return (T) derivedValues.get(key);
+        T value = derivation.derive(this);
+        derivedValues.put(key, value);
+        return value;
+    }
+
     @Override
     public String toString() {
         try {
@@ -3,7 +3,6 @@ package com.wonderpush.sdk.segmentation;
 import android.util.Log;
 
 import com.wonderpush.sdk.JSONUtil;
-import com.wonderpush.sdk.TimeSync;
 import com.wonderpush.sdk.WonderPush;
 import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.ASTCriterionVisitor;
@@ -12,6 +11,9 @@ import com.wonderpush.sdk.segmentation.parser.ASTValueVisitor;
 import com.wonderpush.sdk.segmentation.parser.DataSourceVisitor;
 import com.wonderpush.sdk.segmentation.parser.DefaultValueNodeParser;
 import com.wonderpush.sdk.segmentation.parser.FieldPath;
+import com.wonderpush.sdk.segmentation.parser.GeoArea;
+import com.wonderpush.sdk.segmentation.parser.GeoLocation;
+import com.wonderpush.sdk.segmentation.parser.Geohash;
 import com.wonderpush.sdk.segmentation.parser.criteria.ASTUnknownCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.criteria.AllCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.criteria.AndCriterionNode;
@@ -57,7 +59,9 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCriterionVisitor<Boolean>, DataSourceVisitor<List<Object>> {
 
@@ -65,10 +69,26 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
 
     protected final boolean debug;
     protected final Segmenter.Data data;
+    /** The evaluation time, used by the whole tree */
+    protected final long now;
+    /** Relative dates already resolved against {@link #now}, shared with the visitors of joined events */
+    private final Map<RelativeDateValueNode, Long> resolvedRelativeDates;
 
-    public BaseCriterionVisitor(Segmenter.Data data) {
+    public BaseCriterionVisitor(Segmenter.Data data, long now) {
         this.debug = WonderPush.getLogging();
         this.data = data;
+        this.now = now;
+        this.resolvedRelativeDates = new IdentityHashMap<>(4);
+    }
+
+    /**
+     * Creates a visitor taking part in the same evaluation as the given one.
+     */
+    protected BaseCriterionVisitor(BaseCriterionVisitor parent) {
+        this.debug = parent.debug;
+        this.data = parent.data;
+        this.now = parent.now;
+        this.resolvedRelativeDates = parent.resolvedRelativeDates;
     }
 
     ///
@@ -93,7 +113,12 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
 
     @Override
     public Object visitRelativeDateValueNode(RelativeDateValueNode node) {
-        return node.duration.applyTo(TimeSync.getTime());
+        Long rtn = resolvedRelativeDates.get(node);
+        if (rtn == null) {
+            rtn = node.duration.applyTo(now);
+            resolvedRelativeDates.put(node, rtn);
+        }
+        return rtn;
     }
 
     @Override
@@ -179,8 +204,20 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
 
     @Override
     public Boolean visitGeoCriterionNode(GeoCriterionNode node) {
-        Log.w(TAG, "Unsupported " + node.getClass().getSimpleName());
-        return false;
+        if (this.data.getGeo() == null) {
+            if (debug) Log.d(TAG, "[visitGeoCriterionNode] return false because the location is unknown");
+            return false;
+        }
+        if (node.locationComparison != null && !node.locationComparison.accept(this)) {
+            if (debug) Log.d(TAG, "[visitGeoCriterionNode] return false because location mismatch");
+            return false;
+        }
+        if (node.dateComparison != null && !node.dateComparison.accept(this)) {
+            if (debug) Log.d(TAG, "[visitGeoCriterionNode] return false because date mismatch");
+            return false;
+        }
+        if (debug) Log.d(TAG, "[visitGeoCriterionNode] return true");
+        return true;
     }
 
     @Override
@@ -217,7 +254,7 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
     @Override
     public Boolean visitPresenceCriterionNode(PresenceCriterionNode node) {
         // Are we present right now?
-        boolean present = this.data.presenceInfo == null || (this.data.presenceInfo.untilDate >= TimeSync.getTime() && this.data.presenceInfo.fromDate <= TimeSync.getTime());
+        boolean present = this.data.presenceInfo == null || (this.data.presenceInfo.untilDate >= now && this.data.presenceInfo.fromDate <= now);
         if (present != node.present) {
             if (debug) Log.d(TAG, "[visitPresenceCriterionNode] return false because presence mismatch, expected " + node.present);
             return false;
@@ -238,8 +275,10 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
     @Override
     public Boolean visitJoinCriterionNode(JoinCriterionNode node) {
         if (node.context.dataSource instanceof EventSource) {
-            for (JSONObject event : this.data.allEvents) {
-                EventVisitor eventVisitor = new EventVisitor(data, event);
+            EventJoinPin pin = EventJoinPin.find(node.child);
+            List<JSONObject> events = pin == null ? this.data.allEvents : pin.getCandidateEvents(this.data);
+            for (JSONObject event : events) {
+                EventVisitor eventVisitor = new EventVisitor(this, event);
                 if (node.child.accept(eventVisitor)) {
                     if (debug) Log.d(TAG, "[visitJoinCriterionNode] return true for event " + event);
                     return true;
@@ -249,7 +288,7 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
             return false;
         }
         if (node.context.dataSource instanceof InstallationSource) {
-            InstallationVisitor installationVisitor = new InstallationVisitor(data);
+            InstallationVisitor installationVisitor = new InstallationVisitor(this);
             Boolean rtn = node.child.accept(installationVisitor);
             if (debug) Log.d(TAG, "[visitJoinCriterionNode] return " + rtn + " for installation");
             return rtn;
@@ -418,7 +457,42 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
 
     @Override
     public Boolean visitInsideCriterionNode(InsideCriterionNode node) {
-        Log.w(TAG, "Unsupported " + node.getClass().getSimpleName());
+        List<Object> dataSourceValues = node.context.dataSource.accept(this);
+        GeoArea area = node.value.getArea();
+        boolean result = false;
+        for (Object dataSourceValue : dataSourceValues) {
+            result = isInside(area, dataSourceValue);
+            if (result) break;
+        }
+        if (debug) Log.d(TAG, "[visitInsideCriterionNode] return " + result + " because " + dataSourceValues + (result ? " is " : " is not ") + "inside " + area);
+        return result;
+    }
+
+    private static final ThreadLocal<Geohash.Bounds> sGeohashBounds = new ThreadLocal<Geohash.Bounds>() {
+        @Override
+        protected Geohash.Bounds initialValue() {
+            return new Geohash.Bounds();
+        }
+    };
+
+    /**
+     * Whether the given location is inside the area.
+     * The location is either a {@link GeoLocation}, an object with {@code lat} and {@code lon} numbers,
+     * or a geohash string, whose center is used like when parsing a geolocation value.
+     */
+    static boolean isInside(GeoArea area, Object location) {
+        if (location instanceof GeoLocation) {
+            return area.contains(((GeoLocation) location).lat, ((GeoLocation) location).lon);
+        }
+        if (location instanceof JSONObject) {
+            Object lat = ((JSONObject) location).opt("lat");
+            Object lon = ((JSONObject) location).opt("lon");
+            return lat instanceof Number && lon instanceof Number && area.contains(((Number) lat).doubleValue(), ((Number) lon).doubleValue());
+        }
+        if (location instanceof String && !((String) location).isEmpty()) {
+            Geohash.Bounds bounds = sGeohashBounds.get();
+            return Geohash.decode((String) location, bounds) < 0 && area.contains(bounds.getCenterLat(), bounds.getCenterLon());
+        }
         return false;
     }
 
@@ -506,7 +580,7 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
         // Note: with in-apps, if we're running this, we're present.
         if (dataSource.present) {
             // When presence info is missing, assume the user just got here.
-            return Collections.singletonList(this.data.presenceInfo == null ? TimeSync.getTime() : this.data.presenceInfo.fromDate);
+            return Collections.singletonList(this.data.presenceInfo == null ? now : this.data.presenceInfo.fromDate);
         }
         // When presence info is missing, assume the user will stay here indefinitely (yay!).
         return Collections.singletonList(this.data.presenceInfo == null ? Long.MAX_VALUE : this.data.presenceInfo.untilDate);
@@ -515,21 +589,21 @@ abstract class BaseCriterionVisitor implements ASTValueVisitor<Object>, ASTCrite
     @Override
     public List<Object> visitPresenceElapsedTimeSource(PresenceElapsedTimeSource dataSource) {
         if (dataSource.present) {
-            return Collections.singletonList(this.data.presenceInfo == null ? 0 : Math.max(0, TimeSync.getTime() - this.data.presenceInfo.fromDate));
+            return Collections.singletonList(this.data.presenceInfo == null ? 0 : Math.max(0, now - this.data.presenceInfo.fromDate));
         }
         return Collections.singletonList(this.data.presenceInfo == null ? 0 : this.data.presenceInfo.elapsedTime);
     }
 
     @Override
     public List<Object> visitGeoLocationSource(GeoLocationSource dataSource) {
-        // TODO Implement geo
-        return Collections.emptyList();
+        Segmenter.GeoInfo geo = this.data.getGeo();
+        return geo == null ? Collections.emptyList() : Collections.singletonList(geo.location);
     }
 
     @Override
     public List<Object> visitGeoDateSource(GeoDateSource dataSource) {
-        // TODO Implement geo
-        return Collections.emptyList();
+        Segmenter.GeoInfo geo = this.data.getGeo();
+        return geo == null ? Collections.emptyList() : Collections.singletonList(geo.date);
     }
 
 }
@@ -0,0 +1,20 @@
+package com.wonderpush.sdk.segmentation;
+
+/**
+ * A parsed installation segment compiled for repeated evaluation.
+ *
+ * @see Segmenter#compileInstallationSegment(com.wonderpush.sdk.segmentation.parser.ASTCriterionNode)
+ */
+public class CompiledSegment {
+
+    private final SegmentCompiler.Criterion criterion;
+
+    CompiledSegment(SegmentCompiler.Criterion criterion) {
+        this.criterion = criterion;
+    }
+
+    boolean matches(Segmenter.Data data, long now) {
+        return criterion.matches(data, data.installation, now);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.wonderpush.sdk.segmentation;
+
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.AndCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.EqualityCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.datasource.FieldSource;
+import com.wonderpush.sdk.segmentation.parser.value.StringValueNode;
+
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * The {@code type} and {@code campaignId} a criterion on events requires, if any,
+ * so that joins only go through the events indexed under these values in {@link Segmenter.Data}.
+ */
+class EventJoinPin {
+
+    /** The required event type, or null */
+    final String type;
+    /** The required campaign id, or null */
+    final String campaignId;
+
+    private EventJoinPin(String type, String campaignId) {
+        this.type = type;
+        this.campaignId = campaignId;
+    }
+
+    /**
+     * Finds the string equalities on {@code type} and {@code campaignId} the given criterion,
+     * or one of the children of an {@code and} criterion, requires.
+     *
+     * @return The pin, or null if the criterion does not require such values
+     */
+    static EventJoinPin find(ASTCriterionNode eventCriterion) {
+        String[] pinned = new String[2];
+        if (eventCriterion instanceof AndCriterionNode) {
+            for (ASTCriterionNode child : ((AndCriterionNode) eventCriterion).children) {
+                pin(child, pinned);
+            }
+        } else {
+            pin(eventCriterion, pinned);
+        }
+        if (pinned[0] == null && pinned[1] == null) return null;
+        return new EventJoinPin(pinned[0], pinned[1]);
+    }
+
+    private static void pin(ASTCriterionNode criterion, String[] pinned) {
+        if (!(criterion instanceof EqualityCriterionNode)) return;
+        EqualityCriterionNode equality = (EqualityCriterionNode) criterion;
+        if (!(equality.context.dataSource instanceof FieldSource) || !((Object) equality.value instanceof StringValueNode)) return;
+        String[] parts = ((FieldSource) equality.context.dataSource).fullPath().parts;
+        if (parts.length != 1) return;
+        if ("type".equals(parts[0])) {
+            pinned[0] = (String) equality.value.getValue();
+        } else if ("campaignId".equals(parts[0])) {
+            pinned[1] = (String) equality.value.getValue();
+        }
+    }
+
+    /**
+     * The events that can match, a subset of {@link Segmenter.Data#allEvents}, in the same order.
+     */
+    List<JSONObject> getCandidateEvents(Segmenter.Data data) {
+        if (type == null) return data.getEventsByCampaignId(campaignId);
+        if (campaignId == null) return data.getEventsByType(type);
+        List<JSONObject> ofType = data.getEventsByType(type);
+        List<JSONObject> ofCampaign = data.getEventsByCampaignId(campaignId);
+        return ofType.size() <= ofCampaign.size() ? ofType : ofCampaign;
+    }
+
+}
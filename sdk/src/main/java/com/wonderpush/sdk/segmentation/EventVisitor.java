@@ -10,8 +10,13 @@ class EventVisitor extends BaseCriterionVisitor {
 
     protected final JSONObject event;
 
-    public EventVisitor(Segmenter.Data data, JSONObject event) {
-        super(data);
+    public EventVisitor(Segmenter.Data data, JSONObject event, long now) {
+        super(data, now);
+        this.event = event;
+    }
+
+    public EventVisitor(BaseCriterionVisitor parent, JSONObject event) {
+        super(parent);
         this.event = event;
     }
 
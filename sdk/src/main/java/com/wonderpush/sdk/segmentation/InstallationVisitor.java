@@ -6,8 +6,12 @@ import java.util.List;
 
 class InstallationVisitor extends BaseCriterionVisitor {
 
-    public InstallationVisitor(Segmenter.Data data) {
-        super(data);
+    public InstallationVisitor(Segmenter.Data data, long now) {
+        super(data, now);
+    }
+
+    public InstallationVisitor(BaseCriterionVisitor parent) {
+        super(parent);
     }
 
     @Override
@@ -0,0 +1,996 @@
+package com.wonderpush.sdk.segmentation;
+
+import android.util.Log;
+
+import com.wonderpush.sdk.JSONUtil;
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionVisitor;
+import com.wonderpush.sdk.segmentation.parser.ASTValueNode;
+import com.wonderpush.sdk.segmentation.parser.ASTValueVisitor;
+import com.wonderpush.sdk.segmentation.parser.DataSourceVisitor;
+import com.wonderpush.sdk.segmentation.parser.DefaultValueNodeParser;
+import com.wonderpush.sdk.segmentation.parser.FieldPath;
+import com.wonderpush.sdk.segmentation.parser.GeoArea;
+import com.wonderpush.sdk.segmentation.parser.ISO8601Duration;
+import com.wonderpush.sdk.segmentation.parser.criteria.ASTUnknownCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.AllCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.AndCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.AnyCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.ComparisonCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.EqualityCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.GeoCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.InsideCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.JoinCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.LastActivityDateCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.MatchAllCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.NotCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.OrCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.PrefixCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.PresenceCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.criteria.SubscriptionStatusCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.datasource.EventSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.FieldSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.GeoDateSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.GeoLocationSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.InstallationSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.LastActivityDateSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.PresenceElapsedTimeSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.PresenceSinceDateSource;
+import com.wonderpush.sdk.segmentation.parser.datasource.UserSource;
+import com.wonderpush.sdk.segmentation.parser.value.ASTUnknownValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.BooleanValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.DateValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.DurationValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.GeoBoxValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.GeoCircleValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.GeoLocationValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.GeoPolygonValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.NullValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.NumberValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.RelativeDateValueNode;
+import com.wonderpush.sdk.segmentation.parser.value.StringValueNode;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compiles a parsed segment into a tree of {@link Criterion} that evaluates
+ * with the same semantics as {@link BaseCriterionVisitor}, without allocating.
+ *
+ * <p>
+ * Field paths are resolved and comparison values are typed once at compile time,
+ * and the children of {@code and} and {@code or} criteria are reordered so the cheapest ones are evaluated first.
+ * Joins on events walk the events in place instead of creating a visitor per event.
+ * </p>
+ */
+class SegmentCompiler implements ASTCriterionVisitor<SegmentCompiler.Criterion>, ASTValueVisitor<SegmentCompiler.Constant>, DataSourceVisitor<SegmentCompiler.ValueSource> {
+
+    public static final String TAG = "WonderPush.Segm.Compiler";
+
+    /**
+     * The cost of a join on events is estimated as this factor times the cost of its child.
+     */
+    private static final int EVENTS_JOIN_COST_FACTOR = 100;
+
+    /**
+     * Same as {@link #EVENTS_JOIN_COST_FACTOR}, for joins only going through the events of a given type or campaign.
+     */
+    private static final int PINNED_EVENTS_JOIN_COST_FACTOR = 10;
+
+    private static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+    ///
+    /// Compiled program
+    ///
+
+    /**
+     * A compiled criterion.
+     */
+    abstract static class Criterion {
+
+        /**
+         * A rough estimate of the cost of an evaluation, used to evaluate the cheapest criteria first.
+         */
+        final int cost;
+
+        Criterion(int cost) {
+            this.cost = cost;
+        }
+
+        /**
+         * @param data The segmentation data
+         * @param subject The object the fields are read from, either the installation or an event
+         * @param now The evaluation time
+         */
+        abstract boolean matches(Segmenter.Data data, JSONObject subject, long now);
+
+    }
+
+    static final Criterion TRUE = new Criterion(0) {
+        @Override
+        boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+            return true;
+        }
+    };
+
+    static final Criterion FALSE = new Criterion(0) {
+        @Override
+        boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+            return false;
+        }
+    };
+
+    private static final Comparator<Criterion> BY_COST = (a, b) -> Integer.compare(a.cost, b.cost);
+
+    /**
+     * A compiled value of the segment.
+     */
+    static final class Constant {
+
+        static final int KIND_NULL = 0;
+        static final int KIND_BOOLEAN = 1;
+        static final int KIND_INTEGRAL = 2;
+        static final int KIND_DECIMAL = 3;
+        static final int KIND_STRING = 4;
+        static final int KIND_RELATIVE_DATE = 5;
+        static final int KIND_OTHER = 6;
+
+        static final Constant NULL = new Constant(KIND_NULL, null, null);
+
+        final int kind;
+        /** The value, null for {@link #KIND_NULL} and {@link #KIND_RELATIVE_DATE} */
+        final Object value;
+        final long longValue;
+        final double doubleValue;
+        private final ISO8601Duration duration;
+        /** Whether {@link #duration} always adds {@link #durationOffset}, which is not the case for years and months */
+        private final boolean durationIsFixed;
+        private final long durationOffset;
+
+        private Constant(int kind, Object value, ISO8601Duration duration) {
+            this.kind = kind;
+            this.value = value;
+            this.longValue = value instanceof Number ? ((Number) value).longValue() : 0;
+            this.doubleValue = value instanceof Number ? ((Number) value).doubleValue() : 0;
+            this.duration = duration;
+            this.durationIsFixed = duration != null && duration.years == 0 && duration.months == 0;
+            this.durationOffset = this.durationIsFixed ? duration.applyTo(0) : 0;
+        }
+
+        static Constant of(Object value) {
+            if (value == null || value == JSONObject.NULL) return NULL;
+            if (value instanceof Boolean) return new Constant(KIND_BOOLEAN, value, null);
+            if (isIntegral(value)) return new Constant(KIND_INTEGRAL, value, null);
+            if (value instanceof Number) return new Constant(KIND_DECIMAL, value, null);
+            if (value instanceof String) return new Constant(KIND_STRING, value, null);
+            return new Constant(KIND_OTHER, value, null);
+        }
+
+        static Constant relativeDate(ISO8601Duration duration) {
+            return new Constant(KIND_RELATIVE_DATE, null, duration);
+        }
+
+        boolean isNumber() {
+            return kind == KIND_INTEGRAL || kind == KIND_DECIMAL || kind == KIND_RELATIVE_DATE;
+        }
+
+        boolean isIntegralNumber() {
+            return kind == KIND_INTEGRAL || kind == KIND_RELATIVE_DATE;
+        }
+
+        long getLong(long now) {
+            if (kind != KIND_RELATIVE_DATE) return longValue;
+            return durationIsFixed ? now + durationOffset : duration.applyTo(now);
+        }
+
+        double getDouble(long now) {
+            if (kind != KIND_RELATIVE_DATE) return doubleValue;
+            return getLong(now);
+        }
+
+        int cost() {
+            return kind == KIND_RELATIVE_DATE && !durationIsFixed ? 10 : 0;
+        }
+
+    }
+
+    /**
+     * Tests the values read from a data source, which are never null.
+     */
+    abstract static class ValueMatcher {
+
+        abstract boolean matches(Object value, long now);
+
+        abstract boolean matchesLong(long value, long now);
+
+    }
+
+    /**
+     * Reads the values of a data source.
+     */
+    abstract static class ValueSource {
+
+        final int cost;
+
+        ValueSource(int cost) {
+            this.cost = cost;
+        }
+
+        abstract boolean isEmpty(Segmenter.Data data, JSONObject subject, long now);
+
+        abstract boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher);
+
+    }
+
+    static final ValueSource EMPTY = new ValueSource(0) {
+        @Override
+        boolean isEmpty(Segmenter.Data data, JSONObject subject, long now) {
+            return true;
+        }
+
+        @Override
+        boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher) {
+            return false;
+        }
+    };
+
+    /**
+     * A data source having exactly one numeric value.
+     */
+    abstract static class LongSource extends ValueSource {
+
+        LongSource() {
+            super(1);
+        }
+
+        abstract long get(Segmenter.Data data, long now);
+
+        @Override
+        boolean isEmpty(Segmenter.Data data, JSONObject subject, long now) {
+            return false;
+        }
+
+        @Override
+        boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher) {
+            return matcher.matchesLong(get(data, now), now);
+        }
+
+    }
+
+    /**
+     * Reads a field of the subject, an array field giving each of its non-null items.
+     */
+    static final class FieldValueSource extends ValueSource {
+
+        private final String[] parts;
+        /** The array index each part designates, or -1 */
+        private final int[] indices;
+        /** Whether string values are custom dates to parse */
+        private final boolean customDate;
+
+        FieldValueSource(FieldPath fieldPath) {
+            super(fieldPath.parts.length);
+            this.parts = fieldPath.parts;
+            this.indices = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                int index;
+                try {
+                    index = Integer.parseInt(parts[i], 10);
+                } catch (NumberFormatException ex) {
+                    index = -1;
+                }
+                this.indices[i] = index;
+            }
+            this.customDate = parts.length >= 2 && "custom".equals(parts[0]) && parts[parts.length - 1].startsWith("date_");
+        }
+
+        private Object resolve(JSONObject subject) {
+            Object curr = subject;
+            for (int i = 0; i < parts.length; i++) {
+                if (curr instanceof JSONObject) {
+                    curr = ((JSONObject) curr).opt(parts[i]);
+                } else if (curr instanceof JSONArray) {
+                    curr = indices[i] < 0 ? null : ((JSONArray) curr).opt(indices[i]);
+                } else {
+                    return null;
+                }
+            }
+            return curr;
+        }
+
+        @Override
+        boolean isEmpty(Segmenter.Data data, JSONObject subject, long now) {
+            Object value = resolve(subject);
+            if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                for (int i = 0, length = array.length(); i < length; i++) {
+                    Object item = array.opt(i);
+                    if (item != null && item != JSONObject.NULL) return false;
+                }
+                return true;
+            }
+            return value == null || value == JSONObject.NULL;
+        }
+
+        @Override
+        boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher) {
+            Object value = resolve(subject);
+            if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                for (int i = 0, length = array.length(); i < length; i++) {
+                    Object item = array.opt(i);
+                    if (item != null && item != JSONObject.NULL && matches(item, now, matcher)) return true;
+                }
+                return false;
+            }
+            return value != null && value != JSONObject.NULL && matches(value, now, matcher);
+        }
+
+        private boolean matches(Object value, long now, ValueMatcher matcher) {
+            if (customDate && value instanceof String) {
+                Date parsed = null;
+                try {
+                    parsed = DefaultValueNodeParser.parseAbsoluteDate((String) value);
+                } catch (ParseException ex) {}
+                if (parsed != null) {
+                    return matcher.matchesLong(parsed.getTime(), now);
+                }
+            }
+            return matcher.matches(value, now);
+        }
+
+    }
+
+    /**
+     * Equality, numbers being compared by value whatever their type.
+     */
+    static final class EqualityMatcher extends ValueMatcher {
+
+        private final Constant constant;
+
+        EqualityMatcher(Constant constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(Object value, long now) {
+            if (!constant.isNumber()) return constant.value.equals(value);
+            if (!(value instanceof Number)) return false;
+            if (constant.isIntegralNumber() && isIntegral(value)) return constant.getLong(now) == ((Number) value).longValue();
+            return constant.getDouble(now) == ((Number) value).doubleValue();
+        }
+
+        @Override
+        boolean matchesLong(long value, long now) {
+            if (!constant.isNumber()) return false;
+            if (constant.isIntegralNumber()) return constant.getLong(now) == value;
+            return constant.getDouble(now) == (double) value;
+        }
+
+    }
+
+    /**
+     * Equality in the sense of {@link Object#equals(Object)}, as used by {@code any} and {@code all}.
+     */
+    static final class SameValueMatcher extends ValueMatcher {
+
+        private final Constant constant;
+
+        SameValueMatcher(Constant constant) {
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(Object value, long now) {
+            if (constant.kind == Constant.KIND_RELATIVE_DATE) return value instanceof Long && (Long) value == constant.getLong(now);
+            return constant.value.equals(value);
+        }
+
+        @Override
+        boolean matchesLong(long value, long now) {
+            if (constant.kind == Constant.KIND_RELATIVE_DATE) return value == constant.getLong(now);
+            return constant.value instanceof Long && (Long) constant.value == value;
+        }
+
+    }
+
+    static final class ComparisonMatcher extends ValueMatcher {
+
+        private final ComparisonCriterionNode.Comparator comparator;
+        private final Constant constant;
+
+        ComparisonMatcher(ComparisonCriterionNode.Comparator comparator, Constant constant) {
+            this.comparator = comparator;
+            this.constant = constant;
+        }
+
+        @Override
+        boolean matches(Object value, long now) {
+            return test(compare(value, now));
+        }
+
+        @Override
+        boolean matchesLong(long value, long now) {
+            return test(compareLong(value, now));
+        }
+
+        private boolean test(int comparison) {
+            if (comparison == INCOMPARABLE) return false;
+            switch (comparator) {
+                case gt:
+                    return comparison > 0;
+                case gte:
+                    return comparison >= 0;
+                case lt:
+                    return comparison < 0;
+                case lte:
+                    return comparison <= 0;
+            }
+            return false;
+        }
+
+        /**
+         * Compares like {@code BaseCriterionVisitor.compareObjectsOrThrow(value, constant)},
+         * a null constant taking the zero value of the type of the value.
+         */
+        private int compare(Object value, long now) {
+            if (value instanceof Boolean) {
+                if (constant.kind == Constant.KIND_NULL) return Boolean.compare((Boolean) value, false);
+                if (constant.kind == Constant.KIND_BOOLEAN) return Boolean.compare((Boolean) value, (Boolean) constant.value);
+            } else if (value instanceof Number) {
+                if (constant.kind == Constant.KIND_NULL) {
+                    return isIntegral(value) ? Long.compare(((Number) value).longValue(), 0) : Double.compare(((Number) value).doubleValue(), 0);
+                }
+                if (constant.isNumber()) {
+                    if (constant.isIntegralNumber() && isIntegral(value)) return Long.compare(((Number) value).longValue(), constant.getLong(now));
+                    return Double.compare(((Number) value).doubleValue(), constant.getDouble(now));
+                }
+            } else if (value instanceof String) {
+                if (constant.kind == Constant.KIND_NULL) return ((String) value).compareTo("");
+                if (constant.kind == Constant.KIND_STRING) return ((String) value).compareTo((String) constant.value);
+            }
+            return INCOMPARABLE;
+        }
+
+        private int compareLong(long value, long now) {
+            if (constant.kind == Constant.KIND_NULL) return Long.compare(value, 0);
+            if (constant.isIntegralNumber()) return Long.compare(value, constant.getLong(now));
+            if (constant.kind == Constant.KIND_DECIMAL) return Double.compare(value, constant.doubleValue);
+            return INCOMPARABLE;
+        }
+
+    }
+
+    static final class PrefixMatcher extends ValueMatcher {
+
+        private final String prefix;
+
+        PrefixMatcher(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        boolean matches(Object value, long now) {
+            return value instanceof String && ((String) value).startsWith(prefix);
+        }
+
+        @Override
+        boolean matchesLong(long value, long now) {
+            return false;
+        }
+
+    }
+
+    /**
+     * Locations inside an area, prepared when the segment was parsed.
+     */
+    static final class InsideMatcher extends ValueMatcher {
+
+        private final GeoArea area;
+
+        InsideMatcher(GeoArea area) {
+            this.area = area;
+        }
+
+        @Override
+        boolean matches(Object value, long now) {
+            return BaseCriterionVisitor.isInside(area, value);
+        }
+
+        @Override
+        boolean matchesLong(long value, long now) {
+            return false;
+        }
+
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long;
+    }
+
+    ///
+    /// Compilation
+    ///
+
+    Criterion compile(ASTCriterionNode node) {
+        return node.accept(this);
+    }
+
+    private List<Criterion> compileChildren(List<ASTCriterionNode> children) {
+        List<Criterion> rtn = new ArrayList<>(children.size());
+        for (ASTCriterionNode child : children) {
+            rtn.add(compile(child));
+        }
+        // Stable sort, siblings of equal cost keep their order
+        Collections.sort(rtn, BY_COST);
+        return rtn;
+    }
+
+    private static int sumCosts(Criterion[] criteria) {
+        int rtn = 0;
+        for (Criterion criterion : criteria) {
+            rtn += criterion.cost;
+        }
+        return rtn;
+    }
+
+    ///
+    /// ASTCriterionVisitor
+    ///
+
+    @Override
+    public Criterion visitMatchAllCriterionNode(MatchAllCriterionNode node) {
+        return TRUE;
+    }
+
+    @Override
+    public Criterion visitAndCriterionNode(AndCriterionNode node) {
+        List<Criterion> children = compileChildren(node.children);
+        if (children.contains(FALSE)) return FALSE;
+        children.removeAll(Collections.singleton(TRUE));
+        if (children.isEmpty()) return TRUE;
+        if (children.size() == 1) return children.get(0);
+        final Criterion[] criteria = children.toArray(new Criterion[0]);
+        return new Criterion(sumCosts(criteria)) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                for (Criterion criterion : criteria) {
+                    if (!criterion.matches(data, subject, now)) return false;
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitOrCriterionNode(OrCriterionNode node) {
+        List<Criterion> children = compileChildren(node.children);
+        if (children.contains(TRUE)) return TRUE;
+        children.removeAll(Collections.singleton(FALSE));
+        if (children.isEmpty()) return FALSE;
+        if (children.size() == 1) return children.get(0);
+        final Criterion[] criteria = children.toArray(new Criterion[0]);
+        return new Criterion(sumCosts(criteria)) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                for (Criterion criterion : criteria) {
+                    if (criterion.matches(data, subject, now)) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitNotCriterionNode(NotCriterionNode node) {
+        final Criterion child = compile(node.child);
+        if (child == TRUE) return FALSE;
+        if (child == FALSE) return TRUE;
+        return new Criterion(child.cost) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                return !child.matches(data, subject, now);
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitGeoCriterionNode(GeoCriterionNode node) {
+        final Criterion locationComparison = node.locationComparison == null ? TRUE : compile(node.locationComparison);
+        final Criterion dateComparison = node.dateComparison == null ? TRUE : compile(node.dateComparison);
+        if (locationComparison == FALSE || dateComparison == FALSE) return FALSE;
+        return new Criterion(1 + locationComparison.cost + dateComparison.cost) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                return data.getGeo() != null
+                        && locationComparison.matches(data, subject, now)
+                        && dateComparison.matches(data, subject, now);
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitSubscriptionStatusCriterionNode(SubscriptionStatusCriterionNode node) {
+        final SubscriptionStatusCriterionNode.SubscriptionStatus expected = node.subscriptionStatus;
+        return new Criterion(2) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                JSONObject pushToken = data.installation.optJSONObject("pushToken");
+                boolean hasPushToken = pushToken != null && JSONUtil.getString(pushToken, "data") != null;
+                JSONObject preferences = data.installation.optJSONObject("preferences");
+                String preferencesSubscriptionStatus = preferences != null ? JSONUtil.getString(preferences, "subscriptionStatus") : null;
+                SubscriptionStatusCriterionNode.SubscriptionStatus status;
+                if (!hasPushToken) {
+                    status = SubscriptionStatusCriterionNode.SubscriptionStatus.optOut;
+                } else if ("optOut".equals(preferencesSubscriptionStatus)) {
+                    status = SubscriptionStatusCriterionNode.SubscriptionStatus.softOptOut;
+                } else {
+                    status = SubscriptionStatusCriterionNode.SubscriptionStatus.optIn;
+                }
+                return status == expected;
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitLastActivityDateCriterionNode(LastActivityDateCriterionNode node) {
+        if (node.dateComparison != null) {
+            return compile(node.dateComparison);
+        }
+        return new Criterion(1) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                return data.lastAppOpenDate > 0;
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitPresenceCriterionNode(PresenceCriterionNode node) {
+        final boolean expectedPresent = node.present;
+        final Criterion elapsedTimeComparison = node.elapsedTimeComparison == null ? TRUE : compile(node.elapsedTimeComparison);
+        final Criterion sinceDateComparison = node.sinceDateComparison == null ? TRUE : compile(node.sinceDateComparison);
+        return new Criterion(1 + elapsedTimeComparison.cost + sinceDateComparison.cost) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                // Are we present right now?
+                boolean present = data.presenceInfo == null || (data.presenceInfo.untilDate >= now && data.presenceInfo.fromDate <= now);
+                return present == expectedPresent
+                        && elapsedTimeComparison.matches(data, subject, now)
+                        && sinceDateComparison.matches(data, subject, now);
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitJoinCriterionNode(JoinCriterionNode node) {
+        final Criterion child = compile(node.child);
+        if (node.context.dataSource instanceof EventSource) {
+            if (child == FALSE) return FALSE;
+            final EventJoinPin pin = EventJoinPin.find(node.child);
+            int costFactor = pin == null ? EVENTS_JOIN_COST_FACTOR : PINNED_EVENTS_JOIN_COST_FACTOR;
+            return new Criterion(1 + costFactor * Math.max(1, child.cost)) {
+                @Override
+                boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                    List<JSONObject> events = pin == null ? data.allEvents : pin.getCandidateEvents(data);
+                    for (int i = 0, size = events.size(); i < size; i++) {
+                        if (child.matches(data, events.get(i), now)) return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        if (node.context.dataSource instanceof InstallationSource) {
+            if (child == TRUE || child == FALSE) return child;
+            return new Criterion(child.cost) {
+                @Override
+                boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                    return child.matches(data, data.installation, now);
+                }
+            };
+        }
+        Log.w(TAG, "Unsupported join on " + node.context.dataSource.getClass().getSimpleName());
+        return FALSE;
+    }
+
+    @Override
+    public Criterion visitEqualityCriterionNode(EqualityCriterionNode node) {
+        final ValueSource source = node.context.dataSource.accept(this);
+        final Constant constant = node.value.accept(this);
+        if (constant.kind == Constant.KIND_NULL) {
+            return new Criterion(source.cost) {
+                @Override
+                boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                    return source.isEmpty(data, subject, now);
+                }
+            };
+        }
+        return new MatcherCriterion(source, new EqualityMatcher(constant), constant.cost());
+    }
+
+    @Override
+    public Criterion visitAnyCriterionNode(AnyCriterionNode node) {
+        final ValueSource source = node.context.dataSource.accept(this);
+        List<Criterion> alternatives = new ArrayList<>(node.values.size());
+        for (ASTValueNode<Object> value : node.values) {
+            alternatives.add(compileSameValue(source, value.accept(this)));
+        }
+        if (alternatives.isEmpty()) return FALSE;
+        if (alternatives.size() == 1) return alternatives.get(0);
+        final Criterion[] criteria = alternatives.toArray(new Criterion[0]);
+        return new Criterion(sumCosts(criteria)) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                for (Criterion criterion : criteria) {
+                    if (criterion.matches(data, subject, now)) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Criterion visitAllCriterionNode(AllCriterionNode node) {
+        final ValueSource source = node.context.dataSource.accept(this);
+        List<Criterion> requirements = new ArrayList<>(node.values.size());
+        for (ASTValueNode<Object> value : node.values) {
+            requirements.add(compileSameValue(source, value.accept(this)));
+        }
+        if (requirements.isEmpty()) return TRUE;
+        if (requirements.size() == 1) return requirements.get(0);
+        final Criterion[] criteria = requirements.toArray(new Criterion[0]);
+        return new Criterion(sumCosts(criteria)) {
+            @Override
+            boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                for (Criterion criterion : criteria) {
+                    if (!criterion.matches(data, subject, now)) return false;
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Whether the source contains the given value, a null value meaning the source must be empty.
+     */
+    private static Criterion compileSameValue(final ValueSource source, Constant constant) {
+        if (constant.kind == Constant.KIND_NULL) {
+            return new Criterion(source.cost) {
+                @Override
+                boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+                    return source.isEmpty(data, subject, now);
+                }
+            };
+        }
+        return new MatcherCriterion(source, new SameValueMatcher(constant), constant.cost());
+    }
+
+    @Override
+    public Criterion visitComparisonCriterionNode(ComparisonCriterionNode node) {
+        ValueSource source = node.context.dataSource.accept(this);
+        Constant constant = node.value.accept(this);
+        return new MatcherCriterion(source, new ComparisonMatcher(node.comparator, constant), constant.cost());
+    }
+
+    @Override
+    public Criterion visitPrefixCriterionNode(PrefixCriterionNode node) {
+        ValueSource source = node.context.dataSource.accept(this);
+        Constant constant = node.value.accept(this);
+        if (constant.kind != Constant.KIND_STRING) {
+            Log.w(TAG, "[visitPrefixCriterionNode] value " + constant.value + " is not a string");
+            return FALSE;
+        }
+        return new MatcherCriterion(source, new PrefixMatcher((String) constant.value), 0);
+    }
+
+    @Override
+    public Criterion visitInsideCriterionNode(InsideCriterionNode node) {
+        ValueSource source = node.context.dataSource.accept(this);
+        return new MatcherCriterion(source, new InsideMatcher(node.value.getArea()), 2);
+    }
+
+    @Override
+    public Criterion visitASTUnknownCriterionNode(ASTUnknownCriterionNode node) {
+        Log.w(TAG, "Unsupported unknown criterion " + node.key + " with value " + node.value);
+        return FALSE;
+    }
+
+    /**
+     * Whether any value of the source matches.
+     */
+    private static final class MatcherCriterion extends Criterion {
+
+        private final ValueSource source;
+        private final ValueMatcher matcher;
+
+        MatcherCriterion(ValueSource source, ValueMatcher matcher, int matcherCost) {
+            super(source.cost + matcherCost);
+            this.source = source;
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean matches(Segmenter.Data data, JSONObject subject, long now) {
+            return source.anyMatches(data, subject, now, matcher);
+        }
+
+    }
+
+    ///
+    /// ASTValueVisitor
+    ///
+
+    @Override
+    public Constant visitASTUnknownValueNode(ASTUnknownValueNode node) {
+        Log.w(TAG, "Unsupported unknown value of type " + node.key + " with value " + node.getValue());
+        return Constant.NULL;
+    }
+
+    @Override
+    public Constant visitDateValueNode(DateValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitDurationValueNode(DurationValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitRelativeDateValueNode(RelativeDateValueNode node) {
+        return Constant.relativeDate(node.duration);
+    }
+
+    @Override
+    public Constant visitGeoLocationValueNode(GeoLocationValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitGeoBoxValueNode(GeoBoxValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitGeoCircleValueNode(GeoCircleValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitGeoPolygonValueNode(GeoPolygonValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitBooleanValueNode(BooleanValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitNullValueNode(NullValueNode node) {
+        return Constant.NULL;
+    }
+
+    @Override
+    public Constant visitNumberValueNode(NumberValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    @Override
+    public Constant visitStringValueNode(StringValueNode node) {
+        return Constant.of(node.getValue());
+    }
+
+    ///
+    /// DataSourceVisitor
+    ///
+
+    @Override
+    public ValueSource visitUserSource(UserSource dataSource) {
+        return EMPTY;
+    }
+
+    @Override
+    public ValueSource visitInstallationSource(InstallationSource dataSource) {
+        return EMPTY;
+    }
+
+    @Override
+    public ValueSource visitEventSource(EventSource dataSource) {
+        return EMPTY;
+    }
+
+    @Override
+    public ValueSource visitFieldSource(FieldSource dataSource) {
+        return new FieldValueSource(dataSource.fullPath());
+    }
+
+    @Override
+    public ValueSource visitLastActivityDateSource(LastActivityDateSource dataSource) {
+        return new LongSource() {
+            @Override
+            long get(Segmenter.Data data, long now) {
+                return data.lastAppOpenDate;
+            }
+        };
+    }
+
+    @Override
+    public ValueSource visitPresenceSinceDateSource(PresenceSinceDateSource dataSource) {
+        // Note: with in-apps, if we're running this, we're present.
+        if (dataSource.present) {
+            return new LongSource() {
+                @Override
+                long get(Segmenter.Data data, long now) {
+                    // When presence info is missing, assume the user just got here.
+                    return data.presenceInfo == null ? now : data.presenceInfo.fromDate;
+                }
+            };
+        }
+        return new LongSource() {
+            @Override
+            long get(Segmenter.Data data, long now) {
+                // When presence info is missing, assume the user will stay here indefinitely (yay!).
+                return data.presenceInfo == null ? Long.MAX_VALUE : data.presenceInfo.untilDate;
+            }
+        };
+    }
+
+    @Override
+    public ValueSource visitPresenceElapsedTimeSource(PresenceElapsedTimeSource dataSource) {
+        if (dataSource.present) {
+            return new LongSource() {
+                @Override
+                long get(Segmenter.Data data, long now) {
+                    return data.presenceInfo == null ? 0 : Math.max(0, now - data.presenceInfo.fromDate);
+                }
+            };
+        }
+        return new LongSource() {
+            @Override
+            long get(Segmenter.Data data, long now) {
+                return data.presenceInfo == null ? 0 : data.presenceInfo.elapsedTime;
+            }
+        };
+    }
+
+    @Override
+    public ValueSource visitGeoLocationSource(GeoLocationSource dataSource) {
+        return new ValueSource(1) {
+            @Override
+            boolean isEmpty(Segmenter.Data data, JSONObject subject, long now) {
+                return data.getGeo() == null;
+            }
+
+            @Override
+            boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher) {
+                Segmenter.GeoInfo geo = data.getGeo();
+                return geo != null && matcher.matches(geo.location, now);
+            }
+        };
+    }
+
+    @Override
+    public ValueSource visitGeoDateSource(GeoDateSource dataSource) {
+        return new ValueSource(1) {
+            @Override
+            boolean isEmpty(Segmenter.Data data, JSONObject subject, long now) {
+                return data.getGeo() == null;
+            }
+
+            @Override
+            boolean anyMatches(Segmenter.Data data, JSONObject subject, long now, ValueMatcher matcher) {
+                Segmenter.GeoInfo geo = data.getGeo();
+                return geo != null && matcher.matchesLong(geo.date, now);
+            }
+        };
+    }
+
+}
@@ -1,17 +1,22 @@
 package com.wonderpush.sdk.segmentation;
 
+import com.wonderpush.sdk.TimeSync;
 import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.BadInputError;
+import com.wonderpush.sdk.segmentation.parser.GeoLocation;
 import com.wonderpush.sdk.segmentation.parser.SegmentationFactory;
 import com.wonderpush.sdk.segmentation.parser.UnknownValueError;
 import com.wonderpush.sdk.segmentation.parser.criteria.UnknownCriterionError;
 import com.wonderpush.sdk.segmentation.parser.datasource.InstallationSource;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Segmenter {
 
@@ -27,32 +32,200 @@ public class Segmenter {
         }
     }
 
+    public static class GeoInfo {
+        public final GeoLocation location;
+        /** When the location was captured */
+        public final long date;
+
+        public GeoInfo(GeoLocation location, long date) {
+            this.location = location;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            GeoInfo geoInfo = (GeoInfo) o;
+
+            if (date != geoInfo.date) return false;
+            return location.equals(geoInfo.location);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = location.hashCode();
+            result = 31 * result + (int) (date ^ (date >>> 32));
+            return result;
+        }
+    }
+
+    /**
+     * Gives the location of the device when a geo criterion needs it, as reading it can be costly.
+     */
+    public interface GeoInfoProvider {
+        /**
+         * @return The location of the device, or null when unknown
+         */
+        GeoInfo getGeoInfo();
+    }
+
     public static class Data {
         public final JSONObject installation;
         public final List<JSONObject> allEvents;
         public final PresenceInfo presenceInfo;
         public final long lastAppOpenDate;
+        private final GeoInfoProvider geoProvider;
+
+        // Built on first use, concurrent builds are harmless
+        private volatile Map<String, List<JSONObject>> eventsByType;
+        private volatile Map<String, List<JSONObject>> eventsByCampaignId;
 
         public Data(JSONObject installation, List<JSONObject> allEvents, PresenceInfo presenceInfo, long lastAppOpenDate) {
+            this(installation, allEvents, presenceInfo, lastAppOpenDate, (GeoInfoProvider) null);
+        }
+
+        public Data(JSONObject installation, List<JSONObject> allEvents, PresenceInfo presenceInfo, long lastAppOpenDate, final GeoInfo geo) {
+            this(installation, allEvents, presenceInfo, lastAppOpenDate, geo == null ? null : new GeoInfoProvider() {
+                @Override
+                public GeoInfo getGeoInfo() {
+                    return geo;
+                }
+            });
+        }
+
+        public Data(JSONObject installation, List<JSONObject> allEvents, PresenceInfo presenceInfo, long lastAppOpenDate, GeoInfoProvider geoProvider) {
             this.installation = installation;
             this.allEvents = Collections.unmodifiableList(new ArrayList<>(allEvents));
             this.presenceInfo = presenceInfo;
             this.lastAppOpenDate = lastAppOpenDate;
+            this.geoProvider = geoProvider;
+        }
+
+        /**
+         * The location of the device, null when unknown.
+         */
+        public GeoInfo getGeo() {
+            return geoProvider == null ? null : geoProvider.getGeoInfo();
+        }
+
+        /**
+         * The events whose {@code type} is, or contains, the given string, in the order of {@link #allEvents}.
+         */
+        public List<JSONObject> getEventsByType(String type) {
+            Map<String, List<JSONObject>> index = eventsByType;
+            if (index == null) {
+                index = indexEvents("type");
+                eventsByType = index;
+            }
+            List<JSONObject> rtn = index.get(type);
+            return rtn != null ? rtn : Collections.<JSONObject>emptyList();
+        }
+
+        /**
+         * The events whose {@code campaignId} is, or contains, the given string, in the order of {@link #allEvents}.
+         */
+        public List<JSONObject> getEventsByCampaignId(String campaignId) {
+            Map<String, List<JSONObject>> index = eventsByCampaignId;
+            if (index == null) {
+                index = indexEvents("campaignId");
+                eventsByCampaignId = index;
+            }
+            List<JSONObject> rtn = index.get(campaignId);
+            return rtn != null ? rtn : Collections.<JSONObject>emptyList();
+        }
+
+        private Map<String, List<JSONObject>> indexEvents(String field) {
+            Map<String, List<JSONObject>> rtn = new HashMap<>();
+            for (JSONObject event : allEvents) {
+                Object value = event.opt(field);
+                if (value instanceof String) {
+                    addToIndex(rtn, (String) value, event);
+                } else if (value instanceof JSONArray) {
+                    JSONArray values = (JSONArray) value;
+                    for (int i = 0, length = values.length(); i < length; i++) {
+                        Object item = values.opt(i);
+                        if (item instanceof String) addToIndex(rtn, (String) item, event);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<JSONObject>> entry : rtn.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            return rtn;
+        }
+
+        private static void addToIndex(Map<String, List<JSONObject>> index, String key, JSONObject event) {
+            List<JSONObject> events = index.get(key);
+            if (events == null) {
+                events = new ArrayList<>();
+                index.put(key, events);
+            }
+            // An array can contain the same value twice
+            if (events.isEmpty() || events.get(events.size() - 1) != event) {
+                events.add(event);
+            }
         }
     }
 
+    /**
+     * How segments are evaluated.
+     */
+    public enum Engine {
+        /** Walks the parsed segment for each evaluation */
+        VISITOR,
+        /** Compiles the parsed segment before evaluating it, see {@link #compileInstallationSegment(ASTCriterionNode)} */
+        COMPILED,
+    }
+
     protected Data data;
+    protected final Engine engine;
 
     public Segmenter(Data data) {
+        this(data, Engine.VISITOR);
+    }
+
+    public Segmenter(Data data, Engine engine) {
         this.data = data;
+        this.engine = engine;
     }
 
     public static ASTCriterionNode parseInstallationSegment(JSONObject segmentInput) throws BadInputError, UnknownValueError, UnknownCriterionError {
         return SegmentationFactory.getDefaultParser().parse(segmentInput, new InstallationSource());
     }
 
+    /**
+     * Compiles a parsed segment, to evaluate it many times without allocating.
+     */
+    public static CompiledSegment compileInstallationSegment(ASTCriterionNode parsedInstallationSegment) {
+        return new CompiledSegment(new SegmentCompiler().compile(parsedInstallationSegment));
+    }
+
     public boolean matchesInstallation(ASTCriterionNode parsedInstallationSegment) {
-        return parsedInstallationSegment.accept(new InstallationVisitor(data));
+        return matchesInstallation(parsedInstallationSegment, TimeSync.getTime());
+    }
+
+    /**
+     * Evaluates a parsed segment at the given time.
+     * Every relative date and presence check of the segment is resolved against this single time.
+     */
+    public boolean matchesInstallation(ASTCriterionNode parsedInstallationSegment, long now) {
+        if (engine == Engine.COMPILED) {
+            return matchesInstallation(compileInstallationSegment(parsedInstallationSegment), now);
+        }
+        return parsedInstallationSegment.accept(new InstallationVisitor(data, now));
+    }
+
+    public boolean matchesInstallation(CompiledSegment compiledInstallationSegment) {
+        return matchesInstallation(compiledInstallationSegment, TimeSync.getTime());
+    }
+
+    /**
+     * Evaluates a compiled segment at the given time.
+     */
+    public boolean matchesInstallation(CompiledSegment compiledInstallationSegment, long now) {
+        return compiledInstallationSegment.matches(data, now);
     }
 
 }
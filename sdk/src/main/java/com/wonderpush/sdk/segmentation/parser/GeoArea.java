@@ -0,0 +1,19 @@
+package com.wonderpush.sdk.segmentation.parser;
+
+/**
+ * A geographical area that can tell whether it contains a location.
+ *
+ * <p>
+ * Areas prepare whatever they need to answer quickly when they are created, that is when the segment is parsed,
+ * so that evaluating a segment does not allocate.
+ * </p>
+ */
+public interface GeoArea {
+
+    /**
+     * @param lat The latitude, in degrees
+     * @param lon The longitude, in degrees, between -180 and 180
+     */
+    boolean contains(double lat, double lon);
+
+}
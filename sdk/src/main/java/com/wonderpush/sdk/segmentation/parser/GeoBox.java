@@ -1,6 +1,6 @@
 package com.wonderpush.sdk.segmentation.parser;
 
-public class GeoBox {
+public class GeoBox implements GeoArea {
 
     public final double top;
     public final double right;
@@ -26,6 +26,16 @@ public class GeoBox {
         return new GeoBox(topLeft.lat, bottomRight.lon, bottomRight.lat, topLeft.lon);
     }
 
+    /**
+     * A box whose left is east of its right crosses the antimeridian.
+     */
+    @Override
+    public boolean contains(double lat, double lon) {
+        if (lat < bottom || lat > top) return false;
+        if (left <= right) return lon >= left && lon <= right;
+        return lon >= left || lon <= right;
+    }
+
     @Override
     public String toString() {
         return "GeoBox{" +
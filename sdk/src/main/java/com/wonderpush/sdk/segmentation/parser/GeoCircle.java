@@ -1,13 +1,45 @@
 package com.wonderpush.sdk.segmentation.parser;
 
-public class GeoCircle {
+public class GeoCircle implements GeoArea {
+
+    /** The mean Earth radius */
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
 
     public final GeoLocation center;
     public final double radiusMeters;
 
+    // Prepared for contains()
+    private final double centerLatRad;
+    private final double centerLonRad;
+    private final double cosCenterLat;
+    /** The radius in degrees of latitude, to reject far away locations without trigonometry */
+    private final double radiusLatDegrees;
+    /** The maximum haversine of the central angle for a location to be inside */
+    private final double maxHaversine;
+
     public GeoCircle(GeoLocation center, double radiusMeters) {
         this.center = center;
         this.radiusMeters = radiusMeters;
+        this.centerLatRad = Math.toRadians(center.lat);
+        this.centerLonRad = Math.toRadians(center.lon);
+        this.cosCenterLat = Math.cos(centerLatRad);
+        double centralAngle = Math.min(Math.PI, Math.max(0, radiusMeters) / EARTH_RADIUS_METERS);
+        this.radiusLatDegrees = Math.toDegrees(centralAngle);
+        double sinHalf = Math.sin(centralAngle / 2);
+        this.maxHaversine = sinHalf * sinHalf;
+    }
+
+    /**
+     * Whether the great-circle distance to the center is within the radius.
+     */
+    @Override
+    public boolean contains(double lat, double lon) {
+        if (Math.abs(lat - center.lat) > radiusLatDegrees) return false;
+        double latRad = Math.toRadians(lat);
+        double sinHalfDLat = Math.sin((latRad - centerLatRad) / 2);
+        double sinHalfDLon = Math.sin((Math.toRadians(lon) - centerLonRad) / 2);
+        double haversine = sinHalfDLat * sinHalfDLat + cosCenterLat * Math.cos(latRad) * sinHalfDLon * sinHalfDLon;
+        return haversine <= maxHaversine;
     }
 
     @Override
@@ -4,12 +4,131 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class GeoPolygon {
+/**
+ * A polygon, whose edges are straight lines in the latitude/longitude plane.
+ *
+ * <p>
+ * The polygon is prepared for {@link #contains(double, double)} when created:
+ * locations outside of its bounding box are rejected right away,
+ * and the edges are indexed by horizontal bands of latitude,
+ * so that casting a ray only tests the few edges crossing the band of the location.
+ * </p>
+ */
+public class GeoPolygon implements GeoArea {
+
+    /** Polygons with fewer edges simply test all of them */
+    private static final int MIN_EDGES_FOR_BANDS = 16;
+    /** The average number of edges per band we aim for */
+    private static final int EDGES_PER_BAND = 4;
+    private static final int MAX_BANDS = 1024;
 
     public final List<GeoLocation> points;
 
+    // Prepared for contains()
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+    /** Edge {@code i} goes from point {@code i} to point {@code i + 1}, the last edge closes the polygon */
+    private final double[] edgeLat;
+    private final double[] edgeLon;
+    /** The longitude variation per degree of latitude of each edge, 0 for horizontal edges */
+    private final double[] edgeSlope;
+    /** The number of bands, 0 if there are too few edges to bother */
+    private final int bandCount;
+    private final double bandHeight;
+    /** The edges crossing each band, null if there are too few edges to bother */
+    private final int[][] bandEdges;
+
     public GeoPolygon(List<GeoLocation> points) {
         this.points = Collections.unmodifiableList(new ArrayList<>(points));
+
+        int n = this.points.size();
+        edgeLat = new double[n + 1];
+        edgeLon = new double[n + 1];
+        double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            GeoLocation point = this.points.get(i);
+            edgeLat[i] = point.lat;
+            edgeLon[i] = point.lon;
+            minLat = Math.min(minLat, point.lat);
+            maxLat = Math.max(maxLat, point.lat);
+            minLon = Math.min(minLon, point.lon);
+            maxLon = Math.max(maxLon, point.lon);
+        }
+        if (n > 0) {
+            edgeLat[n] = edgeLat[0];
+            edgeLon[n] = edgeLon[0];
+        }
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+
+        edgeSlope = new double[n];
+        for (int i = 0; i < n; i++) {
+            double dLat = edgeLat[i + 1] - edgeLat[i];
+            edgeSlope[i] = dLat == 0 ? 0 : (edgeLon[i + 1] - edgeLon[i]) / dLat;
+        }
+
+        int bands = n < MIN_EDGES_FOR_BANDS || !(maxLat > minLat) ? 0 : Math.min(MAX_BANDS, n / EDGES_PER_BAND);
+        bandCount = bands;
+        if (bands == 0) {
+            bandHeight = 0;
+            bandEdges = null;
+        } else {
+            bandHeight = (maxLat - minLat) / bands;
+            int[] counts = new int[bands];
+            for (int i = 0; i < n; i++) {
+                for (int band = band(Math.min(edgeLat[i], edgeLat[i + 1])), last = band(Math.max(edgeLat[i], edgeLat[i + 1])); band <= last; band++) {
+                    counts[band]++;
+                }
+            }
+            bandEdges = new int[bands][];
+            for (int band = 0; band < bands; band++) {
+                bandEdges[band] = new int[counts[band]];
+                counts[band] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int band = band(Math.min(edgeLat[i], edgeLat[i + 1])), last = band(Math.max(edgeLat[i], edgeLat[i + 1])); band <= last; band++) {
+                    bandEdges[band][counts[band]++] = i;
+                }
+            }
+        }
+    }
+
+    private int band(double lat) {
+        int band = (int) ((lat - minLat) / bandHeight);
+        return Math.max(0, Math.min(bandCount - 1, band));
+    }
+
+    /**
+     * Casts a ray towards the east and counts the edges it crosses, using the even-odd rule.
+     */
+    @Override
+    public boolean contains(double lat, double lon) {
+        if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) return false;
+        boolean inside = false;
+        if (bandEdges == null) {
+            for (int i = 0, n = edgeSlope.length; i < n; i++) {
+                if (crosses(i, lat, lon)) inside = !inside;
+            }
+        } else {
+            int[] edges = bandEdges[band(lat)];
+            for (int i = 0, n = edges.length; i < n; i++) {
+                if (crosses(edges[i], lat, lon)) inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private boolean crosses(int edge, double lat, double lon) {
+        double lat1 = edgeLat[edge];
+        double lat2 = edgeLat[edge + 1];
+        // Half-open on latitude, so that a ray going through a vertex counts it once, and horizontal edges never
+        if ((lat1 > lat) == (lat2 > lat)) return false;
+        return lon < edgeLon[edge] + (lat - lat1) * edgeSlope[edge];
     }
 
     @Override
@@ -1,6 +1,6 @@
 package com.wonderpush.sdk.segmentation.parser;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class Geohash {
 
@@ -8,12 +8,38 @@ public class Geohash {
             '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'b', 'c', 'd', 'e', 'f', 'g',
             'h', 'j', 'k', 'm', 'n', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z' };
 
-    private final static HashMap<Character, Integer> BASE32_CODES_DICT = new HashMap<>();
+    /** The 5 bits of each ASCII character, either case, or -1 if the character is not valid */
+    private static final byte[] BASE32_DECODE = new byte[128];
 
     static {
-        int sz = BASE32_CODES.length;
-        for (int i = 0; i < sz; i++) {
-            BASE32_CODES_DICT.put(BASE32_CODES[i], i);
+        Arrays.fill(BASE32_DECODE, (byte) -1);
+        for (int i = 0; i < BASE32_CODES.length; i++) {
+            BASE32_DECODE[BASE32_CODES[i]] = (byte) i;
+            BASE32_DECODE[Character.toUpperCase(BASE32_CODES[i])] = (byte) i;
+        }
+    }
+
+    /**
+     * Up to this many characters, the bits of each axis are accumulated in an integer and turned into bounds only once.
+     * Both axes then have at most 45 bits, for which the bounds are computed exactly, as the successive bisections would.
+     */
+    private static final int MAX_ACCUMULATED_LENGTH = 18;
+
+    /**
+     * Mutable bounds, to decode many geohashes without allocating.
+     */
+    public static final class Bounds {
+        public double top;
+        public double right;
+        public double bottom;
+        public double left;
+
+        public double getCenterLat() {
+            return (this.top + this.bottom) / 2;
+        }
+
+        public double getCenterLon() {
+            return (this.left + this.right) / 2;
         }
     }
 
@@ -33,21 +59,60 @@ public class Geohash {
     
     public static Geohash parse(String geohash) throws BadInputError {
         if (geohash == null) return null;
-        // See: https://github.com/sunng87/node-geohash/blob/87ca0f9d6213a13b3335a6889659cad59e83d286/main.js#L170-L204
-        geohash = geohash.toLowerCase();
-        boolean isLon = true;
-        double maxLat = +90;
-        double minLat = -90;
-        double maxLon = +180;
-        double minLon = -180;
-        double mid;
+        Bounds bounds = new Bounds();
+        int invalidIndex = decode(geohash, bounds);
+        if (invalidIndex >= 0) {
+            throw new BadInputError("character \"" + geohash.charAt(invalidIndex) + "\" is not valid in a geohash");
+        }
+        return new Geohash(geohash.toLowerCase(), bounds.top, bounds.right, bounds.bottom, bounds.left);
+    }
 
-        for (int i = 0, l = geohash.length(); i < l; i++) {
-            char c = geohash.charAt(i);
-            Integer hashValue = BASE32_CODES_DICT.get(c);
-            if (hashValue == null) {
-                throw new BadInputError("character \"" + c + "\" is not valid in a geohash");
+    /**
+     * Decodes a geohash, in either case, without allocating.
+     *
+     * @param geohash The geohash to decode
+     * @param bounds Receives the bounds of the geohash, left untouched if it is not valid
+     * @return The index of the first invalid character, or -1 if the geohash is valid
+     */
+    public static int decode(CharSequence geohash, Bounds bounds) {
+        // See: https://github.com/sunng87/node-geohash/blob/87ca0f9d6213a13b3335a6889659cad59e83d286/main.js#L170-L204
+        int length = geohash.length();
+        int accumulatedLength = Math.min(length, MAX_ACCUMULATED_LENGTH);
+        // Bits are interleaved, starting with longitude
+        long lonBits = 0;
+        long latBits = 0;
+        int lonBitCount = 0;
+        int latBitCount = 0;
+        for (int i = 0; i < accumulatedLength; i++) {
+            int hashValue = decodeChar(geohash.charAt(i));
+            if (hashValue < 0) return i;
+            for (int bits = 4; bits >= 0; bits--) {
+                int bit = (hashValue >> bits) & 1;
+                if (((lonBitCount + latBitCount) & 1) == 0) {
+                    lonBits = (lonBits << 1) | bit;
+                    lonBitCount++;
+                } else {
+                    latBits = (latBits << 1) | bit;
+                    latBitCount++;
+                }
             }
+        }
+        for (int i = accumulatedLength; i < length; i++) {
+            if (decodeChar(geohash.charAt(i)) < 0) return i;
+        }
+
+        double lonCell = 360. / (1L << lonBitCount);
+        double latCell = 180. / (1L << latBitCount);
+        double minLon = -180 + lonBits * lonCell;
+        double maxLon = minLon + lonCell;
+        double minLat = -90 + latBits * latCell;
+        double maxLat = minLat + latCell;
+
+        // Longer geohashes than any actual use continue by bisection
+        boolean isLon = ((lonBitCount + latBitCount) & 1) == 0;
+        double mid;
+        for (int i = accumulatedLength; i < length; i++) {
+            int hashValue = decodeChar(geohash.charAt(i));
             for (int bits = 4; bits >= 0; bits--) {
                 int bit = (hashValue >> bits) & 1;
                 if (isLon) {
@@ -69,9 +134,17 @@ public class Geohash {
             }
         }
 
-        return new Geohash(geohash, maxLat, maxLon, minLat, minLon);
+        bounds.top = maxLat;
+        bounds.right = maxLon;
+        bounds.bottom = minLat;
+        bounds.left = minLon;
+        return -1;
     }
-    
+
+    private static int decodeChar(char c) {
+        return c < BASE32_DECODE.length ? BASE32_DECODE[c] : -1;
+    }
+
     public double getCenterLat() {
         return (this.top + this.bottom) / 2;
     }
@@ -1,12 +1,17 @@
 package com.wonderpush.sdk.segmentation.parser.value;
 
 import com.wonderpush.sdk.segmentation.parser.ASTValueNode;
+import com.wonderpush.sdk.segmentation.parser.GeoArea;
 import com.wonderpush.sdk.segmentation.parser.ParsingContext;
 
-public abstract class GeoAbstractAreaValueNode<T> extends ASTValueNode<T> {
+public abstract class GeoAbstractAreaValueNode<T extends GeoArea> extends ASTValueNode<T> {
 
     public GeoAbstractAreaValueNode(ParsingContext context, T value) {
         super(context, value);
     }
 
+    public GeoArea getArea() {
+        return getValue();
+    }
+
 }
@@ -0,0 +1,75 @@
+package com.wonderpush.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BitmapDecoderTest {
+
+    // Typical xxhdpi targets: a 64dp large icon, and a 256dp high big picture on a 1080px wide screen
+    private static final int LARGE_ICON_SIZE = 192;
+    private static final int BIG_PICTURE_WIDTH = 1080;
+    private static final int BIG_PICTURE_HEIGHT = 768;
+
+    @Test
+    public void testComputeInSampleSize() {
+        assertEquals(1, BitmapDecoder.computeInSampleSize(100, 100, 192, 192));
+        assertEquals(1, BitmapDecoder.computeInSampleSize(192, 192, 192, 192));
+        assertEquals(1, BitmapDecoder.computeInSampleSize(383, 383, 192, 192));
+        assertEquals(2, BitmapDecoder.computeInSampleSize(384, 384, 192, 192));
+        assertEquals(4, BitmapDecoder.computeInSampleSize(1024, 1024, 192, 192));
+        assertEquals(16, BitmapDecoder.computeInSampleSize(4000, 4000, 192, 192));
+        // Neither dimension goes below its target
+        assertEquals(2, BitmapDecoder.computeInSampleSize(4000, 400, 192, 192));
+        assertEquals(2, BitmapDecoder.computeInSampleSize(400, 4000, 192, 192));
+        assertEquals(2, BitmapDecoder.computeInSampleSize(4000, 2000, BIG_PICTURE_WIDTH, BIG_PICTURE_HEIGHT));
+        assertEquals(1, BitmapDecoder.computeInSampleSize(2000, 1000, BIG_PICTURE_WIDTH, BIG_PICTURE_HEIGHT));
+        // No target
+        assertEquals(1, BitmapDecoder.computeInSampleSize(4000, 4000, 0, 0));
+        assertEquals(1, BitmapDecoder.computeInSampleSize(4000, 4000, -1, 192));
+    }
+
+    @Test
+    public void testIsOpaque() {
+        assertTrue(BitmapDecoder.isOpaque("image/jpeg"));
+        assertFalse(BitmapDecoder.isOpaque("image/png"));
+        assertFalse(BitmapDecoder.isOpaque("image/webp"));
+        assertFalse(BitmapDecoder.isOpaque(null));
+    }
+
+    @Test
+    public void testGetDecodedByteCount() {
+        assertEquals(100 * 100 * 4, BitmapDecoder.getDecodedByteCount(100, 100, 1, false));
+        assertEquals(50 * 50 * 2, BitmapDecoder.getDecodedByteCount(100, 100, 2, true));
+        // Sampled dimensions are rounded up
+        assertEquals(51 * 51 * 4, BitmapDecoder.getDecodedByteCount(101, 101, 2, false));
+    }
+
+    @Test
+    public void testSampleSizeOfTypicalImages() {
+        int[][] samples = {
+                // width, height, target width, target height, expected sample size, opaque
+                {4000, 3000, BIG_PICTURE_WIDTH, BIG_PICTURE_HEIGHT, 2, 1}, // 12MP JPEG photo as big picture
+                {1920, 1080, BIG_PICTURE_WIDTH, BIG_PICTURE_HEIGHT, 1, 1}, // Full HD JPEG banner as big picture
+                {2048, 1024, BIG_PICTURE_WIDTH, BIG_PICTURE_HEIGHT, 1, 0}, // Wide PNG as big picture
+                {1024, 1024, LARGE_ICON_SIZE, LARGE_ICON_SIZE, 4, 0}, // PNG logo as large icon
+                {1200, 1200, LARGE_ICON_SIZE, LARGE_ICON_SIZE, 4, 1}, // JPEG photo as large icon
+                {128, 128, LARGE_ICON_SIZE, LARGE_ICON_SIZE, 1, 0}, // Small PNG icon as large icon
+        };
+        long totalFullBytes = 0;
+        long totalDecodedBytes = 0;
+        for (int[] sample : samples) {
+            String message = sample[0] + "x" + sample[1] + " for " + sample[2] + "x" + sample[3];
+            int inSampleSize = BitmapDecoder.computeInSampleSize(sample[0], sample[1], sample[2], sample[3]);
+            assertEquals(message, sample[4], inSampleSize);
+            // The decoded bitmap is never smaller than the target, unless the image itself is
+            assertTrue(message, sample[0] / inSampleSize >= Math.min(sample[0], sample[2]));
+            assertTrue(message, sample[1] / inSampleSize >= Math.min(sample[1], sample[3]));
+            totalFullBytes += BitmapDecoder.getDecodedByteCount(sample[0], sample[1], 1, false);
+            totalDecodedBytes += BitmapDecoder.getDecodedByteCount(sample[0], sample[1], inSampleSize, sample[5] != 0);
+        }
+        // Compared to decoding every image at full size in ARGB_8888, about a quarter of the memory is used
+        assertEquals(0.25, (double) totalDecodedBytes / totalFullBytes, 0.05);
+    }
+
+}
@@ -1,9 +1,11 @@
 package com.wonderpush.sdk;
 
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -106,4 +108,151 @@ public class BlackWhiteListTest {
         assertFalse(blackWhiteList.allow("some"));
 
     }
+
+    @Test
+    public void testAllowWithOverlappingRules() {
+        BlackWhiteList blackWhiteList = new BlackWhiteList(new String[] {"-a*", "-ab*", "-*z", "-*yz", "-*mid*", "-x*y*z", "-", "keep*", "**"});
+        assertTrue(blackWhiteList.allow("anything"));
+
+        blackWhiteList = new BlackWhiteList(new String[] {"-a*", "-abc*", "-b*", "-*z", "-*yz", "-*mid*", "-x*y*z", "-"});
+        assertFalse(blackWhiteList.allow("a"));
+        assertFalse(blackWhiteList.allow("ac"));
+        assertFalse(blackWhiteList.allow("abcd"));
+        assertFalse(blackWhiteList.allow("bb"));
+        assertTrue(blackWhiteList.allow("c"));
+        assertFalse(blackWhiteList.allow("z"));
+        assertFalse(blackWhiteList.allow("xz"));
+        assertFalse(blackWhiteList.allow("amid"));
+        assertFalse(blackWhiteList.allow("1mid1"));
+        assertTrue(blackWhiteList.allow("mi1d"));
+        assertFalse(blackWhiteList.allow("x1y1z"));
+        assertTrue(blackWhiteList.allow("x1y1z1"));
+        assertFalse(blackWhiteList.allow(""));
+        assertTrue(blackWhiteList.allow(null));
+    }
+
+    /**
+     * The original evaluation, going through every rule.
+     */
+    private static boolean allowByEveryRule(BlackWhiteList blackWhiteList, String item) {
+        for (String rule : blackWhiteList.getWhiteList()) {
+            if (BlackWhiteList.itemMatchesRule(item, rule)) return true;
+        }
+        for (String rule : blackWhiteList.getBlackList()) {
+            if (BlackWhiteList.itemMatchesRule(item, rule)) return false;
+        }
+        return true;
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder rtn = new StringBuilder();
+        for (int i = random.nextInt(6); i > 0; i--) {
+            rtn.append("ab.@_".charAt(random.nextInt(5)));
+        }
+        return rtn.toString();
+    }
+
+    private static String randomRule(Random random) {
+        StringBuilder rtn = new StringBuilder();
+        if (random.nextInt(5) == 0) rtn.append('-');
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            if (random.nextInt(3) == 0) rtn.append('*');
+            rtn.append(randomWord(random));
+        }
+        if (random.nextInt(3) == 0) rtn.append('*');
+        return rtn.toString();
+    }
+
+    @Test
+    public void testAllowRandomizedAgainstEveryRule() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            List<String> rules = new ArrayList<>();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                rules.add(randomRule(random));
+            }
+            BlackWhiteList blackWhiteList = new BlackWhiteList(rules);
+            for (int i = 0; i < 100; i++) {
+                String item = randomWord(random) + randomWord(random);
+                assertEquals("seed " + seed + " rules " + rules + " item " + item, allowByEveryRule(blackWhiteList, item), blackWhiteList.allow(item));
+            }
+        }
+    }
+
+    private static final int MANY_RULES_COUNT = 200;
+
+    /**
+     * 200 rules of every kind.
+     */
+    private static BlackWhiteList manyRules() {
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < MANY_RULES_COUNT; i++) {
+            switch (i % 5) {
+                case 0: rules.add("-event" + i); break;
+                case 1: rules.add("-prefix" + i + "_*"); break;
+                case 2: rules.add("-*_suffix" + i); break;
+                case 3: rules.add("-*infix" + i + "*"); break;
+                default: rules.add("-start" + i + "*end" + i); break;
+            }
+        }
+        rules.add("@APP_OPEN");
+        rules.add("@PRESENCE");
+        return new BlackWhiteList(rules);
+    }
+
+    /**
+     * Event types hitting every kind of rules of {@link #manyRules()}, and others.
+     */
+    private static List<String> eventTypesForManyRules(int eventTypesCount) {
+        List<String> eventTypes = new ArrayList<>();
+        for (int i = 0; i < eventTypesCount; i++) {
+            switch (i % 6) {
+                case 0: eventTypes.add("event" + (i % MANY_RULES_COUNT)); break;
+                case 1: eventTypes.add("prefix" + (i % MANY_RULES_COUNT) + "_foo"); break;
+                case 2: eventTypes.add("foo_suffix" + (i % MANY_RULES_COUNT)); break;
+                case 3: eventTypes.add("fooinfix" + (i % MANY_RULES_COUNT) + "bar"); break;
+                case 4: eventTypes.add("start" + (i % MANY_RULES_COUNT) + "middleend" + (i % MANY_RULES_COUNT)); break;
+                default: eventTypes.add("allowed" + i); break;
+            }
+        }
+        return eventTypes;
+    }
+
+    @Test
+    public void testAllowManyRulesAgainstEveryRule() {
+        BlackWhiteList blackWhiteList = manyRules();
+        for (String eventType : eventTypesForManyRules(2000)) {
+            assertEquals(eventType, allowByEveryRule(blackWhiteList, eventType), blackWhiteList.allow(eventType));
+        }
+    }
+
+    /**
+     * Compares going through every rule with the compiled rules, for 200 rules of every kind and 10k event types.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkAllow() {
+        final int eventTypesCount = 10000;
+        BlackWhiteList blackWhiteList = manyRules();
+        List<String> eventTypes = eventTypesForManyRules(eventTypesCount);
+
+        int allowedByEveryRule = 0;
+        long everyRuleStart = System.nanoTime();
+        for (String eventType : eventTypes) {
+            if (allowByEveryRule(blackWhiteList, eventType)) allowedByEveryRule++;
+        }
+        long everyRuleNanos = System.nanoTime() - everyRuleStart;
+
+        int allowedCompiled = 0;
+        long compiledStart = System.nanoTime();
+        for (String eventType : eventTypes) {
+            if (blackWhiteList.allow(eventType)) allowedCompiled++;
+        }
+        long compiledNanos = System.nanoTime() - compiledStart;
+
+        assertEquals(allowedByEveryRule, allowedCompiled);
+        System.out.println(String.format(
+                "Black/white list of %d rules on %d event types: every rule %8.2f us/event, compiled %8.2f us/event",
+                MANY_RULES_COUNT, eventTypesCount, everyRuleNanos / 1000. / eventTypesCount, compiledNanos / 1000. / eventTypesCount));
+    }
 }
@@ -0,0 +1,173 @@
+package com.wonderpush.sdk;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class JSONSyncInstallationTest {
+
+    private static final String STATE_PER_USER_ID_KEY = "__installation_sync_state_per_user_id";
+    private static final String USER_IDS_KEY = "__installation_sync_state_user_ids";
+    private static final String STATE_FOR_USER_ID_KEY_PREFIX = "__installation_sync_state_for_user_id_";
+
+    private MemorySharedPreferences preferences;
+
+    @Before
+    public void setUp() {
+        preferences = new MemorySharedPreferences();
+        WonderPushConfiguration.initialize(new ContextWrapper(null) {
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public SharedPreferences getSharedPreferences(String name, int mode) {
+                return preferences;
+            }
+        });
+        JSONSyncInstallation.reset();
+        JSONSyncInstallation.setDisabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        JSONSyncInstallation.reset();
+        JSONSyncInstallation.setDisabled(false);
+    }
+
+    /**
+     * A saved state without pending changes, whose custom properties hold the given name.
+     */
+    private static JSONObject savedState(String name) throws JSONException {
+        JSONObject state = new JSONObject().put("custom", new JSONObject().put("string_name", name));
+        return new JSONObject()
+                .put("_syncStateVersion", 2)
+                .put("upgradeMeta", new JSONObject().put("version", 1))
+                .put("sdkState", state)
+                .put("serverState", new JSONObject(state.toString()))
+                .put("scheduledPatchCall", false)
+                .put("inflightPatchCall", false);
+    }
+
+    private void saveState(String userId, String name) throws JSONException {
+        preferences.values.put(STATE_FOR_USER_ID_KEY_PREFIX + userId, savedState(name).toString());
+    }
+
+    private void saveUserIds(String... userIds) {
+        preferences.values.put(USER_IDS_KEY, new JSONArray(Arrays.asList(userIds)).toString());
+    }
+
+    private static String name(JSONSyncInstallation sync) throws JSONException {
+        return sync.getSdkState().getJSONObject("custom").getString("string_name");
+    }
+
+    @Test
+    public void testMigrateInstallationCustomSyncStatePerUserId() throws JSONException {
+        preferences.values.put(STATE_PER_USER_ID_KEY, new JSONObject()
+                .put("", savedState("anonymous"))
+                .put("bob", savedState("former bob"))
+                .toString());
+        // A state saved after a previous partial migration is kept
+        saveUserIds("bob");
+        saveState("bob", "bob");
+
+        JSONSyncInstallation.initialize();
+
+        assertFalse(preferences.contains(STATE_PER_USER_ID_KEY));
+        assertEquals(new JSONArray(Arrays.asList("bob", "")).toString(), preferences.getString(USER_IDS_KEY, null));
+        assertEquals("anonymous", name(JSONSyncInstallation.forUser(null)));
+        assertEquals("bob", name(JSONSyncInstallation.forUser("bob")));
+    }
+
+    @Test
+    public void testMigrationWithoutFormerKeyDoesNothing() {
+        WonderPushConfiguration.migrateInstallationCustomSyncStatePerUserId();
+        assertEquals(0, preferences.writes);
+        assertTrue(preferences.values.isEmpty());
+    }
+
+    @Test
+    public void testForUserLoadsLazily() throws JSONException {
+        saveUserIds("", "bob");
+        saveState("", "anonymous");
+        saveState("bob", "bob");
+
+        JSONSyncInstallation.initialize();
+
+        // Not read by the initialization
+        saveState("bob", "bob after initialization");
+        JSONSyncInstallation bob = JSONSyncInstallation.forUser("bob");
+        assertEquals("bob after initialization", name(bob));
+        // Only read once
+        saveState("bob", "bob after loading");
+        assertSame(bob, JSONSyncInstallation.forUser("bob"));
+        assertEquals("bob after initialization", name(JSONSyncInstallation.forUser("bob")));
+        // The empty user id is no user id
+        assertSame(JSONSyncInstallation.forUser(null), JSONSyncInstallation.forUser(""));
+        assertEquals("anonymous", name(JSONSyncInstallation.forUser(null)));
+    }
+
+    @Test
+    public void testFlushAllLoadsEverySavedUser() throws JSONException {
+        saveUserIds("", "bob", "alice");
+        saveState("", "anonymous");
+        saveState("bob", "bob");
+        saveState("alice", "alice");
+
+        JSONSyncInstallation.initialize();
+        JSONSyncInstallation.flushAll();
+
+        saveState("bob", "bob after flush");
+        saveState("alice", "alice after flush");
+        assertEquals("bob", name(JSONSyncInstallation.forUser("bob")));
+        assertEquals("alice", name(JSONSyncInstallation.forUser("alice")));
+    }
+
+    @Test
+    public void testSaveWritesTheUserIdsOnlyForNewUsers() throws JSONException {
+        saveUserIds("");
+        saveState("", "anonymous");
+
+        JSONSyncInstallation.initialize();
+        JSONSyncInstallation alice = JSONSyncInstallation.forUser("alice");
+        alice.put(new JSONObject().put("custom", new JSONObject().put("string_name", "alice")));
+
+        assertEquals(new JSONArray(Arrays.asList("", "alice")).toString(), preferences.getString(USER_IDS_KEY, null));
+        assertEquals("alice", new JSONObject(preferences.getString(STATE_FOR_USER_ID_KEY_PREFIX + "alice", null)).getJSONObject("sdkState").getJSONObject("custom").getString("string_name"));
+
+        // Saving a known user only writes its state
+        int writes = preferences.writes;
+        alice.put(new JSONObject().put("custom", new JSONObject().put("string_name", "alice again")));
+        assertEquals(writes + 1, preferences.writes);
+        assertEquals(new JSONArray(Arrays.asList("", "alice")).toString(), preferences.getString(USER_IDS_KEY, null));
+    }
+
+    @Test
+    public void testReload() throws JSONException {
+        saveUserIds("");
+        saveState("", "anonymous");
+
+        JSONSyncInstallation.initialize();
+        JSONSyncInstallation.forUser("alice").put(new JSONObject().put("custom", new JSONObject().put("string_name", "alice")));
+        JSONSyncInstallation.forUser(null).put(new JSONObject().put("custom", new JSONObject().put("string_name", "anonymous again")));
+
+        JSONSyncInstallation.reset();
+        JSONSyncInstallation.initialize();
+
+        assertEquals("alice", name(JSONSyncInstallation.forUser("alice")));
+        assertEquals("anonymous again", name(JSONSyncInstallation.forUser(null)));
+    }
+
+}
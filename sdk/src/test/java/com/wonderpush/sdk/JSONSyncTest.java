@@ -5,6 +5,7 @@ import junit.framework.Assert;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
 public class JSONSyncTest {
@@ -169,6 +170,67 @@ public class JSONSyncTest {
         Assert.assertTrue(server.isCalled());
     }
 
+    @Test
+    public void generationChangesWithSdkState() throws JSONException {
+        long generation = sync.getGeneration();
+        Assert.assertEquals(generation, sync.getGeneration());
+        sync.getSdkState();
+        Assert.assertEquals(generation, sync.getGeneration());
+
+        sync.put(new JSONObject("{\"A\":1}"));
+        Assert.assertTrue(generation != sync.getGeneration());
+        generation = sync.getGeneration();
+
+        sync.receiveServerState(new JSONObject("{\"B\":1}"));
+        Assert.assertEquals(generation, sync.getGeneration());
+
+        sync.receiveDiff(new JSONObject("{\"C\":1}"));
+        Assert.assertTrue(generation != sync.getGeneration());
+        generation = sync.getGeneration();
+
+        sync.receiveState(new JSONObject("{\"D\":1}"), true);
+        Assert.assertTrue(generation != sync.getGeneration());
+    }
+
+    @Test
+    public void sdkStateViewIsSharedUntilSdkStateChanges() throws JSONException {
+        sync.put(new JSONObject("{\"A\":{\"B\":1}}"));
+        JSONObject view = sync.getSdkStateView();
+        JSONUtilTest.assertEquals(sync.getSdkState(), view);
+        Assert.assertSame(view, sync.getSdkStateView());
+
+        sync.receiveServerState(new JSONObject("{\"C\":1}"));
+        Assert.assertSame(view, sync.getSdkStateView());
+
+        sync.put(new JSONObject("{\"A\":{\"B\":2}}"));
+        Assert.assertNotSame(view, sync.getSdkStateView());
+        JSONUtilTest.assertEquals(new JSONObject("{\"A\":{\"B\":1}}"), view);
+        JSONUtilTest.assertEquals(new JSONObject("{\"A\":{\"B\":2}}"), sync.getSdkStateView());
+    }
+
+    /**
+     * Compares reading a 50KB installation through a copy and through the shared view.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkSdkStateReads() throws JSONException {
+        final int measureIterations = 200;
+        sync.put(JSONUtilTest.largeInstallation());
+        long copyStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            sync.getSdkState().optJSONObject("custom");
+        }
+        long copyNanos = System.nanoTime() - copyStart;
+        long viewStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            sync.getSdkStateView().optJSONObject("custom");
+        }
+        long viewNanos = System.nanoTime() - viewStart;
+        System.out.println(String.format(
+                "Reading a 50KB installation: copy %8.1f us/op, shared view %8.1f us/op",
+                copyNanos / 1000. / measureIterations, viewNanos / 1000. / measureIterations));
+    }
+
     /* ****************************************** *
      * Test put() behavior wrt server patch calls *
      * ****************************************** */
@@ -1,11 +1,15 @@
 package com.wonderpush.sdk;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.AssertUtil;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.Random;
+
 public class JSONUtilTest {
 
     static void assertEquals(JSONObject expected, JSONObject actual) {
@@ -313,4 +317,150 @@ public class JSONUtilTest {
         }
     }
 
+    @Test
+    public void testShallowCopy() throws JSONException {
+        JSONObject nested = new JSONObject("{\"b\":1}");
+        JSONObject base = new JSONObject();
+        base.put("a", nested);
+        base.put("c", "d");
+        JSONObject copy = JSONUtil.shallowCopy(base);
+        assertEquals(base, copy);
+        copy.put("e", true);
+        Assert.assertFalse(base.has("e"));
+        Assert.assertSame(nested, copy.getJSONObject("a"));
+        Assert.assertNull(JSONUtil.shallowCopy(null));
+    }
+
+
+    private static Object randomValue(Random random, int depth) throws JSONException {
+        switch (random.nextInt(depth > 0 ? 9 : 7)) {
+            case 0: return JSONObject.NULL;
+            case 1: return random.nextBoolean();
+            case 2: return random.nextInt();
+            case 3: return random.nextLong();
+            case 4: return random.nextInt(1000) / 8.;
+            case 5: return "string\"" + random.nextInt(1000) + "\u00e9\n";
+            case 6: return "";
+            case 7: return randomObject(random, depth - 1, 1 + random.nextInt(5));
+            default: {
+                JSONArray rtn = new JSONArray();
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    rtn.put(randomValue(random, depth - 1));
+                }
+                return rtn;
+            }
+        }
+    }
+
+    private static JSONObject randomObject(Random random, int depth, int size) throws JSONException {
+        JSONObject rtn = new JSONObject();
+        for (int i = 0; i < size; i++) {
+            rtn.put("key" + random.nextInt(size * 2), randomValue(random, depth));
+        }
+        return rtn;
+    }
+
+    @Test
+    public void testDeepCopyMatchesReparsing() throws JSONException {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            JSONObject original = randomObject(random, 4, 10);
+            JSONObject reparsed = new JSONObject(original.toString());
+            JSONObject copy = JSONUtil.deepCopy(original);
+            assertEquals("seed " + seed, reparsed, copy);
+            Assert.assertEquals("seed " + seed, reparsed.toString(), copy.toString());
+
+            JSONArray array = new JSONArray().put(original).put(JSONObject.NULL).put(1);
+            Assert.assertEquals("seed " + seed, new JSONArray(array.toString()).toString(), JSONUtil.deepCopy(array).toString());
+        }
+    }
+
+    @Test
+    public void testDeepCopyDoesNotShare() throws JSONException {
+        JSONObject original = new JSONObject("{\"a\":{\"b\":[{\"c\":1}]}}");
+        JSONObject copy = JSONUtil.deepCopy(original);
+        copy.getJSONObject("a").getJSONArray("b").getJSONObject(0).put("c", 2);
+        copy.getJSONObject("a").put("d", true);
+        assertEquals(new JSONObject("{\"a\":{\"b\":[{\"c\":1}]}}"), original);
+        Assert.assertNull(JSONUtil.deepCopy((JSONObject) null));
+        Assert.assertNull(JSONUtil.deepCopy((JSONArray) null));
+    }
+
+    @Test
+    public void testMergeAndDiffDoNotShare() throws JSONException {
+        JSONObject diff = new JSONObject("{\"a\":{\"b\":1},\"c\":[{\"d\":1}]}");
+        JSONObject base = new JSONObject();
+        JSONUtil.merge(base, diff);
+        diff.getJSONObject("a").put("b", 2);
+        diff.getJSONArray("c").getJSONObject(0).put("d", 2);
+        assertEquals(new JSONObject("{\"a\":{\"b\":1},\"c\":[{\"d\":1}]}"), base);
+
+        JSONObject to = new JSONObject("{\"a\":{\"b\":1},\"c\":[{\"d\":1}]}");
+        JSONObject computed = JSONUtil.diff(new JSONObject(), to);
+        to.getJSONObject("a").put("b", 2);
+        to.getJSONArray("c").getJSONObject(0).put("d", 2);
+        assertEquals(new JSONObject("{\"a\":{\"b\":1},\"c\":[{\"d\":1}]}"), computed);
+    }
+
+    /**
+     * Builds an installation document of about 50KB, mostly in its custom properties.
+     */
+    static JSONObject largeInstallation() throws JSONException {
+        JSONObject custom = new JSONObject();
+        JSONArray tags = new JSONArray();
+        for (int i = 0; i < 100; i++) {
+            tags.put("tag" + i);
+        }
+        custom.put("tags", tags);
+        for (int i = 0; custom.toString().length() < 48 * 1024; i++) {
+            custom.put("string_field" + i, "some value " + i);
+            custom.put("int_field" + i, i);
+            custom.put("float_field" + i, i / 4.);
+            custom.put("bool_field" + i, i % 2 == 0);
+            custom.put("date_field" + i, "2020-01-01T00:00:00.000Z");
+            custom.put("object_field" + i, new JSONObject().put("nested", new JSONArray().put(i).put("v" + i)));
+        }
+        return new JSONObject()
+                .put("custom", custom)
+                .put("preferences", new JSONObject().put("subscriptionStatus", "optIn"))
+                .put("application", new JSONObject().put("version", "1.0").put("sdkVersion", "4.0.0"))
+                .put("device", new JSONObject().put("platform", "Android").put("osVersion", "13"));
+    }
+
+    @Test
+    public void testDeepCopyLargeInstallation() throws JSONException {
+        JSONObject installation = largeInstallation();
+        Assert.assertTrue(installation.toString().length() >= 48 * 1024);
+        assertEquals(new JSONObject(installation.toString()), JSONUtil.deepCopy(installation));
+    }
+
+    /**
+     * Compares copying a 50KB installation document through its serialization and by walking it.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkDeepCopy() throws JSONException {
+        final int warmupIterations = 50;
+        final int measureIterations = 200;
+        JSONObject installation = largeInstallation();
+
+        for (int i = 0; i < warmupIterations; i++) {
+            new JSONObject(installation.toString());
+            JSONUtil.deepCopy(installation);
+        }
+        long reparseStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            new JSONObject(installation.toString());
+        }
+        long reparseNanos = System.nanoTime() - reparseStart;
+        long walkStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            JSONUtil.deepCopy(installation);
+        }
+        long walkNanos = System.nanoTime() - walkStart;
+        System.out.println(String.format(
+                "Deep copy of a %d bytes installation: reparse %8.1f us/op, tree walk %8.1f us/op",
+                installation.toString().length(), reparseNanos / 1000. / measureIterations, walkNanos / 1000. / measureIterations));
+    }
+
 }
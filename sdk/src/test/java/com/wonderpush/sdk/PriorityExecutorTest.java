@@ -0,0 +1,91 @@
+package com.wonderpush.sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PriorityExecutorTest {
+
+    private PriorityExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueuedTasksRunByPriority() throws Exception {
+        executor = new PriorityExecutor(1, "Test");
+        CountDownLatch blocker = new CountDownLatch(1);
+        // Occupies the only thread while the other tasks are queued
+        Future<String> blocking = executor.submit(() -> {
+            blocker.await();
+            return "blocking";
+        }, 0);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<String>> futures = new ArrayList<>();
+        String[] names = {"sound", "bigPicture1", "largeIcon", "bigPicture2", "largeIcon2"};
+        int[] priorities = {2, 1, 0, 1, 0};
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            futures.add(executor.submit(() -> {
+                order.add(name);
+                return name;
+            }, priorities[i]));
+        }
+        blocker.countDown();
+
+        assertEquals("blocking", blocking.get(1, TimeUnit.SECONDS));
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], futures.get(i).get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(Arrays.asList("largeIcon", "largeIcon2", "bigPicture1", "bigPicture2", "sound"), order);
+    }
+
+    @Test
+    public void testTasksRunInParallel() throws Exception {
+        executor = new PriorityExecutor(3, "Test");
+        CountDownLatch allStarted = new CountDownLatch(3);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            // Each task waits for the others to have started
+            futures.add(executor.submit(() -> {
+                allStarted.countDown();
+                return allStarted.await(1, TimeUnit.SECONDS);
+            }, i));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testExceptionsAreReportedByTheFuture() throws Exception {
+        executor = new PriorityExecutor(1, "Test");
+        Future<String> failing = executor.submit(() -> {
+            throw new IllegalStateException("failure");
+        }, 0);
+        try {
+            failing.get(1, TimeUnit.SECONDS);
+            fail("An exception should have been thrown");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        // The thread is still usable
+        assertEquals("ok", executor.submit(() -> "ok", 0).get(1, TimeUnit.SECONDS));
+    }
+
+}
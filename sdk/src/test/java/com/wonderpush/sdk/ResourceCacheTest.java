@@ -0,0 +1,193 @@
+package com.wonderpush.sdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ResourceCacheTest {
+
+    private static final long NOW = 1600000000000L;
+    private static final ResourceCache.CachingHeaders NO_HEADERS = new ResourceCache.CachingHeaders(null, null, null, null, null);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static File download(ResourceCache cache, int size) throws IOException {
+        File file = cache.createTempFile();
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[size]);
+        }
+        return file;
+    }
+
+    private static ResourceCache.CachingHeaders cacheControl(String cacheControl) {
+        return new ResourceCache.CachingHeaders("\"etag\"", null, cacheControl, null, null);
+    }
+
+    @Test
+    public void testKeysDoNotCollide() {
+        // Both have the same String.hashCode()
+        assertEquals("http://example.com/Aa".hashCode(), "http://example.com/BB".hashCode());
+        String key = ResourceCache.keyForUrl("http://example.com/Aa");
+        assertEquals(64, key.length());
+        assertNotEquals(key, ResourceCache.keyForUrl("http://example.com/BB"));
+        assertEquals(key, ResourceCache.keyForUrl("http://example.com/Aa"));
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        ResourceCache cache = new ResourceCache(folder.newFolder("cache"), 1000);
+        assertNull(cache.get("http://example.com/a"));
+        assertNull(cache.getFresh("http://example.com/a", NOW));
+
+        File file = cache.put("http://example.com/a", download(cache, 10), cacheControl("max-age=60"), NOW);
+        assertNotNull(file);
+        assertEquals(10, file.length());
+        assertEquals(ResourceCache.keyForUrl("http://example.com/a"), file.getName());
+        assertEquals(file, cache.getFresh("http://example.com/a", NOW + 59999));
+        assertNull(cache.getFresh("http://example.com/a", NOW + 60000));
+        ResourceCache.Entry stale = cache.get("http://example.com/a");
+        assertNotNull(stale);
+        assertEquals("\"etag\"", stale.etag);
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(10, cache.getDownloadedBytes());
+        assertEquals(10, cache.getTotalSize());
+    }
+
+    @Test
+    public void testRevalidated() throws IOException {
+        ResourceCache cache = new ResourceCache(folder.newFolder("cache"), 1000);
+        cache.put("http://example.com/a", download(cache, 10), cacheControl("no-cache"), NOW);
+        assertNull(cache.getFresh("http://example.com/a", NOW));
+
+        // A 304 without validators keeps the former ones
+        File file = cache.revalidated("http://example.com/a", new ResourceCache.CachingHeaders(null, null, "max-age=60", null, null), NOW);
+        assertNotNull(file);
+        assertEquals(file, cache.getFresh("http://example.com/a", NOW + 1000));
+        assertEquals("\"etag\"", cache.get("http://example.com/a").etag);
+        assertEquals(1, cache.getRevalidatedCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertNull(cache.revalidated("http://example.com/b", NO_HEADERS, NOW));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedAreEvicted() throws IOException {
+        ResourceCache cache = new ResourceCache(folder.newFolder("cache"), 100);
+        cache.put("http://example.com/a", download(cache, 40), NO_HEADERS, NOW);
+        cache.put("http://example.com/b", download(cache, 40), NO_HEADERS, NOW);
+        // Use a, so that b is the least recently used
+        assertNotNull(cache.getFresh("http://example.com/a", NOW));
+        cache.put("http://example.com/c", download(cache, 40), NO_HEADERS, NOW);
+        assertNotNull(cache.get("http://example.com/a"));
+        assertNull(cache.get("http://example.com/b"));
+        assertFalse(cache.getFile(ResourceCache.keyForUrl("http://example.com/b")).exists());
+        assertNotNull(cache.get("http://example.com/c"));
+        assertEquals(80, cache.getTotalSize());
+        assertEquals(1, cache.getEvictionCount());
+
+        // The newest resource is kept even if it does not fit
+        cache.put("http://example.com/d", download(cache, 200), NO_HEADERS, NOW);
+        assertEquals(1, cache.getEntryCount());
+        assertNotNull(cache.get("http://example.com/d"));
+        assertEquals(200, cache.getTotalSize());
+    }
+
+    @Test
+    public void testReplacingKeepsTheSizeRight() throws IOException {
+        ResourceCache cache = new ResourceCache(folder.newFolder("cache"), 100);
+        cache.put("http://example.com/a", download(cache, 40), NO_HEADERS, NOW);
+        cache.put("http://example.com/a", download(cache, 30), NO_HEADERS, NOW);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(30, cache.getTotalSize());
+        assertEquals(30, cache.get("http://example.com/a").size);
+    }
+
+    @Test
+    public void testIndexIsPersisted() throws IOException {
+        File dir = folder.newFolder("cache");
+        ResourceCache cache = new ResourceCache(dir, 100);
+        cache.put("http://example.com/a", download(cache, 40), cacheControl("max-age=60"), NOW);
+        cache.put("http://example.com/b", download(cache, 40), NO_HEADERS, NOW);
+        cache.getFresh("http://example.com/a", NOW);
+
+        ResourceCache reloaded = new ResourceCache(dir, 100);
+        assertEquals(2, reloaded.getEntryCount());
+        assertEquals(80, reloaded.getTotalSize());
+        assertNotNull(reloaded.getFresh("http://example.com/a", NOW + 1000));
+        assertNull(reloaded.getFresh("http://example.com/a", NOW + 60000));
+        assertEquals("\"etag\"", reloaded.get("http://example.com/a").etag);
+        // The least recently used order is kept, b goes first
+        reloaded.put("http://example.com/c", download(reloaded, 40), NO_HEADERS, NOW);
+        assertNull(reloaded.get("http://example.com/b"));
+        assertNotNull(reloaded.get("http://example.com/a"));
+    }
+
+    @Test
+    public void testUnknownFilesAreDeleted() throws IOException {
+        File dir = folder.newFolder("cache");
+        // Like files cached by former versions, named after the URL hash code
+        File legacy = new File(dir, Integer.toHexString("http://example.com/a".hashCode()));
+        try (FileOutputStream output = new FileOutputStream(legacy)) {
+            output.write(new byte[10]);
+        }
+        ResourceCache cache = new ResourceCache(dir, 100);
+        File file = cache.put("http://example.com/a", download(cache, 10), NO_HEADERS, NOW);
+        assertFalse(legacy.exists());
+        assertTrue(file.exists());
+        assertEquals(2, dir.listFiles().length); // the file and the index
+    }
+
+    @Test
+    public void testCorruptIndex() throws IOException {
+        File dir = folder.newFolder("cache");
+        ResourceCache cache = new ResourceCache(dir, 100);
+        File file = cache.put("http://example.com/a", download(cache, 10), NO_HEADERS, NOW);
+        try (FileOutputStream output = new FileOutputStream(new File(dir, ResourceCache.INDEX_FILENAME))) {
+            output.write("{\"entries\":[{\"key\":".getBytes("UTF-8"));
+        }
+        ResourceCache reloaded = new ResourceCache(dir, 100);
+        assertNull(reloaded.get("http://example.com/a"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRemovedFilesAreForgotten() throws IOException {
+        ResourceCache cache = new ResourceCache(folder.newFolder("cache"), 100);
+        File file = cache.put("http://example.com/a", download(cache, 10), NO_HEADERS, NOW);
+        assertTrue(file.delete());
+        assertNull(cache.get("http://example.com/a"));
+        assertEquals(0, cache.getTotalSize());
+    }
+
+    @Test
+    public void testExpiration() {
+        String date = "Sun, 13 Sep 2020 12:26:40 GMT"; // NOW
+        assertEquals(NOW, ResourceCache.parseHttpDate(date));
+        assertEquals(-1, ResourceCache.parseHttpDate("0"));
+
+        assertEquals(NOW + 3600000, new ResourceCache.CachingHeaders(null, null, "public, max-age=3600", null, null).computeExpiresAt(NOW));
+        assertEquals(NOW + 3600000, new ResourceCache.CachingHeaders(null, null, "max-age=\"3600\"", "0", null).computeExpiresAt(NOW));
+        assertEquals(0, new ResourceCache.CachingHeaders(null, null, "max-age=3600, no-cache", null, null).computeExpiresAt(NOW));
+        assertEquals(0, new ResourceCache.CachingHeaders(null, null, "No-Store", null, null).computeExpiresAt(NOW));
+
+        // Expires is relative to the server date, in case the device clock is off
+        assertEquals(NOW + 1000 + 60000, new ResourceCache.CachingHeaders(null, null, null, "Sun, 13 Sep 2020 12:27:40 GMT", date).computeExpiresAt(NOW + 1000));
+        assertEquals(NOW + 60000, new ResourceCache.CachingHeaders(null, null, "private", "Sun, 13 Sep 2020 12:27:40 GMT", null).computeExpiresAt(NOW + 1000));
+        assertEquals(0, new ResourceCache.CachingHeaders(null, null, null, "0", date).computeExpiresAt(NOW));
+
+        // A tenth of the age since the last modification
+        assertEquals(NOW + 360000, new ResourceCache.CachingHeaders(null, "Sun, 13 Sep 2020 11:26:40 GMT", null, null, date).computeExpiresAt(NOW));
+        assertEquals(NOW + ResourceCache.DEFAULT_FRESHNESS_MS, new ResourceCache.CachingHeaders(null, "Thu, 01 Jan 2015 00:00:00 GMT", null, null, date).computeExpiresAt(NOW));
+        assertEquals(NOW + ResourceCache.DEFAULT_FRESHNESS_MS, NO_HEADERS.computeExpiresAt(NOW));
+    }
+
+}
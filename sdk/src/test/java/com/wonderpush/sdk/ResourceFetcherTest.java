@@ -0,0 +1,200 @@
+package com.wonderpush.sdk;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+public class ResourceFetcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private OkHttpClient sharedClient;
+    private ResourceFetcher fetcher;
+    private File cacheDir;
+    private ResourceCache cache;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        sharedClient = new OkHttpClient();
+        fetcher = new ResourceFetcher(sharedClient.newBuilder().build());
+        cacheDir = folder.newFolder("cache");
+        cache = new ResourceCache(cacheDir, 1024 * 1024);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+
+    private Future<File> submit(ResourceFetcher.Fetch fetch) {
+        return executor.submit((Callable<File>) fetch::execute);
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello").setHeader("Cache-Control", "max-age=60"));
+        File file = fetcher.newFetch(cache, url("/a"), 100, "Test").execute();
+        assertNotNull(file);
+        assertEquals(5, file.length());
+        assertEquals(file, cache.getFresh(url("/a"), System.currentTimeMillis()));
+
+        // Fresh resources are not downloaded again
+        assertEquals(file, fetcher.newFetch(cache, url("/a"), 100, "Test").execute());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testConcurrentFetchesShareTheDownload() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        List<Future<File>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(submit(fetcher.newFetch(cache, url("/a"), 100, "Test")));
+        }
+        File expected = futures.get(0).get(5, TimeUnit.SECONDS);
+        assertNotNull(expected);
+        for (Future<File> future : futures) {
+            assertEquals(expected, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testConnectionIsSharedWithOtherClients() throws Exception {
+        server.enqueue(new MockResponse().setBody("api"));
+        server.enqueue(new MockResponse().setBody("hello"));
+        // Like an API client, derived from the same client
+        OkHttpClient apiClient = sharedClient.newBuilder().build();
+        try (Response response = apiClient.newCall(new Request.Builder().url(url("/api")).build()).execute()) {
+            assertEquals("api", response.body().string());
+        }
+        assertNotNull(fetcher.newFetch(cache, url("/a"), 100, "Test").execute());
+
+        assertEquals(0, server.takeRequest().getSequenceNumber());
+        // The second request went through the same connection
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello").setHeader("ETag", "\"v1\"").setHeader("Cache-Control", "no-cache"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("Cache-Control", "max-age=60"));
+        File file = fetcher.newFetch(cache, url("/a"), 100, "Test").execute();
+        assertNotNull(file);
+        assertEquals(file, fetcher.newFetch(cache, url("/a"), 100, "Test").execute());
+        assertEquals(5, file.length());
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+        assertEquals(1, cache.getRevalidatedCount());
+    }
+
+    @Test
+    public void testStaleResourceIsServedOnError() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello").setHeader("Cache-Control", "no-cache"));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        File file = fetcher.newFetch(cache, url("/a"), 100, "Test").execute();
+        assertNotNull(file);
+        assertEquals(file, fetcher.newFetch(cache, url("/a"), 100, "Test").execute());
+
+        server.enqueue(new MockResponse().setResponseCode(500));
+        assertNull(fetcher.newFetch(cache, url("/b"), 100, "Test").execute());
+    }
+
+    @Test
+    public void testTooLarge() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello"));
+        assertNull(fetcher.newFetch(cache, url("/a"), 4, "Test").execute());
+        assertNull(cache.get(url("/a")));
+        // No temporary file is left behind
+        assertEquals(0, cacheDir.listFiles().length);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        ResourceFetcher.Fetch fetch1 = fetcher.newFetch(cache, url("/a"), 100, "Test");
+        ResourceFetcher.Fetch fetch2 = fetcher.newFetch(cache, url("/a"), 100, "Test");
+        Future<File> future1 = submit(fetch1);
+        server.takeRequest();
+        Future<File> future2 = submit(fetch2);
+        Thread.sleep(100);
+
+        // The canceled fetch returns right away, while the download goes on for the other one
+        fetch2.cancel();
+        assertNull(future2.get(200, TimeUnit.MILLISECONDS));
+        try {
+            future1.get(200, TimeUnit.MILLISECONDS);
+            fail("The download should still be running");
+        } catch (TimeoutException ex) {
+            // expected
+        }
+
+        fetch1.cancel();
+        assertNull(future1.get(1, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+
+        // A later fetch starts a new download
+        server.enqueue(new MockResponse().setBody("hello"));
+        assertNotNull(fetcher.newFetch(cache, url("/a"), 100, "Test").execute());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void testCanceledJoinerDoesNotStopTheDownload() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello").setHeadersDelay(500, TimeUnit.MILLISECONDS));
+        ResourceFetcher.Fetch owner = fetcher.newFetch(cache, url("/a"), 100, "Test");
+        ResourceFetcher.Fetch joiner = fetcher.newFetch(cache, url("/a"), 100, "Test");
+        Future<File> ownerFuture = submit(owner);
+        server.takeRequest();
+        Future<File> joinerFuture = submit(joiner);
+        Thread.sleep(100);
+
+        joiner.cancel();
+        assertNull(joinerFuture.get(200, TimeUnit.MILLISECONDS));
+        assertFalse(ownerFuture.isDone());
+        assertNotNull(ownerFuture.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testCancelBeforeExecute() {
+        ResourceFetcher.Fetch fetch = fetcher.newFetch(cache, url("/a"), 100, "Test");
+        fetch.cancel();
+        assertNull(fetch.execute());
+        assertEquals(0, server.getRequestCount());
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.wonderpush.sdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimeSyncClockTest {
+
+    private static class MemoryStorage implements TimeSyncClock.Storage {
+        long offset;
+        long uncertainty;
+
+        MemoryStorage(long offset, long uncertainty) {
+            this.offset = offset;
+            this.uncertainty = uncertainty;
+        }
+
+        @Override
+        public synchronized long getDeviceDateSyncOffset() {
+            return offset;
+        }
+
+        @Override
+        public synchronized long getDeviceDateSyncUncertainty() {
+            return uncertainty;
+        }
+
+        @Override
+        public synchronized void setDeviceDateSync(long offset, long uncertainty) {
+            this.offset = offset;
+            this.uncertainty = uncertainty;
+        }
+    }
+
+    /**
+     * The former implementation of {@link TimeSync}, synchronizing every call.
+     */
+    private static class SynchronizedTimeSync {
+        private final MemoryStorage storage;
+        private long startupDateToServerDateOffset = 0;
+        private long startupDateToServerDateUncertainty = Long.MAX_VALUE;
+        private long deviceDateToServerDateOffset = 0;
+        private long deviceDateToServerDateUncertainty = Long.MAX_VALUE;
+        private long startupDateToDeviceDateOffset = Long.MAX_VALUE;
+
+        SynchronizedTimeSync(MemoryStorage storage) {
+            this.storage = storage;
+        }
+
+        synchronized long adjustTime(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime) {
+            if (deviceDateToServerDateUncertainty == Long.MAX_VALUE) {
+                deviceDateToServerDateUncertainty = storage.getDeviceDateSyncUncertainty();
+                deviceDateToServerDateOffset = storage.getDeviceDateSyncOffset();
+            }
+            long startupToDeviceOffset = unadjustedSystemCurrentTimeMillis - unadjustedSystemClockElapsedRealtime;
+            if (startupDateToDeviceDateOffset == Long.MAX_VALUE) {
+                startupDateToDeviceDateOffset = startupToDeviceOffset;
+            }
+            if (Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) > 1000) {
+                deviceDateToServerDateOffset -= startupToDeviceOffset - startupDateToDeviceDateOffset;
+                storage.setDeviceDateSync(deviceDateToServerDateOffset, storage.getDeviceDateSyncUncertainty());
+                startupDateToDeviceDateOffset = startupToDeviceOffset;
+            }
+            if (startupDateToServerDateUncertainty <= deviceDateToServerDateUncertainty
+                    && startupDateToServerDateUncertainty != Long.MAX_VALUE) {
+                return unadjustedSystemClockElapsedRealtime + startupDateToServerDateOffset;
+            } else {
+                return unadjustedSystemCurrentTimeMillis + deviceDateToServerDateOffset;
+            }
+        }
+
+        synchronized void syncTimeWithServer(long unadjustedSystemCurrentTimeMillis, long unadjustedSystemClockElapsedRealtime,
+                                             long elapsedRealtimeSend, long elapsedRealtimeReceive, long serverDate, long serverTook) {
+            if (serverDate == 0) {
+                return;
+            }
+            if (deviceDateToServerDateUncertainty == Long.MAX_VALUE) {
+                deviceDateToServerDateUncertainty = storage.getDeviceDateSyncUncertainty();
+                deviceDateToServerDateOffset = storage.getDeviceDateSyncOffset();
+            }
+            long startupToDeviceOffset = unadjustedSystemCurrentTimeMillis - unadjustedSystemClockElapsedRealtime;
+            if (startupDateToDeviceDateOffset == Long.MAX_VALUE) {
+                startupDateToDeviceDateOffset = startupToDeviceOffset;
+            }
+            long uncertainty = (elapsedRealtimeReceive - elapsedRealtimeSend - serverTook) / 2;
+            long offset = serverDate + serverTook / 2 - (elapsedRealtimeSend + elapsedRealtimeReceive) / 2;
+            if (uncertainty < startupDateToServerDateUncertainty
+                    || Math.abs(offset - startupDateToServerDateOffset) > uncertainty + startupDateToServerDateUncertainty) {
+                startupDateToServerDateOffset = offset;
+                startupDateToServerDateUncertainty = uncertainty;
+            }
+            if (startupDateToServerDateUncertainty < deviceDateToServerDateUncertainty
+                    || Math.abs(startupToDeviceOffset - startupDateToDeviceDateOffset) > startupDateToServerDateUncertainty
+                    || Math.abs(deviceDateToServerDateOffset - (startupDateToServerDateOffset - startupDateToDeviceDateOffset))
+                    > deviceDateToServerDateUncertainty + startupDateToServerDateUncertainty) {
+                deviceDateToServerDateOffset = startupDateToServerDateOffset - startupDateToDeviceDateOffset;
+                deviceDateToServerDateUncertainty = startupDateToServerDateUncertainty;
+                storage.setDeviceDateSync(deviceDateToServerDateOffset, deviceDateToServerDateUncertainty);
+            }
+        }
+    }
+
+    private static final long BOOT_DATE = 1600000000000L;
+    /** System time jumps, applied to the device clock */
+    private static final long[] JUMPS = {0, 0, 0, 500, -800, 3600000, -3600000, 86400000L * 365};
+    /** Jumps all far enough from each other to be compensated, whatever the previous one */
+    private static final long[] LARGE_JUMPS = {0, 3600000, -3600000, 86400000L * 365};
+
+    @Test
+    public void testSameResultsAsSynchronizedVersion() {
+        for (int seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            long savedOffset = random.nextBoolean() ? 0 : random.nextInt(100000) - 50000;
+            long savedUncertainty = random.nextBoolean() ? Long.MAX_VALUE : random.nextInt(1000);
+            MemoryStorage expectedStorage = new MemoryStorage(savedOffset, savedUncertainty);
+            MemoryStorage actualStorage = new MemoryStorage(savedOffset, savedUncertainty);
+            SynchronizedTimeSync expected = new SynchronizedTimeSync(expectedStorage);
+            TimeSyncClock actual = new TimeSyncClock(actualStorage);
+
+            long elapsed = random.nextInt(1000000);
+            long jump = 0;
+            for (int step = 0; step < 50; step++) {
+                elapsed += random.nextInt(10000);
+                if (random.nextInt(5) == 0) jump = JUMPS[random.nextInt(JUMPS.length)];
+                long current = BOOT_DATE + elapsed + jump;
+                if (random.nextInt(4) == 0) {
+                    long send = elapsed - random.nextInt(2000);
+                    long took = random.nextInt(100);
+                    long serverDate = random.nextInt(10) == 0 ? 0 : BOOT_DATE + send + random.nextInt(20000) - 10000;
+                    expected.syncTimeWithServer(current, elapsed, send, elapsed, serverDate, took);
+                    actual.syncTimeWithServer(current, elapsed, send, elapsed, serverDate, took);
+                } else {
+                    assertEquals("seed " + seed + " step " + step, expected.adjustTime(current, elapsed), actual.adjustTime(current, elapsed));
+                }
+                assertEquals("seed " + seed + " step " + step, expectedStorage.getDeviceDateSyncOffset(), actualStorage.getDeviceDateSyncOffset());
+                assertEquals("seed " + seed + " step " + step, expectedStorage.getDeviceDateSyncUncertainty(), actualStorage.getDeviceDateSyncUncertainty());
+            }
+        }
+    }
+
+    /**
+     * Reads the time from many threads while the device clock jumps back and forth, between server syncs.
+     * Compensating a jump does not change the time read for the same clocks, whichever thread does it first,
+     * so every read must give the same result as the synchronized version.
+     * Jumps under a second are not compensated, and would make the results depend on the order of the reads in both versions.
+     */
+    @Test
+    public void testConcurrentReadsUnderClockJumps() throws Exception {
+        final int threads = 8;
+        final int phases = 20;
+        final int readsPerPhase = 2000;
+        MemoryStorage expectedStorage = new MemoryStorage(0, Long.MAX_VALUE);
+        MemoryStorage actualStorage = new MemoryStorage(0, Long.MAX_VALUE);
+        SynchronizedTimeSync expected = new SynchronizedTimeSync(expectedStorage);
+        TimeSyncClock actual = new TimeSyncClock(actualStorage);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int threadIndex = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        Random random = new Random(threadIndex);
+                        int reads = 0;
+                        for (int phase = 0; phase < phases; phase++) {
+                            if (threadIndex == 0 && phase % 2 == 1) {
+                                // Both versions see the same sync, using the same clocks
+                                long elapsed = phase * 100000L;
+                                long current = BOOT_DATE + elapsed;
+                                long serverDate = BOOT_DATE + elapsed + phase * 1000L;
+                                expected.syncTimeWithServer(current, elapsed, elapsed - 100 - phase, elapsed, serverDate, 10);
+                                actual.syncTimeWithServer(current, elapsed, elapsed - 100 - phase, elapsed, serverDate, 10);
+                            }
+                            barrier.await(10, TimeUnit.SECONDS);
+                            for (int i = 0; i < readsPerPhase; i++) {
+                                long elapsed = phase * 100000L + random.nextInt(100000);
+                                long current = BOOT_DATE + elapsed + LARGE_JUMPS[random.nextInt(LARGE_JUMPS.length)];
+                                long actualTime = actual.adjustTime(current, elapsed);
+                                long expectedTime = expected.adjustTime(current, elapsed);
+                                if (actualTime != expectedTime) {
+                                    throw new AssertionError("phase " + phase + " read " + i + ": expected " + expectedTime + " got " + actualTime);
+                                }
+                                reads++;
+                            }
+                            barrier.await(10, TimeUnit.SECONDS);
+                        }
+                        return reads;
+                    }
+                }));
+            }
+            int reads = 0;
+            for (Future<Integer> result : results) {
+                reads += result.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(threads * phases * readsPerPhase, reads);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
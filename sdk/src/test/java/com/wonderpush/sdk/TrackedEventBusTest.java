@@ -0,0 +1,73 @@
+package com.wonderpush.sdk;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrackedEventBusTest {
+
+    @Test
+    public void testDeliversToSubscribersUntilUnsubscribed() throws Exception {
+        List<TrackedEventBus.TrackedEvent> received = new ArrayList<>();
+        TrackedEventBus.Subscriber subscriber = received::add;
+        TrackedEventBus.subscribe(subscriber);
+        TrackedEventBus.subscribe(subscriber);
+        try {
+            JSONObject customData = new JSONObject().put("string_foo", "bar");
+            WonderPushConfiguration.Occurrences occurrences = new WonderPushConfiguration.Occurrences();
+            occurrences.allTime = 3L;
+            TrackedEventBus.publish(new TrackedEventBus.TrackedEvent("purchase", customData, occurrences));
+            assertEquals(1, received.size());
+            assertEquals("purchase", received.get(0).getType());
+            assertEquals("bar", received.get(0).getCustomData().getString("string_foo"));
+            assertEquals(Long.valueOf(3), received.get(0).getOccurrences().allTime);
+        } finally {
+            TrackedEventBus.unsubscribe(subscriber);
+        }
+        TrackedEventBus.publish(new TrackedEventBus.TrackedEvent("purchase", null, null));
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testEventIsNotAffectedByLaterChanges() throws Exception {
+        JSONObject customData = new JSONObject().put("object_foo", new JSONObject().put("string_bar", "baz"));
+        WonderPushConfiguration.Occurrences occurrences = new WonderPushConfiguration.Occurrences();
+        occurrences.allTime = 3L;
+        occurrences.last1days = 1L;
+        TrackedEventBus.TrackedEvent event = new TrackedEventBus.TrackedEvent("purchase", customData, occurrences);
+
+        customData.getJSONObject("object_foo").put("string_bar", "changed");
+        customData.put("string_other", "added");
+        occurrences.allTime = 4L;
+        event.getOccurrences().last1days = 2L;
+
+        assertEquals("{\"object_foo\":{\"string_bar\":\"baz\"}}", event.getCustomData().toString());
+        assertEquals(Long.valueOf(3), event.getOccurrences().allTime);
+        assertEquals(Long.valueOf(1), event.getOccurrences().last1days);
+        assertNull(event.getOccurrences().last7days);
+        assertNull(new TrackedEventBus.TrackedEvent("purchase", null, null).getOccurrences());
+    }
+
+    @Test
+    public void testFailingSubscriberDoesNotPreventDelivery() {
+        List<String> received = new ArrayList<>();
+        TrackedEventBus.Subscriber failing = event -> {
+            throw new IllegalStateException("test");
+        };
+        TrackedEventBus.Subscriber subscriber = event -> received.add(event.getType());
+        TrackedEventBus.subscribe(failing);
+        TrackedEventBus.subscribe(subscriber);
+        try {
+            TrackedEventBus.publish(new TrackedEventBus.TrackedEvent("foo", null, null));
+            assertEquals(1, received.size());
+        } finally {
+            TrackedEventBus.unsubscribe(failing);
+            TrackedEventBus.unsubscribe(subscriber);
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+package com.wonderpush.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrackedEventsStoreTest {
+
+    private static final long DAY_MS = 86400000L;
+    private static final long START = 1000000000000L;
+
+    private static final TrackedEventsStore.Limits DEFAULT_LIMITS = new TrackedEventsStore.Limits(
+            WonderPushConfiguration.DEFAULT_MAXIMUM_COLLAPSED_LAST_BUILTIN_TRACKED_EVENTS_COUNT,
+            WonderPushConfiguration.DEFAULT_MAXIMUM_COLLAPSED_LAST_CUSTOM_TRACKED_EVENTS_COUNT,
+            WonderPushConfiguration.DEFAULT_MAXIMUM_COLLAPSED_OTHER_TRACKED_EVENTS_COUNT,
+            WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_COUNT,
+            WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_AGE_MS);
+
+    /**
+     * The full-list rebuild algorithm previously used by {@link WonderPushConfiguration#rememberTrackedEvent(JSONObject)},
+     * used as the reference implementation.
+     */
+    private static class Reference {
+        List<JSONObject> events;
+        WonderPushConfiguration.Occurrences occurrences;
+
+        Reference(List<JSONObject> events) {
+            this.events = events;
+        }
+
+        void remember(JSONObject eventData, long now, TrackedEventsStore.Limits limits) throws JSONException {
+            occurrences = null;
+            final String type = JSONUtil.getString(eventData, "type");
+            if (type == null) return;
+            occurrences = new WonderPushConfiguration.Occurrences();
+            long allTime = 0L;
+            String campaignId = JSONUtil.optString(eventData, "campaignId");
+            String collapsing = JSONUtil.optString(eventData, "collapsing");
+            List<JSONObject> uncollapsedEvents = new ArrayList<>();
+            List<JSONObject> collapsedLastBuiltinEvents = new ArrayList<>();
+            List<JSONObject> collapsedLastCustomEvents = new ArrayList<>();
+            List<JSONObject> collapsedOtherEvents = new ArrayList<>();
+            for (JSONObject oldTrackedEvent : events) {
+                String oldTrackedEventCollapsing = JSONUtil.optString(oldTrackedEvent, "collapsing");
+                String oldTrackedEventType = oldTrackedEvent.optString("type");
+                if ((collapsing == null || "last".equals(collapsing)) && "last".equals(oldTrackedEventCollapsing) && type.equals(oldTrackedEventType)) {
+                    JSONObject occs = oldTrackedEvent.optJSONObject("occurrences");
+                    allTime = Math.max(1, occs != null ? occs.optLong("allTime", 1L) : 1);
+                    continue;
+                }
+                if (campaignId != null && "campaign".equals(collapsing) && "campaign".equals(oldTrackedEventCollapsing) && type.equals(oldTrackedEventType) && campaignId.equals(oldTrackedEvent.optString("campaignId"))) {
+                    JSONObject occs = oldTrackedEvent.optJSONObject("occurrences");
+                    allTime = Math.max(1, occs != null ? occs.optLong("allTime", 1L) : 1);
+                    continue;
+                }
+                if (oldTrackedEventCollapsing == null && now - oldTrackedEvent.optLong("actionDate", now) >= limits.maximumUncollapsedAgeMs) {
+                    continue;
+                }
+                if (oldTrackedEventCollapsing == null) {
+                    uncollapsedEvents.add(oldTrackedEvent);
+                } else if ("last".equals(oldTrackedEventCollapsing)) {
+                    if (oldTrackedEventType.startsWith("@")) {
+                        collapsedLastBuiltinEvents.add(oldTrackedEvent);
+                    } else {
+                        collapsedLastCustomEvents.add(oldTrackedEvent);
+                    }
+                } else {
+                    collapsedOtherEvents.add(oldTrackedEvent);
+                }
+            }
+            JSONObject uncollapsedEventData = null;
+            if (collapsing == null) {
+                uncollapsedEventData = new JSONObject(eventData.toString());
+                uncollapsedEvents.add(uncollapsedEventData);
+            }
+            allTime += 1;
+            JSONObject collapsedEventData = new JSONObject(eventData.toString());
+            if (collapsing == null) {
+                collapsedEventData.put("collapsing", "last");
+                collapsing = "last";
+            }
+            if ("last".equals(collapsing)) {
+                if (type.startsWith("@")) {
+                    collapsedLastBuiltinEvents.add(collapsedEventData);
+                } else {
+                    collapsedLastCustomEvents.add(collapsedEventData);
+                }
+            } else {
+                collapsedOtherEvents.add(collapsedEventData);
+            }
+            Comparator<JSONObject> comparator = (o1, o2) -> Long.compare(o1.optLong("actionDate", -1), o2.optLong("actionDate", -1));
+            Collections.sort(uncollapsedEvents, comparator);
+            Collections.sort(collapsedLastBuiltinEvents, comparator);
+            Collections.sort(collapsedLastCustomEvents, comparator);
+            Collections.sort(collapsedOtherEvents, comparator);
+            uncollapsedEvents = removeExcessEventsFromStart(uncollapsedEvents, limits.maximumUncollapsedCount);
+            collapsedLastBuiltinEvents = removeExcessEventsFromStart(collapsedLastBuiltinEvents, limits.maximumCollapsedLastBuiltinCount);
+            collapsedLastCustomEvents = removeExcessEventsFromStart(collapsedLastCustomEvents, limits.maximumCollapsedLastCustomCount);
+            collapsedOtherEvents = removeExcessEventsFromStart(collapsedOtherEvents, limits.maximumCollapsedOtherCount);
+            long[] lastDays = new long[7];
+            int[] days = {1, 3, 7, 15, 30, 60, 90};
+            long uncollapsedCount = 0L;
+            for (JSONObject trackedEvent : uncollapsedEvents) {
+                if (type.equals(trackedEvent.optString("type"))) {
+                    ++uncollapsedCount;
+                    long numberOfDaysSinceNow = (long) Math.floor((double) (now - trackedEvent.optLong("actionDate", now)) / 86400000d);
+                    for (int i = 0; i < days.length; i++) {
+                        if (numberOfDaysSinceNow <= days[i]) ++lastDays[i];
+                    }
+                }
+            }
+            occurrences.allTime = Math.max(allTime, uncollapsedCount);
+            occurrences.last1days = lastDays[0];
+            occurrences.last3days = lastDays[1];
+            occurrences.last7days = lastDays[2];
+            occurrences.last15days = lastDays[3];
+            occurrences.last30days = lastDays[4];
+            occurrences.last60days = lastDays[5];
+            occurrences.last90days = lastDays[6];
+            collapsedEventData.put("occurrences", occurrences.toJSON());
+            if (uncollapsedEventData != null) {
+                uncollapsedEventData.put("occurrences", occurrences.toJSON());
+            }
+            events = new ArrayList<>();
+            events.addAll(collapsedLastBuiltinEvents);
+            events.addAll(collapsedLastCustomEvents);
+            events.addAll(collapsedOtherEvents);
+            events.addAll(uncollapsedEvents);
+        }
+
+        private static <T> List<T> removeExcessEventsFromStart(List<T> list, int max) {
+            return list.subList(Math.max(0, list.size() - max), list.size());
+        }
+    }
+
+    private static void assertSameEvents(String message, List<JSONObject> expected, List<JSONObject> actual) {
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(message + " at index " + i + ": expected " + expected.get(i) + " but got " + actual.get(i),
+                    JSONUtil.equals(expected.get(i), actual.get(i)));
+        }
+    }
+
+    private static void assertSameOccurrences(String message, WonderPushConfiguration.Occurrences expected, WonderPushConfiguration.Occurrences actual) throws JSONException {
+        if (expected == null) {
+            assertNull(message, actual);
+            return;
+        }
+        assertNotNull(message, actual);
+        assertEquals(message, expected.toJSON().toString(), actual.toJSON().toString());
+    }
+
+    private static List<JSONObject> parse(String json) throws JSONException {
+        JSONArray array = new JSONArray(json);
+        List<JSONObject> rtn = new ArrayList<>();
+        for (int i = 0; i < array.length(); i++) {
+            rtn.add(array.getJSONObject(i));
+        }
+        return rtn;
+    }
+
+    private static final String[] TYPES = {"@APP_OPEN", "@PRESENCE", "@NOTIFICATION_OPENED", "purchase", "view", "click", "share"};
+    private static final String[] COLLAPSINGS = {null, null, null, null, "last", "campaign", "campaign", "other"};
+    private static final String[] CAMPAIGN_IDS = {null, "c1", "c2", "c3"};
+
+    private static JSONObject randomEvent(Random random, long actionDate) throws JSONException {
+        JSONObject event = new JSONObject();
+        event.put("type", TYPES[random.nextInt(TYPES.length)]);
+        event.putOpt("collapsing", COLLAPSINGS[random.nextInt(COLLAPSINGS.length)]);
+        event.putOpt("campaignId", CAMPAIGN_IDS[random.nextInt(CAMPAIGN_IDS.length)]);
+        if (random.nextInt(50) != 0) {
+            event.put("actionDate", actionDate);
+            event.put("creationDate", actionDate);
+        }
+        if (random.nextBoolean()) {
+            event.put("custom", new JSONObject().put("int_value", random.nextInt(100)));
+        }
+        return event;
+    }
+
+    /**
+     * A stored list as left by any previous SDK version or set by {@link WonderPushConfiguration#setTrackedEvents(List)}:
+     * unsorted, possibly with duplicate collapsing keys and occurrences.
+     */
+    private static List<JSONObject> randomStoredEvents(Random random, long now) throws JSONException {
+        List<JSONObject> rtn = new ArrayList<>();
+        int count = random.nextInt(30);
+        for (int i = 0; i < count; i++) {
+            JSONObject event = randomEvent(random, now - (long) (random.nextDouble() * 120 * DAY_MS));
+            if (random.nextBoolean()) {
+                event.put("occurrences", new JSONObject().put("allTime", random.nextInt(5)));
+            }
+            rtn.add(event);
+        }
+        return rtn;
+    }
+
+    private static TrackedEventsStore.Limits randomLimits(Random random) {
+        return new TrackedEventsStore.Limits(
+                1 + random.nextInt(5),
+                1 + random.nextInt(5),
+                1 + random.nextInt(5),
+                1 + random.nextInt(40),
+                random.nextInt(4) == 0 ? WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_AGE_MS : (1 + random.nextInt(20)) * DAY_MS);
+    }
+
+    @Test
+    public void testDifferentialRandomStreams() throws JSONException {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            long now = START;
+            List<JSONObject> initial = seed % 3 == 0 ? new ArrayList<>() : randomStoredEvents(random, now);
+            Reference reference = new Reference(parse(new JSONArray(initial).toString()));
+            TrackedEventsStore store = new TrackedEventsStore(parse(new JSONArray(initial).toString()));
+            assertSameEvents("seed " + seed + " initial", reference.events, store.getEvents());
+            TrackedEventsStore.Limits limits = seed % 2 == 0 ? DEFAULT_LIMITS : randomLimits(random);
+            int steps = 50 + random.nextInt(250);
+            for (int step = 0; step < steps; step++) {
+                String message = "seed " + seed + " step " + step;
+                // Mostly small increments, with some gaps of several days and some out of order events
+                int gap = random.nextInt(20);
+                now += gap == 0 ? (long) (random.nextDouble() * 10 * DAY_MS) : gap == 1 ? 0 : random.nextInt(3600000);
+                long actionDate = random.nextInt(20) == 0 ? now - random.nextInt(3 * 86400000) : now;
+                if (random.nextInt(40) == 0) {
+                    limits = randomLimits(random);
+                }
+                JSONObject event = random.nextInt(100) == 0 ? new JSONObject().put("actionDate", actionDate) : randomEvent(random, actionDate);
+                reference.remember(event, now, limits);
+                WonderPushConfiguration.Occurrences occurrences = store.remember(event, now, limits);
+                assertSameOccurrences(message, reference.occurrences, occurrences);
+                assertSameEvents(message, reference.events, store.getEvents());
+                if (random.nextInt(25) == 0) {
+                    // Reload from the persisted form
+                    assertSameEvents(message + " persisted", reference.events, parse(store.toJSONString()));
+                    store = new TrackedEventsStore(parse(store.toJSONString()));
+                }
+            }
+            assertSameEvents("seed " + seed + " persisted", reference.events, parse(store.toJSONString()));
+        }
+    }
+
+    @Test
+    public void testOccurrences() throws JSONException {
+        TrackedEventsStore store = new TrackedEventsStore(new ArrayList<>());
+        long now = START;
+        for (int day = 100; day >= 0; day--) {
+            store.remember(new JSONObject().put("type", "test").put("actionDate", now - day * DAY_MS), now, DEFAULT_LIMITS);
+        }
+        WonderPushConfiguration.Occurrences occurrences = store.remember(new JSONObject().put("type", "test").put("actionDate", now), now, DEFAULT_LIMITS);
+        // The events from 90 days ago or older have expired, but were counted in the collapsed event occurrences
+        assertEquals(Long.valueOf(102), occurrences.allTime);
+        assertEquals(Long.valueOf(3), occurrences.last1days);
+        assertEquals(Long.valueOf(5), occurrences.last3days);
+        assertEquals(Long.valueOf(9), occurrences.last7days);
+        assertEquals(Long.valueOf(17), occurrences.last15days);
+        assertEquals(Long.valueOf(32), occurrences.last30days);
+        assertEquals(Long.valueOf(62), occurrences.last60days);
+        assertEquals(Long.valueOf(91), occurrences.last90days);
+        assertEquals(91 + 1, store.size());
+        JSONObject collapsed = store.getEvents().get(0);
+        assertEquals("last", collapsed.getString("collapsing"));
+        assertEquals(102, collapsed.getJSONObject("occurrences").getLong("allTime"));
+    }
+
+    @Test
+    public void testEventWithoutType() throws JSONException {
+        TrackedEventsStore store = new TrackedEventsStore(new ArrayList<>());
+        assertNull(store.remember(new JSONObject().put("actionDate", START), START, DEFAULT_LIMITS));
+        assertEquals(0, store.size());
+        assertEquals("[]", store.toJSONString());
+    }
+
+    private static final int SATURATING_EVENTS_COUNT = WonderPushConfiguration.DEFAULT_MAXIMUM_UNCOLLAPSED_TRACKED_EVENTS_COUNT + 200;
+    private static final long SATURATED_END = START + SATURATING_EVENTS_COUNT * 60000L;
+
+    /**
+     * A stored list where every kind of events reached its maximum retention, tracked once a minute until {@link #SATURATED_END}.
+     */
+    private static String saturatedStoredEvents() throws JSONException {
+        TrackedEventsStore filler = new TrackedEventsStore(new ArrayList<>());
+        long now = START;
+        for (int i = 0; i < SATURATING_EVENTS_COUNT; i++) {
+            now += 60000;
+            JSONObject event = new JSONObject()
+                    .put("type", (i % 2 == 0 ? "@builtin" : "custom") + (i % 150))
+                    .put("actionDate", now)
+                    .put("creationDate", now)
+                    .put("custom", new JSONObject().put("string_foo", "bar").put("int_value", i));
+            if (i % 5 == 0) {
+                event.put("collapsing", "campaign").put("campaignId", "campaign" + (i % 500));
+            }
+            filler.remember(event, now, DEFAULT_LIMITS);
+        }
+        return filler.toJSONString();
+    }
+
+    /**
+     * Events tracked once a minute after {@link #SATURATED_END}.
+     */
+    private static List<JSONObject> eventsAfterSaturation(int count) throws JSONException {
+        Random random = new Random(42);
+        List<JSONObject> rtn = new ArrayList<>();
+        long now = SATURATED_END;
+        for (int i = 0; i < count; i++) {
+            now += 60000;
+            rtn.add(new JSONObject()
+                    .put("type", "custom" + random.nextInt(150))
+                    .put("actionDate", now)
+                    .put("creationDate", now)
+                    .put("custom", new JSONObject().put("string_foo", "bar")));
+        }
+        return rtn;
+    }
+
+    @Test
+    public void testSaturatedStore() throws JSONException {
+        String stored = saturatedStoredEvents();
+        Reference reference = new Reference(parse(stored));
+        TrackedEventsStore store = new TrackedEventsStore(parse(stored));
+        long now = SATURATED_END;
+        for (JSONObject event : eventsAfterSaturation(200)) {
+            now += 60000;
+            reference.remember(event, now, DEFAULT_LIMITS);
+            store.remember(event, now, DEFAULT_LIMITS);
+        }
+        assertSameEvents("saturated", reference.events, store.getEvents());
+        assertSameEvents("saturated persisted", reference.events, parse(store.toJSONString()));
+    }
+
+    /**
+     * Compares the cost of remembering one more event, once every kind of events reached its maximum retention,
+     * between the previous full-list rebuild and the store, persistence included.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkRemember() throws JSONException {
+        final int iterations = 200;
+        String stored = saturatedStoredEvents();
+        List<JSONObject> events = eventsAfterSaturation(iterations);
+
+        Reference reference = new Reference(parse(stored));
+        long referenceStart = System.nanoTime();
+        long now = SATURATED_END;
+        for (JSONObject event : events) {
+            now += 60000;
+            reference.remember(event, now, DEFAULT_LIMITS);
+            assertNotNull(new JSONArray(reference.events).toString());
+        }
+        long referenceNanos = System.nanoTime() - referenceStart;
+
+        TrackedEventsStore store = new TrackedEventsStore(parse(stored));
+        store.toJSONString();
+        long storeStart = System.nanoTime();
+        now = SATURATED_END;
+        for (JSONObject event : events) {
+            now += 60000;
+            store.remember(event, now, DEFAULT_LIMITS);
+            assertNotNull(store.toJSONString());
+        }
+        long storeNanos = System.nanoTime() - storeStart;
+
+        System.out.println(String.format(
+                "Remember with %d stored events: full rebuild %8.1f us/event, store %8.1f us/event (persistence included)",
+                store.size(), referenceNanos / 1000. / iterations, storeNanos / 1000. / iterations));
+    }
+
+}
@@ -1,9 +1,27 @@
 package com.wonderpush.sdk;
 
+import android.content.Context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 public class WonderPush {
 
+    static final String TAG = "WonderPush";
+
+    interface UserConsentListener {
+        void onUserConsentChanged(boolean hasUserConsent);
+    }
+
+    private static boolean SHOW_DEBUG = true;
+
+    public static void setLogging(boolean enable) {
+        SHOW_DEBUG = enable;
+    }
+
     public static boolean getLogging() {
-        return true;
+        return SHOW_DEBUG;
     }
 
     protected static void logDebug(String message) {
@@ -11,8 +29,41 @@ public class WonderPush {
     }
 
     protected static void logDebug(String message, Throwable ex) {
-        System.out.println(message + ": " + ex.getMessage());
-        ex.printStackTrace(System.out);
+        System.out.println(message);
+        if (ex != null) {
+            ex.printStackTrace(System.out);
+        }
+    }
+
+    protected static void logError(String msg) {
+        System.out.println(msg);
+    }
+
+    protected static void logError(String msg, Throwable tr) {
+        System.out.println(msg);
+        if (tr != null) {
+            tr.printStackTrace(System.out);
+        }
+    }
+
+    protected static Context getApplicationContext() {
+        return null;
+    }
+
+    static boolean hasUserConsent() {
+        return true;
+    }
+
+    static void addUserConsentListener(UserConsentListener listener) {
+    }
+
+    protected static void safeDefer(final Runnable runnable, long defer) {
+        runnable.run();
+    }
+
+    protected static <V> Future<V> safeDefer(final Callable<V> callable, long defer) {
+        // Never run, like a task scheduled later than the test
+        return new FutureTask<>(callable);
     }
 
 }
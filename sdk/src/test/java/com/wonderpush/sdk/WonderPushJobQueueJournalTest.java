@@ -0,0 +1,191 @@
+package com.wonderpush.sdk;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WonderPushJobQueueJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JSONObject job(String id) throws JSONException {
+        JSONObject description = new JSONObject();
+        description.put("method", "POST");
+        description.put("resource", "/events/");
+        description.put("params", new JSONObject().put("body", "{\"type\":\"test\",\"custom\":{\"string_foo\":\"" + id + "\"}}"));
+        return new JSONObject().put("id", id).put("description", description);
+    }
+
+    private static List<String> ids(List<JSONObject> jobs) {
+        List<String> rtn = new ArrayList<>();
+        for (JSONObject job : jobs) {
+            rtn.add(job.optString("id"));
+        }
+        return rtn;
+    }
+
+    private File journalFile() {
+        return new File(folder.getRoot(), "queues/test.journal");
+    }
+
+    @Test
+    public void testEmpty() {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        assertEquals(0, journal.load().size());
+        assertFalse(journalFile().exists());
+    }
+
+    @Test
+    public void testPutTakeSurvivesReload() throws JSONException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("a", job("a"));
+        journal.appendPut("b", job("b"));
+        journal.appendPut("c", job("c"));
+        journal.appendTake("b");
+        journal.appendTake("unknown");
+
+        List<JSONObject> reloaded = new WonderPushJobQueueJournal(journalFile()).load();
+        assertEquals(Arrays.asList("a", "c"), ids(reloaded));
+        assertEquals("/events/", reloaded.get(0).getJSONObject("description").getString("resource"));
+    }
+
+    @Test
+    public void testAppendAfterLoad() throws JSONException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("a", job("a"));
+        assertEquals(Arrays.asList("a"), ids(journal.load()));
+        journal.appendPut("b", job("b"));
+        journal.appendTake("a");
+        assertEquals(Arrays.asList("b"), ids(new WonderPushJobQueueJournal(journalFile()).load()));
+    }
+
+    @Test
+    public void testTruncatedRecordIsIgnored() throws JSONException, IOException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("a", job("a"));
+        journal.appendPut("b", job("b"));
+        // Simulate the process being killed in the middle of an append
+        try (OutputStream os = new FileOutputStream(journalFile(), true)) {
+            os.write("{\"op\":\"put\",\"job\":{\"id\":\"c\",\"descr".getBytes(Charset.forName("UTF-8")));
+        }
+        journal = new WonderPushJobQueueJournal(journalFile());
+        assertEquals(Arrays.asList("a", "b"), ids(journal.load()));
+
+        // Records appended afterwards survive a reload
+        journal.appendPut("d", job("d"));
+        assertEquals(Arrays.asList("a", "b", "d"), ids(new WonderPushJobQueueJournal(journalFile()).load()));
+    }
+
+    @Test
+    public void testAppendAfterUncompactedTruncatedRecord() throws JSONException, IOException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("a", job("a"));
+        try (OutputStream os = new FileOutputStream(journalFile(), true)) {
+            os.write("{\"op\":\"put\",\"job\":{\"id\":\"c\",\"descr".getBytes(Charset.forName("UTF-8")));
+        }
+        // Like after a load that could not compact the partially written line away
+        journal = new WonderPushJobQueueJournal(journalFile());
+        journal.appendPut("b", job("b"));
+        assertEquals(Arrays.asList("a", "b"), ids(new WonderPushJobQueueJournal(journalFile()).load()));
+    }
+
+    @Test
+    public void testCompaction() throws JSONException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("live", job("live"));
+        long sizeWithOneJob = journalFile().length();
+        for (int i = 0; i < 1000; i++) {
+            journal.appendPut("job" + i, job("job" + i));
+            journal.appendTake("job" + i);
+        }
+        // Tombstones never pile up beyond a bounded amount
+        assertTrue(journalFile().length() < sizeWithOneJob * 200);
+        assertEquals(Arrays.asList("live"), ids(journal.load()));
+        assertEquals(sizeWithOneJob, journalFile().length());
+
+        journal.appendTake("live");
+        assertEquals(0, new WonderPushJobQueueJournal(journalFile()).load().size());
+    }
+
+    @Test
+    public void testMigrate() throws JSONException {
+        WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(journalFile());
+        journal.load();
+        journal.appendPut("new", job("new"));
+        journal.appendPut("both", job("both"));
+        List<JSONObject> migrated = journal.migrate(Arrays.asList(job("old1"), job("both"), job("old2")));
+        assertEquals(Arrays.asList("old1", "both", "old2", "new"), ids(migrated));
+        assertEquals(Arrays.asList("old1", "both", "old2", "new"), ids(new WonderPushJobQueueJournal(journalFile()).load()));
+    }
+
+    /**
+     * Compares the cost of persisting one more job, when {@code queued} jobs are already in the queue,
+     * between the journal and a full rewrite of the serialized queue, as done by the SharedPreferences storage.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkEnqueue() throws JSONException, IOException {
+        final int iterations = 200;
+        for (int queued : new int[]{10, 100, 1000}) {
+            // Full rewrite: serialize every job and rewrite the whole file on each post
+            File fullRewriteFile = folder.newFile("full-rewrite-" + queued);
+            List<JSONObject> queue = new ArrayList<>();
+            for (int i = 0; i < queued; i++) {
+                queue.add(job("queued" + i));
+            }
+            long fullRewriteStart = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                queue.add(job("posted" + i));
+                JSONArray jsonArray = new JSONArray();
+                for (JSONObject job : queue) {
+                    jsonArray.put(job);
+                }
+                try (OutputStream os = new FileOutputStream(fullRewriteFile, false)) {
+                    os.write(jsonArray.toString().getBytes(Charset.forName("UTF-8")));
+                }
+                queue.remove(queue.size() - 1);
+            }
+            long fullRewriteNanos = System.nanoTime() - fullRewriteStart;
+
+            // Journal: append one record on each post
+            WonderPushJobQueueJournal journal = new WonderPushJobQueueJournal(new File(folder.getRoot(), "journal-" + queued));
+            journal.load();
+            for (int i = 0; i < queued; i++) {
+                journal.appendPut("queued" + i, job("queued" + i));
+            }
+            long journalStart = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                journal.appendPut("posted" + i, job("posted" + i));
+                journal.appendTake("posted" + i);
+            }
+            long journalNanos = System.nanoTime() - journalStart;
+
+            System.out.println(String.format(
+                    "Enqueue with %4d queued jobs: full rewrite %8.1f us/job, journal %8.1f us/job (post + take)",
+                    queued, fullRewriteNanos / 1000. / iterations, journalNanos / 1000. / iterations));
+            assertEquals(queued, journal.load().size());
+        }
+    }
+
+}
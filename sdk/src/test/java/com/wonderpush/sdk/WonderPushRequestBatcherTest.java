@@ -0,0 +1,418 @@
+package com.wonderpush.sdk;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WonderPushRequestBatcherTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static Request event(String userId, String type) throws JSONException {
+        Request.Params params = new Request.Params();
+        params.put("body", new JSONObject().put("type", type).put("custom", new JSONObject().put("string_foo", "bar")).toString());
+        return new Request(userId, HttpMethod.POST, "/events/", params, null);
+    }
+
+    private static int bodyBytes(Request request) {
+        return request.getParams().getParamsList().get(0).getValue().getBytes(UTF8).length;
+    }
+
+    private static String type(Request request) throws JSONException {
+        return new JSONObject(request.getParams().getParamsList().get(0).getValue()).getString("type");
+    }
+
+    @Test
+    public void testIsBatchable() throws JSONException {
+        assertTrue(WonderPushRequestBatcher.isBatchable(event("user", "test")));
+        assertTrue(WonderPushRequestBatcher.isBatchable(event(null, "test")));
+        assertFalse(WonderPushRequestBatcher.isBatchable(new Request("user", HttpMethod.PUT, "/events/", event("user", "test").getParams(), null)));
+        assertFalse(WonderPushRequestBatcher.isBatchable(new Request("user", HttpMethod.POST, "/installation", event("user", "test").getParams(), null)));
+        Request.Params params = new Request.Params();
+        params.put("body", "{}");
+        params.put("other", "value");
+        assertFalse(WonderPushRequestBatcher.isBatchable(new Request("user", HttpMethod.POST, "/events/", params, null)));
+        assertFalse(WonderPushRequestBatcher.isBatchable(new Request("user", HttpMethod.POST, "/events/", null, null)));
+    }
+
+    @Test
+    public void testLimits() throws JSONException {
+        WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(3, 100000);
+        assertTrue(batcher.offer(event("user", "a")));
+        assertFalse(batcher.offer(event("other", "b")));
+        assertFalse(batcher.offer(event(null, "b")));
+        assertTrue(batcher.offer(event("user", "b")));
+        assertFalse(batcher.isFull());
+        assertTrue(batcher.offer(event("user", "c")));
+        assertTrue(batcher.isFull());
+        assertFalse(batcher.offer(event("user", "d")));
+        assertEquals(3, batcher.getRequests().size());
+
+        int eventBytes = bodyBytes(event("user", "a"));
+        batcher = new WonderPushRequestBatcher(100, eventBytes * 2);
+        assertTrue(batcher.offer(event("user", "a")));
+        assertTrue(batcher.offer(event("user", "b")));
+        assertFalse(batcher.offer(event("user", "c")));
+        assertTrue(batcher.isFull());
+    }
+
+    @Test
+    public void testLimitsCountUtf8Bytes() throws JSONException {
+        Request ascii = event("user", "e");
+        Request accented = event("user", "\u00e9");
+        assertEquals(ascii.getParams().getParamsList().get(0).getValue().length(), accented.getParams().getParamsList().get(0).getValue().length());
+        assertEquals(bodyBytes(ascii) + 1, bodyBytes(accented));
+
+        WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(100, bodyBytes(ascii) * 2);
+        assertTrue(batcher.offer(event("user", "a")));
+        assertFalse(batcher.offer(accented));
+        assertTrue(batcher.offer(ascii));
+        assertTrue(batcher.isFull());
+    }
+
+    @Test
+    public void testFirstRequestAlwaysFits() throws JSONException {
+        WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(2, 1);
+        assertTrue(batcher.offer(event("user", "a")));
+        assertFalse(batcher.offer(event("user", "b")));
+        assertNull(batcher.buildRequest());
+    }
+
+    @Test
+    public void testBuildRequest() throws JSONException {
+        WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(10, 100000);
+        batcher.offer(event("user", "a"));
+        batcher.offer(event("user", "b"));
+        Request request = batcher.buildRequest();
+        assertEquals("user", request.getUserId());
+        assertEquals(HttpMethod.POST, request.getMethod());
+        assertEquals("/events/", request.getResource());
+        JSONArray bodies = new JSONArray(request.getParams().toJSONObject().getString("body"));
+        assertEquals(2, bodies.length());
+        assertEquals("a", bodies.getJSONObject(0).getString("type"));
+        assertEquals("b", bodies.getJSONObject(1).getString("type"));
+    }
+
+    @Test
+    public void testRequestsToRetry() throws JSONException {
+        WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(10, 100000);
+        List<Request> requests = Arrays.asList(event("user", "ok"), event("user", "invalid"), event("user", "unavailable"), event("user", "throttled"), event("user", "unanswered"));
+        for (Request request : requests) {
+            batcher.offer(request);
+        }
+        Response response = new Response(new JSONObject("{\"results\":["
+                + "{\"success\":true},"
+                + "{\"error\":{\"status\":400,\"code\":10002}},"
+                + "{\"error\":{\"status\":503}},"
+                + "{\"error\":{\"status\":429}}"
+                + "]}"));
+        assertEquals(Arrays.asList(requests.get(2), requests.get(3), requests.get(4)), batcher.getRequestsToRetry(response));
+        // Without results, nothing tells which items were processed
+        assertEquals(requests, batcher.getRequestsToRetry(new Response(new JSONObject("{\"success\":true}"))));
+    }
+
+    //
+    // Batch collection from the job queue, like the vault does
+    //
+
+    private static WonderPushJobQueue.Job post(WonderPushJobQueue queue, Request request, long notBeforeRealtimeElapsed) {
+        return queue.postJobWithDescription(request.toJSON(), notBeforeRealtimeElapsed);
+    }
+
+    private static List<String> types(List<Request> requests) throws JSONException {
+        List<String> rtn = new ArrayList<>();
+        for (Request request : requests) {
+            rtn.add(type(request));
+        }
+        return rtn;
+    }
+
+    private static List<String> remainingTypes(WonderPushJobQueue queue) throws JSONException {
+        List<String> rtn = new ArrayList<>();
+        WonderPushJobQueue.Job job;
+        while ((job = queue.pollReadyJob(Long.MAX_VALUE, candidate -> true)) != null) {
+            rtn.add(type(new Request(job.getJobDescription())));
+        }
+        return rtn;
+    }
+
+    @Test
+    public void testCollectBatch() throws JSONException {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestCollectBatch", 32);
+        post(queue, event("user", "b"), 1);
+        post(queue, event("user", "c"), 2);
+        post(queue, event("user", "later"), 2000);
+        WonderPushRequestBatcher batcher = WonderPushRequestVault.collectBatch(queue, event("user", "a"), 10, 100000, 1000);
+        assertNotNull(batcher);
+        assertEquals(Arrays.asList("a", "b", "c"), types(batcher.getRequests()));
+        // Jobs that are not due yet are left in the queue
+        assertEquals(2000, queue.peekNextJobNotBeforeRealtimeElapsed());
+        assertEquals(Arrays.asList("later"), remainingTypes(queue));
+    }
+
+    @Test
+    public void testCollectBatchStopsAtAnotherUser() throws JSONException {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestCollectBatchStopsAtAnotherUser", 32);
+        post(queue, event("user", "b"), 1);
+        post(queue, event("other", "x"), 2);
+        post(queue, event("user", "c"), 3);
+        WonderPushRequestBatcher batcher = WonderPushRequestVault.collectBatch(queue, event("user", "a"), 10, 100000, 1000);
+        assertNotNull(batcher);
+        assertEquals(Arrays.asList("a", "b"), types(batcher.getRequests()));
+        assertEquals(Arrays.asList("x", "c"), remainingTypes(queue));
+    }
+
+    @Test
+    public void testCollectBatchStopsAtNonBatchableJob() throws JSONException {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestCollectBatchStopsAtNonBatchableJob", 32);
+        post(queue, event("user", "b"), 1);
+        Request.Params params = new Request.Params();
+        params.put("body", "{\"type\":\"installation\"}");
+        post(queue, new Request("user", HttpMethod.PUT, "/installation", params, null), 2);
+        post(queue, event("user", "c"), 3);
+        WonderPushRequestBatcher batcher = WonderPushRequestVault.collectBatch(queue, event("user", "a"), 10, 100000, 1000);
+        assertNotNull(batcher);
+        assertEquals(Arrays.asList("a", "b"), types(batcher.getRequests()));
+        assertEquals(Arrays.asList("installation", "c"), remainingTypes(queue));
+    }
+
+    @Test
+    public void testCollectBatchLimits() throws JSONException {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestCollectBatchLimits", 32);
+        post(queue, event("user", "b"), 1);
+        post(queue, event("user", "c"), 2);
+        post(queue, event("user", "d"), 3);
+        WonderPushRequestBatcher batcher = WonderPushRequestVault.collectBatch(queue, event("user", "a"), 2, 100000, 1000);
+        assertNotNull(batcher);
+        assertEquals(Arrays.asList("a", "b"), types(batcher.getRequests()));
+        batcher = WonderPushRequestVault.collectBatch(queue, event("user", "a"), 10, bodyBytes(event("user", "a")) * 2, 1000);
+        assertNotNull(batcher);
+        assertEquals(Arrays.asList("a", "c"), types(batcher.getRequests()));
+        assertEquals(Arrays.asList("d"), remainingTypes(queue));
+    }
+
+    @Test
+    public void testCollectBatchWithoutCompanions() throws JSONException {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestCollectBatchWithoutCompanions", 32);
+        // Nothing else is due
+        post(queue, event("user", "later"), 2000);
+        assertNull(WonderPushRequestVault.collectBatch(queue, event("user", "a"), 10, 100000, 1000));
+        // Batching is disabled
+        post(queue, event("user", "b"), 1);
+        assertNull(WonderPushRequestVault.collectBatch(queue, event("user", "a"), 1, 100000, 1000));
+        // The request itself cannot be batched
+        assertNull(WonderPushRequestVault.collectBatch(queue, new Request("user", HttpMethod.PUT, "/installation", event("user", "a").getParams(), null), 10, 100000, 1000));
+        assertEquals(Arrays.asList("b", "later"), remainingTypes(queue));
+    }
+
+    @Test
+    public void testRejectedBatchIsSentOneByOne() throws Exception {
+        WonderPushJobQueue queue = new WonderPushJobQueue("TestRejectedBatchIsSentOneByOne", 32);
+        post(queue, event("user", "a"), 0);
+        post(queue, event("user", "b"), 0);
+        post(queue, event("user", "c"), 0);
+        final List<String> batches = new ArrayList<>();
+        final List<String> singles = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(4);
+        WonderPushRequestVault.setEventsBatchLimits(10, 100000);
+        try {
+            // A server that does not support batches rejects them as a whole
+            new WonderPushRequestVault(queue, request -> {
+                String body = request.getParams().getParamsList().get(0).getValue();
+                try {
+                    if (body.startsWith("[")) {
+                        batches.add(body);
+                        request.getHandler().onFailure(null, new Response(new JSONObject("{\"error\":{\"status\":400,\"code\":\"12345\"}}")));
+                    } else {
+                        singles.add(type(request));
+                        request.getHandler().onSuccess(new Response(new JSONObject("{\"success\":true}")));
+                    }
+                } catch (JSONException e) {
+                    throw new RuntimeException(e);
+                }
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, batches.size());
+            Collections.sort(singles);
+            assertEquals(Arrays.asList("a", "b", "c"), singles);
+            assertEquals(Long.MAX_VALUE, queue.peekNextJobNotBeforeRealtimeElapsed());
+        } finally {
+            WonderPushRequestVault.setEventsBatchLimits(WonderPushRequestVault.DEFAULT_EVENTS_BATCH_MAX_COUNT, WonderPushRequestVault.DEFAULT_EVENTS_BATCH_MAX_BYTES);
+        }
+    }
+
+    //
+    // Draining against a local mock server
+    //
+
+    private static final int BENCHMARK_SERVER_LATENCY_MS = 5;
+    private HttpServer server;
+    private int serverLatencyMs;
+    private final AtomicInteger serverCalls = new AtomicInteger();
+    private final AtomicInteger serverEvents = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/events/", exchange -> {
+            String form = new String(readAll(exchange.getRequestBody()), UTF8);
+            String body = null;
+            for (String pair : form.split("&")) {
+                String[] parts = pair.split("=", 2);
+                if (parts.length == 2 && "body".equals(URLDecoder.decode(parts[0], "UTF-8"))) {
+                    body = URLDecoder.decode(parts[1], "UTF-8");
+                }
+            }
+            String response;
+            try {
+                if (body != null && body.startsWith("[")) {
+                    JSONArray bodies = new JSONArray(body);
+                    JSONArray results = new JSONArray();
+                    for (int i = 0; i < bodies.length(); i++) {
+                        results.put(new JSONObject().put("success", true));
+                    }
+                    serverEvents.addAndGet(bodies.length());
+                    response = new JSONObject().put("results", results).toString();
+                } else {
+                    new JSONObject(body);
+                    serverEvents.incrementAndGet();
+                    response = "{\"success\":true}";
+                }
+            } catch (JSONException | NullPointerException ex) {
+                response = "{\"error\":{\"status\":400}}";
+            }
+            serverCalls.incrementAndGet();
+            try {
+                Thread.sleep(serverLatencyMs);
+            } catch (InterruptedException ignored) {}
+            byte[] bytes = response.getBytes(UTF8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, read);
+        }
+        return baos.toByteArray();
+    }
+
+    private Response send(Request request) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/v1" + request.getResource());
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(request.getParams().getURLEncodedString().getBytes(UTF8));
+        }
+        try (InputStream is = connection.getInputStream()) {
+            return new Response(new String(readAll(is), UTF8));
+        }
+    }
+
+    private List<Request> queuedEvents(int count) throws JSONException {
+        List<Request> rtn = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rtn.add(event("user", "event" + i));
+        }
+        return rtn;
+    }
+
+    /**
+     * Sends one request per event, like the vault does without batching.
+     */
+    private void drainUnbatched(LinkedList<Request> queue) throws IOException {
+        while (!queue.isEmpty()) {
+            assertFalse(send(queue.removeFirst()).isError());
+        }
+    }
+
+    /**
+     * Sends coalesced requests, like the vault does with batching enabled.
+     */
+    private void drainBatched(LinkedList<Request> queue) throws IOException {
+        while (!queue.isEmpty()) {
+            WonderPushRequestBatcher batcher = new WonderPushRequestBatcher(50, 64 * 1024);
+            while (!queue.isEmpty() && !batcher.isFull() && batcher.offer(queue.getFirst())) {
+                queue.removeFirst();
+            }
+            Request batchRequest = batcher.buildRequest();
+            Response response = send(batchRequest != null ? batchRequest : batcher.getRequests().get(0));
+            assertFalse(response.isError());
+            if (batchRequest != null) {
+                queue.addAll(batcher.getRequestsToRetry(response));
+            }
+        }
+    }
+
+    @Test
+    public void testDrain() throws JSONException, IOException {
+        drainUnbatched(new LinkedList<>(queuedEvents(10)));
+        assertEquals(10, serverCalls.get());
+        assertEquals(10, serverEvents.get());
+
+        serverCalls.set(0);
+        serverEvents.set(0);
+        drainBatched(new LinkedList<>(queuedEvents(200)));
+        assertEquals(200 / 50, serverCalls.get());
+        assertEquals(200, serverEvents.get());
+    }
+
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkDrain() throws JSONException, IOException {
+        final int count = 200;
+        serverLatencyMs = BENCHMARK_SERVER_LATENCY_MS;
+
+        long start = System.nanoTime();
+        drainUnbatched(new LinkedList<>(queuedEvents(count)));
+        long unbatchedMs = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        drainBatched(new LinkedList<>(queuedEvents(count)));
+        long batchedMs = (System.nanoTime() - start) / 1000000;
+
+        System.out.println("Draining " + count + " queued events: " + unbatchedMs + " ms unbatched, " + batchedMs + " ms batched");
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import com.wonderpush.sdk.inappmessaging.model.CampaignImpression;
+import com.wonderpush.sdk.inappmessaging.model.CampaignImpressionList;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CampaignImpressionIndexTest {
+
+    private static CampaignImpressionList impressions(Object... campaignIdCountAndTimestamps) throws JSONException {
+        JSONArray alreadySeenCampaigns = new JSONArray();
+        for (int i = 0; i < campaignIdCountAndTimestamps.length; i += 3) {
+            JSONObject impression = new JSONObject();
+            impression.put("campaignId", campaignIdCountAndTimestamps[i]);
+            impression.put("impressionCount", campaignIdCountAndTimestamps[i + 1]);
+            impression.put("impressionTimestampMillis", campaignIdCountAndTimestamps[i + 2]);
+            alreadySeenCampaigns.put(impression);
+        }
+        CampaignImpressionList rtn = new CampaignImpressionList();
+        rtn.fromJSON(new JSONObject().put("alreadySeenCampaigns", alreadySeenCampaigns));
+        return rtn;
+    }
+
+    private static List<String> campaignIds(CampaignImpressionList impressions) {
+        List<String> rtn = new ArrayList<>();
+        for (CampaignImpression impression : impressions.getCampaignImpressionList()) {
+            rtn.add(impression.getCampaignId());
+        }
+        return rtn;
+    }
+
+    @Test
+    public void testIsCapped() throws JSONException {
+        CampaignImpressionIndex index = CampaignImpressionIndex.fromCampaignImpressionList(impressions("c1", 1, 9000, "c2", 3, 9000));
+        assertTrue(index.isCapped("c1", 1, 0, 10000));
+        assertFalse(index.isCapped("c1", 2, 0, 10000));
+        assertTrue(index.isCapped("c2", 3, 0, 10000));
+        assertFalse(index.isCapped("c2", 4, 0, 10000));
+        assertFalse(index.isCapped("c3", 1, 0, 10000));
+        assertFalse(index.isCapped(null, 1, 0, 10000));
+        // Snooze
+        assertTrue(index.isCapped("c1", 2, 1001, 10000));
+        assertFalse(index.isCapped("c1", 2, 1000, 10000));
+    }
+
+    @Test
+    public void testFirstImpressionOfEachCampaignWins() throws JSONException {
+        CampaignImpressionIndex index = CampaignImpressionIndex.fromCampaignImpressionList(impressions("c1", 1, 9000, "c2", 3, 9000, "c1", 5, 9000));
+        assertEquals(1, index.get("c1").getImpressionCount());
+        assertEquals(Arrays.asList("c1", "c2"), campaignIds(index.toCampaignImpressionList()));
+    }
+
+    @Test
+    public void testEmpty() throws JSONException {
+        assertTrue(CampaignImpressionIndex.fromCampaignImpressionList(null).isEmpty());
+        assertTrue(CampaignImpressionIndex.fromCampaignImpressionList(impressions()).isEmpty());
+        assertEquals(0, CampaignImpressionIndex.EMPTY.toCampaignImpressionList().getAlreadySeenCampaignsCount());
+        assertFalse(CampaignImpressionIndex.EMPTY.isCapped("c1", 1, 0, 10000));
+        assertTrue(CampaignImpressionIndex.EMPTY.withImpression("c1", 10000).isCapped("c1", 1, 0, 10000));
+    }
+
+    @Test
+    public void testWithImpression() throws JSONException {
+        CampaignImpressionIndex index = CampaignImpressionIndex.fromCampaignImpressionList(impressions("c1", 1, 1000, "c2", 3, 2000));
+        CampaignImpressionIndex appended = index.withImpression("c1", 5000).withImpression("c3", 6000);
+
+        // Campaigns keep their position, impressions are collapsed by campaign
+        CampaignImpressionList saved = appended.toCampaignImpressionList();
+        assertEquals(Arrays.asList("c1", "c2", "c3"), campaignIds(saved));
+        assertEquals(2, appended.get("c1").getImpressionCount());
+        assertEquals(5000, appended.get("c1").getImpressionTimestampMillis());
+        assertEquals(3, appended.get("c2").getImpressionCount());
+        assertEquals(2000, appended.get("c2").getImpressionTimestampMillis());
+        assertEquals(1, appended.get("c3").getImpressionCount());
+        assertEquals(6000, appended.get("c3").getImpressionTimestampMillis());
+
+        // The former index is untouched
+        assertEquals(1, index.get("c1").getImpressionCount());
+        assertEquals(1000, index.get("c1").getImpressionTimestampMillis());
+        assertNull(index.get("c3"));
+
+        // Saving and reading back gives the same index
+        CampaignImpressionList reloaded = new CampaignImpressionList();
+        reloaded.fromJSON(saved.toJSON());
+        CampaignImpressionIndex reloadedIndex = CampaignImpressionIndex.fromCampaignImpressionList(reloaded);
+        assertEquals(saved.toJSON().toString(), reloadedIndex.toCampaignImpressionList().toJSON().toString());
+        assertTrue(reloadedIndex.isCapped("c1", 2, 0, 10000));
+        assertFalse(reloadedIndex.isCapped("c1", 3, 0, 10000));
+    }
+
+    private static final int IMPRESSED_COUNT = 500;
+    private static final int CANDIDATES_COUNT = 100;
+
+    /**
+     * Impressions of 500 campaigns, one second apart before {@code now}.
+     */
+    private static CampaignImpressionList manyImpressions(long now) throws JSONException {
+        Object[] stored = new Object[IMPRESSED_COUNT * 3];
+        for (int i = 0; i < IMPRESSED_COUNT; i++) {
+            stored[i * 3] = "campaign" + i;
+            stored[i * 3 + 1] = 1 + i % 3;
+            stored[i * 3 + 2] = now - i * 1000L;
+        }
+        return impressions(stored);
+    }
+
+    /**
+     * 100 candidates, half of which were never impressed by {@link #manyImpressions(long)}.
+     */
+    private static String[] candidates() {
+        String[] candidates = new String[CANDIDATES_COUNT];
+        for (int i = 0; i < CANDIDATES_COUNT; i++) {
+            candidates[i] = "campaign" + (i * IMPRESSED_COUNT * 2 / CANDIDATES_COUNT);
+        }
+        return candidates;
+    }
+
+    /**
+     * The former linear scan.
+     */
+    private static boolean isCappedByScan(CampaignImpressionList impressionList, String campaignId, long maxImpressions, long snoozeTime, long now) {
+        for (CampaignImpression impression : impressionList.getCampaignImpressionList()) {
+            if (campaignId.equals(impression.getCampaignId())) {
+                return impression.getImpressionCount() >= maxImpressions
+                        || now - impression.getImpressionTimestampMillis() < snoozeTime;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testIsCappedLikeLinearScan() throws JSONException {
+        long now = 1000000000000L;
+        CampaignImpressionList impressionList = manyImpressions(now);
+        CampaignImpressionIndex index = CampaignImpressionIndex.fromCampaignImpressionList(impressionList);
+        int capped = 0;
+        for (String campaignId : candidates()) {
+            boolean expected = isCappedByScan(impressionList, campaignId, 3, 60000, now);
+            assertEquals(campaignId, expected, index.isCapped(campaignId, 3, 60000, now));
+            if (expected) capped++;
+        }
+        assertTrue(capped > 0 && capped < CANDIDATES_COUNT);
+    }
+
+    /**
+     * Checks the capping of 100 candidates against 500 impressed campaigns,
+     * with warmup iterations first, like a JMH average time benchmark.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkCappingBatch() throws JSONException {
+        final int warmupIterations = 100;
+        final int measureIterations = 1000;
+        final long maxImpressions = 3;
+        final long snoozeTime = 60000;
+        long now = System.currentTimeMillis();
+        CampaignImpressionList impressionList = manyImpressions(now);
+        CampaignImpressionIndex index = CampaignImpressionIndex.fromCampaignImpressionList(impressionList);
+        String[] candidates = candidates();
+
+        int expectedCapped = 0;
+        long scanNanos = 0;
+        for (int iteration = 0; iteration < warmupIterations + measureIterations; iteration++) {
+            long start = System.nanoTime();
+            int capped = 0;
+            for (String campaignId : candidates) {
+                if (isCappedByScan(impressionList, campaignId, maxImpressions, snoozeTime, now)) capped++;
+            }
+            if (iteration >= warmupIterations) scanNanos += System.nanoTime() - start;
+            expectedCapped = capped;
+        }
+
+        int actualCapped = 0;
+        long indexNanos = 0;
+        for (int iteration = 0; iteration < warmupIterations + measureIterations; iteration++) {
+            long start = System.nanoTime();
+            int capped = 0;
+            for (String campaignId : candidates) {
+                if (index.isCapped(campaignId, maxImpressions, snoozeTime, now)) capped++;
+            }
+            if (iteration >= warmupIterations) indexNanos += System.nanoTime() - start;
+            actualCapped = capped;
+        }
+
+        assertEquals(expectedCapped, actualCapped);
+        System.out.println(String.format(
+                "Capping of %d candidates against %d impressed campaigns: linear scan %8.1f ns/batch, index %8.1f ns/batch",
+                CANDIDATES_COUNT, IMPRESSED_COUNT, (double) scanNanos / measureIterations, (double) indexNanos / measureIterations));
+    }
+
+}
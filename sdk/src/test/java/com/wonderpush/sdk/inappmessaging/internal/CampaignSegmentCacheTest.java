@@ -0,0 +1,135 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import com.wonderpush.sdk.segmentation.Segmenter;
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CampaignSegmentCacheTest {
+
+    private static final String[] SEGMENTS = {
+            "{\".foo\":{\"eq\":\"foo\"}}",
+            "{\".custom.date_foo\":{\"eq\":{\"date\":\"2020-01-01T00:00:00.000Z\"}}}",
+            "{\".bar\":{\".sub\":{\"eq\":\"sub\"},\"installation\":{\".foo\":{\"eq\":\"foo\"}}}}",
+            "{\"event\":{\".type\":{\"eq\":\"test\"},\"installation\":{\".foo\":{\"eq\":\"foo\"}}}}",
+            "{\"or\":[{\".foo\":{\"eq\":\"foo\"}},{\".bar\":{\"eq\":\"bar\"}}]}",
+            "{\"presence\":{\"present\":true,\"sinceDate\":{\"lte\":{\"date\":\"-PT1M\"}}}}",
+            "{\"and\":[{\".custom.string_lang\":{\"any\":[\"fr\",\"en\",\"de\"]}},{\".custom.int_level\":{\"gte\":3}},{\"not\":{\"event\":{\".type\":{\"eq\":\"purchase\"}}}}]}",
+    };
+
+    private static JSONObject segment(int i) throws JSONException {
+        return new JSONObject(SEGMENTS[i % SEGMENTS.length]);
+    }
+
+    @Test
+    public void testParsesOncePerVersion() throws JSONException {
+        CampaignSegmentCache cache = new CampaignSegmentCache();
+        cache.setConfigVersion("1");
+        ASTCriterionNode parsed = cache.getParsedSegment("campaign1", segment(0));
+        assertNotNull(parsed);
+        assertSame(parsed, cache.getParsedSegment("campaign1", segment(0)));
+        assertNotSame(parsed, cache.getParsedSegment("campaign2", segment(0)));
+        assertEquals(2, cache.size());
+
+        cache.setConfigVersion("1");
+        assertSame(parsed, cache.getParsedSegment("campaign1", segment(0)));
+
+        cache.setConfigVersion("2");
+        assertEquals(0, cache.size());
+        assertNotSame(parsed, cache.getParsedSegment("campaign1", segment(0)));
+    }
+
+    @Test
+    public void testUnknownVersionIsNotCached() throws JSONException {
+        CampaignSegmentCache cache = new CampaignSegmentCache();
+        cache.setConfigVersion(null);
+        ASTCriterionNode parsed = cache.getParsedSegment("campaign1", segment(0));
+        assertNotNull(parsed);
+        assertNotSame(parsed, cache.getParsedSegment("campaign1", segment(0)));
+        assertEquals(0, cache.size());
+
+        cache.setConfigVersion("1");
+        cache.getParsedSegment("campaign1", segment(0));
+        cache.getParsedSegment(null, segment(0));
+        assertEquals(1, cache.size());
+        cache.setConfigVersion(null);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testUnparsableSegment() throws JSONException {
+        CampaignSegmentCache cache = new CampaignSegmentCache();
+        cache.setConfigVersion("1");
+        assertNull(cache.getParsedSegment("campaign1", new JSONObject("{\"eq\":0}")));
+        assertEquals(1, cache.size());
+        assertNull(cache.getParsedSegment("campaign1", new JSONObject("{\"eq\":0}")));
+    }
+
+    @Test
+    public void testCachedSegmentsMatchParsedSegments() throws JSONException {
+        JSONObject installation = new JSONObject("{\"foo\":\"foo\",\"custom\":{\"string_lang\":\"fr\",\"int_level\":5}}");
+        List<JSONObject> events = Collections.singletonList(new JSONObject().put("type", "test").put("actionDate", 1000000000000L));
+        Segmenter segmenter = new Segmenter(new Segmenter.Data(installation, events, null, 0));
+        CampaignSegmentCache cache = new CampaignSegmentCache();
+        cache.setConfigVersion("1");
+        for (int i = 0; i < 50; i++) {
+            ASTCriterionNode parsed = new CampaignSegmentCache().getParsedSegment(null, segment(i));
+            ASTCriterionNode cached = cache.getParsedSegment("campaign" + i, segment(i));
+            assertSame(cached, cache.getParsedSegment("campaign" + i, segment(i)));
+            assertEquals(segmenter.matchesInstallation(parsed), segmenter.matchesInstallation(cached));
+        }
+    }
+
+    /**
+     * Compares the cost of getting the parsed segments of 50 campaigns on each triggering event,
+     * between parsing every segment every time and parsing them once per config version.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkParsing() throws JSONException {
+        final int campaignsCount = 50;
+        final int eventsCount = 1000;
+        List<JSONObject> segments = new ArrayList<>();
+        for (int i = 0; i < campaignsCount; i++) {
+            segments.add(segment(i));
+        }
+
+        List<ASTCriterionNode> parsedEveryTime = new ArrayList<>();
+        long everyTimeStart = System.nanoTime();
+        for (int event = 0; event < eventsCount; event++) {
+            parsedEveryTime.clear();
+            for (int i = 0; i < campaignsCount; i++) {
+                CampaignSegmentCache uncached = new CampaignSegmentCache();
+                parsedEveryTime.add(uncached.getParsedSegment(null, segments.get(i)));
+            }
+        }
+        long everyTimeNanos = System.nanoTime() - everyTimeStart;
+
+        List<ASTCriterionNode> parsedOnce = new ArrayList<>();
+        CampaignSegmentCache cache = new CampaignSegmentCache();
+        long onceStart = System.nanoTime();
+        for (int event = 0; event < eventsCount; event++) {
+            parsedOnce.clear();
+            cache.setConfigVersion("1");
+            for (int i = 0; i < campaignsCount; i++) {
+                parsedOnce.add(cache.getParsedSegment("campaign" + i, segments.get(i)));
+            }
+        }
+        long onceNanos = System.nanoTime() - onceStart;
+        assertEquals(campaignsCount, cache.size());
+
+        System.out.println(String.format(
+                "Parsing the segments of %d campaigns: parse every time %8.1f us/event, parse once %8.1f us/event",
+                campaignsCount, everyTimeNanos / 1000. / eventsCount, onceNanos / 1000. / eventsCount));
+    }
+
+}
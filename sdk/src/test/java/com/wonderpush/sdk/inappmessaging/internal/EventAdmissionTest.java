@@ -0,0 +1,69 @@
+package com.wonderpush.sdk.inappmessaging.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class EventAdmissionTest {
+
+    private long now;
+    private EventAdmission admission;
+
+    @Before
+    public void setUp() {
+        now = 1000000;
+        admission = new EventAdmission(() -> now);
+    }
+
+    @Test
+    public void testAdmitsEverythingUntilTriggersAreKnown() {
+        assertTrue(admission.admit("foo"));
+        assertTrue(admission.admit("@PRESENCE"));
+        assertEquals(2, admission.getAdmittedCount());
+        assertEquals(0, admission.getDroppedCount());
+    }
+
+    @Test
+    public void testDropsEventsThatCannotTrigger() {
+        admission.setTriggers(new HashSet<>(Arrays.asList("purchase", "ON_FOREGROUND")));
+        assertTrue(admission.admit("purchase"));
+        assertTrue(admission.admit("ON_FOREGROUND"));
+        assertFalse(admission.admit("@PRESENCE"));
+        assertFalse(admission.admit("foo"));
+        assertFalse(admission.admit("foo"));
+        assertTrue(admission.admit(null));
+        assertEquals(3, admission.getAdmittedCount());
+        assertEquals(3, admission.getDroppedCount());
+    }
+
+    @Test
+    public void testAdmitsEverythingOnceInvalidatedUntilConfirmed() {
+        admission.setTriggers(new HashSet<>(Arrays.asList("purchase")));
+        admission.invalidateTriggers();
+        assertTrue(admission.admit("foo"));
+        admission.confirmTriggers();
+        assertFalse(admission.admit("foo"));
+        admission.invalidateTriggers();
+        admission.setTriggers(new HashSet<>(Arrays.asList("foo")));
+        assertTrue(admission.admit("foo"));
+        assertFalse(admission.admit("purchase"));
+    }
+
+    @Test
+    public void testAdmitsEverythingWhenTriggersAreTooOld() {
+        admission.setTriggers(new HashSet<>(Arrays.asList("purchase")));
+        now += EventAdmission.MAX_TRIGGERS_AGE;
+        assertFalse(admission.admit("foo"));
+        now += 1;
+        assertTrue(admission.admit("foo"));
+        admission.confirmTriggers();
+        assertFalse(admission.admit("foo"));
+        now -= 1;
+        assertTrue(admission.admit("foo"));
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.wonderpush.sdk.ratelimiter;
+
+import android.content.SharedPreferences;
+
+import com.wonderpush.sdk.MemorySharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RateLimiterBufferTest {
+
+    private static class TestRateLimiter extends RateLimiter {
+        long now = 1600000000000L;
+
+        TestRateLimiter(SharedPreferences sharedPreferences) {
+            super(sharedPreferences);
+        }
+
+        TestRateLimiter(SharedPreferences sharedPreferences, ScheduledExecutorService saveExecutor) {
+            super(sharedPreferences, saveExecutor);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+
+    /**
+     * The former implementation of {@link RateLimiter}, saving on every call.
+     */
+    private static class ArrayListRateLimiter {
+        final SharedPreferences sharedPreferences;
+        final Map<String, List<Long>> limiterData = new HashMap<>();
+        long now = 1600000000000L;
+
+        ArrayListRateLimiter(SharedPreferences sharedPreferences) {
+            this.sharedPreferences = sharedPreferences;
+        }
+
+        void removeIncrementsOlderThan(List<Long> incrementDates, long timeToLive) {
+            long start = now - timeToLive;
+            while (incrementDates.size() > 0 && incrementDates.get(0) < start) {
+                incrementDates.remove(0);
+            }
+        }
+
+        void save() {
+            try {
+                JSONObject data = new JSONObject();
+                for (Map.Entry<String, List<Long>> entry : limiterData.entrySet()) {
+                    JSONArray incrementDates = new JSONArray();
+                    for (Long incrementDate : entry.getValue()) {
+                        incrementDates.put(incrementDate);
+                    }
+                    data.put(entry.getKey(), incrementDates);
+                }
+                sharedPreferences.edit().putString("__RateLimiter", data.toString()).apply();
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void increment(RateLimit rateLimit) {
+            List<Long> incrementDates = limiterData.get(rateLimit.key);
+            if (incrementDates == null) {
+                incrementDates = new ArrayList<>();
+                limiterData.put(rateLimit.key, incrementDates);
+            }
+            removeIncrementsOlderThan(incrementDates, rateLimit.timeToLive);
+            incrementDates.add(now);
+            save();
+        }
+
+        boolean isRateLimited(RateLimit rateLimit) {
+            List<Long> incrementDates = limiterData.get(rateLimit.key);
+            if (incrementDates == null) return false;
+            removeIncrementsOlderThan(incrementDates, rateLimit.timeToLive);
+            save();
+            return incrementDates.size() >= rateLimit.limit;
+        }
+
+        void clear(RateLimit rateLimit) {
+            limiterData.remove(rateLimit.key);
+            save();
+        }
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        RateLimit limit = new RateLimit("testLimit", 1000, 5);
+        TestRateLimiter limiter = new TestRateLimiter(new MemorySharedPreferences());
+
+        assertFalse(limiter.isRateLimited(limit));
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.isRateLimited(limit));
+            limiter.increment(limit);
+            limiter.now += 100;
+        }
+        // Increments at 0, 100, 200, 300 and 400ms, now is 500ms
+        assertTrue(limiter.isRateLimited(limit));
+        limiter.now += 499;
+        assertTrue(limiter.isRateLimited(limit));
+        limiter.now += 1;
+        assertTrue(limiter.isRateLimited(limit)); // the first increment expires after 1000ms, inclusive
+        limiter.now += 1;
+        assertFalse(limiter.isRateLimited(limit));
+        limiter.increment(limit);
+        assertTrue(limiter.isRateLimited(limit));
+        limiter.now += 100;
+        assertFalse(limiter.isRateLimited(limit));
+
+        limiter.clear(limit);
+        assertFalse(limiter.isRateLimited(limit));
+    }
+
+    @Test
+    public void testKeysAreIndependent() {
+        RateLimit limitA = new RateLimit("a", 1000, 1);
+        RateLimit limitB = new RateLimit("b", 1000, 1);
+        TestRateLimiter limiter = new TestRateLimiter(new MemorySharedPreferences());
+        limiter.increment(limitA);
+        assertTrue(limiter.isRateLimited(limitA));
+        assertFalse(limiter.isRateLimited(limitB));
+        limiter.clear(limitB);
+        assertTrue(limiter.isRateLimited(limitA));
+    }
+
+    @Test
+    public void testSameResultsAndStorageAsArrayListVersion() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            MemorySharedPreferences expectedPreferences = new MemorySharedPreferences();
+            MemorySharedPreferences actualPreferences = new MemorySharedPreferences();
+            ArrayListRateLimiter expected = new ArrayListRateLimiter(expectedPreferences);
+            TestRateLimiter actual = new TestRateLimiter(actualPreferences);
+            RateLimit[] limits = {
+                    new RateLimit("short", 50 + random.nextInt(100), 1 + random.nextInt(20)),
+                    new RateLimit("long", 1000 + random.nextInt(1000), 1 + random.nextInt(50)),
+            };
+            for (int step = 0; step < 1000; step++) {
+                expected.now = actual.now = expected.now + random.nextInt(20);
+                RateLimit limit = limits[random.nextInt(limits.length)];
+                int action = random.nextInt(100);
+                if (action < 50) {
+                    expected.increment(limit);
+                    actual.increment(limit);
+                    // Increments save all the data, with the expired increments forgotten like the former version did
+                    assertEquals("seed " + seed + " step " + step, expectedPreferences.getString("__RateLimiter", null), actualPreferences.getString("__RateLimiter", null));
+                } else if (action < 99) {
+                    assertEquals("seed " + seed + " step " + step, expected.isRateLimited(limit), actual.isRateLimited(limit));
+                } else {
+                    expected.clear(limit);
+                    actual.clear(limit);
+                    assertEquals("seed " + seed + " step " + step, expectedPreferences.getString("__RateLimiter", null), actualPreferences.getString("__RateLimiter", null));
+                }
+            }
+
+            // Reloading gives the same results
+            TestRateLimiter reloaded = new TestRateLimiter(actualPreferences);
+            reloaded.now = actual.now;
+            for (RateLimit limit : limits) {
+                assertEquals("seed " + seed, expected.isRateLimited(limit), reloaded.isRateLimited(limit));
+            }
+        }
+    }
+
+    @Test
+    public void testReadsDoNotWrite() {
+        RateLimit limit = new RateLimit("testLimit", 1000, 5);
+        MemorySharedPreferences preferences = new MemorySharedPreferences();
+        TestRateLimiter limiter = new TestRateLimiter(preferences);
+        limiter.increment(limit);
+        assertEquals(1, preferences.writes);
+        for (int i = 0; i < 100; i++) {
+            limiter.now += 20;
+            limiter.isRateLimited(limit);
+            limiter.isRateLimited(new RateLimit("other", 1000, 5));
+        }
+        assertEquals(1, preferences.writes);
+    }
+
+    @Test
+    public void testSavesAreCoalesced() throws InterruptedException {
+        RateLimit limit = new RateLimit("testLimit", 60000, 1000);
+        MemorySharedPreferences preferences = new MemorySharedPreferences();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        TestRateLimiter limiter = new TestRateLimiter(preferences, executor);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.increment(limit);
+        }
+        assertEquals(0, preferences.writes);
+        limiter.flush();
+        assertEquals(1, preferences.writes);
+        limiter.flush();
+        assertEquals(1, preferences.writes);
+        TestRateLimiter reloaded = new TestRateLimiter(preferences);
+        assertFalse(reloaded.isRateLimited(limit));
+        assertTrue(reloaded.isRateLimited(new RateLimit("testLimit", 60000, 100)));
+
+        // The scheduled save happens once, after the delay
+        for (int i = 0; i < 100; i++) {
+            limiter.increment(limit);
+        }
+        limiter.clear(new RateLimit("other", 60000, 1));
+        assertEquals(1, preferences.writes);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(RateLimiter.SAVE_DELAY_MS * 5, TimeUnit.MILLISECONDS));
+        assertEquals(2, preferences.writes);
+        reloaded = new TestRateLimiter(preferences);
+        assertTrue(reloaded.isRateLimited(new RateLimit("testLimit", 60000, 200)));
+
+        // Once the executor is shut down, changes are saved right away
+        limiter.increment(limit);
+        assertEquals(3, preferences.writes);
+    }
+
+    /**
+     * Checks the foreground rate limit on every call of a 1000-calls burst, incrementing every 10 calls,
+     * with warmup iterations first, like a JMH average time benchmark.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkIsRateLimitedBurst() {
+        final int calls = 1000;
+        final int warmupIterations = 5;
+        final int measureIterations = 20;
+        RateLimit limit = new RateLimit("appForeground", 60000, 50);
+
+        int expectedLimited = 0;
+        long arrayListNanos = 0;
+        for (int iteration = 0; iteration < warmupIterations + measureIterations; iteration++) {
+            ArrayListRateLimiter limiter = new ArrayListRateLimiter(new MemorySharedPreferences());
+            long start = System.nanoTime();
+            int limited = 0;
+            for (int i = 0; i < calls; i++) {
+                limiter.now += 100;
+                if (limiter.isRateLimited(limit)) limited++;
+                if (i % 10 == 0) limiter.increment(limit);
+            }
+            if (iteration >= warmupIterations) arrayListNanos += System.nanoTime() - start;
+            expectedLimited = limited;
+        }
+
+        int actualLimited = 0;
+        long ringBufferNanos = 0;
+        for (int iteration = 0; iteration < warmupIterations + measureIterations; iteration++) {
+            TestRateLimiter limiter = new TestRateLimiter(new MemorySharedPreferences());
+            long start = System.nanoTime();
+            int limited = 0;
+            for (int i = 0; i < calls; i++) {
+                limiter.now += 100;
+                if (limiter.isRateLimited(limit)) limited++;
+                if (i % 10 == 0) limiter.increment(limit);
+            }
+            if (iteration >= warmupIterations) ringBufferNanos += System.nanoTime() - start;
+            actualLimited = limited;
+        }
+
+        assertEquals(expectedLimited, actualLimited);
+        long total = (long) calls * measureIterations;
+        System.out.println(String.format(
+                "Rate limiter burst of %d calls: list and save on reads %8.1f ns/call, ring buffer %8.1f ns/call",
+                calls, (double) arrayListNanos / total, (double) ringBufferNanos / total));
+    }
+
+}
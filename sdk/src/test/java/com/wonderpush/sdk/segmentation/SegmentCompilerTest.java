@@ -0,0 +1,272 @@
+package com.wonderpush.sdk.segmentation;
+
+import com.wonderpush.sdk.TimeSync;
+import com.wonderpush.sdk.WonderPush;
+import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
+import com.wonderpush.sdk.segmentation.parser.BadInputError;
+import com.wonderpush.sdk.segmentation.parser.GeoLocation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentCompilerTest {
+
+    private static final String[] FIELDS = {".foo", ".bar", ".custom.string_foo", ".custom.int_foo", ".custom.date_foo", ".custom.tags", ".arr.0", ".obj.sub"};
+    private static final String[] VALUES = {"null", "true", "false", "0", "1", "-1", "1.5", "0.0", "1e300", "9223372036854775807",
+            "\"\"", "\"foo\"", "\"fo\"", "\"mm\"", "\"bar\"", "{\"date\":\"2020-01-01T00:00:00.000Z\"}", "{\"date\":\"-PT1M\"}", "{\"date\":\"-P1M\"}", "1577836800000"};
+    private static final String[] COMPARATORS = {"eq", "gt", "gte", "lt", "lte"};
+
+    private boolean logging;
+
+    @Before
+    public void disableLogging() {
+        // The visitor logs every step of its evaluation, which would dominate the measures
+        logging = WonderPush.getLogging();
+        WonderPush.setLogging(false);
+    }
+
+    @After
+    public void restoreLogging() {
+        WonderPush.setLogging(logging);
+    }
+
+    private static Object randomValue(Random random) throws JSONException {
+        switch (random.nextInt(10)) {
+            case 0: return JSONObject.NULL;
+            case 1: return random.nextBoolean();
+            case 2: return random.nextInt(3) - 1;
+            case 3: return random.nextInt(3) / 2.;
+            case 4: return Long.MAX_VALUE;
+            case 5: return new String[]{"", "foo", "fo", "mm", "bar", "2020-01-01T00:00:00.000Z"}[random.nextInt(6)];
+            case 6: return 1577836800000L;
+            case 7: {
+                JSONArray rtn = new JSONArray();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    rtn.put(random.nextInt(5) == 0 ? JSONObject.NULL : randomValue(random));
+                }
+                return rtn;
+            }
+            case 8: return new JSONObject().put("sub", randomValue(random));
+            default: return randomTime(random);
+        }
+    }
+
+    /**
+     * A time far enough from the boundaries of the segments for both engines to agree, whatever the time they evaluate at.
+     */
+    private static long randomTime(Random random) {
+        return TimeSync.getTime() + new long[]{-3600000, -30000, 3600000}[random.nextInt(3)];
+    }
+
+    private static JSONObject randomObject(Random random) throws JSONException {
+        JSONObject custom = new JSONObject();
+        for (String field : new String[]{"string_foo", "int_foo", "date_foo", "tags"}) {
+            if (random.nextBoolean()) custom.put(field, randomValue(random));
+        }
+        JSONObject rtn = new JSONObject();
+        rtn.put("custom", custom);
+        for (String field : new String[]{"foo", "bar", "arr", "obj"}) {
+            if (random.nextBoolean()) rtn.put(field, randomValue(random));
+        }
+        if (random.nextBoolean()) {
+            GeoLocation location = randomLocation(random);
+            rtn.put("location", new JSONObject().put("lat", location.lat).put("lon", location.lon));
+        }
+        return rtn;
+    }
+
+    private static GeoLocation randomLocation(Random random) {
+        return new GeoLocation(180 * random.nextDouble() - 90, 360 * random.nextDouble() - 180);
+    }
+
+    private static final String[] GEO_AREAS = {
+            "{\"geobox\":\"u\"}",
+            "{\"geobox\":{\"top\":60,\"right\":-150,\"bottom\":-60,\"left\":150}}",
+            "{\"geocircle\":{\"center\":{\"lat\":10,\"lon\":20},\"radius\":5000000}}",
+            "{\"geopolygon\":[{\"lat\":-50,\"lon\":-100},{\"lat\":60,\"lon\":-20},{\"lat\":0,\"lon\":0},{\"lat\":60,\"lon\":20},{\"lat\":-50,\"lon\":100}]}",
+    };
+
+    private static String randomCriterion(Random random, int depth) {
+        String field = FIELDS[random.nextInt(FIELDS.length)];
+        switch (depth <= 0 ? random.nextInt(6) : random.nextInt(12)) {
+            case 0:
+                return "{\"" + field + "\":{\"" + COMPARATORS[random.nextInt(COMPARATORS.length)] + "\":" + VALUES[random.nextInt(VALUES.length)] + "}}";
+            case 1: {
+                String op = random.nextBoolean() ? "any" : "all";
+                StringBuilder values = new StringBuilder();
+                for (int i = random.nextInt(3); i > 0; i--) {
+                    if (values.length() > 0) values.append(',');
+                    // Avoid null among the values of any, the visitor throws when the field is not empty
+                    values.append(VALUES[("any".equals(op) ? 1 : 0) + random.nextInt(VALUES.length - 1)]);
+                }
+                return "{\"" + field + "\":{\"" + op + "\":[" + values + "]}}";
+            }
+            case 2:
+                return "{\"" + field + "\":{\"prefix\":\"fo\"}}";
+            case 3:
+                return "{\"subscriptionStatus\":\"" + new String[]{"optIn", "optOut", "softOptOut"}[random.nextInt(3)] + "\"}";
+            case 4:
+                return random.nextBoolean()
+                        ? "{\"presence\":{\"present\":" + random.nextBoolean() + ",\"elapsedTime\":{\"gt\":1000},\"sinceDate\":{\"lte\":{\"date\":\"-PT1M\"}}}}"
+                        : "{\"lastActivityDate\":{\"" + COMPARATORS[1 + random.nextInt(4)] + "\":{\"date\":\"-PT1M\"}}}";
+            case 5: {
+                String area = GEO_AREAS[random.nextInt(GEO_AREAS.length)];
+                switch (random.nextInt(3)) {
+                    case 0: return "{\".location\":{\"inside\":" + area + "}}";
+                    case 1: return "{\"geo\":{\"location\":{\"inside\":" + area + "}}}";
+                    default: return "{\"geo\":{\"date\":{\"" + COMPARATORS[1 + random.nextInt(4)] + "\":{\"date\":\"-PT1M\"}}}}";
+                }
+            }
+            case 6:
+                return "{\"not\":" + randomCriterion(random, depth - 1) + "}";
+            case 7:
+            case 8:
+                return "{\"" + (random.nextBoolean() ? "and" : "or") + "\":[" + randomCriterion(random, depth - 1) + "," + randomCriterion(random, depth - 1) + "," + randomCriterion(random, depth - 1) + "]}";
+            case 9:
+                return "{\"event\":{\".type\":{\"eq\":\"" + (random.nextBoolean() ? "purchase" : "test") + "\"},\"and\":[" + randomCriterion(random, depth - 1) + "]}}";
+            case 10:
+                return "{\"event\":{\"installation\":" + randomCriterion(random, depth - 1) + "}}";
+            default:
+                return "{\"lastActivityDate\":{\"gt\":0}}";
+        }
+    }
+
+    @Test
+    public void testRandomizedAgainstVisitor() throws Exception {
+        int evaluated = 0;
+        for (int seed = 0; seed < 300; seed++) {
+            Random random = new Random(seed);
+            List<JSONObject> events = new ArrayList<>();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                events.add(randomObject(random).put("type", random.nextBoolean() ? "purchase" : "test"));
+            }
+            JSONObject installation = randomObject(random);
+            if (random.nextBoolean()) installation.put("pushToken", new JSONObject().put("data", "token"));
+            if (random.nextBoolean()) installation.put("preferences", new JSONObject().put("subscriptionStatus", "optOut"));
+            Segmenter.PresenceInfo presenceInfo = random.nextBoolean() ? null : new Segmenter.PresenceInfo(randomTime(random), randomTime(random), new long[]{0, 500, 5000}[random.nextInt(3)]);
+            Segmenter.GeoInfo geo = random.nextBoolean() ? null : new Segmenter.GeoInfo(randomLocation(random), randomTime(random));
+            Segmenter.Data data = new Segmenter.Data(installation, events, presenceInfo, random.nextBoolean() ? 0 : randomTime(random), geo);
+            for (int i = 0; i < 20; i++) {
+                String segment = randomCriterion(random, 3);
+                ASTCriterionNode parsed;
+                try {
+                    parsed = Segmenter.parseInstallationSegment(new JSONObject(segment));
+                } catch (BadInputError ex) {
+                    // Some criteria are only valid on the installation, not inside an event
+                    continue;
+                }
+                boolean expected = new Segmenter(data, Segmenter.Engine.VISITOR).matchesInstallation(parsed);
+                boolean actual = new Segmenter(data, Segmenter.Engine.COMPILED).matchesInstallation(parsed);
+                assertEquals("seed " + seed + " segment " + segment + " installation " + installation + " events " + events, expected, actual);
+                evaluated++;
+            }
+        }
+        assertTrue(evaluated > 3000);
+    }
+
+    @Test
+    public void testCompiledSegmentIsReusable() throws Exception {
+        CompiledSegment compiled = Segmenter.compileInstallationSegment(Segmenter.parseInstallationSegment(new JSONObject("{\".custom.int_level\":{\"gte\":3}}")));
+        for (int level = 0; level < 6; level++) {
+            Segmenter.Data data = new Segmenter.Data(new JSONObject().put("custom", new JSONObject().put("int_level", level)), new ArrayList<JSONObject>(), null, 0);
+            assertEquals(level >= 3, new Segmenter(data).matchesInstallation(compiled));
+        }
+    }
+
+    private static final int LARGE_CUSTOM_FIELDS_COUNT = 120;
+    private static final int LARGE_EVENTS_COUNT = 1000;
+
+    private static final String[] LARGE_DATA_SEGMENTS = {
+            // Many installation fields
+            "{\"and\":[{\".custom.string_field0\":{\"eq\":\"value0\"}},{\".custom.int_field1\":{\"gte\":1}},"
+                    + "{\".custom.date_field2\":{\"lt\":{\"date\":\"-PT1H\"}}},{\".custom.tags3\":{\"any\":[\"tag3\",\"c\"]}},"
+                    + "{\".custom.string_field100\":{\"prefix\":\"val\"}},{\".custom.int_field101\":{\"lt\":1000}}]}",
+            // An event join that goes through every event, then an installation field
+            "{\"and\":[{\"event\":{\".type\":{\"eq\":\"purchase\"},\".custom.int_amount\":{\"gt\":10}}},{\".custom.int_field1\":{\"eq\":1}}]}",
+            // A failing installation field that should be evaluated before the event join
+            "{\"and\":[{\"event\":{\".type\":{\"eq\":\"event19\"},\".custom.string_sku\":{\"eq\":\"sku999\"}}},{\".custom.int_field1\":{\"eq\":2}}]}",
+    };
+
+    /**
+     * An installation having 120 custom fields and 1000 tracked events.
+     */
+    private static Segmenter.Data largeData() throws Exception {
+        JSONObject custom = new JSONObject();
+        for (int i = 0; i < LARGE_CUSTOM_FIELDS_COUNT; i++) {
+            switch (i % 4) {
+                case 0: custom.put("string_field" + i, "value" + i); break;
+                case 1: custom.put("int_field" + i, i); break;
+                case 2: custom.put("date_field" + i, "2020-01-01T00:00:00.000Z"); break;
+                default: custom.put("tags" + i, new JSONArray().put("a").put("b").put("tag" + i)); break;
+            }
+        }
+        JSONObject installation = new JSONObject().put("custom", custom);
+        List<JSONObject> events = new ArrayList<>();
+        for (int i = 0; i < LARGE_EVENTS_COUNT; i++) {
+            events.add(new JSONObject()
+                    .put("type", "event" + (i % 20))
+                    .put("actionDate", TimeSync.getTime() - i * 60000L)
+                    .put("custom", new JSONObject().put("int_amount", i).put("string_sku", "sku" + i)));
+        }
+        return new Segmenter.Data(installation, events, null, TimeSync.getTime());
+    }
+
+    @Test
+    public void testEnginesAgreeOnLargeData() throws Exception {
+        Segmenter.Data data = largeData();
+        for (String segment : LARGE_DATA_SEGMENTS) {
+            ASTCriterionNode parsed = Segmenter.parseInstallationSegment(new JSONObject(segment));
+            boolean expected = new Segmenter(data, Segmenter.Engine.VISITOR).matchesInstallation(parsed);
+            assertEquals(segment, expected, new Segmenter(data, Segmenter.Engine.COMPILED).matchesInstallation(Segmenter.compileInstallationSegment(parsed)));
+        }
+    }
+
+    /**
+     * Compares both engines on an installation having 120 custom fields and 1000 tracked events,
+     * with warmup iterations first, like a JMH average time benchmark.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkEngines() throws Exception {
+        final int warmupIterations = 20;
+        final int measureIterations = 100;
+        Segmenter.Data data = largeData();
+        for (String segment : LARGE_DATA_SEGMENTS) {
+            ASTCriterionNode parsed = Segmenter.parseInstallationSegment(new JSONObject(segment));
+            CompiledSegment compiled = Segmenter.compileInstallationSegment(parsed);
+            Segmenter visitorSegmenter = new Segmenter(data, Segmenter.Engine.VISITOR);
+            Segmenter compiledSegmenter = new Segmenter(data, Segmenter.Engine.COMPILED);
+            boolean expected = visitorSegmenter.matchesInstallation(parsed);
+
+            for (int i = 0; i < warmupIterations; i++) {
+                visitorSegmenter.matchesInstallation(parsed);
+                compiledSegmenter.matchesInstallation(compiled);
+            }
+            long visitorStart = System.nanoTime();
+            for (int i = 0; i < measureIterations; i++) {
+                visitorSegmenter.matchesInstallation(parsed);
+            }
+            long visitorNanos = System.nanoTime() - visitorStart;
+            long compiledStart = System.nanoTime();
+            for (int i = 0; i < measureIterations; i++) {
+                compiledSegmenter.matchesInstallation(compiled);
+            }
+            long compiledNanos = System.nanoTime() - compiledStart;
+            System.out.println(String.format(
+                    "Segment evaluation (%d custom fields, %d events, match=%s): visitor %9.1f us/op, compiled %9.1f us/op",
+                    LARGE_CUSTOM_FIELDS_COUNT, LARGE_EVENTS_COUNT, expected, visitorNanos / 1000. / measureIterations, compiledNanos / 1000. / measureIterations));
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import com.wonderpush.sdk.JSONUtil;
 import com.wonderpush.sdk.TimeSync;
 import com.wonderpush.sdk.segmentation.parser.ASTCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.BadInputError;
+import com.wonderpush.sdk.segmentation.parser.GeoLocation;
 import com.wonderpush.sdk.segmentation.parser.UnknownValueError;
 import com.wonderpush.sdk.segmentation.parser.criteria.UnknownCriterionError;
 
@@ -11,9 +12,12 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -21,8 +25,27 @@ import java.util.Set;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+@RunWith(Parameterized.class)
 public class SegmenterTest {
 
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {
+                { Segmenter.Engine.VISITOR },
+                { Segmenter.Engine.COMPILED },
+        });
+    }
+
+    public final Segmenter.Engine engine;
+
+    public SegmenterTest(Segmenter.Engine engine) {
+        this.engine = engine;
+    }
+
+    private Segmenter segmenter(Segmenter.Data data) {
+        return new Segmenter(data, engine);
+    }
+
     public static Segmenter.Data dataEmpty;
 
     static {
@@ -44,7 +67,8 @@ public class SegmenterTest {
                 installation,
                 data.allEvents,
                 data.presenceInfo,
-                data.lastAppOpenDate
+                data.lastAppOpenDate,
+                data.getGeo()
         );
     }
 
@@ -53,7 +77,8 @@ public class SegmenterTest {
                 data.installation,
                 allEvents,
                 data.presenceInfo,
-                data.lastAppOpenDate
+                data.lastAppOpenDate,
+                data.getGeo()
         );
     }
 
@@ -62,7 +87,8 @@ public class SegmenterTest {
                 data.installation,
                 data.allEvents,
                 presenceInfo,
-                data.lastAppOpenDate
+                data.lastAppOpenDate,
+                data.getGeo()
         );
     }
 
@@ -71,7 +97,18 @@ public class SegmenterTest {
                 data.installation,
                 data.allEvents,
                 data.presenceInfo,
-                lastAppOpenDate
+                lastAppOpenDate,
+                data.getGeo()
+        );
+    }
+
+    public static Segmenter.Data dataWithGeo(Segmenter.Data data, Segmenter.GeoInfo geo) {
+        return new Segmenter.Data(
+                data.installation,
+                data.allEvents,
+                data.presenceInfo,
+                data.lastAppOpenDate,
+                geo
         );
     }
 
@@ -121,7 +158,7 @@ public class SegmenterTest {
 
     @Test
     public void testItShouldMatchMatchAll() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
-        Segmenter s = new Segmenter(dataEmpty);
+        Segmenter s = segmenter(dataEmpty);
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{}"));
         assertThat(s.matchesInstallation(parsedSegment), is(true));
     }
@@ -129,248 +166,248 @@ public class SegmenterTest {
     @Test
     public void testItShouldMatchFieldFooEqNull() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":null}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[null,null]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[null,null]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",null]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqFalse() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",false]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",false]}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqTrue() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEq0() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldFooEq00() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":0.0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldFooEq1() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":1}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEq10() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":1.0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqDecimal() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":1.5}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":2.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":2}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1.5,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":2.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":2}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1.5,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqLong() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":9223372036854775807}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775806}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775807}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775808}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775806}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775807}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775808}"))).matchesInstallation(parsedSegment), is(false));
         // When comparing a long with a double, we loose some precision, it's OK
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775806e18}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775807e18}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775808e18}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775806e18}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775807e18}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775808e18}"))).matchesInstallation(parsedSegment), is(true));
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":7.000000000000000512e18}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":6999999999999999487}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":6999999999999999488}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000001}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000512}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000513}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":6999999999999999487}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":6999999999999999488}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000001}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000512}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":7000000000000000513}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqBigDecimal() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":1e300}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1e300}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0e300}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1e300,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1e300}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.0e300}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[1e300,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqBar() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":\"bar\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldFooEqEmptystring() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":\"\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"\",true]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"bar\",true]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[0,\"\",true]}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldCustomDateFooEqNumber() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         // 1577836800000 is 2020-01-01T00:00:00.000Z
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".custom.date_foo\":{\"eq\":1577836800000}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":false}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"foo\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1577836800000}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2029-09-09T09:09:09.009+09:09\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T01:00:00.000+01:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000Z\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020Z\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":false}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"foo\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1577836800000}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2029-09-09T09:09:09.009+09:09\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T01:00:00.000+01:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000Z\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020Z\"}}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldCustomDateFooEqDateString() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".custom.date_foo\":{\"eq\":{\"date\":\"2020-01-01T00:00:00.000Z\"}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":false}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"foo\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1577836800000}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2029-09-09T09:09:09.009+09:09\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T01:00:00.000+01:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000Z\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020Z\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":false}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"foo\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":1577836800000}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2029-09-09T09:09:09.009+09:09\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T01:00:00.000+01:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000Z\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00.000\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00:00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01T00\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01-01\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020-01\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"custom\":{\"date_foo\":\"2020Z\"}}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchFieldFooComparisonLong() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":9223372036854775806}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775805}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775806}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775807}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775805}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775806}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775807}"))).matchesInstallation(parsedSegment), is(true));
         // When comparing a long with a double, we loose some precision, it's OK
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775808e18}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854777000e18}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854775808e18}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9.223372036854777000e18}"))).matchesInstallation(parsedSegment), is(true));
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":9.223372036854775808e18}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775805}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":9223372036854775805}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -378,28 +415,28 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":0}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":-1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
@@ -407,28 +444,28 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":1.5}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":1.5}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":1.5}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":1.5}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.2}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.5}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1.7}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
@@ -436,40 +473,40 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":\"mm\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":\"mm\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":\"mm\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":\"mm\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"m\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"ma\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"MM\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mm\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mma\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"mz\"}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
@@ -477,16 +514,16 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":0}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":0}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":0}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":0}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -494,77 +531,106 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lt\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"lte\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gt\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"gte\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":true}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchEventTypeTest() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"event\":{\".type\":{\"eq\":\"test\"}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@APP_OPEN\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithNewerEvent(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@APP_OPEN\"}")), new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@APP_OPEN\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithNewerEvent(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@APP_OPEN\"}")), new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
+    }
+
+    @Test
+    public void testItShouldMatchEventTypeAndCampaignId() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
+        ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"event\":{\".type\":{\"eq\":\"@NOTIFICATION_OPENED\"},\".campaignId\":{\"eq\":\"c1\"},\".custom.int_foo\":{\"gt\":1}}}"));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":\"c1\",\"custom\":{\"int_foo\":2}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":\"c1\",\"custom\":{\"int_foo\":1}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":\"c2\",\"custom\":{\"int_foo\":2}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@NOTIFICATION_RECEIVED\",\"campaignId\":\"c1\",\"custom\":{\"int_foo\":2}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataEmpty, new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":[\"c0\",\"c1\"],\"custom\":{\"int_foo\":2}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithNewerEvent(dataWithNewerEvent(dataEmpty,
+                new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":\"c1\",\"custom\":{\"int_foo\":2}}")),
+                new JSONObject("{\"type\":\"@NOTIFICATION_RECEIVED\",\"campaignId\":\"c2\"}"))).matchesInstallation(parsedSegment), is(true));
+    }
+
+    @Test
+    public void testDataShouldIndexEventsByTypeAndCampaignId() throws JSONException {
+        JSONObject open1 = new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":\"c1\"}");
+        JSONObject open2 = new JSONObject("{\"type\":\"@NOTIFICATION_OPENED\",\"campaignId\":[\"c2\",\"c2\",\"c1\"]}");
+        JSONObject custom = new JSONObject("{\"type\":\"custom\"}");
+        JSONObject untyped = new JSONObject("{\"type\":1}");
+        Segmenter.Data data = dataWithAllEvents(dataEmpty, Arrays.asList(open1, custom, open2, untyped));
+        assertThat(data.getEventsByType("@NOTIFICATION_OPENED"), is(Arrays.asList(open1, open2)));
+        assertThat(data.getEventsByType("custom"), is(Collections.singletonList(custom)));
+        assertThat(data.getEventsByType("1").isEmpty(), is(true));
+        assertThat(data.getEventsByCampaignId("c1"), is(Arrays.asList(open1, open2)));
+        assertThat(data.getEventsByCampaignId("c2"), is(Collections.singletonList(open2)));
+        assertThat(data.getEventsByCampaignId("c3").isEmpty(), is(true));
     }
 
     @Test
     public void testItShouldMatchInstallation() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".bar\":{\".sub\":{\"eq\":\"sub\"},\"installation\":{\".foo\":{\"eq\":\"foo\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":{\"sub\":\"sub\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":{\"sub\":\"sub\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":{\"sub\":\"sub\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":{\"sub\":\"sub\"}}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchEventInstallation() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"event\":{\".type\":{\"eq\":\"test\"},\"installation\":{\".foo\":{\"eq\":\"foo\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithNewerEvent(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}")), new JSONObject("{\"type\":\"nope\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithNewerEvent(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}")), new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}")), new JSONObject("{\"type\":\"nope\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithNewerEvent(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}")), new JSONObject("{\"type\":\"test\"}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchUser() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"user\":{}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -572,42 +638,42 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"eq\":\"foo\"},\".bar\":{\"eq\":\"bar\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"and\":[{\".foo\":{\"eq\":\"foo\"}},{\".bar\":{\"eq\":\"bar\"}}]}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchOr() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"or\":[{\".foo\":{\"eq\":\"foo\"}},{\".bar\":{\"eq\":\"bar\"}}]}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"to\":\"to\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"to\":\"to\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
     }
 
     @Test
     public void testItShouldMatchNot() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"not\":{\".foo\":{\"eq\":\"foo\"}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\",\"bar\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
     public void testItShouldNotMatchUnknownCriterion() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
         ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"unknown criterion\":{}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -615,31 +681,31 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"subscriptionStatus\":\"optOut\"}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"subscriptionStatus\":\"softOptOut\"}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"subscriptionStatus\":\"optIn\"}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":null}}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":null}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optIn\"}}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"pushToken\":{\"data\":\"FAKE\"},\"preferences\":{\"subscriptionStatus\":\"optOut\"}}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -647,14 +713,125 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"lastActivityDate\":{\"gt\":1000000000000}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithLastAppOpenDate(dataEmpty, 999999999999L)).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithLastAppOpenDate(dataEmpty, 1000000000000L)).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithLastAppOpenDate(dataEmpty, 1000000000001L)).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithLastAppOpenDate(dataEmpty, 999999999999L)).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithLastAppOpenDate(dataEmpty, 1000000000000L)).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithLastAppOpenDate(dataEmpty, 1000000000001L)).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"lastActivityDate\":{\"gt\":{\"date\":\"-PT1M\"}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithLastAppOpenDate(dataEmpty, TimeSync.getTime())).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithLastAppOpenDate(dataEmpty, TimeSync.getTime())).matchesInstallation(parsedSegment), is(true));
+    }
+
+    @Test
+    public void testItShouldEvaluateAtTheGivenTime() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
+        long now = 1600000000000L;
+        ASTCriterionNode parsedSegment;
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"lastActivityDate\":{\"gt\":{\"date\":\"-PT1H\"}}}"));
+        Segmenter segmenter = segmenter(dataWithLastAppOpenDate(dataEmpty, now - 1800000));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now), is(true));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now + 1800000), is(false));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now - 3600000), is(true));
+
+        // Every relative date and presence check of the tree uses the same time
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"and\":["
+                + "{\"presence\":{\"present\":true,\"sinceDate\":{\"gte\":{\"date\":\"-PT1M\"}}}},"
+                + "{\"event\":{\".type\":{\"eq\":\"purchase\"},\".actionDate\":{\"gte\":{\"date\":\"-PT1M\"}}}}"
+                + "]}"));
+        segmenter = segmenter(dataWithPresenceInfo(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject().put("type", "purchase").put("actionDate", now - 60000)
+        )), new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000)));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now), is(true));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now + 1), is(false));
+        assertThat(segmenter.matchesInstallation(parsedSegment, now + 60001), is(false));
+    }
+
+    @Test
+    public void testItShouldMatchGeo() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
+        long now = TimeSync.getTime();
+        Segmenter.Data dataInParis = dataWithGeo(dataEmpty, new Segmenter.GeoInfo(new GeoLocation(48.8566, 2.3522), now - 60000));
+        Segmenter.Data dataInFiji = dataWithGeo(dataEmpty, new Segmenter.GeoInfo(new GeoLocation(-17.7134, 178.065), now - 7200000));
+        ASTCriterionNode parsedSegment;
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{}}"));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // unknown location
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(true));
+
+        // Geohash "u09" covers Paris
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geobox\":\"u09\"}}}}"));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(false));
+
+        // Across the antimeridian
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geobox\":{\"top\":-10,\"right\":-170,\"bottom\":-20,\"left\":175}}}}}"));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(true));
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geocircle\":{\"center\":{\"lat\":48.85,\"lon\":2.35},\"radius\":10000}}}}}"));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(false));
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geopolygon\":[{\"lat\":48,\"lon\":2},{\"lat\":49,\"lon\":2},{\"lat\":49,\"lon\":3},{\"lat\":48,\"lon\":3}]}}}}"));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(false));
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"date\":{\"gt\":{\"date\":\"-PT1H\"}}}}"));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(false));
+
+        parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geobox\":\"u09\"}},\"date\":{\"lt\":{\"date\":\"-PT1H\"}}}}"));
+        assertThat(segmenter(dataInParis).matchesInstallation(parsedSegment), is(false)); // inside, but too recent
+        assertThat(segmenter(dataInFiji).matchesInstallation(parsedSegment), is(false)); // old enough, but outside
+    }
+
+    @Test
+    public void testItShouldOnlyReadTheLocationForGeoCriteria() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
+        final Segmenter.GeoInfo geo = new Segmenter.GeoInfo(new GeoLocation(48.8566, 2.3522), TimeSync.getTime());
+        final int[] reads = new int[1];
+        Segmenter.Data data = new Segmenter.Data(dataEmpty.installation, dataEmpty.allEvents, null, 0, () -> {
+            reads[0]++;
+            return geo;
+        });
+
+        assertThat(segmenter(data).matchesInstallation(Segmenter.parseInstallationSegment(new JSONObject("{\"lastActivityDate\":{\"gt\":0}}"))), is(false));
+        assertThat(reads[0], is(0));
+
+        assertThat(segmenter(data).matchesInstallation(Segmenter.parseInstallationSegment(new JSONObject("{\"geo\":{\"location\":{\"inside\":{\"geobox\":\"u09\"}}}}"))), is(true));
+        assertThat(reads[0] > 0, is(true));
+    }
+
+    @Test
+    public void testItShouldMatchEventLocations() throws JSONException, BadInputError, UnknownValueError, UnknownCriterionError {
+        ASTCriterionNode parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"event\":{\".type\":{\"eq\":\"purchase\"},\".location\":{\"inside\":{\"geobox\":\"u09\"}}}}"));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\"}")
+        ))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":{\"lat\":-17.7134,\"lon\":178.065}}")
+        ))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Arrays.asList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":{\"lat\":-17.7134,\"lon\":178.065}}"),
+                new JSONObject("{\"type\":\"purchase\",\"location\":{\"lat\":48.8566,\"lon\":2.3522}}")
+        ))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":{\"lat\":\"48.8566\",\"lon\":\"2.3522\"}}")
+        ))).matchesInstallation(parsedSegment), is(false)); // not numbers
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":\"u09tvw\"}")
+        ))).matchesInstallation(parsedSegment), is(true)); // geohash
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":\"U09TVW\"}")
+        ))).matchesInstallation(parsedSegment), is(true)); // geohash
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":\"rvzg\"}")
+        ))).matchesInstallation(parsedSegment), is(false)); // geohash elsewhere
+        assertThat(segmenter(dataWithAllEvents(dataEmpty, Collections.singletonList(
+                new JSONObject("{\"type\":\"purchase\",\"location\":\"u09#\"}")
+        ))).matchesInstallation(parsedSegment), is(false)); // not a geohash
     }
 
     @Test
@@ -663,70 +840,70 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":false}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":true}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":false,\"elapsedTime\":{\"gt\":1000}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, so not present, and it will last 60s, so we pass
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, so not present, and it will last 60s, so we pass
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":true,\"elapsedTime\":{\"gt\":1000}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":false,\"elapsedTime\":{\"lt\":1000}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":true,\"elapsedTime\":{\"lt\":1000}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 60000, 60000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":false,\"sinceDate\":{\"lte\":{\"date\":\"-PT1M\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, but leave date is not lte -PT1M
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, but leave date is not lte -PT1M
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":true,\"sinceDate\":{\"lte\":{\"date\":\"-PT1M\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 30000, now + 60000, 90000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now + 60000, 180000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 30000, now + 60000, 90000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now + 60000, 180000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, so not present
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":false,\"sinceDate\":{\"gte\":{\"date\":\"-PT1M\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 120000, now + 180000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, and leave date is gte -PT1M
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now + 60000, 120000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 120000, now + 180000, 60000))).matchesInstallation(parsedSegment), is(true)); // not present yet, and leave date is gte -PT1M
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\"presence\":{\"present\":true,\"sinceDate\":{\"gte\":{\"date\":\"-PT1M\"}}}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 30000, now + 60000, 90000))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now + 60000, 180000))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, but leave date is gte -PT1M
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true)); // no info is considered present since just about now
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now - 100000, 20000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 60000, now - 30000, 30000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 30000, now + 60000, 90000))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now - 120000, now + 60000, 180000))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithPresenceInfo(dataEmpty, new Segmenter.PresenceInfo(now + 60000, now + 120000, 60000))).matchesInstallation(parsedSegment), is(false)); // not present yet, but leave date is gte -PT1M
     }
 
     @Test
@@ -734,15 +911,15 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"prefix\":\"fo\"}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"fo\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"f\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"FOO\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"fo\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"f\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"FOO\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"prefix\":\"fo\"}}"));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -750,61 +927,61 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"any\":[]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"any\":[1]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"any\":[1,\"foo\"]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"any\":[1,null]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"any\":[null]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
     @Test
@@ -812,61 +989,61 @@ public class SegmenterTest {
         ASTCriterionNode parsedSegment;
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"all\":[]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"all\":[1]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"all\":[1,\"foo\"]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,\"foo\"]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,\"foo\"]}"))).matchesInstallation(parsedSegment), is(true));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"all\":[1,null]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
 
         parsedSegment = Segmenter.parseInstallationSegment(new JSONObject("{\".foo\":{\"all\":[null]}}"));
-        assertThat(new Segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
-        assertThat(new Segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataEmpty).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"bar\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":\"foo\"}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":null}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":false}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":0}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":1}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[]}"))).matchesInstallation(parsedSegment), is(true));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,null]}"))).matchesInstallation(parsedSegment), is(false));
+        assertThat(segmenter(dataWithInstallation(dataEmpty, new JSONObject("{\"foo\":[\"bar\",false,1,null]}"))).matchesInstallation(parsedSegment), is(false));
     }
 
 }
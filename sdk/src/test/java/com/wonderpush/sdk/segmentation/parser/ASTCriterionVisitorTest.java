@@ -1,5 +1,6 @@
 package com.wonderpush.sdk.segmentation.parser;
 
+import com.wonderpush.sdk.segmentation.Segmenter;
 import com.wonderpush.sdk.segmentation.parser.criteria.ASTUnknownCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.criteria.AllCriterionNode;
 import com.wonderpush.sdk.segmentation.parser.criteria.AndCriterionNode;
@@ -21,6 +22,7 @@ import com.wonderpush.sdk.segmentation.parser.value.ASTUnknownValueNode;
 import com.wonderpush.sdk.segmentation.parser.value.GeoBoxValueNode;
 import com.wonderpush.sdk.segmentation.parser.value.StringValueNode;
 
+import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -250,4 +252,11 @@ public class ASTCriterionVisitorTest {
         assertThat(visitor.seenObjects.get(0), sameInstance(criterionNode));
     }
 
+    @Test
+    public void testItShouldEvaluateTheSameInBothEngines() {
+        Segmenter.Data data = new Segmenter.Data(new JSONObject(), Collections.<JSONObject>emptyList(), null, 0);
+        boolean expected = new Segmenter(data, Segmenter.Engine.VISITOR).matchesInstallation(criterionNode);
+        assertThat(new Segmenter(data, Segmenter.Engine.COMPILED).matchesInstallation(criterionNode), is(expected));
+    }
+
 }
@@ -4,6 +4,7 @@ import org.hamcrest.MatcherAssert;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 
 public class GeoBoxTest {
     
@@ -43,4 +44,34 @@ public class GeoBoxTest {
         MatcherAssert.assertThat(instance.left, equalTo(left));
     }
 
+    @Test
+    public void testItShouldContainLocationsWithinItsBounds() {
+        GeoBox instance = GeoBox.fromTopRightBottomLeft(49, 3, 48, 2);
+        MatcherAssert.assertThat(instance.contains(48.5, 2.5), is(true));
+        MatcherAssert.assertThat(instance.contains(49, 3), is(true));
+        MatcherAssert.assertThat(instance.contains(48, 2), is(true));
+        MatcherAssert.assertThat(instance.contains(49.1, 2.5), is(false));
+        MatcherAssert.assertThat(instance.contains(47.9, 2.5), is(false));
+        MatcherAssert.assertThat(instance.contains(48.5, 3.1), is(false));
+        MatcherAssert.assertThat(instance.contains(48.5, 1.9), is(false));
+        MatcherAssert.assertThat(instance.contains(48.5, -177.5), is(false));
+    }
+
+    @Test
+    public void testItShouldContainLocationsAcrossTheAntimeridian() {
+        // From Fiji to Samoa
+        GeoBox instance = GeoBox.fromTopRightBottomLeft(-10, -170, -20, 175);
+        MatcherAssert.assertThat(instance.contains(-15, 178), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, 180), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, -180), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, -175), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, 175), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, -170), is(true));
+        MatcherAssert.assertThat(instance.contains(-15, 0), is(false));
+        MatcherAssert.assertThat(instance.contains(-15, 174.9), is(false));
+        MatcherAssert.assertThat(instance.contains(-15, -169.9), is(false));
+        MatcherAssert.assertThat(instance.contains(-9, 178), is(false));
+        MatcherAssert.assertThat(instance.contains(-21, -175), is(false));
+    }
+
 }
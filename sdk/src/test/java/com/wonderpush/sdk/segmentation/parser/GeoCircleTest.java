@@ -0,0 +1,55 @@
+package com.wonderpush.sdk.segmentation.parser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeoCircleTest {
+
+    private static final GeoLocation PARIS = new GeoLocation(48.8566, 2.3522);
+
+    @Test
+    public void testItShouldContainLocationsWithinItsRadius() {
+        GeoCircle circle = new GeoCircle(PARIS, 10000);
+        assertTrue(circle.contains(PARIS.lat, PARIS.lon));
+        // About 8.9 km to the north
+        assertTrue(circle.contains(PARIS.lat + 0.08, PARIS.lon));
+        // About 11.1 km to the north
+        assertFalse(circle.contains(PARIS.lat + 0.1, PARIS.lon));
+        // About 8.8 km to the east, a degree of longitude being shorter at this latitude
+        assertTrue(circle.contains(PARIS.lat, PARIS.lon + 0.12));
+        // About 11 km to the east
+        assertFalse(circle.contains(PARIS.lat, PARIS.lon + 0.15));
+        // London, about 344 km away
+        assertFalse(circle.contains(51.5074, -0.1278));
+        assertTrue(new GeoCircle(PARIS, 350000).contains(51.5074, -0.1278));
+        assertFalse(new GeoCircle(PARIS, 340000).contains(51.5074, -0.1278));
+    }
+
+    @Test
+    public void testItShouldContainLocationsAcrossTheAntimeridian() {
+        GeoCircle circle = new GeoCircle(new GeoLocation(0, 179.95), 20000);
+        // About 11 km away, on the other side
+        assertTrue(circle.contains(0, -179.95));
+        // About 33 km away
+        assertFalse(circle.contains(0, -179.75));
+    }
+
+    @Test
+    public void testItShouldContainLocationsAcrossThePole() {
+        GeoCircle circle = new GeoCircle(new GeoLocation(89.9, 0), 50000);
+        // About 33 km away, passing by the pole
+        assertTrue(circle.contains(89.8, 180));
+        assertTrue(circle.contains(90, 42));
+        assertFalse(circle.contains(89.4, 0));
+    }
+
+    @Test
+    public void testHugeCirclesContainEverything() {
+        GeoCircle circle = new GeoCircle(PARIS, 1e9);
+        assertTrue(circle.contains(-PARIS.lat, PARIS.lon - 180));
+        assertTrue(circle.contains(-90, 0));
+    }
+
+}
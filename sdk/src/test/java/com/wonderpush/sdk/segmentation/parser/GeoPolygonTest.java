@@ -0,0 +1,117 @@
+package com.wonderpush.sdk.segmentation.parser;
+
+import org.junit.Test;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeoPolygonTest {
+
+    private static GeoPolygon polygon(double... latLons) {
+        List<GeoLocation> points = new ArrayList<>();
+        for (int i = 0; i < latLons.length; i += 2) {
+            points.add(new GeoLocation(latLons[i], latLons[i + 1]));
+        }
+        return new GeoPolygon(points);
+    }
+
+    private static Path2D.Double path(GeoPolygon polygon) {
+        Path2D.Double rtn = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        for (int i = 0; i < polygon.points.size(); i++) {
+            GeoLocation point = polygon.points.get(i);
+            if (i == 0) {
+                rtn.moveTo(point.lon, point.lat);
+            } else {
+                rtn.lineTo(point.lon, point.lat);
+            }
+        }
+        rtn.closePath();
+        return rtn;
+    }
+
+    /**
+     * A star with many branches, whose edges go back and forth across every latitude.
+     */
+    private static GeoPolygon star(double centerLat, double centerLon, int points, Random random) {
+        List<GeoLocation> rtn = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            double radius = i % 2 == 0 ? 10 : 2 + 6 * random.nextDouble();
+            rtn.add(new GeoLocation(centerLat + radius * Math.sin(angle), centerLon + radius * Math.cos(angle)));
+        }
+        return new GeoPolygon(rtn);
+    }
+
+    @Test
+    public void testItShouldContainLocationsInsideATriangle() {
+        GeoPolygon triangle = polygon(0, 0, 10, 5, 0, 10);
+        assertTrue(triangle.contains(1, 5));
+        assertTrue(triangle.contains(5, 4));
+        assertFalse(triangle.contains(5, 1));
+        assertFalse(triangle.contains(11, 5));
+        assertFalse(triangle.contains(-1, 5));
+        assertFalse(triangle.contains(5, 10));
+    }
+
+    @Test
+    public void testItShouldContainLocationsInsideAConcavePolygon() {
+        // A "U" shape
+        GeoPolygon u = polygon(0, 0, 10, 0, 10, 3, 3, 3, 3, 7, 10, 7, 10, 10, 0, 10);
+        assertTrue(u.contains(5, 1));
+        assertTrue(u.contains(5, 9));
+        assertTrue(u.contains(1, 5));
+        assertFalse(u.contains(5, 5));
+        assertFalse(u.contains(9, 5));
+    }
+
+    @Test
+    public void testItShouldNotCountRaysGoingThroughVerticesTwice() {
+        GeoPolygon diamond = polygon(0, 5, 5, 10, 10, 5, 5, 0);
+        assertTrue(diamond.contains(5, 5));
+        assertFalse(diamond.contains(5, -1));
+        assertFalse(diamond.contains(5, 11));
+        assertFalse(diamond.contains(10, 4));
+        assertFalse(diamond.contains(0, 6));
+    }
+
+    @Test
+    public void testDegeneratePolygonsContainNothing() {
+        assertFalse(polygon(1, 1, 1, 1, 1, 1).contains(1, 1));
+        assertFalse(polygon(0, 0, 0, 5, 0, 10).contains(0, 5));
+        assertFalse(new GeoPolygon(Arrays.<GeoLocation>asList()).contains(0, 0));
+    }
+
+    @Test
+    public void testLargePolygonsAgreeWithReference() {
+        Random random = new Random(42);
+        for (int points : new int[] {3, 10, 16, 17, 100, 1000, 10000}) {
+            GeoPolygon star = star(45, 5, points, random);
+            Path2D.Double reference = path(star);
+            for (int i = 0; i < 5000; i++) {
+                double lat = 45 + 24 * random.nextDouble() - 12;
+                double lon = 5 + 24 * random.nextDouble() - 12;
+                assertEquals(points + " points, at " + lat + "," + lon, reference.contains(lon, lat), star.contains(lat, lon));
+            }
+        }
+    }
+
+    @Test
+    public void testLargePolygonsContainTheirBranches() {
+        GeoPolygon star = star(0, 0, 10000, new Random(1));
+        for (int i = 0; i < 10000; i += 2) {
+            double angle = 2 * Math.PI * i / 10000;
+            assertTrue(star.contains(9.99 * Math.sin(angle), 9.99 * Math.cos(angle)));
+            assertFalse(star.contains(10.01 * Math.sin(angle), 10.01 * Math.cos(angle)));
+        }
+        assertTrue(star.contains(0, 0));
+        assertTrue(star.contains(1, -1));
+    }
+
+}
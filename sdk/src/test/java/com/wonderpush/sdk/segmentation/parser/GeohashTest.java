@@ -1,13 +1,80 @@
 package com.wonderpush.sdk.segmentation.parser;
 
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Random;
+
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 
 public class GeohashTest {
 
+    private static final char[] BASE32_CODES = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'b', 'c', 'd', 'e', 'f', 'g',
+            'h', 'j', 'k', 'm', 'n', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z' };
+
+    private static final HashMap<Character, Integer> BASE32_CODES_DICT = new HashMap<>();
+
+    static {
+        for (int i = 0; i < BASE32_CODES.length; i++) {
+            BASE32_CODES_DICT.put(BASE32_CODES[i], i);
+        }
+    }
+
+    /**
+     * The former implementation of {@link Geohash#parse(String)}, returning {top, right, bottom, left}.
+     */
+    private static double[] parseByBisection(String geohash) throws BadInputError {
+        geohash = geohash.toLowerCase(Locale.ROOT);
+        boolean isLon = true;
+        double maxLat = +90;
+        double minLat = -90;
+        double maxLon = +180;
+        double minLon = -180;
+        double mid;
+        for (int i = 0, l = geohash.length(); i < l; i++) {
+            char c = geohash.charAt(i);
+            Integer hashValue = BASE32_CODES_DICT.get(c);
+            if (hashValue == null) {
+                throw new BadInputError("character \"" + c + "\" is not valid in a geohash");
+            }
+            for (int bits = 4; bits >= 0; bits--) {
+                int bit = (hashValue >> bits) & 1;
+                if (isLon) {
+                    mid = (maxLon + minLon) / 2;
+                    if (bit == 1) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    mid = (maxLat + minLat) / 2;
+                    if (bit == 1) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                isLon = !isLon;
+            }
+        }
+        return new double[] {maxLat, maxLon, minLat, minLon};
+    }
+
+    private static String randomGeohash(Random random, int length) {
+        StringBuilder rtn = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char c = BASE32_CODES[random.nextInt(BASE32_CODES.length)];
+            rtn.append(random.nextInt(4) == 0 ? Character.toUpperCase(c) : c);
+        }
+        return rtn.toString();
+    }
+
     @Test
     public void testItShouldReject() {
         try {
@@ -18,4 +85,91 @@ public class GeohashTest {
         }
     }
 
+    @Test
+    public void testDecodeShouldTellTheInvalidCharacter() {
+        Geohash.Bounds bounds = new Geohash.Bounds();
+        assertEquals(3, Geohash.decode("u09#", bounds));
+        assertEquals(0, Geohash.decode("a", bounds));
+        assertEquals(24, Geohash.decode("u09tvw0u09tvw0u09tvw0u09é", bounds));
+        assertEquals(0, bounds.top, 0);
+        assertEquals(-1, Geohash.decode("", bounds));
+        assertEquals(90, bounds.top, 0);
+        assertEquals(180, bounds.right, 0);
+        assertEquals(-90, bounds.bottom, 0);
+        assertEquals(-180, bounds.left, 0);
+    }
+
+    @Test
+    public void testItShouldDecodeLikeBisection() throws BadInputError {
+        Random random = new Random(0);
+        Geohash.Bounds bounds = new Geohash.Bounds();
+        for (int length = 0; length <= 24; length++) {
+            for (int i = 0; i < 1000; i++) {
+                String geohash = randomGeohash(random, length);
+                double[] expected = parseByBisection(geohash);
+                assertEquals(-1, Geohash.decode(geohash, bounds));
+                assertEquals(geohash, expected[0], bounds.top, 0);
+                assertEquals(geohash, expected[1], bounds.right, 0);
+                assertEquals(geohash, expected[2], bounds.bottom, 0);
+                assertEquals(geohash, expected[3], bounds.left, 0);
+                Geohash parsed = Geohash.parse(geohash);
+                assertEquals(geohash.toLowerCase(Locale.ROOT), parsed.geohash);
+                assertEquals(geohash, expected[0], parsed.top, 0);
+                assertEquals(geohash, expected[1], parsed.right, 0);
+                assertEquals(geohash, expected[2], parsed.bottom, 0);
+                assertEquals(geohash, expected[3], parsed.left, 0);
+            }
+        }
+    }
+
+    /**
+     * Decodes 100k random geohashes of 1 to 12 characters,
+     * with warmup iterations first, like a JMH average time benchmark.
+     */
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void benchmarkDecode() throws BadInputError {
+        final int geohashesCount = 100000;
+        final int warmupIterations = 5;
+        final int measureIterations = 10;
+        Random random = new Random(0);
+        String[] geohashes = new String[geohashesCount];
+        for (int i = 0; i < geohashesCount; i++) {
+            geohashes[i] = randomGeohash(random, 1 + random.nextInt(12)).toLowerCase(Locale.ROOT);
+        }
+
+        double checksum = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            for (String geohash : geohashes) checksum += parseByBisection(geohash)[0];
+        }
+        long bisectionStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            for (String geohash : geohashes) checksum += parseByBisection(geohash)[0];
+        }
+        long bisectionNanos = System.nanoTime() - bisectionStart;
+
+        Geohash.Bounds bounds = new Geohash.Bounds();
+        double decodedChecksum = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            for (String geohash : geohashes) {
+                Geohash.decode(geohash, bounds);
+                decodedChecksum += bounds.top;
+            }
+        }
+        long decodeStart = System.nanoTime();
+        for (int i = 0; i < measureIterations; i++) {
+            for (String geohash : geohashes) {
+                Geohash.decode(geohash, bounds);
+                decodedChecksum += bounds.top;
+            }
+        }
+        long decodeNanos = System.nanoTime() - decodeStart;
+
+        assertEquals(checksum, decodedChecksum, 0);
+        long decodes = (long) geohashesCount * measureIterations;
+        System.out.println(String.format(
+                "Geohash decoding of %d geohashes: boxed bisection %6.1f ns/geohash, decode table %6.1f ns/geohash",
+                geohashesCount, (double) bisectionNanos / decodes, (double) decodeNanos / decodes));
+    }
+
 }